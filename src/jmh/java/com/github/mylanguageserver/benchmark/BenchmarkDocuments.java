@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+
+import com.github.mylanguageserver.MyLanguageServer;
+
+/**
+ * Documents and edits shared by the benchmarks.
+ */
+final class BenchmarkDocuments {
+
+	private BenchmarkDocuments() {
+	}
+
+	/**
+	 * @param size	the approximate number of characters of the document
+	 * @return a document made of short "key = value" lines
+	 */
+	static String generate(int size) {
+		StringBuilder text = new StringBuilder(size + 64);
+		int line = 0;
+		while (text.length() < size) {
+			text.append("key_").append(line).append(" = value ").append(line).append('\n');
+			line++;
+		}
+		return text.toString();
+	}
+
+	static TextDocumentItem item(String uri, String text) {
+		return new TextDocumentItem(uri, MyLanguageServer.LANGUAGE_ID, 1, text);
+	}
+
+	/**
+	 * @return a change inserting a character at the position when version is even, deleting it otherwise,
+	 * so that the size of the document stays stable whatever the number of invocations
+	 */
+	static List<TextDocumentContentChangeEvent> typing(Position position, int version) {
+		Position end = version % 2 == 0 ? position : new Position(position.getLine(), position.getCharacter() + 1);
+		String text = version % 2 == 0 ? "a" : "";
+		return Collections.singletonList(new TextDocumentContentChangeEvent(new Range(position, end), 0, text));
+	}
+
+	static Position middle(String text) {
+		int lines = 0;
+		for (int i = 0; i < text.length() / 2; i++) {
+			if (text.charAt(i) == '\n') {
+				lines++;
+			}
+		}
+		return new Position(lines, 3);
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.benchmark;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.transport.ChannelLauncherBuilder;
+
+/**
+ * Goes end-to-end through LSPLauncher, as with the standard I/O runner, with in-memory pipes instead of the process streams.
+ * The server reads and writes the pipes as streams, or as channels as with the --nioTransport option.
+ *
+ * Notifications don't have a response, so they are followed by a completion request on the same document,
+ * which is only handled once the notification has been processed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LauncherBenchmark {
+
+	private static final String URI = "file:///benchmark.demo";
+	private static final String OPENED_URI = "file:///benchmark-open.demo";
+
+	@Param({ "1024", "1048576", "52428800" })
+	public int documentSize;
+
+	@Param({ "stream", "channel" })
+	public String transport;
+
+	private Future<Void> serverListening;
+	private Future<Void> clientListening;
+	private LanguageServer server;
+	private String text;
+	private Position middle;
+	private int version;
+
+	@Setup
+	public void setup() throws IOException, InterruptedException, ExecutionException {
+		Pipe clientToServer = Pipe.open();
+		Pipe serverToClient = Pipe.open();
+		MyLanguageServer languageServer = new MyLanguageServer();
+		ChannelLauncherBuilder<LanguageClient> serverBuilder = new ChannelLauncherBuilder<>();
+		if ("channel".equals(transport)) {
+			serverBuilder.setChannels(clientToServer.source(), serverToClient.sink());
+		} else {
+			serverBuilder.setInput(Channels.newInputStream(clientToServer.source())).setOutput(Channels.newOutputStream(serverToClient.sink()));
+		}
+		Launcher<LanguageClient> serverLauncher = serverBuilder
+				.setLocalService(languageServer)
+				.setRemoteInterface(LanguageClient.class)
+				.create();
+		languageServer.connect(serverLauncher.getRemoteProxy());
+		serverListening = serverLauncher.startListening();
+		Launcher<LanguageServer> clientLauncher = LSPLauncher.createClientLauncher(new NoOpLanguageClient(),
+				Channels.newInputStream(serverToClient.source()), Channels.newOutputStream(clientToServer.sink()));
+		clientListening = clientLauncher.startListening();
+		server = clientLauncher.getRemoteProxy();
+		server.initialize(new InitializeParams()).get();
+
+		text = BenchmarkDocuments.generate(documentSize);
+		middle = BenchmarkDocuments.middle(text);
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(BenchmarkDocuments.item(URI, text)));
+		completion(URI);
+		version = 1;
+	}
+
+	@TearDown
+	public void tearDown() {
+		clientListening.cancel(true);
+		serverListening.cancel(true);
+	}
+
+	@Benchmark
+	public Either<List<CompletionItem>, CompletionList> didOpen() throws InterruptedException, ExecutionException {
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(BenchmarkDocuments.item(OPENED_URI, text)));
+		Either<List<CompletionItem>, CompletionList> completion = completion(OPENED_URI);
+		server.getTextDocumentService().didClose(new DidCloseTextDocumentParams(new TextDocumentIdentifier(OPENED_URI)));
+		return completion;
+	}
+
+	@Benchmark
+	public Either<List<CompletionItem>, CompletionList> didChange() throws InterruptedException, ExecutionException {
+		version++;
+		server.getTextDocumentService().didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(URI, version), BenchmarkDocuments.typing(middle, version)));
+		return completion(URI);
+	}
+
+	@Benchmark
+	public Either<List<CompletionItem>, CompletionList> completion() throws InterruptedException, ExecutionException {
+		return completion(URI);
+	}
+
+	private Either<List<CompletionItem>, CompletionList> completion(String uri) throws InterruptedException, ExecutionException {
+		return server.getTextDocumentService().completion(new CompletionParams(new TextDocumentIdentifier(uri), middle)).get();
+	}
+}
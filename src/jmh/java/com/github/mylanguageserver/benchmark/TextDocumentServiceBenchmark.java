@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mylanguageserver.MyTextDocumentService;
+import com.github.mylanguageserver.scheduling.RequestScheduler;
+
+/**
+ * Calls MyTextDocumentService directly, without any JSON-RPC transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextDocumentServiceBenchmark {
+
+	private static final String URI = "file:///benchmark.demo";
+	private static final String OPENED_URI = "file:///benchmark-open.demo";
+
+	@Param({ "1024", "1048576", "52428800" })
+	public int documentSize;
+
+	private MyTextDocumentService service;
+	private String text;
+	private Position middle;
+	private int version;
+
+	@Setup
+	public void setup() throws InterruptedException, ExecutionException {
+		service = new MyTextDocumentService(new RequestScheduler());
+		text = BenchmarkDocuments.generate(documentSize);
+		middle = BenchmarkDocuments.middle(text);
+		service.didOpen(new DidOpenTextDocumentParams(BenchmarkDocuments.item(URI, text)));
+		awaitNotifications(URI);
+		version = 1;
+	}
+
+	@Benchmark
+	public void didOpen() throws InterruptedException, ExecutionException {
+		service.didOpen(new DidOpenTextDocumentParams(BenchmarkDocuments.item(OPENED_URI, text)));
+		service.didClose(new DidCloseTextDocumentParams(new TextDocumentIdentifier(OPENED_URI)));
+		awaitNotifications(OPENED_URI);
+	}
+
+	@Benchmark
+	public void didChange() throws InterruptedException, ExecutionException {
+		version++;
+		service.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(URI, version), BenchmarkDocuments.typing(middle, version)));
+		awaitNotifications(URI);
+	}
+
+	@Benchmark
+	public Either<List<CompletionItem>, CompletionList> completion() throws InterruptedException, ExecutionException {
+		return service.completion(new CompletionParams(new TextDocumentIdentifier(URI), middle)).get();
+	}
+
+	private void awaitNotifications(String uri) throws InterruptedException, ExecutionException {
+		service.getScheduler().notification(uri, () -> {}).get();
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.eclipse.lsp4j.websocket.WebSocketLauncherBuilder;
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mylanguageserver.websocket.MyLSPWebSocketServerConfigProvider;
+
+/**
+ * Goes end-to-end through the WebSocket server, with a client connected on the loopback interface.
+ *
+ * As with {@link LauncherBenchmark}, notifications are followed by a completion request on the same document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebSocketBenchmark {
+
+	private static final String URI = "file:///benchmark.demo";
+	private static final String OPENED_URI = "file:///benchmark-open.demo";
+	/** Large enough for the biggest document, with its JSON-RPC envelope and escaping. */
+	private static final int BUFFER_SIZE = 128 * 1024 * 1024;
+
+	@Param({ "1024", "1048576", "52428800" })
+	public int documentSize;
+
+	private Server webSocketServer;
+	private Session session;
+	private LanguageServer server;
+	private String text;
+	private Position middle;
+	private int version;
+
+	@Setup
+	public void setup() throws IOException, DeploymentException, InterruptedException, ExecutionException {
+		Map<String, Object> properties = Collections.singletonMap(TyrusWebSocketEngine.INCOMING_BUFFER_SIZE, BUFFER_SIZE);
+		int port = freePort();
+		webSocketServer = new Server("localhost", port, "/", properties, MyLSPWebSocketServerConfigProvider.class);
+		webSocketServer.start();
+
+		ClientManager client = ClientManager.createClient();
+		client.getProperties().put(TyrusWebSocketEngine.INCOMING_BUFFER_SIZE, BUFFER_SIZE);
+		CompletableFuture<LanguageServer> remoteServer = new CompletableFuture<>();
+		session = client.connectToServer(new Endpoint() {
+			@Override
+			public void onOpen(Session session, EndpointConfig config) {
+				session.setMaxTextMessageBufferSize(BUFFER_SIZE);
+				Launcher<LanguageServer> launcher = new WebSocketLauncherBuilder<LanguageServer>()
+						.setSession(session)
+						.setLocalService(new NoOpLanguageClient())
+						.setRemoteInterface(LanguageServer.class)
+						.create();
+				remoteServer.complete(launcher.getRemoteProxy());
+			}
+		}, ClientEndpointConfig.Builder.create().build(), java.net.URI.create("ws://localhost:" + port + MyLSPWebSocketServerConfigProvider.WEBSOCKET_SERVER_PATH));
+		server = remoteServer.get();
+		server.initialize(new InitializeParams()).get();
+
+		text = BenchmarkDocuments.generate(documentSize);
+		middle = BenchmarkDocuments.middle(text);
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(BenchmarkDocuments.item(URI, text)));
+		completion(URI);
+		version = 1;
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		session.close();
+		webSocketServer.stop();
+	}
+
+	@Benchmark
+	public Either<List<CompletionItem>, CompletionList> didOpen() throws InterruptedException, ExecutionException {
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(BenchmarkDocuments.item(OPENED_URI, text)));
+		Either<List<CompletionItem>, CompletionList> completion = completion(OPENED_URI);
+		server.getTextDocumentService().didClose(new DidCloseTextDocumentParams(new TextDocumentIdentifier(OPENED_URI)));
+		return completion;
+	}
+
+	@Benchmark
+	public Either<List<CompletionItem>, CompletionList> didChange() throws InterruptedException, ExecutionException {
+		version++;
+		server.getTextDocumentService().didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(URI, version), BenchmarkDocuments.typing(middle, version)));
+		return completion(URI);
+	}
+
+	@Benchmark
+	public Either<List<CompletionItem>, CompletionList> completion() throws InterruptedException, ExecutionException {
+		return completion(URI);
+	}
+
+	private Either<List<CompletionItem>, CompletionList> completion(String uri) throws InterruptedException, ExecutionException {
+		return server.getTextDocumentService().completion(new CompletionParams(new TextDocumentIdentifier(uri), middle)).get();
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
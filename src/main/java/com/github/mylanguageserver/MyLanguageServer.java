@@ -16,15 +16,20 @@
  */
 package com.github.mylanguageserver;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.lsp4j.CompletionOptions;
+import org.eclipse.lsp4j.DocumentOnTypeFormattingOptions;
 import org.eclipse.lsp4j.InitializeParams;
 import org.eclipse.lsp4j.InitializeResult;
+import org.eclipse.lsp4j.SemanticTokensServerFull;
+import org.eclipse.lsp4j.SemanticTokensWithRegistrationOptions;
 import org.eclipse.lsp4j.ServerCapabilities;
 import org.eclipse.lsp4j.TextDocumentSyncKind;
+import org.eclipse.lsp4j.jsonrpc.services.JsonRequest;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.lsp4j.services.LanguageClientAware;
 import org.eclipse.lsp4j.services.LanguageServer;
@@ -32,44 +37,61 @@ import org.eclipse.lsp4j.services.WorkspaceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.mylanguageserver.diagnostics.DiagnosticsEngine;
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.PositionEncoding;
+import com.github.mylanguageserver.features.SemanticTokensProvider;
+import com.github.mylanguageserver.metrics.MetricsReport;
+import com.github.mylanguageserver.metrics.ServerMetrics;
+import com.github.mylanguageserver.scheduling.RequestScheduler;
+import com.github.mylanguageserver.workspace.WorkspaceContext;
+import com.github.mylanguageserver.workspace.WorkspaceRegistry;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 
 public class MyLanguageServer implements LanguageServer, LanguageClientAware {
-	
-	private static final String OS = System.getProperty("os.name").toLowerCase();
-	
-	private final class CamelServerRunnable implements Runnable {
-		@Override
-		public void run() {
-			LOGGER.info("Starting Language Server...");
-			while (!shutdown && parentProcessStillRunning() && !Thread.currentThread().isInterrupted()) {
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					LOGGER.error(e.getMessage(), e);
-					Thread.currentThread().interrupt();
-				}
-			}
-			if (!Thread.currentThread().isInterrupted()) {
-				LOGGER.info("Language Server - Client vanished...");
-			}
-		}
-	}
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MyLanguageServer.class);
 
 	public static final String LANGUAGE_ID = "MY_LANGUAGE_ID";
+
+	private static final String POSITION_ENCODINGS_CAPABILITY = "positionEncodings";
+	private static final String POSITION_ENCODING_CAPABILITY = "positionEncoding";
 	
-	private Thread runner;
-	private volatile boolean shutdown;
+	private boolean started;
 	private long parentProcessId;
-	private WorkspaceService workspaceService;
+	private CompletableFuture<Void> parentProcessExit;
+	private MyWorkspaceService workspaceService;
 	private MyTextDocumentService textDocumentService;
+	private final WorkspaceRegistry workspaceRegistry;
+	private WorkspaceContext workspace;
+	private Runnable exitHandler = () -> System.exit(0);
 
 	private LanguageClient client;
 	
 	public MyLanguageServer() {
-		this.textDocumentService = new MyTextDocumentService();
-		this.workspaceService = new MyWorkspaceService();
+		this(new WorkspaceRegistry(), DocumentStore.UNLIMITED);
+	}
+
+	/**
+	 * @param workspaceRegistry	the registry of the workspaces, shared with the other servers of the JVM
+	 * @param documentsMemoryBudget	the maximum estimated memory in bytes of the documents opened by this server
+	 */
+	public MyLanguageServer(WorkspaceRegistry workspaceRegistry, long documentsMemoryBudget) {
+		this(workspaceRegistry, new DocumentStore(documentsMemoryBudget));
+	}
+
+	/**
+	 * @param workspaceRegistry	the registry of the workspaces, shared with the other servers of the JVM
+	 * @param documents	where the documents opened by this server are kept
+	 */
+	public MyLanguageServer(WorkspaceRegistry workspaceRegistry, DocumentStore documents) {
+		RequestScheduler scheduler = new RequestScheduler();
+		this.workspaceRegistry = workspaceRegistry;
+		this.textDocumentService = new MyTextDocumentService(scheduler, documents, new DiagnosticsEngine(documents), this::getWorkspace);
+		this.workspaceService = new MyWorkspaceService(scheduler, documents, this::getWorkspace, textDocumentService.getDiagnostics(),
+				textDocumentService.getOpenDocumentsIndex());
 	}
 	
 	
@@ -79,46 +101,33 @@ public class MyLanguageServer implements LanguageServer, LanguageClientAware {
 	 * @return	the exit code of the process
 	 */
 	public int startServer() {
-		runner = new Thread(new CamelServerRunnable(), "Language Client Watcher");
-		runner.start();
+		LOGGER.info("Starting Language Server...");
+		synchronized (this) {
+			started = true;
+			watchParentProcess();
+		}
 		return 0;
 	}
 	
 	/**
-	 * Checks whether the parent process is still running.
-	 * If not, then we assume it has crashed, and we have to terminate the Camel Language Server.
-	 *
-	 * @return true if the parent process is still running
+	 * Watches the parent process once the server is started and the parent process id is known.
+	 * If the parent process exits, then we assume it has crashed.
 	 */
-	protected boolean parentProcessStillRunning() {
-		// Wait until parent process id is available
-		
-		if (parentProcessId == 0) {
-			LOGGER.info("Waiting for a client connection...");
-		} else {
-			LOGGER.info("Checking for client process pid: {}", parentProcessId);
+	private synchronized void watchParentProcess() {
+		if (parentProcessExit != null) {
+			parentProcessExit.cancel(false);
+			parentProcessExit = null;
 		}
-		
-		if (parentProcessId == 0) return true;
-
-		String command;
-		if (OS.indexOf("win") != -1) { // && "x86".equals(ARCH)
-			command = "cmd /c \"tasklist /FI \"PID eq " + parentProcessId + "\" | findstr " + parentProcessId + "\"";
-		} else {
-			command = "ps -p " + parentProcessId;
+		if (!started) {
+			return;
 		}
-		try {
-			Process process = Runtime.getRuntime().exec(command);
-			int processResult = process.waitFor();
-			return processResult == 0;
-		} catch (IOException e) {
-			LOGGER.error(e.getMessage(), e);
-			return true;
-		} catch (InterruptedException e) {
-			LOGGER.error(e.getMessage(), e);
-			Thread.currentThread().interrupt();
-			return true;
+		if (parentProcessId == 0) {
+			LOGGER.info("Waiting for a client connection...");
+			return;
 		}
+		LOGGER.info("Watching client process pid: {}", parentProcessId);
+		parentProcessExit = ParentProcessWatcher.getInstance().onExit(parentProcessId);
+		parentProcessExit.thenRun(() -> LOGGER.info("Language Server - Client vanished..."));
 	}
 
 	/**
@@ -137,6 +146,7 @@ public class MyLanguageServer implements LanguageServer, LanguageClientAware {
 	protected synchronized void setParentProcessId(long processId) {
 		LOGGER.info("Setting client pid to {}", processId);
 		parentProcessId = processId;
+		watchParentProcess();
 	}
 	
 	/**
@@ -154,9 +164,25 @@ public class MyLanguageServer implements LanguageServer, LanguageClientAware {
 		return this.workspaceService;
 	}
 
+	/**
+	 * @return the data shared with the other servers opened on the same workspace, null before initialization
+	 */
+	public synchronized WorkspaceContext getWorkspace() {
+		return workspace;
+	}
+
+	/**
+	 * @param exitHandler	what to do when the client asks the server to exit, by default the JVM is stopped
+	 */
+	public void setExitHandler(Runnable exitHandler) {
+		this.exitHandler = exitHandler;
+	}
+
 	@Override
 	public void connect(LanguageClient client) {
 		this.client = client;
+		this.textDocumentService.connect(client);
+		this.workspaceService.connect(client);
 	}
 
 	@Override
@@ -169,37 +195,107 @@ public class MyLanguageServer implements LanguageServer, LanguageClientAware {
 			setParentProcessId(0);
 		}
 		
+		synchronized (this) {
+			releaseWorkspace();
+			workspace = workspaceRegistry.acquire(params);
+		}
+		
+		List<String> clientEncodings = clientPositionEncodings(params);
+		PositionEncoding encoding = PositionEncoding.negotiate(clientEncodings);
+		textDocumentService.getDocumentStore().setPositionEncoding(encoding);
+		LOGGER.info("Using {} positions", encoding.getName());
+
 		ServerCapabilities capabilities = createServerCapabilities();
+		if (clientEncodings != null) {
+			JsonObject experimental = new JsonObject();
+			experimental.addProperty(POSITION_ENCODING_CAPABILITY, encoding.getName());
+			capabilities.setExperimental(experimental);
+		}
 		return CompletableFuture.completedFuture(new InitializeResult(capabilities));
 	}
 
+	/**
+	 * LSP4J does not know the position encodings of LSP 3.17 yet, they are negotiated through the experimental capabilities.
+	 *
+	 * @return the position encodings supported by the client, by order of preference, null if not provided
+	 */
+	private static List<String> clientPositionEncodings(InitializeParams params) {
+		Object experimental = params.getCapabilities() != null ? params.getCapabilities().getExperimental() : null;
+		if (!(experimental instanceof JsonObject)) {
+			return null;
+		}
+		JsonElement encodings = ((JsonObject) experimental).get(POSITION_ENCODINGS_CAPABILITY);
+		if (encodings == null || !encodings.isJsonArray()) {
+			return null;
+		}
+		List<String> names = new ArrayList<>();
+		for (JsonElement encoding : encodings.getAsJsonArray()) {
+			if (encoding.isJsonPrimitive()) {
+				names.add(encoding.getAsString());
+			}
+		}
+		return names;
+	}
+
 	@Override
 	public CompletableFuture<Object> shutdown() {
 		LOGGER.info("Shutting down language server");
-		shutdown = true;
+		textDocumentService.getDiagnostics().close();
+		releaseWorkspace();
 		return CompletableFuture.completedFuture(new Object());
 	}
 
+	/**
+	 * Custom request returning the latency, throughput and message size metrics of the server.
+	 */
+	@JsonRequest("$/metrics")
+	public CompletableFuture<MetricsReport> metrics() {
+		return CompletableFuture.completedFuture(ServerMetrics.getInstance().report());
+	}
+
 	@Override
 	public void exit() {
 		stopServer();
-		System.exit(0);
+		exitHandler.run();
+	}
+
+	/**
+	 * Releases the shared workspace data, to be called when the session ends without a proper shutdown.
+	 */
+	public synchronized void releaseWorkspace() {
+		if (workspace != null) {
+			workspaceRegistry.release(workspace);
+			workspace = null;
+		}
 	}
 
 	void stopServer() {
 		LOGGER.info("Stopping language server");
-		if (runner != null) {
-			runner.interrupt();
-		} else {
-			LOGGER.info("Request to stop the server has been received but it wasn't started.");
+		synchronized (this) {
+			if (started) {
+				started = false;
+				watchParentProcess();
+			} else {
+				LOGGER.info("Request to stop the server has been received but it wasn't started.");
+			}
 		}
 	}
 	
 	private ServerCapabilities createServerCapabilities() {
 		ServerCapabilities capabilities = new ServerCapabilities();
-		capabilities.setTextDocumentSync(TextDocumentSyncKind.Full);
+		capabilities.setTextDocumentSync(TextDocumentSyncKind.Incremental);
 		// TODO: define capabilities, usually the first provided is completion
 		capabilities.setCompletionProvider(new CompletionOptions(Boolean.TRUE, Arrays.asList(".","?","&", "\"", "=")));
+		capabilities.setDocumentSymbolProvider(Boolean.TRUE);
+		capabilities.setDocumentHighlightProvider(Boolean.TRUE);
+		capabilities.setFoldingRangeProvider(Boolean.TRUE);
+		capabilities.setReferencesProvider(Boolean.TRUE);
+		capabilities.setRenameProvider(Boolean.TRUE);
+		capabilities.setDocumentFormattingProvider(Boolean.TRUE);
+		capabilities.setDocumentRangeFormattingProvider(Boolean.TRUE);
+		capabilities.setDocumentOnTypeFormattingProvider(new DocumentOnTypeFormattingOptions("\n", Arrays.asList("}")));
+		capabilities.setSemanticTokensProvider(new SemanticTokensWithRegistrationOptions(SemanticTokensProvider.createLegend(),
+				new SemanticTokensServerFull(Boolean.TRUE), Boolean.TRUE));
 		return capabilities;
 	}
 
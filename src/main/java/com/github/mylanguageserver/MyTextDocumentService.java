@@ -16,12 +16,14 @@
  */
 package com.github.mylanguageserver;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 import org.eclipse.lsp4j.CodeAction;
 import org.eclipse.lsp4j.CodeActionParams;
@@ -43,12 +45,22 @@ import org.eclipse.lsp4j.DocumentOnTypeFormattingParams;
 import org.eclipse.lsp4j.DocumentRangeFormattingParams;
 import org.eclipse.lsp4j.DocumentSymbol;
 import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.FoldingRange;
+import org.eclipse.lsp4j.FoldingRangeRequestParams;
 import org.eclipse.lsp4j.Hover;
 import org.eclipse.lsp4j.HoverParams;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.LocationLink;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.MessageType;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.ReferenceParams;
 import org.eclipse.lsp4j.RenameParams;
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensDelta;
+import org.eclipse.lsp4j.SemanticTokensDeltaParams;
+import org.eclipse.lsp4j.SemanticTokensParams;
+import org.eclipse.lsp4j.SemanticTokensRangeParams;
 import org.eclipse.lsp4j.SignatureHelp;
 import org.eclipse.lsp4j.SignatureHelpParams;
 import org.eclipse.lsp4j.SymbolInformation;
@@ -56,144 +68,482 @@ import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
 import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageClientAware;
 import org.eclipse.lsp4j.services.TextDocumentService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class MyTextDocumentService implements TextDocumentService {
+import com.github.mylanguageserver.completion.CompletionEngine;
+import com.github.mylanguageserver.diagnostics.DiagnosticsEngine;
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.PositionEncoding;
+import com.github.mylanguageserver.document.ResultCache;
+import com.github.mylanguageserver.document.TextDocument;
+import com.github.mylanguageserver.features.DocumentFormatter;
+import com.github.mylanguageserver.features.DocumentHighlightProvider;
+import com.github.mylanguageserver.features.DocumentSymbolProvider;
+import com.github.mylanguageserver.features.FoldingRangeProvider;
+import com.github.mylanguageserver.features.ReferenceSearch;
+import com.github.mylanguageserver.features.SemanticTokensCache;
+import com.github.mylanguageserver.index.OpenDocumentsIndex;
+import com.github.mylanguageserver.metrics.ServerMetrics;
+import com.github.mylanguageserver.progress.RequestProgress;
+import com.github.mylanguageserver.scheduling.DocumentCancelChecker;
+import com.github.mylanguageserver.scheduling.RequestScheduler;
+import com.github.mylanguageserver.workspace.WorkspaceContext;
+
+public class MyTextDocumentService implements TextDocumentService, LanguageClientAware {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MyTextDocumentService.class);
-	private Map<String, TextDocumentItem> openedDocuments = new HashMap<>();
+
+	/** The top-level document symbols are sent by chunks of that many when they are streamed. */
+	static final int SYMBOLS_PER_PARTIAL_RESULT = 1000;
+
+	private final DocumentStore openedDocuments;
+	private final RequestScheduler scheduler;
+	private final ServerMetrics metrics = ServerMetrics.getInstance();
+	private final DiagnosticsEngine diagnostics;
+	private final Supplier<WorkspaceContext> workspace;
+	private final CompletionEngine completionEngine = new CompletionEngine();
+	private final SemanticTokensCache semanticTokens = new SemanticTokensCache();
+	private final OpenDocumentsIndex openDocumentsIndex = new OpenDocumentsIndex();
+	private final ReferenceSearch referenceSearch;
+	private LanguageClient client;
+
+	public MyTextDocumentService(RequestScheduler scheduler) {
+		this(scheduler, new DocumentStore());
+	}
+
+	public MyTextDocumentService(RequestScheduler scheduler, DocumentStore openedDocuments) {
+		this(scheduler, openedDocuments, new DiagnosticsEngine(openedDocuments));
+	}
+
+	public MyTextDocumentService(RequestScheduler scheduler, DocumentStore openedDocuments, DiagnosticsEngine diagnostics) {
+		this(scheduler, openedDocuments, diagnostics, () -> null);
+	}
+
+	/**
+	 * @param workspace	the data shared with the other sessions of the workspace, null until initialization
+	 */
+	public MyTextDocumentService(RequestScheduler scheduler, DocumentStore openedDocuments, DiagnosticsEngine diagnostics,
+			Supplier<WorkspaceContext> workspace) {
+		this.scheduler = scheduler;
+		this.openedDocuments = openedDocuments;
+		this.diagnostics = diagnostics;
+		this.workspace = workspace;
+		this.referenceSearch = new ReferenceSearch(openedDocuments, openDocumentsIndex, workspace);
+	}
+
+	@Override
+	public void connect(LanguageClient client) {
+		this.client = client;
+		this.diagnostics.connect(client);
+	}
 
 	@Override
 	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> completion(CompletionParams completionParams) {
 		String uri = completionParams.getTextDocument().getUri();
-		LOGGER.info("completion: {}", uri);
-		//TODO: usually the first provided item is completion, provide a dummy one returning always "demo", to show a test for it
-		return CompletableFuture.completedFuture(Either.forLeft(Collections.singletonList(new CompletionItem("demo"))));
+		LOGGER.debug("completion: {}", uri);
+		return computeOnLatestVersion("textDocument/completion", uri, (document, cancelChecker) -> {
+			if (document == null) {
+				return Either.forRight(new CompletionList(false, Collections.emptyList()));
+			}
+			WorkspaceContext context = workspace.get();
+			return Either.forRight(completionEngine.complete(document, document.toUtf16(completionParams.getPosition()),
+					context != null ? context.getVocabulary() : null, cancelChecker));
+		});
 	}
 
 	@Override
 	public CompletableFuture<CompletionItem> resolveCompletionItem(CompletionItem unresolved) {
-		LOGGER.info("resolveCompletionItem: {}", unresolved.getLabel());
-		return CompletableFuture.completedFuture(unresolved);
+		LOGGER.debug("resolveCompletionItem: {}", unresolved.getLabel());
+		return scheduler.request(null, cancelChecker -> completionEngine.resolve(unresolved));
 	}
 
 	@Override
 	public CompletableFuture<Hover> hover(HoverParams params) {
-		LOGGER.info("hover: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(null);
+		LOGGER.debug("hover: {}", params.getTextDocument());
+		return computeOnLatestVersion("textDocument/hover", params.getTextDocument().getUri(), (document, cancelChecker) -> null);
 	}
 
 	@Override
 	public CompletableFuture<SignatureHelp> signatureHelp(SignatureHelpParams params) {
-		LOGGER.info("signatureHelp: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(null);
+		LOGGER.debug("signatureHelp: {}", params.getTextDocument());
+		return computeOnLatestVersion("textDocument/signatureHelp", params.getTextDocument().getUri(), (document, cancelChecker) -> null);
 	}
 
 	@Override
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> definition(DefinitionParams params) {
 		TextDocumentIdentifier textDocument = params.getTextDocument();
-		LOGGER.info("definition: {}", textDocument);
-		return CompletableFuture.completedFuture(null);
+		LOGGER.debug("definition: {}", textDocument);
+		return scheduler.request(textDocument.getUri(), cancelChecker -> null);
 	}
 
+	/**
+	 * Finds the occurrences of the identifier at the position in the opened documents and the workspace files.
+	 * When the client provides a partialResultToken, the locations are streamed by batches of files and the response is empty.
+	 * When it provides a workDoneToken, the number of files searched is reported.
+	 */
 	@Override
 	public CompletableFuture<List<? extends Location>> references(ReferenceParams params) {
-		LOGGER.info("references: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("references: {}", params.getTextDocument());
+		boolean includeDeclaration = params.getContext() != null && params.getContext().isIncludeDeclaration();
+		RequestProgress progress = RequestProgress.of(client, params);
+		return computeAcrossDocuments(params.getTextDocument().getUri(), (document, cancelChecker) -> {
+			String name = document != null ? ReferenceSearch.nameAt(document, params.getPosition()) : null;
+			List<Location> locations = new ArrayList<>();
+			if (name != null) {
+				progress.begin("Finding references of " + name);
+				try {
+					referenceSearch.findReferences(name, includeDeclaration,
+							progress.isStreamingPartialResults() ? progress::partialResult : locations::addAll,
+							(searchedFiles, totalFiles) -> progress.report(searchedFiles + "/" + totalFiles + " files", searchedFiles, totalFiles),
+							cancelChecker);
+				} finally {
+					progress.end(null);
+				}
+			}
+			return locations;
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<? extends DocumentHighlight>> documentHighlight(DocumentHighlightParams params) {
-		LOGGER.info("documentHighlight: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("documentHighlight: {}", params.getTextDocument());
+		return computeCachedOnDocument("textDocument/documentHighlight", params.getTextDocument().getUri(), params.getPosition(), (document, cancelChecker) -> {
+			if (document == null) {
+				return Collections.emptyList();
+			}
+			List<DocumentHighlight> highlights = DocumentHighlightProvider.compute(document.getSyntaxTree(), document.toUtf16(params.getPosition()), cancelChecker);
+			for (DocumentHighlight highlight : highlights) {
+				highlight.setRange(document.fromUtf16(highlight.getRange()));
+			}
+			return highlights;
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> documentSymbol(DocumentSymbolParams params) {
-		LOGGER.info("documentSymbol: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("documentSymbol: {}", params.getTextDocument());
+		RequestProgress progress = RequestProgress.of(client, params);
+		return computeCachedOnDocument("textDocument/documentSymbol", params.getTextDocument().getUri(), null, (document, cancelChecker) -> {
+			List<Either<SymbolInformation, DocumentSymbol>> symbols = new ArrayList<>();
+			if (document != null) {
+				for (DocumentSymbol symbol : DocumentSymbolProvider.compute(document.getSyntaxTree(), cancelChecker)) {
+					toClientEncoding(symbol, document);
+					symbols.add(Either.forRight(symbol));
+				}
+			}
+			return symbols;
+		}, symbols -> progress.streamInChunks(symbols, SYMBOLS_PER_PARTIAL_RESULT));
+	}
+
+	@Override
+	public CompletableFuture<List<FoldingRange>> foldingRange(FoldingRangeRequestParams params) {
+		LOGGER.debug("foldingRange: {}", params.getTextDocument());
+		return computeCachedOnDocument("textDocument/foldingRange", params.getTextDocument().getUri(), null, (document, cancelChecker) ->
+				document != null ? FoldingRangeProvider.compute(document.getSyntaxTree(), cancelChecker) : Collections.emptyList());
+	}
+
+	@Override
+	public CompletableFuture<SemanticTokens> semanticTokensFull(SemanticTokensParams params) {
+		LOGGER.debug("semanticTokensFull: {}", params.getTextDocument());
+		return computeOnDocument(params.getTextDocument().getUri(), (document, cancelChecker) ->
+				document != null ? semanticTokens.full(document, cancelChecker) : new SemanticTokens(Collections.emptyList()));
+	}
+
+	@Override
+	public CompletableFuture<Either<SemanticTokens, SemanticTokensDelta>> semanticTokensFullDelta(SemanticTokensDeltaParams params) {
+		LOGGER.debug("semanticTokensFullDelta: {}", params.getTextDocument());
+		return computeOnDocument(params.getTextDocument().getUri(), (document, cancelChecker) ->
+				document != null ? semanticTokens.delta(document, params.getPreviousResultId(), cancelChecker)
+						: Either.forLeft(new SemanticTokens(Collections.emptyList())));
+	}
+
+	@Override
+	public CompletableFuture<SemanticTokens> semanticTokensRange(SemanticTokensRangeParams params) {
+		LOGGER.debug("semanticTokensRange: {}", params.getTextDocument());
+		return computeOnDocument(params.getTextDocument().getUri(), (document, cancelChecker) ->
+				document != null ? semanticTokens.range(document, params.getRange(), cancelChecker) : new SemanticTokens(Collections.emptyList()));
 	}
 
 	@Override
 	public CompletableFuture<List<Either<Command, CodeAction>>> codeAction(CodeActionParams params) {
-		LOGGER.info("codeAction: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("codeAction: {}", params.getTextDocument());
+		return scheduler.request(params.getTextDocument().getUri(), cancelChecker -> Collections.emptyList());
 	}
 
 	@Override
 	public CompletableFuture<List<? extends CodeLens>> codeLens(CodeLensParams params) {
-		LOGGER.info("codeLens: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("codeLens: {}", params.getTextDocument());
+		return computeCachedOnDocument("textDocument/codeLens", params.getTextDocument().getUri(), null, (document, cancelChecker) ->
+				Collections.emptyList());
 	}
 
 	@Override
 	public CompletableFuture<CodeLens> resolveCodeLens(CodeLens unresolved) {
-		LOGGER.info("resolveCodeLens: {}", unresolved.getCommand().getCommand());
-		return CompletableFuture.completedFuture(null);
+		LOGGER.debug("resolveCodeLens: {}", unresolved.getCommand());
+		return scheduler.request(null, cancelChecker -> null);
 	}
 
 	@Override
 	public CompletableFuture<List<? extends TextEdit>> formatting(DocumentFormattingParams params) {
-		LOGGER.info("formatting: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("formatting: {}", params.getTextDocument());
+		return computeOnDocument(params.getTextDocument().getUri(), (document, cancelChecker) ->
+				document != null ? toClientEncoding(DocumentFormatter.format(document.getSyntaxTree(), params.getOptions(), cancelChecker), document)
+						: Collections.emptyList());
 	}
 
+	/**
+	 * Formats the lines of the range, a range ending at the start of a line does not include that line.
+	 */
 	@Override
 	public CompletableFuture<List<? extends TextEdit>> rangeFormatting(DocumentRangeFormattingParams params) {
-		LOGGER.info("rangeFormatting: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("rangeFormatting: {}", params.getTextDocument());
+		return computeOnDocument(params.getTextDocument().getUri(), (document, cancelChecker) -> {
+			if (document == null) {
+				return Collections.emptyList();
+			}
+			Position start = document.toUtf16(params.getRange().getStart());
+			Position end = document.toUtf16(params.getRange().getEnd());
+			int endLine = end.getCharacter() == 0 && end.getLine() > start.getLine() ? end.getLine() - 1 : end.getLine();
+			return toClientEncoding(DocumentFormatter.format(document.getSyntaxTree(), params.getOptions(), start.getLine(), endLine, cancelChecker),
+					document);
+		});
 	}
 
+	/**
+	 * Indents the new line and formats the previous one after a new line, dedents the line of a typed `}`.
+	 * Only these lines are read, so the latency does not grow with the size of the document.
+	 */
 	@Override
 	public CompletableFuture<List<? extends TextEdit>> onTypeFormatting(DocumentOnTypeFormattingParams params) {
-		LOGGER.info("onTypeFormatting: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("onTypeFormatting: {}", params.getTextDocument());
+		return computeOnDocument(params.getTextDocument().getUri(), (document, cancelChecker) ->
+				document != null ? toClientEncoding(DocumentFormatter.formatOnType(document.getSyntaxTree(), params.getOptions(),
+						document.toUtf16(params.getPosition()), params.getCh()), document) : Collections.emptyList());
 	}
 
+	/**
+	 * Renames the identifier at the position in the opened documents and the workspace files, null if there is none.
+	 * When the client provides a workDoneToken, the number of files read is reported.
+	 */
 	@Override
 	public CompletableFuture<WorkspaceEdit> rename(RenameParams params) {
-		LOGGER.info("rename: {}", params.getTextDocument());
-		return CompletableFuture.completedFuture(null);
+		LOGGER.debug("rename: {}", params.getTextDocument());
+		String newName = params.getNewName();
+		if (!ReferenceSearch.isValidName(newName)) {
+			CompletableFuture<WorkspaceEdit> invalid = new CompletableFuture<>();
+			invalid.completeExceptionally(new ResponseErrorException(
+					new ResponseError(ResponseErrorCode.InvalidParams, "'" + newName + "' is not a valid name", null)));
+			return invalid;
+		}
+		RequestProgress progress = RequestProgress.of(client, params);
+		return computeAcrossDocuments(params.getTextDocument().getUri(), (document, cancelChecker) -> {
+			String name = document != null ? ReferenceSearch.nameAt(document, params.getPosition()) : null;
+			if (name == null) {
+				return null;
+			}
+			progress.begin("Renaming " + name);
+			try {
+				return referenceSearch.rename(name, newName,
+						(renamedFiles, totalFiles) -> progress.report(renamedFiles + "/" + totalFiles + " files", renamedFiles, totalFiles),
+						cancelChecker);
+			} finally {
+				progress.end(null);
+			}
+		});
 	}
 
 	@Override
 	public void didOpen(DidOpenTextDocumentParams params) {
 		TextDocumentItem textDocument = params.getTextDocument();
-		LOGGER.info("didOpen: {}", textDocument);
-		openedDocuments.put(textDocument.getUri(), textDocument);
+		// never log the item itself, its text is the whole document
+		LOGGER.debug("didOpen: {} version {}", textDocument.getUri(), textDocument.getVersion());
+		metrics.timeNotification("textDocument/didOpen", scheduler.notification(textDocument.getUri(), () -> {
+			if (openedDocuments.open(textDocument) == null) {
+				if (client != null) {
+					client.showMessage(new MessageParams(MessageType.Warning,
+							"Not enough memory left in this session to open " + textDocument.getUri() + ", close some documents first."));
+				}
+			} else {
+				diagnostics.documentOpened(textDocument.getUri());
+			}
+		}));
 	}
 
 	@Override
 	public void didChange(DidChangeTextDocumentParams params) {
-		LOGGER.info("didChange: {}", params.getTextDocument());
+		VersionedTextDocumentIdentifier identifier = params.getTextDocument();
+		LOGGER.debug("didChange: {}", identifier);
 		List<TextDocumentContentChangeEvent> contentChanges = params.getContentChanges();
-		TextDocumentItem textDocumentItem = openedDocuments.get(params.getTextDocument().getUri());
-		if (!contentChanges.isEmpty()) {
-			textDocumentItem.setText(contentChanges.get(0).getText());
-		}
+		String uri = identifier.getUri();
+		metrics.timeNotification("textDocument/didChange", scheduler.notification(uri, () -> {
+			boolean opened = openedDocuments.isOpened(uri);
+			if (openedDocuments.update(uri, identifier.getVersion(), contentChanges) != null) {
+				diagnostics.documentChanged(uri);
+			} else if (opened) {
+				forget(uri);
+				if (client != null) {
+					client.showMessage(new MessageParams(MessageType.Warning,
+							"Not enough memory left in this session for the changes of " + uri + ", it is closed, close some documents first."));
+				}
+			} else {
+				LOGGER.warn("didChange received for a document which is not opened: {}", uri);
+			}
+		}));
 	}
 
 	@Override
 	public void didClose(DidCloseTextDocumentParams params) {
-		LOGGER.info("didClose: {}", params.getTextDocument());
+		LOGGER.debug("didClose: {}", params.getTextDocument());
 		String uri = params.getTextDocument().getUri();
-		openedDocuments.remove(uri);
+		metrics.timeNotification("textDocument/didClose", scheduler.notification(uri, () -> {
+			openedDocuments.close(uri);
+			forget(uri);
+		}));
+	}
+
+	/**
+	 * Drops what was computed from a document which is not opened anymore.
+	 */
+	private void forget(String uri) {
+		diagnostics.clear(uri);
+		completionEngine.forget(uri);
+		semanticTokens.forget(uri);
 	}
 
 	@Override
 	public void didSave(DidSaveTextDocumentParams params) {
-		LOGGER.info("didSave: {}", params.getTextDocument());
+		LOGGER.debug("didSave: {}", params.getTextDocument());
+		String uri = params.getTextDocument().getUri();
+		scheduler.notification(uri, () -> {
+			if (openedDocuments.isOpened(uri)) {
+				diagnostics.documentOpened(uri);
+			}
+		});
+	}
+
+	private static List<TextEdit> toClientEncoding(List<TextEdit> edits, TextDocument document) {
+		if (document.getPositionEncoding() != PositionEncoding.UTF_16) {
+			for (TextEdit edit : edits) {
+				edit.setRange(document.fromUtf16(edit.getRange()));
+			}
+		}
+		return edits;
+	}
+
+	private static void toClientEncoding(DocumentSymbol symbol, TextDocument document) {
+		if (document.getPositionEncoding() == PositionEncoding.UTF_16) {
+			return;
+		}
+		symbol.setRange(document.fromUtf16(symbol.getRange()));
+		symbol.setSelectionRange(document.fromUtf16(symbol.getSelectionRange()));
+		if (symbol.getChildren() != null) {
+			for (DocumentSymbol child : symbol.getChildren()) {
+				toClientEncoding(child, document);
+			}
+		}
+	}
+
+	/**
+	 * Computes a request result from the current version of a document, a new version of the document aborts it.
+	 * Concurrent requests on the document do not cancel each other.
+	 */
+	private <T> CompletableFuture<T> computeOnDocument(String uri, BiFunction<TextDocument, CancelChecker, T> handler) {
+		return scheduler.request(uri, requestCancelChecker -> applyOnDocument(uri, requestCancelChecker, handler));
+	}
+
+	/**
+	 * Same as {@link #computeOnDocument(String, BiFunction)}, but a newer request of the same method on the document cancels
+	 * this one. Only for the requests sent as the user types, whose previous results the client discards anyway.
+	 */
+	private <T> CompletableFuture<T> computeOnLatestVersion(String method, String uri, BiFunction<TextDocument, CancelChecker, T> handler) {
+		return scheduler.supersedingRequest(method, uri, requestCancelChecker -> applyOnDocument(uri, requestCancelChecker, handler));
+	}
+
+	/**
+	 * Computes a request result which also reads the other opened documents, it starts once the notifications received
+	 * before it on every document are processed. A new version of the document aborts it.
+	 */
+	private <T> CompletableFuture<T> computeAcrossDocuments(String uri, BiFunction<TextDocument, CancelChecker, T> handler) {
+		return scheduler.request(null, requestCancelChecker -> applyOnDocument(uri, requestCancelChecker, handler));
 	}
 
-	public TextDocumentItem getOpenedDocument(String uri) {
+	private <T> T applyOnDocument(String uri, CancelChecker requestCancelChecker, BiFunction<TextDocument, CancelChecker, T> handler) {
+		TextDocument document = openedDocuments.get(uri);
+		CancelChecker cancelChecker = new DocumentCancelChecker(requestCancelChecker, openedDocuments, document);
+		T result = handler.apply(document, cancelChecker);
+		cancelChecker.checkCanceled();
+		return result;
+	}
+
+	/**
+	 * Computes a request result from the current version of a document, or returns the one already computed from that version
+	 * with the same parameters. The result must not be modified afterwards, as it is shared with the following requests.
+	 *
+	 * @param params	the parameters of the request other than the document, compared with equals, null if none
+	 */
+	private <T> CompletableFuture<T> computeCachedOnDocument(String method, String uri, Object params,
+			BiFunction<TextDocument, CancelChecker, T> handler) {
+		return computeCachedOnDocument(method, uri, params, handler, UnaryOperator.identity());
+	}
+
+	/**
+	 * @param response	turns the cached or computed result into the response, for instance to stream it as partial results
+	 */
+	private <T> CompletableFuture<T> computeCachedOnDocument(String method, String uri, Object params,
+			BiFunction<TextDocument, CancelChecker, T> handler, UnaryOperator<T> response) {
+		ResultCache cache = openedDocuments.getResultCache();
+		return computeOnDocument(uri, (document, cancelChecker) -> {
+			if (document == null || cache.getMaxWeight() == 0) {
+				return response.apply(handler.apply(document, cancelChecker));
+			}
+			T cached = cache.get(method, document, params);
+			if (cached != null) {
+				metrics.method(method).resultCacheHit();
+				return response.apply(cached);
+			}
+			metrics.method(method).resultCacheMiss();
+			T result = handler.apply(document, cancelChecker);
+			cancelChecker.checkCanceled();
+			cache.put(method, document, params, result);
+			return response.apply(result);
+		});
+	}
+
+	public TextDocument getOpenedDocument(String uri) {
 		return openedDocuments.get(uri);
 	}
 	
-	public Collection<TextDocumentItem> getAllOpenedDocuments() {
-		return openedDocuments.values();
+	public Collection<TextDocument> getAllOpenedDocuments() {
+		return openedDocuments.getAll();
+	}
+
+	public RequestScheduler getScheduler() {
+		return scheduler;
+	}
+
+	public DocumentStore getDocumentStore() {
+		return openedDocuments;
+	}
+
+	/**
+	 * @return the index of the documents opened in the session, shared with the workspace service
+	 */
+	public OpenDocumentsIndex getOpenDocumentsIndex() {
+		return openDocumentsIndex;
+	}
+
+	public DiagnosticsEngine getDiagnostics() {
+		return diagnostics;
 	}
 }
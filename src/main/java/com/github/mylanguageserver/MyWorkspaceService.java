@@ -16,41 +16,198 @@
  */
 package com.github.mylanguageserver;
 
-import java.util.Collections;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import org.eclipse.lsp4j.DidChangeConfigurationParams;
 import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.FileChangeType;
 import org.eclipse.lsp4j.FileEvent;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.SymbolInformation;
 import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageClientAware;
 import org.eclipse.lsp4j.services.WorkspaceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.mylanguageserver.diagnostics.DiagnosticsEngine;
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.PositionEncoding;
+import com.github.mylanguageserver.document.TextDocument;
+import com.github.mylanguageserver.index.OpenDocumentsIndex;
+import com.github.mylanguageserver.index.SymbolMatch;
+import com.github.mylanguageserver.progress.RequestProgress;
+import com.github.mylanguageserver.scheduling.RequestScheduler;
+import com.github.mylanguageserver.workspace.FileChangePipeline;
+import com.github.mylanguageserver.workspace.WorkspaceContext;
+
 /**
  * @author lhein
  */
-public class MyWorkspaceService implements WorkspaceService {
+public class MyWorkspaceService implements WorkspaceService, LanguageClientAware {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(MyWorkspaceService.class);
 
+	static final int MAX_SYMBOL_RESULTS = 500;
+
+	private final RequestScheduler scheduler;
+	private final DocumentStore openedDocuments;
+	private final Supplier<WorkspaceContext> workspace;
+	private final DiagnosticsEngine diagnostics;
+	private final OpenDocumentsIndex openDocumentsIndex;
+	private final FileChangePipeline fileChanges;
+	private LanguageClient client;
+
+	public MyWorkspaceService(RequestScheduler scheduler, DocumentStore openedDocuments, Supplier<WorkspaceContext> workspace) {
+		this(scheduler, openedDocuments, workspace, new DiagnosticsEngine(openedDocuments));
+	}
+
+	/**
+	 * @param scheduler	the scheduler shared with the text document service
+	 * @param openedDocuments	the documents opened in this session
+	 * @param workspace	the data shared with the other sessions of the workspace, null until initialization
+	 * @param diagnostics	the diagnostics engine shared with the text document service
+	 */
+	public MyWorkspaceService(RequestScheduler scheduler, DocumentStore openedDocuments, Supplier<WorkspaceContext> workspace,
+			DiagnosticsEngine diagnostics) {
+		this(scheduler, openedDocuments, workspace, diagnostics, new OpenDocumentsIndex());
+	}
+
+	/**
+	 * @param openDocumentsIndex	the index of the opened documents shared with the text document service
+	 */
+	public MyWorkspaceService(RequestScheduler scheduler, DocumentStore openedDocuments, Supplier<WorkspaceContext> workspace,
+			DiagnosticsEngine diagnostics, OpenDocumentsIndex openDocumentsIndex) {
+		this.scheduler = scheduler;
+		this.openedDocuments = openedDocuments;
+		this.workspace = workspace;
+		this.diagnostics = diagnostics;
+		this.openDocumentsIndex = openDocumentsIndex;
+		this.fileChanges = new FileChangePipeline(workspace, this::filesChanged);
+	}
+
+	@Override
+	public void connect(LanguageClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Searches the symbols of the opened documents and of the workspace files on disk,
+	 * the symbols of an opened document are the ones of its current content.
+	 * When the client provides a partialResultToken, the matches of the opened documents are streamed before the ones
+	 * of the workspace files, each sorted from the best, and the response is empty.
+	 */
 	@Override
 	public CompletableFuture<List<? extends SymbolInformation>> symbol(WorkspaceSymbolParams params) {
-		LOGGER.info("SERVER: symbolQuery: {}", params.getQuery());
-		return CompletableFuture.completedFuture(Collections.emptyList());
+		LOGGER.debug("SERVER: symbolQuery: {}", params.getQuery());
+		String query = params.getQuery() != null ? params.getQuery() : "";
+		RequestProgress progress = RequestProgress.of(client, params);
+		return scheduler.request(null, cancelChecker -> {
+			progress.begin("Searching symbols");
+			try {
+				Set<String> openedUris = openDocumentsIndex.update(openedDocuments.getAll());
+				List<SymbolMatch> matches = new ArrayList<>(openDocumentsIndex.search(query, MAX_SYMBOL_RESULTS, cancelChecker));
+				boolean streaming = progress.isStreamingPartialResults();
+				if (streaming) {
+					progress.partialResult(toSymbolInformation(matches, MAX_SYMBOL_RESULTS, null));
+					progress.report(null, 1, 2);
+				}
+				WorkspaceContext context = workspace.get();
+				if (context != null) {
+					List<SymbolMatch> workspaceMatches = context.getSymbolIndex().search(query, MAX_SYMBOL_RESULTS, openedUris::contains, cancelChecker);
+					if (streaming) {
+						progress.partialResult(toSymbolInformation(workspaceMatches, MAX_SYMBOL_RESULTS - matches.size(), context));
+					} else {
+						matches.addAll(workspaceMatches);
+					}
+				}
+				if (streaming) {
+					return new ArrayList<SymbolInformation>();
+				}
+				matches.sort(SymbolMatch.BEST_FIRST);
+				return toSymbolInformation(matches, MAX_SYMBOL_RESULTS, context);
+			} finally {
+				progress.end(null);
+			}
+		});
+	}
+
+	/**
+	 * Converts the first matches to the encoding negotiated with the client: the ones of an opened document with its
+	 * indexed snapshot, the ones of a workspace file by reading the file once. The matches of a workspace file which
+	 * cannot be read anymore are dropped.
+	 *
+	 * @param context	the workspace context the workspace matches come from, null if there are none
+	 */
+	private List<SymbolInformation> toSymbolInformation(List<SymbolMatch> matches, int limit, WorkspaceContext context) {
+		List<SymbolMatch> kept = matches.subList(0, Math.min(matches.size(), limit));
+		TextDocument[] snapshots = new TextDocument[kept.size()];
+		Map<String, List<Range>> workspaceRanges = new HashMap<>();
+		for (int i = 0; i < snapshots.length; i++) {
+			SymbolMatch match = kept.get(i);
+			snapshots[i] = openDocumentsIndex.getIndexedSnapshot(match.getUri());
+			if (snapshots[i] == null) {
+				workspaceRanges.computeIfAbsent(match.getUri(), uri -> new ArrayList<>()).add(match.getSymbol().getRange());
+			}
+		}
+		PositionEncoding encoding = openedDocuments.getPositionEncoding();
+		Map<String, Iterator<Range>> convertedRanges = new HashMap<>();
+		for (Map.Entry<String, List<Range>> file : workspaceRanges.entrySet()) {
+			List<Range> ranges = context != null ? context.fromUtf16(file.getKey(), file.getValue(), encoding) : file.getValue();
+			if (ranges != null) {
+				convertedRanges.put(file.getKey(), ranges.iterator());
+			}
+		}
+		List<SymbolInformation> symbols = new ArrayList<>();
+		for (int i = 0; i < snapshots.length; i++) {
+			SymbolMatch match = kept.get(i);
+			SymbolInformation symbol = match.getSymbol().toSymbolInformation(match.getUri());
+			if (snapshots[i] != null) {
+				symbol.getLocation().setRange(snapshots[i].fromUtf16(symbol.getLocation().getRange()));
+			} else {
+				Iterator<Range> ranges = convertedRanges.get(match.getUri());
+				if (ranges == null) {
+					continue;
+				}
+				symbol.getLocation().setRange(ranges.next());
+			}
+			symbols.add(symbol);
+		}
+		return symbols;
 	}
 
 	@Override
 	public void didChangeConfiguration(DidChangeConfigurationParams params) {
 		Object settings = params.getSettings();
-		LOGGER.info("SERVER: changeConfig: settings -> {}", settings);
+		LOGGER.debug("SERVER: changeConfig: settings -> {}", settings);
 	}
 
 	@Override
 	public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
-		List<FileEvent> settings = params.getChanges();
-		LOGGER.info("SERVER: changeWatchedFiles: size -> {}", settings.size());
+		List<FileEvent> changes = params.getChanges();
+		LOGGER.debug("SERVER: changeWatchedFiles: size -> {}", changes.size());
+		fileChanges.submit(changes);
+	}
+
+	private void filesChanged(Map<Path, FileEvent> changes) {
+		for (Map.Entry<Path, FileEvent> change : changes.entrySet()) {
+			String uri = change.getValue().getUri();
+			if (change.getValue().getType() == FileChangeType.Deleted) {
+				if (!openedDocuments.isOpened(uri)) {
+					diagnostics.clear(uri);
+				}
+			} else {
+				diagnostics.fileChanged(uri, change.getKey());
+			}
+		}
 	}
 }
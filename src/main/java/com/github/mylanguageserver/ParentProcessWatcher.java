@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the liveness of the client processes, shared by all the language servers of the JVM.
+ *
+ * On Java 9+, it relies on ProcessHandle.onExit(), which waits for the process inside the JVM.
+ * On Java 8, a single daemon thread polls all the watched processes every second, looking at /proc when available.
+ * Spawning a ps or tasklist process is only the last resort on Java 8 systems without /proc.
+ */
+final class ParentProcessWatcher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParentProcessWatcher.class);
+
+	private static final ParentProcessWatcher INSTANCE = new ParentProcessWatcher();
+	private static final long POLLING_PERIOD_SECONDS = 1;
+	private static final Path PROC = Paths.get("/proc");
+	private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+
+	private final ConcurrentMap<Long, CompletableFuture<Void>> exits = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Long, CompletableFuture<Void>> polledExits = new ConcurrentHashMap<>();
+	private final Method processHandleOf;
+	private final Method processHandleOnExit;
+	private ScheduledExecutorService poller;
+
+	private ParentProcessWatcher() {
+		Method of = null;
+		Method onExit = null;
+		try {
+			Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+			of = processHandleClass.getMethod("of", long.class);
+			onExit = processHandleClass.getMethod("onExit");
+		} catch (ReflectiveOperationException e) {
+			LOGGER.debug("ProcessHandle is not available, client processes will be polled", e);
+		}
+		this.processHandleOf = of;
+		this.processHandleOnExit = onExit;
+	}
+
+	static ParentProcessWatcher getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param pid	the id of the process to watch
+	 * @return a future completed once the process has exited, cancelling it doesn't affect the other watchers of the process
+	 */
+	CompletableFuture<Void> onExit(long pid) {
+		CompletableFuture<Void> exit = exits.computeIfAbsent(pid, this::watch);
+		exit.whenComplete((result, error) -> exits.remove(pid, exit));
+		return exit.thenApply(result -> null);
+	}
+
+	private CompletableFuture<Void> watch(long pid) {
+		if (processHandleOf != null) {
+			try {
+				Optional<?> processHandle = (Optional<?>) processHandleOf.invoke(null, pid);
+				if (!processHandle.isPresent()) {
+					return CompletableFuture.completedFuture(null);
+				}
+				return ((CompletableFuture<?>) processHandleOnExit.invoke(processHandle.get())).thenApply(handle -> null);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				LOGGER.warn("Cannot watch process " + pid + " with ProcessHandle, falling back to polling", e);
+			}
+		}
+		return poll(pid);
+	}
+
+	private synchronized CompletableFuture<Void> poll(long pid) {
+		if (poller == null) {
+			poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Language Client Watcher");
+				thread.setDaemon(true);
+				return thread;
+			});
+			poller.scheduleWithFixedDelay(this::checkPolledProcesses, POLLING_PERIOD_SECONDS, POLLING_PERIOD_SECONDS, TimeUnit.SECONDS);
+		}
+		return polledExits.computeIfAbsent(pid, key -> new CompletableFuture<>());
+	}
+
+	private void checkPolledProcesses() {
+		for (Entry<Long, CompletableFuture<Void>> entry : polledExits.entrySet()) {
+			if (!isAlive(entry.getKey())) {
+				polledExits.remove(entry.getKey());
+				entry.getValue().complete(null);
+			}
+		}
+	}
+
+	private static boolean isAlive(long pid) {
+		if (Files.isDirectory(PROC)) {
+			return Files.exists(PROC.resolve(Long.toString(pid)));
+		}
+		String command;
+		if (WINDOWS) {
+			command = "cmd /c \"tasklist /FI \"PID eq " + pid + "\" | findstr " + pid + "\"";
+		} else {
+			command = "ps -p " + pid;
+		}
+		try {
+			return Runtime.getRuntime().exec(command).waitFor() == 0;
+		} catch (IOException e) {
+			LOGGER.error(e.getMessage(), e);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return true;
+		}
+	}
+}
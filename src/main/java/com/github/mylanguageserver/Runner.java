@@ -1,13 +1,27 @@
 package com.github.mylanguageserver;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.lsp4j.jsonrpc.Launcher;
-import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
 import org.eclipse.lsp4j.services.LanguageClient;
 
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.ResultCache;
+import com.github.mylanguageserver.metrics.MeasuredMessageJsonHandler;
+import com.github.mylanguageserver.metrics.PrometheusExporter;
+import com.github.mylanguageserver.metrics.ServerMetrics;
+import com.github.mylanguageserver.transport.ChannelLauncherBuilder;
+import com.github.mylanguageserver.websocket.MyLSPSessionManager;
 import com.github.mylanguageserver.websocket.WebSocketRunner;
+import com.github.mylanguageserver.workspace.WorkspaceRegistry;
 
 
 public class Runner {
@@ -20,22 +34,83 @@ public class Runner {
 	private static final String PORT_PARAMETER = "--port=";
 	private static final String HOSTNAME_PARAMETER = "--hostname=";
 	private static final String CONTEXTPATH_PARAMETER = "--contextPath=";
+	private static final String SESSION_MEMORY_PARAMETER = "--sessionMemoryLimit=";
+	private static final String METRICS_PORT_PARAMETER = "--metricsPort=";
+	private static final String INDEX_CACHE_DIRECTORY_PARAMETER = "--indexCacheDir=";
+	private static final String ANALYSIS_MEMORY_PARAMETER = "--analysisMemoryLimit=";
+	private static final String OFF_HEAP_THRESHOLD_PARAMETER = "--offHeapThreshold=";
+	private static final String RESULT_CACHE_SIZE_PARAMETER = "--resultCacheSize=";
+	private static final String NIO_TRANSPORT_PARAMETER = "--nioTransport";
+	private static final String WEBSOCKET_COMPRESSION_PARAMETER = "--websocketCompression";
+	private static final String MAX_MESSAGE_SIZE_PARAMETER = "--maxMessageSize=";
+	private static final String OUTBOUND_BUFFER_SIZE_PARAMETER = "--outboundBufferSize=";
+	private static final String NOTIFICATION_BATCH_DELAY_PARAMETER = "--notificationBatchDelay=";
+	private static final int DEFAULT_OFF_HEAP_THRESHOLD = 1024 * 1024;
+	private static final String DEFAULT_METRICS_HOSTNAME = "localhost";
 
 	public static void main(String[] args) {
 		List<String> arguments = Arrays.asList(args);
+		String hostname = extractHostname(arguments);
+		int metricsPort = extractMetricsPort(arguments);
+		if (metricsPort != -1) {
+			startMetricsExporter(hostname != null ? hostname : DEFAULT_METRICS_HOSTNAME, metricsPort);
+		}
+		Path indexCacheDirectory = extractIndexCacheDirectory(arguments);
+		long analysisMemoryLimit = extractMegabytes(arguments, ANALYSIS_MEMORY_PARAMETER, "analysis memory limit");
+		long artifactsMemoryBudget = analysisMemoryLimit != -1 ? analysisMemoryLimit : DocumentStore.UNLIMITED;
+		int offHeapThreshold = extractOffHeapThreshold(arguments);
+		long resultCacheSize = extractResultCacheSize(arguments);
 		if (arguments.contains(WEBSOCKET_PARAMETER)) {
+			MyLSPSessionManager.getInstance().getWorkspaceRegistry().setIndexCacheDirectory(indexCacheDirectory);
+			MyLSPSessionManager.getInstance().setSessionArtifactsMemoryBudget(artifactsMemoryBudget);
+			MyLSPSessionManager.getInstance().setOffHeapThreshold(offHeapThreshold);
+			MyLSPSessionManager.getInstance().setResultCacheSize(resultCacheSize);
+			MyLSPSessionManager.getInstance().setCompression(arguments.contains(WEBSOCKET_COMPRESSION_PARAMETER));
+			long maxMessageSize = extractMegabytes(arguments, MAX_MESSAGE_SIZE_PARAMETER, "maximum message size");
+			MyLSPSessionManager.getInstance().setMaxMessageSize(maxMessageSize != -1
+					? (int) Math.min(maxMessageSize, Integer.MAX_VALUE) : MyLSPSessionManager.DEFAULT_MAX_MESSAGE_SIZE);
+			long outboundBufferSize = extractMegabytes(arguments, OUTBOUND_BUFFER_SIZE_PARAMETER, "outbound buffer size");
+			MyLSPSessionManager.getInstance().setOutboundBufferSize(outboundBufferSize != -1
+					? outboundBufferSize : MyLSPSessionManager.DEFAULT_OUTBOUND_BUFFER_SIZE);
+			MyLSPSessionManager.getInstance().setNotificationBatchDelay(extractNotificationBatchDelay(arguments));
 			int port = extractPort(arguments);
-			String hostname = extractHostname(arguments);
 			String contextPath = extractContextPath(arguments);
-			new WebSocketRunner().runWebSocketServer(hostname, port, contextPath);
+			long sessionMemoryLimit = extractMegabytes(arguments, SESSION_MEMORY_PARAMETER, "session memory limit");
+			new WebSocketRunner().runWebSocketServer(hostname, port, contextPath, sessionMemoryLimit);
 		} else {
-			server = new MyLanguageServer();
-			Launcher<LanguageClient> launcher = LSPLauncher.createServerLauncher(server, System.in, System.out);
+			WorkspaceRegistry workspaceRegistry = new WorkspaceRegistry();
+			workspaceRegistry.setIndexCacheDirectory(indexCacheDirectory);
+			DocumentStore documents = new DocumentStore(DocumentStore.UNLIMITED, artifactsMemoryBudget, offHeapThreshold);
+			documents.getResultCache().setMaxWeight(resultCacheSize);
+			server = new MyLanguageServer(workspaceRegistry, documents);
+			ChannelLauncherBuilder<LanguageClient> builder = new ChannelLauncherBuilder<LanguageClient>() {
+				@Override
+				protected MessageJsonHandler createJsonHandler() {
+					return new MeasuredMessageJsonHandler(getSupportedMethods(), configureGson, ServerMetrics.getInstance());
+				}
+			};
+			if (arguments.contains(NIO_TRANSPORT_PARAMETER)) {
+				builder.setChannels(new FileInputStream(FileDescriptor.in).getChannel(), new FileOutputStream(FileDescriptor.out).getChannel());
+			} else {
+				builder.setInput(System.in).setOutput(System.out);
+			}
+			Launcher<LanguageClient> launcher = builder
+				.setLocalService(server)
+				.setRemoteInterface(LanguageClient.class)
+				.create();
 			server.connect(launcher.getRemoteProxy());
 			launcher.startListening();
 		}
 	}
 
+	private static void startMetricsExporter(String hostname, int port) {
+		try {
+			new PrometheusExporter(ServerMetrics.getInstance()).start(hostname, port);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot serve the metrics on port " + port + ".", e);
+		}
+	}
+
 	private static String extractContextPath(List<String> arguments) {
 		return extractParameterValue(arguments, CONTEXTPATH_PARAMETER);
 	}
@@ -44,6 +119,17 @@ public class Runner {
 		return extractParameterValue(arguments, HOSTNAME_PARAMETER);
 	}
 
+	/**
+	 * @return the directory where the workspace indexes are saved, by default in the user cache, none if provided empty
+	 */
+	private static Path extractIndexCacheDirectory(List<String> arguments) {
+		String providedDirectory = extractParameterValue(arguments, INDEX_CACHE_DIRECTORY_PARAMETER);
+		if (providedDirectory == null) {
+			return Paths.get(System.getProperty("user.home"), ".cache", "my-language-server");
+		}
+		return providedDirectory.isEmpty() ? null : Paths.get(providedDirectory);
+	}
+
 	private static String extractParameterValue(List<String> arguments, String parameterToExtract) {
 		for (String argument : arguments) {
 			if (argument.startsWith(parameterToExtract)) {
@@ -53,6 +139,84 @@ public class Runner {
 		return null;
 	}
 
+	/**
+	 * @return the memory limit in bytes, provided in megabytes, or -1 if not provided
+	 */
+	private static long extractMegabytes(List<String> arguments, String parameter, String description) {
+		String providedLimit = extractParameterValue(arguments, parameter);
+		if (providedLimit == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(providedLimit) * 1024 * 1024;
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("The provided " + description + " is invalid.", nfe);
+		}
+	}
+
+	/**
+	 * @return the length in characters from which documents are stored off-heap, 1M by default, never if provided empty
+	 */
+	private static int extractOffHeapThreshold(List<String> arguments) {
+		String providedThreshold = extractParameterValue(arguments, OFF_HEAP_THRESHOLD_PARAMETER);
+		if (providedThreshold == null) {
+			return DEFAULT_OFF_HEAP_THRESHOLD;
+		}
+		if (providedThreshold.isEmpty()) {
+			return DocumentStore.NEVER_OFF_HEAP;
+		}
+		try {
+			return (int) Math.min(Long.parseLong(providedThreshold), DocumentStore.NEVER_OFF_HEAP);
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("The provided off-heap threshold is invalid.", nfe);
+		}
+	}
+
+	/**
+	 * @return the maximum weight of the request results cached per session, roughly their number of items, 0 to disable the cache
+	 */
+	private static long extractResultCacheSize(List<String> arguments) {
+		String providedSize = extractParameterValue(arguments, RESULT_CACHE_SIZE_PARAMETER);
+		if (providedSize == null) {
+			return ResultCache.DEFAULT_MAX_WEIGHT;
+		}
+		try {
+			return Long.parseLong(providedSize);
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("The provided result cache size is invalid.", nfe);
+		}
+	}
+
+	/**
+	 * @return the time in milliseconds WebSocket notifications are held for to be sent together, 0 by default
+	 */
+	private static long extractNotificationBatchDelay(List<String> arguments) {
+		String providedDelay = extractParameterValue(arguments, NOTIFICATION_BATCH_DELAY_PARAMETER);
+		if (providedDelay == null) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(providedDelay);
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("The provided notification batch delay is invalid.", nfe);
+		}
+	}
+
+	/**
+	 * @return the port of the Prometheus metrics endpoint, or -1 if not provided
+	 */
+	private static int extractMetricsPort(List<String> arguments) {
+		String providedPort = extractParameterValue(arguments, METRICS_PORT_PARAMETER);
+		if (providedPort == null) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(providedPort);
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("The provided metrics port is invalid.", nfe);
+		}
+	}
+
 	private static int extractPort(List<String> arguments) {
 		for (String argument : arguments) {
 			if (argument.startsWith(PORT_PARAMETER)) {
@@ -0,0 +1,292 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import com.github.mylanguageserver.document.ArtifactBudget;
+import com.github.mylanguageserver.document.TextDocument;
+import com.github.mylanguageserver.syntax.SyntaxNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+import com.github.mylanguageserver.syntax.Token;
+import com.github.mylanguageserver.syntax.TokenKind;
+
+/**
+ * Completes the identifier typed before the cursor with the names declared in the document, the names declared
+ * in the workspace and the keywords.
+ *
+ * Each vocabulary is a {@link PrefixTrie}, the one of a document is built once per version. At most
+ * {@link #MAX_SCANNED} words are read from each vocabulary and at most {@link #MAX_ITEMS} items are returned,
+ * whatever the size of the vocabularies; the list is then marked incomplete so that the client asks again as the
+ * user types. When all the candidates of a word were read, they are kept, and the next keystrokes in the same word
+ * filter them instead of searching the vocabularies again, as long as the document was only edited inside that word
+ * and the workspace vocabulary did not change.
+ *
+ * Items only carry what the client needs to filter and sort them, their detail and documentation are computed
+ * by {@link #resolve(CompletionItem)} when the client displays them.
+ */
+public class CompletionEngine {
+
+	static final int MAX_ITEMS = 100;
+	static final int MAX_SCANNED = 10_000;
+
+	private static final String VOCABULARY_ARTIFACT = "completion vocabulary";
+
+	private static final PrefixTrie KEYWORDS = PrefixTrie.build(Collections.singletonMap("demo", 1));
+
+	enum Source {
+		DOCUMENT,
+		WORKSPACE,
+		KEYWORD
+	}
+
+	private final ConcurrentMap<String, DocumentVocabulary> documentVocabularies = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, CachedCandidates> lastCandidates = new ConcurrentHashMap<>();
+	private final CompletionResolver resolver = new CompletionResolver();
+
+	/**
+	 * @param workspace	the names of the workspace, null if there is no workspace
+	 */
+	public CompletionList complete(TextDocument document, Position position, WorkspaceVocabulary workspace, CancelChecker cancelChecker) {
+		SyntaxTree tree = document.getSyntaxTree();
+		Token token = tree.tokenAt(position);
+		boolean inIdentifier = token != null && token.getKind() == TokenKind.IDENTIFIER && position.getCharacter() >= token.getStartCharacter();
+		int wordStart = inIdentifier ? token.getStartCharacter() : position.getCharacter();
+		String word = inIdentifier ? tree.getText(token) : "";
+		String prefix = word.substring(0, position.getCharacter() - wordStart);
+		String prefixKey = PrefixTrie.key(prefix);
+
+		List<Candidate> candidates;
+		boolean exhaustive;
+		PrefixTrie workspaceTrie = workspace != null ? workspace.get() : null;
+		String textBefore = tree.getText(position.getLine(), 0, wordStart);
+		String textAfter = tree.getText(position.getLine(), wordStart + word.length(), tree.getLineLength(position.getLine()));
+		CachedCandidates cached = lastCandidates.get(document.getUri());
+		if (cached != null && cached.isReusable(tree, position.getLine(), textBefore, textAfter, workspaceTrie) && prefixKey.startsWith(cached.prefixKey)) {
+			candidates = new ArrayList<>();
+			for (Candidate candidate : cached.candidates) {
+				if (candidate.key.startsWith(prefixKey)) {
+					candidates.add(candidate);
+				}
+			}
+			exhaustive = true;
+		} else {
+			candidates = new ArrayList<>();
+			Set<String> labels = new HashSet<>();
+			exhaustive = collect(documentVocabulary(document), Source.DOCUMENT, prefix, labels, candidates);
+			cancelChecker.checkCanceled();
+			if (workspaceTrie != null) {
+				exhaustive &= collect(workspaceTrie, Source.WORKSPACE, prefix, labels, candidates);
+			}
+			exhaustive &= collect(KEYWORDS, Source.KEYWORD, prefix, labels, candidates);
+		}
+		if (exhaustive) {
+			lastCandidates.put(document.getUri(), new CachedCandidates(tree, position.getLine(), textBefore, textAfter, workspaceTrie, prefixKey, candidates));
+		} else {
+			lastCandidates.remove(document.getUri());
+		}
+		cancelChecker.checkCanceled();
+
+		String declared = declaredAt(tree, token, position);
+		List<Candidate> ranked = rank(candidates, prefix, declared);
+		long listId = resolver.remember(document, workspace != null ? workspace.getIndex() : null, ranked);
+		List<CompletionItem> items = new ArrayList<>(ranked.size());
+		for (int i = 0; i < ranked.size(); i++) {
+			items.add(ranked.get(i).toItem(i, CompletionResolver.dataKey(listId, i)));
+		}
+		return new CompletionList(!exhaustive || candidates.size() > MAX_ITEMS, items);
+	}
+
+	/**
+	 * Adds the detail and documentation to an item of one of the latest lists.
+	 */
+	public CompletionItem resolve(CompletionItem item) {
+		return resolver.resolve(item);
+	}
+
+	/**
+	 * Forgets what was computed for a document, when it is closed.
+	 */
+	public void forget(String uri) {
+		documentVocabularies.remove(uri);
+		lastCandidates.remove(uri);
+	}
+
+	/**
+	 * @return true if all the words of the vocabulary starting with the prefix were read
+	 */
+	private static boolean collect(PrefixTrie vocabulary, Source source, String prefix, Set<String> labels, List<Candidate> candidates) {
+		int[] range = vocabulary.prefixRange(prefix);
+		int end = Math.min(range[1], range[0] + MAX_SCANNED);
+		for (int i = range[0]; i < end; i++) {
+			if (labels.add(vocabulary.getLabel(i))) {
+				candidates.add(new Candidate(vocabulary.getLabel(i), vocabulary.getKey(i), vocabulary.getWeight(i), source));
+			}
+		}
+		return end == range[1];
+	}
+
+	private PrefixTrie documentVocabulary(TextDocument document) {
+		ArtifactBudget artifacts = document.getArtifactBudget();
+		DocumentVocabulary vocabulary = documentVocabularies.get(document.getUri());
+		if (vocabulary != null && vocabulary.document == document) {
+			if (artifacts != null) {
+				artifacts.touch(document.getUri(), VOCABULARY_ARTIFACT);
+			}
+			return vocabulary.trie;
+		}
+		Map<String, Integer> names = new HashMap<>();
+		addNames(document.getSyntaxTree().getRoot(), names);
+		PrefixTrie trie = PrefixTrie.build(names);
+		DocumentVocabulary built = new DocumentVocabulary(document, trie);
+		documentVocabularies.put(document.getUri(), built);
+		if (artifacts != null) {
+			artifacts.add(document.getUri(), VOCABULARY_ARTIFACT, trie.estimatedMemory(), () -> documentVocabularies.remove(document.getUri(), built));
+		}
+		return trie;
+	}
+
+	private static void addNames(SyntaxNode parent, Map<String, Integer> names) {
+		for (SyntaxNode node : parent.getChildren()) {
+			names.merge(node.getName(), 1, Integer::sum);
+			addNames(node, names);
+		}
+	}
+
+	/**
+	 * @return the name declared by the identifier being typed, which is not proposed unless it is declared elsewhere
+	 */
+	private static String declaredAt(SyntaxTree tree, Token token, Position position) {
+		if (token == null || token.getKind() != TokenKind.IDENTIFIER || tree.getLine(position.getLine()).getNameToken() == -1) {
+			return null;
+		}
+		Token name = tree.getToken(position.getLine(), tree.getLine(position.getLine()).getNameToken());
+		return name.getStartCharacter() == token.getStartCharacter() ? tree.getText(token) : null;
+	}
+
+	/**
+	 * @return the best candidates first, at most {@link #MAX_ITEMS}
+	 */
+	static List<Candidate> rank(List<Candidate> candidates, String prefix, String declared) {
+		Comparator<Candidate> bestFirst = Comparator.<Candidate>comparingInt(candidate -> candidate.label.startsWith(prefix) ? 0 : 1)
+				.thenComparing(Comparator.comparingInt((Candidate candidate) -> candidate.weight).reversed())
+				.thenComparing(candidate -> candidate.source)
+				.thenComparingInt(candidate -> candidate.label.length())
+				.thenComparing(candidate -> candidate.label);
+		PriorityQueue<Candidate> best = new PriorityQueue<>(MAX_ITEMS + 1, bestFirst.reversed());
+		for (Candidate candidate : candidates) {
+			if (candidate.source == Source.DOCUMENT && candidate.weight == 1 && candidate.label.equals(declared)) {
+				continue;
+			}
+			best.add(candidate);
+			if (best.size() > MAX_ITEMS) {
+				best.poll();
+			}
+		}
+		List<Candidate> ranked = new ArrayList<>(best);
+		ranked.sort(bestFirst);
+		return ranked;
+	}
+
+	static final class Candidate {
+		final String label;
+		final String key;
+		final int weight;
+		final Source source;
+
+		Candidate(String label, String key, int weight, Source source) {
+			this.label = label;
+			this.key = key;
+			this.weight = weight;
+			this.source = source;
+		}
+
+		CompletionItem toItem(int rank, String dataKey) {
+			CompletionItem item = new CompletionItem(label);
+			switch (source) {
+			case DOCUMENT:
+				item.setKind(CompletionItemKind.Property);
+				break;
+			case WORKSPACE:
+				item.setKind(CompletionItemKind.Reference);
+				break;
+			default:
+				item.setKind(CompletionItemKind.Keyword);
+				break;
+			}
+			// keeps the ranking of the server, clients sort by label otherwise
+			item.setSortText(String.format("%05d", rank));
+			item.setData(dataKey);
+			return item;
+		}
+	}
+
+	private static final class DocumentVocabulary {
+		final TextDocument document;
+		final PrefixTrie trie;
+
+		DocumentVocabulary(TextDocument document, PrefixTrie trie) {
+			this.document = document;
+			this.trie = trie;
+		}
+	}
+
+	private static final class CachedCandidates {
+		final SyntaxTree tree;
+		final int line;
+		final String textBefore;
+		final String textAfter;
+		final PrefixTrie workspaceTrie;
+		final String prefixKey;
+		final List<Candidate> candidates;
+
+		CachedCandidates(SyntaxTree tree, int line, String textBefore, String textAfter, PrefixTrie workspaceTrie, String prefixKey,
+				List<Candidate> candidates) {
+			this.tree = tree;
+			this.line = line;
+			this.textBefore = textBefore;
+			this.textAfter = textAfter;
+			this.workspaceTrie = workspaceTrie;
+			this.prefixKey = prefixKey;
+			this.candidates = candidates;
+		}
+
+		/**
+		 * @return true if the only edits since these candidates were found are inside the word, and the workspace names are the same
+		 */
+		boolean isReusable(SyntaxTree currentTree, int currentLine, String currentTextBefore, String currentTextAfter, PrefixTrie currentWorkspaceTrie) {
+			return line == currentLine && workspaceTrie == currentWorkspaceTrie && textBefore.equals(currentTextBefore)
+					&& textAfter.equals(currentTextAfter) && (tree == currentTree || tree.sharesLinesExcept(currentTree, line));
+		}
+	}
+}
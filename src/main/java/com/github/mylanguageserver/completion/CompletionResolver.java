@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.completion;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.MarkupContent;
+import org.eclipse.lsp4j.MarkupKind;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+
+import com.github.mylanguageserver.completion.CompletionEngine.Candidate;
+import com.github.mylanguageserver.document.Rope;
+import com.github.mylanguageserver.document.TextDocument;
+import com.github.mylanguageserver.index.IndexedSymbol;
+import com.github.mylanguageserver.index.SymbolIndex;
+import com.github.mylanguageserver.index.WorkspaceIndexer;
+import com.github.mylanguageserver.syntax.SyntaxNode;
+
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Computes the detail and documentation of the completion items when the client resolves them.
+ *
+ * Completion lists only carry the label, kind and sort text of their items, plus a short data key made of the id of
+ * the list and the index of the item in it. The last lists returned are remembered with the document version they
+ * were computed on, so an item is resolved against the content it was proposed for. Resolved details are cached.
+ */
+class CompletionResolver {
+
+	static final int MAX_REMEMBERED_LISTS = 8;
+	static final int MAX_DECLARATIONS_SHOWN = 5;
+
+	private static final Map<String, String> KEYWORD_DOCUMENTATION = Collections.singletonMap("demo",
+			"Placeholder keyword of the template language.");
+
+	private final AtomicLong lastListId = new AtomicLong();
+	private final Map<Long, CompletedList> lists = new LinkedHashMap<Long, CompletedList>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, CompletedList> eldest) {
+			return size() > MAX_REMEMBERED_LISTS;
+		}
+	};
+
+	/**
+	 * @return the id of the list, to be put in the data key of its items
+	 */
+	long remember(TextDocument document, SymbolIndex workspaceIndex, List<Candidate> ranked) {
+		long id = lastListId.incrementAndGet();
+		synchronized (lists) {
+			lists.put(id, new CompletedList(document, workspaceIndex, ranked));
+		}
+		return id;
+	}
+
+	static String dataKey(long listId, int index) {
+		return listId + "." + index;
+	}
+
+	/**
+	 * @return the item with its detail and documentation, unchanged if its list is not remembered anymore
+	 */
+	CompletionItem resolve(CompletionItem item) {
+		String key = item.getData() instanceof JsonPrimitive ? ((JsonPrimitive) item.getData()).getAsString()
+				: item.getData() instanceof String ? (String) item.getData() : null;
+		int separator = key != null ? key.indexOf('.') : -1;
+		if (separator == -1) {
+			return item;
+		}
+		CompletedList list;
+		int index;
+		try {
+			long listId = Long.parseLong(key.substring(0, separator));
+			index = Integer.parseInt(key.substring(separator + 1));
+			synchronized (lists) {
+				list = lists.get(listId);
+			}
+		} catch (NumberFormatException e) {
+			return item;
+		}
+		if (list == null || index < 0 || index >= list.ranked.size() || !list.ranked.get(index).label.equals(item.getLabel())) {
+			return item;
+		}
+		Details details = list.resolved.computeIfAbsent(index, i -> list.details(list.ranked.get(i)));
+		item.setDetail(details.detail);
+		if (details.documentation != null) {
+			item.setDocumentation(Either.forRight(new MarkupContent(MarkupKind.MARKDOWN, details.documentation)));
+		}
+		return item;
+	}
+
+	private static final class CompletedList {
+		final TextDocument document;
+		final SymbolIndex workspaceIndex;
+		final List<Candidate> ranked;
+		final ConcurrentMap<Integer, Details> resolved = new ConcurrentHashMap<>();
+
+		CompletedList(TextDocument document, SymbolIndex workspaceIndex, List<Candidate> ranked) {
+			this.document = document;
+			this.workspaceIndex = workspaceIndex;
+			this.ranked = ranked;
+		}
+
+		Details details(Candidate candidate) {
+			switch (candidate.source) {
+			case DOCUMENT:
+				return documentDetails(candidate.label);
+			case WORKSPACE:
+				return workspaceDetails(candidate.label);
+			default:
+				return new Details("Keyword", KEYWORD_DOCUMENTATION.get(candidate.label));
+			}
+		}
+
+		private Details documentDetails(String name) {
+			List<SyntaxNode> declarations = new ArrayList<>();
+			findDeclarations(document.getSyntaxTree().getRoot(), name, declarations);
+			if (declarations.isEmpty()) {
+				return new Details(null, null);
+			}
+			String kind = declarations.get(0).getKind() == SyntaxNode.Kind.SECTION ? "Section" : "Property";
+			String detail = declarations.size() > 1 ? kind + ", declared " + declarations.size() + " times" : kind;
+			StringBuilder documentation = new StringBuilder("```\n");
+			Rope content = document.getContent();
+			for (SyntaxNode declaration : declarations.subList(0, Math.min(declarations.size(), MAX_DECLARATIONS_SHOWN))) {
+				int line = declaration.getLine();
+				documentation.append(content.substring(content.lineStartOffset(line), content.lineEndOffset(line)).trim()).append('\n');
+			}
+			return new Details(detail, documentation.append("```").toString());
+		}
+
+		private Details workspaceDetails(String name) {
+			Map<String, List<IndexedSymbol>> declarations = workspaceIndex != null ? workspaceIndex.getDeclarations(name) : Collections.emptyMap();
+			if (declarations.isEmpty()) {
+				return new Details(null, null);
+			}
+			StringBuilder documentation = new StringBuilder();
+			int shown = 0;
+			for (Map.Entry<String, List<IndexedSymbol>> file : declarations.entrySet()) {
+				if (shown++ == MAX_DECLARATIONS_SHOWN) {
+					break;
+				}
+				Path path = WorkspaceIndexer.pathOf(file.getKey());
+				String fileName = path != null && path.getFileName() != null ? path.getFileName().toString() : file.getKey();
+				documentation.append("- `").append(fileName).append("` line ").append(file.getValue().get(0).getLine() + 1).append('\n');
+			}
+			String files = declarations.size() == 1 ? "1 file" : declarations.size() + " files";
+			return new Details("Declared in " + files, documentation.toString());
+		}
+
+		private static void findDeclarations(SyntaxNode parent, String name, List<SyntaxNode> declarations) {
+			for (SyntaxNode node : parent.getChildren()) {
+				if (node.getName().equals(name)) {
+					declarations.add(node);
+				}
+				findDeclarations(node, name, declarations);
+			}
+		}
+	}
+
+	private static final class Details {
+		final String detail;
+		final String documentation;
+
+		Details(String detail, String documentation) {
+			this.detail = detail;
+			this.documentation = documentation;
+		}
+	}
+}
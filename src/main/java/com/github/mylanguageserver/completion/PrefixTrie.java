@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable vocabulary searchable by case-insensitive prefix.
+ *
+ * The words are sorted by their lower case key and indexed by a radix trie flattened in int arrays: a node has the
+ * range of its edge label in one of the keys, its children stored contiguously, and the range of the sorted words
+ * under it. A prefix lookup walks at most one node per character of the prefix and returns a range of words.
+ */
+public final class PrefixTrie {
+
+	public static final PrefixTrie EMPTY = build(Collections.<String, Integer>emptyMap());
+
+	private final String[] labels;
+	private final String[] keys;
+	private final int[] weights;
+
+	private int nodeCount;
+	private int[] labelWord;
+	private int[] labelStart;
+	private int[] labelEnd;
+	private int[] firstChild;
+	private int[] childCount;
+	private int[] wordStart;
+	private int[] wordEnd;
+
+	private PrefixTrie(String[] labels, String[] keys, int[] weights) {
+		this.labels = labels;
+		this.keys = keys;
+		this.weights = weights;
+		int capacity = Math.max(1, 2 * labels.length);
+		labelWord = new int[capacity];
+		labelStart = new int[capacity];
+		labelEnd = new int[capacity];
+		firstChild = new int[capacity];
+		childCount = new int[capacity];
+		wordStart = new int[capacity];
+		wordEnd = new int[capacity];
+		nodeCount = 1;
+		fill(0, 0, labels.length, 0);
+	}
+
+	/**
+	 * @return the estimated memory in bytes of the trie and its words
+	 */
+	public long estimatedMemory() {
+		long memory = 7L * 4 * labelWord.length + 4L * weights.length;
+		for (int i = 0; i < labels.length; i++) {
+			memory += 48 + 2L * labels[i].length();
+			if (keys[i] != labels[i]) {
+				memory += 48 + 2L * keys[i].length();
+			}
+		}
+		return memory;
+	}
+
+	/**
+	 * @param words	the words with their weight, higher weights are ranked first
+	 */
+	public static PrefixTrie build(Map<String, Integer> words) {
+		List<String> labels = new ArrayList<>(words.keySet());
+		int size = labels.size();
+		String[] keys = new String[size];
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = key(labels.get(i));
+			order[i] = i;
+		}
+		Arrays.sort(order, (first, second) -> {
+			int byKey = keys[first].compareTo(keys[second]);
+			return byKey != 0 ? byKey : labels.get(first).compareTo(labels.get(second));
+		});
+		String[] sortedLabels = new String[size];
+		String[] sortedKeys = new String[size];
+		int[] sortedWeights = new int[size];
+		for (int i = 0; i < size; i++) {
+			sortedLabels[i] = labels.get(order[i]);
+			sortedKeys[i] = keys[order[i]];
+			sortedWeights[i] = words.get(sortedLabels[i]);
+		}
+		return new PrefixTrie(sortedLabels, sortedKeys, sortedWeights);
+	}
+
+	static String key(String word) {
+		String lowerCase = word.toLowerCase(Locale.ROOT);
+		return lowerCase.equals(word) ? word : lowerCase;
+	}
+
+	/**
+	 * Fills the node of the words from lo to hi, which share their first depth characters.
+	 */
+	private void fill(int node, int lo, int hi, int depth) {
+		wordStart[node] = lo;
+		wordEnd[node] = hi;
+		labelWord[node] = lo;
+		labelStart[node] = depth;
+		if (lo == hi) {
+			labelEnd[node] = depth;
+			return;
+		}
+		String first = keys[lo];
+		String last = keys[hi - 1];
+		int common = depth;
+		while (common < first.length() && common < last.length() && first.charAt(common) == last.charAt(common)) {
+			common++;
+		}
+		labelEnd[node] = common;
+		// the words ending here sort before the longer ones
+		int from = lo;
+		while (from < hi && keys[from].length() == common) {
+			from++;
+		}
+		List<int[]> groups = new ArrayList<>();
+		for (int start = from; start < hi;) {
+			char c = keys[start].charAt(common);
+			int end = start + 1;
+			while (end < hi && keys[end].charAt(common) == c) {
+				end++;
+			}
+			groups.add(new int[] { start, end });
+			start = end;
+		}
+		int children = reserve(groups.size());
+		firstChild[node] = children;
+		childCount[node] = groups.size();
+		for (int i = 0; i < groups.size(); i++) {
+			fill(children + i, groups.get(i)[0], groups.get(i)[1], common);
+		}
+	}
+
+	private int reserve(int count) {
+		int start = nodeCount;
+		nodeCount += count;
+		if (nodeCount > labelWord.length) {
+			int capacity = Math.max(nodeCount, labelWord.length * 2);
+			labelWord = Arrays.copyOf(labelWord, capacity);
+			labelStart = Arrays.copyOf(labelStart, capacity);
+			labelEnd = Arrays.copyOf(labelEnd, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			childCount = Arrays.copyOf(childCount, capacity);
+			wordStart = Arrays.copyOf(wordStart, capacity);
+			wordEnd = Arrays.copyOf(wordEnd, capacity);
+		}
+		return start;
+	}
+
+	/**
+	 * @param prefix	the prefix, compared case-insensitively
+	 * @return the first (inclusive) and last (exclusive) indexes of the words starting with the prefix
+	 */
+	public int[] prefixRange(String prefix) {
+		String searched = key(prefix);
+		if (keys.length == 0) {
+			return new int[] { 0, 0 };
+		}
+		int node = 0;
+		int matched = 0;
+		while (true) {
+			String label = keys[labelWord[node]];
+			for (int i = labelStart[node]; i < labelEnd[node]; i++) {
+				if (matched == searched.length()) {
+					return new int[] { wordStart[node], wordEnd[node] };
+				}
+				if (label.charAt(i) != searched.charAt(matched)) {
+					return new int[] { 0, 0 };
+				}
+				matched++;
+			}
+			if (matched == searched.length()) {
+				return new int[] { wordStart[node], wordEnd[node] };
+			}
+			node = child(node, searched.charAt(matched));
+			if (node == -1) {
+				return new int[] { 0, 0 };
+			}
+		}
+	}
+
+	private int child(int node, char c) {
+		int lo = firstChild[node];
+		int hi = lo + childCount[node] - 1;
+		while (lo <= hi) {
+			int middle = (lo + hi) >>> 1;
+			char first = keys[labelWord[middle]].charAt(labelStart[middle]);
+			if (first < c) {
+				lo = middle + 1;
+			} else if (first > c) {
+				hi = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	public int size() {
+		return labels.length;
+	}
+
+	public String getLabel(int index) {
+		return labels[index];
+	}
+
+	/**
+	 * @return the lower case form of the label, as compared to prefixes
+	 */
+	public String getKey(int index) {
+		return keys[index];
+	}
+
+	public int getWeight(int index) {
+		return weights[index];
+	}
+}
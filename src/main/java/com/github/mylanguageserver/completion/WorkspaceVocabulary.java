@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.completion;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.index.SymbolIndex;
+
+/**
+ * The names declared in the workspace files, as a {@link PrefixTrie} shared by all the sessions of the workspace.
+ *
+ * Completion only reads the latest trie built. When the index changes, a new trie is built in the background, at most
+ * once per rebuild interval so that indexing a large workspace does not rebuild it for every batch of files.
+ */
+public class WorkspaceVocabulary {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceVocabulary.class);
+
+	static final long REBUILD_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+	private final SymbolIndex index;
+	private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+	private volatile PrefixTrie trie;
+	private volatile long builtAt;
+
+	/**
+	 * Builds the trie of the names already indexed, {@link #indexChanged()} must then be called after each update of the index.
+	 */
+	public WorkspaceVocabulary(SymbolIndex index) {
+		this.index = index;
+		rebuild();
+	}
+
+	SymbolIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the latest trie built, never built by this call
+	 */
+	public PrefixTrie get() {
+		return trie;
+	}
+
+	/**
+	 * Schedules a rebuild of the trie, unless one is already scheduled.
+	 */
+	public void indexChanged() {
+		if (rebuildScheduled.compareAndSet(false, true)) {
+			long delay = Math.max(0, builtAt + REBUILD_INTERVAL_NANOS - System.nanoTime());
+			TimerHolder.TIMER.schedule(() -> {
+				// the changes from now on schedule the next rebuild
+				rebuildScheduled.set(false);
+				try {
+					rebuild();
+				} catch (RuntimeException e) {
+					LOGGER.error("Cannot build the workspace vocabulary", e);
+				}
+			}, delay, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Builds the trie of the names currently indexed, on the calling thread.
+	 */
+	void rebuild() {
+		Map<String, Integer> names = new HashMap<>();
+		index.forEachName(names::put);
+		trie = PrefixTrie.build(names);
+		builtAt = System.nanoTime();
+	}
+
+	private static final class TimerHolder {
+
+		private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "Workspace Vocabulary");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
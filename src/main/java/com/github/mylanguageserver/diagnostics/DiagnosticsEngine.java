@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.diagnostics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.PositionEncoding;
+import com.github.mylanguageserver.document.Rope;
+import com.github.mylanguageserver.document.TextDocument;
+import com.github.mylanguageserver.features.DiagnosticsProvider;
+import com.github.mylanguageserver.scheduling.DocumentCancelChecker;
+import com.github.mylanguageserver.syntax.DemoLineParser;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+/**
+ * Computes the diagnostics of the documents in the background and publishes them to the client.
+ *
+ * Each trigger on a URI postpones the computation by the debounce delay, so a burst of edits is diagnosed once,
+ * on the latest version. Computations run on a small pool of daemon threads shared by all the sessions of the JVM,
+ * the opened documents before the workspace files on disk. A result computed on an outdated version is dropped,
+ * and a result equal to the one last published for a URI is not sent again.
+ */
+public class DiagnosticsEngine {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DiagnosticsEngine.class);
+
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+	public enum Priority {
+		OPENED_DOCUMENT,
+		WORKSPACE_FILE
+	}
+
+	private final DocumentStore openedDocuments;
+	private final long debounceMillis;
+	private final ConcurrentMap<String, ScheduledFuture<?>> scheduled = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, DiagnosticsTask> queued = new ConcurrentHashMap<>();
+	/** Guarded by this. */
+	private final Map<String, List<Diagnostic>> published = new HashMap<>();
+	private volatile LanguageClient client;
+	private volatile boolean closed;
+
+	public DiagnosticsEngine(DocumentStore openedDocuments) {
+		this(openedDocuments, DEFAULT_DEBOUNCE_MILLIS);
+	}
+
+	/**
+	 * @param debounceMillis	how long to wait for other changes of a document before diagnosing it
+	 */
+	public DiagnosticsEngine(DocumentStore openedDocuments, long debounceMillis) {
+		this.openedDocuments = openedDocuments;
+		this.debounceMillis = debounceMillis;
+	}
+
+	public void connect(LanguageClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Diagnoses the opened document once it stops changing for the debounce delay.
+	 */
+	public void documentChanged(String uri) {
+		schedule(uri, Priority.OPENED_DOCUMENT, debounceMillis, () -> diagnoseDocument(uri));
+	}
+
+	/**
+	 * Diagnoses the opened document as soon as possible, when it is opened or saved.
+	 */
+	public void documentOpened(String uri) {
+		schedule(uri, Priority.OPENED_DOCUMENT, 0, () -> diagnoseDocument(uri));
+	}
+
+	/**
+	 * Diagnoses the content on disk of a workspace file, unless it is opened.
+	 */
+	public void fileChanged(String uri, Path file) {
+		schedule(uri, Priority.WORKSPACE_FILE, debounceMillis, () -> diagnoseFile(uri, file));
+	}
+
+	/**
+	 * Cancels the pending diagnosis of the URI and removes its diagnostics from the client.
+	 */
+	public void clear(String uri) {
+		ScheduledFuture<?> pending = scheduled.remove(uri);
+		if (pending != null) {
+			pending.cancel(false);
+		}
+		publish(uri, Collections.emptyList(), null, () -> true);
+	}
+
+	/**
+	 * Stops diagnosing, nothing is published anymore.
+	 */
+	public void close() {
+		closed = true;
+		for (ScheduledFuture<?> pending : scheduled.values()) {
+			pending.cancel(false);
+		}
+		scheduled.clear();
+	}
+
+	private void schedule(String uri, Priority priority, long delayMillis, Runnable diagnosis) {
+		if (closed) {
+			return;
+		}
+		scheduled.compute(uri, (key, previous) -> {
+			if (previous != null) {
+				previous.cancel(false);
+			}
+			return TimerHolder.TIMER.schedule(() -> enqueue(uri, priority, diagnosis), delayMillis, TimeUnit.MILLISECONDS);
+		});
+	}
+
+	private void enqueue(String uri, Priority priority, Runnable diagnosis) {
+		DiagnosticsTask task = new DiagnosticsTask(uri, priority, diagnosis);
+		// the latest trigger replaces the one still waiting in the queue, which then does nothing
+		queued.put(uri, task);
+		ExecutorHolder.EXECUTOR.execute(task);
+	}
+
+	private void diagnoseDocument(String uri) {
+		TextDocument document = openedDocuments.get(uri);
+		if (document == null) {
+			return;
+		}
+		try {
+			List<Diagnostic> diagnostics = DiagnosticsProvider.compute(document.getSyntaxTree(),
+					new DocumentCancelChecker(() -> { }, openedDocuments, document));
+			toClientEncoding(diagnostics, document.getPositionEncoding(), document.getContent());
+			publish(uri, diagnostics, document.getVersion(), () -> openedDocuments.isCurrent(document));
+		} catch (ResponseErrorException e) {
+			LOGGER.debug("Diagnostics of {} version {} outdated", uri, document.getVersion());
+		}
+	}
+
+	private void diagnoseFile(String uri, Path file) {
+		if (openedDocuments.isOpened(uri)) {
+			return;
+		}
+		try {
+			Rope text = Rope.of(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			List<Diagnostic> diagnostics = DiagnosticsProvider.compute(SyntaxTree.parse(text, DemoLineParser.INSTANCE), () -> { });
+			toClientEncoding(diagnostics, openedDocuments.getPositionEncoding(), text);
+			publish(uri, diagnostics, null, () -> !openedDocuments.isOpened(uri));
+		} catch (NoSuchFileException e) {
+			publish(uri, Collections.emptyList(), null, () -> !openedDocuments.isOpened(uri));
+		} catch (IOException e) {
+			LOGGER.warn("Cannot diagnose " + file, e);
+		}
+	}
+
+	private static void toClientEncoding(List<Diagnostic> diagnostics, PositionEncoding encoding, Rope text) {
+		if (encoding != PositionEncoding.UTF_16) {
+			for (Diagnostic diagnostic : diagnostics) {
+				diagnostic.setRange(encoding.fromUtf16(text, diagnostic.getRange()));
+			}
+		}
+	}
+
+	/**
+	 * @param stillValid	checked under the lock, so that a stale result never overwrites a newer one
+	 */
+	private synchronized void publish(String uri, List<Diagnostic> diagnostics, Integer version, BooleanSupplier stillValid) {
+		LanguageClient target = client;
+		if (closed || target == null || !stillValid.getAsBoolean()) {
+			return;
+		}
+		List<Diagnostic> previous = published.get(uri);
+		if (previous != null ? previous.equals(diagnostics) : diagnostics.isEmpty()) {
+			LOGGER.debug("Diagnostics of {} unchanged, not published", uri);
+			return;
+		}
+		if (diagnostics.isEmpty()) {
+			published.remove(uri);
+		} else {
+			published.put(uri, diagnostics);
+		}
+		target.publishDiagnostics(new PublishDiagnosticsParams(uri, diagnostics, version));
+	}
+
+	private final class DiagnosticsTask implements Runnable, Comparable<DiagnosticsTask> {
+
+		private final String uri;
+		private final Priority priority;
+		private final Runnable diagnosis;
+		private final long sequence = ExecutorHolder.SEQUENCE.incrementAndGet();
+
+		DiagnosticsTask(String uri, Priority priority, Runnable diagnosis) {
+			this.uri = uri;
+			this.priority = priority;
+			this.diagnosis = diagnosis;
+		}
+
+		@Override
+		public void run() {
+			scheduled.computeIfPresent(uri, (key, pending) -> pending.isDone() ? null : pending);
+			if (closed || !queued.remove(uri, this)) {
+				return;
+			}
+			try {
+				diagnosis.run();
+			} catch (CancellationException e) {
+				LOGGER.debug("Diagnostics of {} cancelled", uri);
+			} catch (RuntimeException e) {
+				LOGGER.error("Cannot diagnose " + uri, e);
+			}
+		}
+
+		@Override
+		public int compareTo(DiagnosticsTask other) {
+			int byPriority = priority.compareTo(other.priority);
+			return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	private static final class TimerHolder {
+
+		private static final ScheduledExecutorService TIMER = createTimer();
+
+		private static ScheduledExecutorService createTimer() {
+			ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("Diagnostics Timer"));
+			timer.setRemoveOnCancelPolicy(true);
+			return timer;
+		}
+	}
+
+	private static final class ExecutorHolder {
+
+		private static final AtomicLong SEQUENCE = new AtomicLong();
+		private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<>(), new DaemonThreadFactory("Diagnostics"));
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+
+		private final String name;
+		private final AtomicInteger count = new AtomicInteger();
+
+		DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name + " " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the analysis artifacts of the opened documents, such as their syntax trees, within a memory budget.
+ *
+ * Artifacts are registered with their estimated size and a callback dropping them. When the budget is exceeded,
+ * the artifacts of the least recently used documents are dropped first, they are computed again when needed.
+ */
+public class ArtifactBudget {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactBudget.class);
+
+	private final long memoryBudget;
+	private final LinkedHashMap<Map.Entry<String, String>, Artifact> artifacts = new LinkedHashMap<>(16, 0.75f, true);
+	private long usedMemory;
+
+	/**
+	 * @param memoryBudget	the maximum estimated memory in bytes of the artifacts kept
+	 */
+	public ArtifactBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Records a newly computed artifact, replacing the previous one of the same kind for the document.
+	 *
+	 * @param uri	the document the artifact is computed from
+	 * @param kind	the kind of artifact
+	 * @param memory	the estimated memory in bytes of the artifact
+	 * @param release	drops the artifact, called without holding any lock of the budget
+	 */
+	public void add(String uri, String kind, long memory, Runnable release) {
+		List<Runnable> evicted = new ArrayList<>();
+		synchronized (this) {
+			Map.Entry<String, String> key = new SimpleImmutableEntry<>(uri, kind);
+			Artifact previous = artifacts.put(key, new Artifact(memory, release));
+			usedMemory += memory - (previous != null ? previous.memory : 0);
+			Iterator<Map.Entry<Map.Entry<String, String>, Artifact>> eldest = artifacts.entrySet().iterator();
+			while (usedMemory > memoryBudget && eldest.hasNext()) {
+				Map.Entry<Map.Entry<String, String>, Artifact> entry = eldest.next();
+				if (entry.getKey().equals(key)) {
+					break;
+				}
+				eldest.remove();
+				usedMemory -= entry.getValue().memory;
+				evicted.add(entry.getValue().release);
+				LOGGER.debug("Dropping the {} of {} to stay within {} bytes", entry.getKey().getValue(), entry.getKey().getKey(), memoryBudget);
+			}
+		}
+		evicted.forEach(Runnable::run);
+	}
+
+	/**
+	 * Marks an artifact as the most recently used one.
+	 */
+	public synchronized void touch(String uri, String kind) {
+		artifacts.get(new SimpleImmutableEntry<>(uri, kind));
+	}
+
+	/**
+	 * Forgets the artifacts of a document, when it is closed.
+	 */
+	public synchronized void removeAll(String uri) {
+		Iterator<Map.Entry<Map.Entry<String, String>, Artifact>> entries = artifacts.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<Map.Entry<String, String>, Artifact> entry = entries.next();
+			if (entry.getKey().getKey().equals(uri)) {
+				entries.remove();
+				usedMemory -= entry.getValue().memory;
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated memory in bytes of the artifacts kept
+	 */
+	public synchronized long getUsedMemory() {
+		return usedMemory;
+	}
+
+	private static final class Artifact {
+		final long memory;
+		final Runnable release;
+
+		Artifact(long memory, Runnable release) {
+			this.memory = memory;
+			this.release = release;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.syntax.DemoLineParser;
+
+/**
+ * Thread-safe registry of the opened documents.
+ *
+ * Each URI maps to an immutable {@link TextDocument} snapshot. Writers publish a new snapshot atomically
+ * per URI, readers never lock and always see a consistent version of a document. Work computed from a
+ * snapshot can be checked against the store with {@link #isCurrent(TextDocument)} before being used.
+ *
+ * The store can be given a memory budget, documents which would exceed it are not opened, and documents whose changes
+ * would exceed it are closed. The memory of a document
+ * is the one used by its characters, Latin-1 text takes one byte per character. Documents at least as large as
+ * the off-heap threshold are stored outside of the Java heap. The analysis artifacts computed from the documents
+ * are kept within a separate budget, see {@link ArtifactBudget}, and the results of the requests in a {@link ResultCache}
+ * invalidated when a document changes or is closed.
+ */
+public class DocumentStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DocumentStore.class);
+
+	public static final long UNLIMITED = Long.MAX_VALUE;
+	public static final int NEVER_OFF_HEAP = Integer.MAX_VALUE;
+
+	private final ConcurrentMap<String, TextDocument> documents = new ConcurrentHashMap<>();
+	private final long memoryBudget;
+	private final AtomicLong usedMemory = new AtomicLong();
+	private final ArtifactBudget artifacts;
+	private final ResultCache results = new ResultCache(ResultCache.DEFAULT_MAX_WEIGHT, this::isCurrent);
+	private final int offHeapThreshold;
+	private volatile PositionEncoding positionEncoding = PositionEncoding.UTF_16;
+
+	public DocumentStore() {
+		this(UNLIMITED);
+	}
+
+	/**
+	 * @param memoryBudget	the maximum estimated memory in bytes used by the content of the opened documents
+	 */
+	public DocumentStore(long memoryBudget) {
+		this(memoryBudget, UNLIMITED, NEVER_OFF_HEAP);
+	}
+
+	/**
+	 * @param memoryBudget	the maximum estimated memory in bytes used by the content of the opened documents
+	 * @param artifactsMemoryBudget	the maximum estimated memory in bytes of the artifacts computed from the opened documents
+	 * @param offHeapThreshold	the length in characters from which the content of a document is stored off-heap
+	 */
+	public DocumentStore(long memoryBudget, long artifactsMemoryBudget, int offHeapThreshold) {
+		this.memoryBudget = memoryBudget;
+		this.artifacts = new ArtifactBudget(artifactsMemoryBudget);
+		this.offHeapThreshold = offHeapThreshold;
+	}
+
+	/**
+	 * @return the opened document, or null if it doesn't fit in the memory budget
+	 */
+	public TextDocument open(TextDocumentItem item) {
+		String text = item.getText();
+		Rope content = TextDocument.contentOf(text, offHeapThreshold);
+		TextDocument document = new TextDocument(item.getUri(), item.getLanguageId(), item.getVersion(), content, DemoLineParser.INSTANCE, artifacts,
+				positionEncoding);
+		long required = estimatedMemory(document);
+		TextDocument previous = documents.get(document.getUri());
+		long released = previous != null ? estimatedMemory(previous) : 0;
+		if (!reserve(required - released)) {
+			LOGGER.warn("Not opening {}: {} bytes required, {} bytes used out of {}", document.getUri(), required, usedMemory.get(), memoryBudget);
+			return null;
+		}
+		TextDocument replaced = documents.put(document.getUri(), document);
+		artifacts.removeAll(document.getUri());
+		results.invalidate(document.getUri());
+		if (replaced != previous) {
+			// replaced concurrently, release the memory of the document actually replaced instead
+			usedMemory.addAndGet(released - (replaced != null ? estimatedMemory(replaced) : 0));
+		}
+		return document;
+	}
+
+	/**
+	 * Applies the changes on the current snapshot of the document and publishes the result.
+	 *
+	 * @param uri	the document uri
+	 * @param version	the version after the changes, if null the current version is incremented
+	 * @param changes	the content changes, applied in order
+	 * @return the new snapshot, or null if the document is not opened or was closed as the changes exceed the memory budget
+	 */
+	public TextDocument update(String uri, Integer version, List<TextDocumentContentChangeEvent> changes) {
+		boolean[] closed = new boolean[1];
+		TextDocument updated = documents.computeIfPresent(uri, (key, current) -> {
+			int newVersion = version != null ? version : current.getVersion() + 1;
+			if (newVersion <= current.getVersion()) {
+				LOGGER.warn("Version {} of {} received after version {}", newVersion, uri, current.getVersion());
+			}
+			TextDocument newSnapshot = current.applyChanges(newVersion, changes, offHeapThreshold);
+			long required = estimatedMemory(newSnapshot);
+			if (!reserve(required - estimatedMemory(current))) {
+				LOGGER.warn("Closing {}: {} bytes required, {} bytes used out of {}", uri, required, usedMemory.get(), memoryBudget);
+				usedMemory.addAndGet(-estimatedMemory(current));
+				closed[0] = true;
+				return null;
+			}
+			return newSnapshot;
+		});
+		if (closed[0]) {
+			artifacts.removeAll(uri);
+		}
+		if (updated != null || closed[0]) {
+			results.invalidate(uri);
+		}
+		return updated;
+	}
+
+	/**
+	 * Adds the memory to the one used if it fits in the budget, atomically so that concurrent sessions never exceed it.
+	 *
+	 * @param memory	the memory in bytes to add, negative when released
+	 * @return false if it does not fit, the memory used is then unchanged
+	 */
+	private boolean reserve(long memory) {
+		long used;
+		do {
+			used = usedMemory.get();
+			if (memory > 0 && memory > memoryBudget - used) {
+				return false;
+			}
+		} while (!usedMemory.compareAndSet(used, used + memory));
+		return true;
+	}
+
+	public TextDocument close(String uri) {
+		TextDocument closed = documents.remove(uri);
+		if (closed != null) {
+			usedMemory.addAndGet(-estimatedMemory(closed));
+			artifacts.removeAll(uri);
+			results.invalidate(uri);
+		}
+		return closed;
+	}
+
+	/**
+	 * @return the estimated memory in bytes used by the content of the opened documents
+	 */
+	public long getUsedMemory() {
+		return usedMemory.get();
+	}
+
+	/**
+	 * @param positionEncoding	the encoding of the positions negotiated with the client, for the documents opened afterwards
+	 */
+	public void setPositionEncoding(PositionEncoding positionEncoding) {
+		this.positionEncoding = positionEncoding;
+	}
+
+	public PositionEncoding getPositionEncoding() {
+		return positionEncoding;
+	}
+
+	/**
+	 * @return the estimated memory in bytes of the artifacts computed from the opened documents
+	 */
+	public long getArtifactsMemory() {
+		return artifacts.getUsedMemory();
+	}
+
+	/**
+	 * @return the results of the requests computed from the opened documents
+	 */
+	public ResultCache getResultCache() {
+		return results;
+	}
+
+	private static long estimatedMemory(TextDocument document) {
+		return document.getContent().memory();
+	}
+
+	/**
+	 * @return the latest snapshot of the document, or null if it is not opened
+	 */
+	public TextDocument get(String uri) {
+		return documents.get(uri);
+	}
+
+	/**
+	 * @return the snapshot of the document at the given version, or null if the document moved on or is closed
+	 */
+	public TextDocument get(String uri, int version) {
+		TextDocument document = documents.get(uri);
+		return document != null && document.getVersion() == version ? document : null;
+	}
+
+	/**
+	 * @return the latest snapshots of all the opened documents, not affected by later changes
+	 */
+	public Collection<TextDocument> getAll() {
+		return Collections.unmodifiableList(new ArrayList<>(documents.values()));
+	}
+
+	/**
+	 * @return true if the snapshot is still the latest published one for its URI
+	 */
+	public boolean isCurrent(TextDocument snapshot) {
+		return documents.get(snapshot.getUri()) == snapshot;
+	}
+
+	public boolean isOpened(String uri) {
+		return documents.containsKey(uri);
+	}
+}
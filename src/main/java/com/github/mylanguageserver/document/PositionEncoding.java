@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * How the character of a {@link Position} counts the characters of its line, negotiated with the client.
+ *
+ * The text and the syntax trees use UTF-16 columns, like Java strings: positions are converted when they are received
+ * and when they are sent. Both conversions go through the {@link Rope} of the text, in O(log n).
+ */
+public enum PositionEncoding {
+
+	UTF_16("utf-16"),
+	UTF_8("utf-8");
+
+	private final String name;
+
+	PositionEncoding(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the name of the encoding in the protocol
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param clientEncodings	the encodings supported by the client, by order of preference, null if not provided
+	 * @return the first encoding supported by both, UTF-16 by default
+	 */
+	public static PositionEncoding negotiate(List<String> clientEncodings) {
+		if (clientEncodings != null) {
+			for (String clientEncoding : clientEncodings) {
+				for (PositionEncoding encoding : values()) {
+					if (encoding.name.equalsIgnoreCase(clientEncoding)) {
+						return encoding;
+					}
+				}
+			}
+		}
+		return UTF_16;
+	}
+
+	/**
+	 * @return the offset corresponding to the position, clamped to the text and line bounds
+	 */
+	public int offsetAt(Rope text, Position position) {
+		int line = position.getLine();
+		if (line < 0) {
+			return 0;
+		}
+		if (line >= text.lineCount()) {
+			return text.length();
+		}
+		int lineStart = text.lineStartOffset(line);
+		int lineEnd = text.lineEndOffset(line);
+		int character = Math.max(position.getCharacter(), 0);
+		if (this == UTF_16) {
+			return Math.min(lineStart + character, lineEnd);
+		}
+		return Math.min(text.offsetOfUtf8(text.utf8Offset(lineStart) + character), lineEnd);
+	}
+
+	public Position positionAt(Rope text, int offset) {
+		int clamped = Math.max(0, Math.min(offset, text.length()));
+		int line = text.lineOfOffset(clamped);
+		int lineStart = text.lineStartOffset(line);
+		if (this == UTF_16) {
+			return new Position(line, clamped - lineStart);
+		}
+		return new Position(line, text.utf8Offset(clamped) - text.utf8Offset(lineStart));
+	}
+
+	/**
+	 * @return the position received in this encoding with a UTF-16 character
+	 */
+	public Position toUtf16(Rope text, Position position) {
+		return this == UTF_16 ? position : UTF_16.positionAt(text, offsetAt(text, position));
+	}
+
+	/**
+	 * @return the position with a UTF-16 character in this encoding, to be sent
+	 */
+	public Position fromUtf16(Rope text, Position position) {
+		return this == UTF_16 ? position : positionAt(text, UTF_16.offsetAt(text, position));
+	}
+
+	public Range fromUtf16(Rope text, Range range) {
+		return this == UTF_16 ? range : new Range(fromUtf16(text, range.getStart()), fromUtf16(text, range.getEnd()));
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Results of requests computed from the opened documents, keyed by method, URI, version and the other parameters of the request.
+ *
+ * Each result has a weight, one plus its size when it is a collection. When the total weight exceeds the maximum,
+ * the least recently used results are evicted first. The results of a document are invalidated by its {@link DocumentStore}
+ * when it changes or is closed, and a result is only returned for the very snapshot it has been computed from.
+ * The keys are also grouped by URI, so that invalidating a document only visits its own results.
+ * Cached results are shared between requests, they must not be modified once returned.
+ */
+public class ResultCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResultCache.class);
+
+	public static final long DEFAULT_MAX_WEIGHT = 100_000;
+
+	private final LinkedHashMap<Key, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Set<Key>> keysByUri = new HashMap<>();
+	private final Predicate<TextDocument> isCurrent;
+	private long maxWeight;
+	private long weight;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	/**
+	 * @param maxWeight	the maximum total weight of the results kept, 0 to disable the cache
+	 * @param isCurrent	tells whether a snapshot is still the latest one of its document, results computed from an older one are not kept
+	 */
+	public ResultCache(long maxWeight, Predicate<TextDocument> isCurrent) {
+		this.maxWeight = maxWeight;
+		this.isCurrent = isCurrent;
+	}
+
+	/**
+	 * @param method	the LSP method
+	 * @param document	the snapshot the request is computed from
+	 * @param params	the parameters of the request other than the document, compared with equals, null if none
+	 * @return the result computed from the snapshot with the same parameters, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> T get(String method, TextDocument document, Object params) {
+		Result result = results.get(new Key(method, document.getUri(), document.getVersion(), params));
+		if (result == null || result.document != document) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return (T) result.value;
+	}
+
+	/**
+	 * Records a result, evicting the least recently used ones beyond the maximum weight.
+	 * A result computed from a snapshot which is not the latest one anymore is ignored, as it was already invalidated.
+	 */
+	public synchronized void put(String method, TextDocument document, Object params, Object value) {
+		long resultWeight = weightOf(value);
+		if (value == null || resultWeight > maxWeight || !isCurrent.test(document)) {
+			return;
+		}
+		Key key = new Key(method, document.getUri(), document.getVersion(), params);
+		Result previous = results.put(key, new Result(document, value, resultWeight));
+		if (previous == null) {
+			keysByUri.computeIfAbsent(key.uri, uri -> new HashSet<>()).add(key);
+		}
+		weight += resultWeight - (previous != null ? previous.weight : 0);
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Key, Result>> eldest = results.entrySet().iterator();
+		while (weight > maxWeight && eldest.hasNext()) {
+			Map.Entry<Key, Result> entry = eldest.next();
+			weight -= entry.getValue().weight;
+			eldest.remove();
+			forgetKey(entry.getKey());
+			evictionCount++;
+		}
+	}
+
+	private void forgetKey(Key key) {
+		Set<Key> keys = keysByUri.get(key.uri);
+		if (keys != null && keys.remove(key) && keys.isEmpty()) {
+			keysByUri.remove(key.uri);
+		}
+	}
+
+	private static long weightOf(Object value) {
+		return value instanceof Collection ? 1L + ((Collection<?>) value).size() : 1L;
+	}
+
+	/**
+	 * Forgets the results computed from a document, when it changes or is closed.
+	 */
+	public synchronized void invalidate(String uri) {
+		Set<Key> keys = keysByUri.remove(uri);
+		if (keys != null) {
+			for (Key key : keys) {
+				weight -= results.remove(key).weight;
+			}
+		}
+	}
+
+	/**
+	 * @param maxWeight	the maximum total weight of the results kept, 0 to disable the cache
+	 */
+	public synchronized void setMaxWeight(long maxWeight) {
+		this.maxWeight = maxWeight;
+		evict();
+		LOGGER.debug("Result cache limited to a weight of {}", maxWeight);
+	}
+
+	public synchronized long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @return the total weight of the results kept
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized int size() {
+		return results.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	private static final class Key {
+		final String method;
+		final String uri;
+		final int version;
+		final Object params;
+
+		Key(String method, String uri, int version, Object params) {
+			this.method = method;
+			this.uri = uri;
+			this.version = version;
+			this.params = params;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return version == other.version && method.equals(other.method) && uri.equals(other.uri) && Objects.equals(params, other.params);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(method, uri, version, params);
+		}
+	}
+
+	private static final class Result {
+		final TextDocument document;
+		final Object value;
+		final long weight;
+
+		Result(TextDocument document, Object value, long weight) {
+			this.document = document;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
@@ -0,0 +1,739 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Immutable text stored as a height-balanced (AVL) tree of small chunks.
+ *
+ * Each node caches its length and its number of line breaks, so that character access,
+ * line lookup and range replacement are all O(log n). Edits return a new rope sharing
+ * every untouched subtree with the previous one, which makes old versions cheap to keep.
+ *
+ * Only '\n' is counted as a line break, a '\r' preceding it is considered part of the line terminator.
+ *
+ * Chunks only made of Latin-1 characters are stored with one byte per character. The chunks of a rope created
+ * with {@link #offHeap(CharSequence)} are slices of a single direct buffer, outside of the Java heap: splitting them
+ * while editing shares the buffer, only the edited text is stored on the heap.
+ */
+public final class Rope implements CharSequence {
+
+	static final int MAX_LEAF_LENGTH = 2048;
+
+	private static final Leaf EMPTY_LEAF = new Latin1Leaf(new byte[0]);
+	public static final Rope EMPTY = new Rope(EMPTY_LEAF);
+
+	private final Node root;
+
+	private Rope(Node root) {
+		this.root = root;
+	}
+
+	public static Rope of(CharSequence text) {
+		if (text instanceof Rope) {
+			return (Rope) text;
+		}
+		if (text == null || text.length() == 0) {
+			return EMPTY;
+		}
+		String content = text.toString();
+		return new Rope(build(content, (start, end) -> heapLeaf(content, start, end)));
+	}
+
+	/**
+	 * @return a rope whose text is stored in a direct buffer, outside of the Java heap
+	 */
+	public static Rope offHeap(CharSequence text) {
+		if (text == null || text.length() == 0) {
+			return EMPTY;
+		}
+		String content = text.toString();
+		boolean latin1 = isLatin1(content, 0, content.length());
+		ByteBuffer buffer = ByteBuffer.allocateDirect(latin1 ? content.length() : 2 * content.length());
+		for (int i = 0; i < content.length(); i++) {
+			if (latin1) {
+				buffer.put((byte) content.charAt(i));
+			} else {
+				buffer.putChar(content.charAt(i));
+			}
+		}
+		return new Rope(build(content, (start, end) -> new DirectLeaf(buffer, start, end - start, latin1)));
+	}
+
+	@Override
+	public int length() {
+		return root.length();
+	}
+
+	/**
+	 * @return the number of lines, which is always the number of line breaks plus one
+	 */
+	public int lineCount() {
+		return root.lineBreaks() + 1;
+	}
+
+	@Override
+	public char charAt(int index) {
+		checkIndex(index, length());
+		Node node = root;
+		while (node instanceof Branch) {
+			Branch branch = (Branch) node;
+			int leftLength = branch.left.length();
+			if (index < leftLength) {
+				node = branch.left;
+			} else {
+				index -= leftLength;
+				node = branch.right;
+			}
+		}
+		return ((Leaf) node).charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return substring(start, end);
+	}
+
+	public String substring(int start, int end) {
+		checkRange(start, end, length());
+		StringBuilder builder = new StringBuilder(end - start);
+		appendTo(builder, root, start, end);
+		return builder.toString();
+	}
+
+	/**
+	 * @param line	a zero-based line number, between 0 and {@link #lineCount()} - 1
+	 * @return the offset of the first character of the line
+	 */
+	public int lineStartOffset(int line) {
+		checkLine(line);
+		if (line == 0) {
+			return 0;
+		}
+		Node node = root;
+		int offset = 0;
+		while (node instanceof Branch) {
+			Branch branch = (Branch) node;
+			int leftBreaks = branch.left.lineBreaks();
+			if (line <= leftBreaks) {
+				node = branch.left;
+			} else {
+				line -= leftBreaks;
+				offset += branch.left.length();
+				node = branch.right;
+			}
+		}
+		Leaf leaf = (Leaf) node;
+		int index = -1;
+		for (int i = 0; i < line; i++) {
+			index = leaf.indexOfLineBreak(index + 1);
+		}
+		return offset + index + 1;
+	}
+
+	/**
+	 * @param line	a zero-based line number, between 0 and {@link #lineCount()} - 1
+	 * @return the offset just after the last character of the line, excluding the line terminator
+	 */
+	public int lineEndOffset(int line) {
+		checkLine(line);
+		if (line + 1 == lineCount()) {
+			return length();
+		}
+		int end = lineStartOffset(line + 1) - 1;
+		if (end > 0 && charAt(end - 1) == '\r') {
+			end--;
+		}
+		return end;
+	}
+
+	/**
+	 * @param offset	an offset between 0 and {@link #length()}
+	 * @return the zero-based line containing the offset
+	 */
+	public int lineOfOffset(int offset) {
+		checkRange(offset, offset, length());
+		Node node = root;
+		int line = 0;
+		while (node instanceof Branch) {
+			Branch branch = (Branch) node;
+			int leftLength = branch.left.length();
+			if (offset < leftLength) {
+				node = branch.left;
+			} else {
+				offset -= leftLength;
+				line += branch.left.lineBreaks();
+				node = branch.right;
+			}
+		}
+		Leaf leaf = (Leaf) node;
+		for (int i = 0; i < offset && i < leaf.length(); i++) {
+			if (leaf.charAt(i) == '\n') {
+				line++;
+			}
+		}
+		return line;
+	}
+
+	/**
+	 * @return the length in bytes of the text encoded in UTF-8
+	 */
+	public int utf8Length() {
+		return root.utf8Length();
+	}
+
+	/**
+	 * @param offset	an offset between 0 and {@link #length()}
+	 * @return the number of bytes before the offset once the text is encoded in UTF-8
+	 */
+	public int utf8Offset(int offset) {
+		checkRange(offset, offset, length());
+		Node node = root;
+		int utf8Offset = 0;
+		while (node instanceof Branch) {
+			Branch branch = (Branch) node;
+			int leftLength = branch.left.length();
+			if (offset < leftLength) {
+				node = branch.left;
+			} else {
+				offset -= leftLength;
+				utf8Offset += branch.left.utf8Length();
+				node = branch.right;
+			}
+		}
+		Leaf leaf = (Leaf) node;
+		for (int i = 0; i < offset; i++) {
+			utf8Offset += utf8Length(leaf.charAt(i));
+		}
+		return utf8Offset;
+	}
+
+	/**
+	 * @param utf8Offset	a number of bytes of the text encoded in UTF-8, clamped to {@link #utf8Length()}
+	 * @return the offset of the character starting at that byte, or of the character containing it
+	 */
+	public int offsetOfUtf8(int utf8Offset) {
+		int remaining = Math.max(0, Math.min(utf8Offset, utf8Length()));
+		Node node = root;
+		int offset = 0;
+		while (node instanceof Branch) {
+			Branch branch = (Branch) node;
+			int leftUtf8Length = branch.left.utf8Length();
+			if (remaining < leftUtf8Length) {
+				node = branch.left;
+			} else {
+				remaining -= leftUtf8Length;
+				offset += branch.left.length();
+				node = branch.right;
+			}
+		}
+		Leaf leaf = (Leaf) node;
+		int i = 0;
+		while (i < leaf.length() && utf8Length(leaf.charAt(i)) <= remaining) {
+			remaining -= utf8Length(leaf.charAt(i));
+			i++;
+		}
+		offset += i;
+		if (offset > 0 && offset < length() && Character.isLowSurrogate(charAt(offset)) && Character.isHighSurrogate(charAt(offset - 1))) {
+			offset--;
+		}
+		return offset;
+	}
+
+	/**
+	 * @return the number of bytes of the character in UTF-8, each half of a surrogate pair counting for 2 bytes
+	 */
+	private static int utf8Length(char c) {
+		if (c < 0x80) {
+			return 1;
+		}
+		return c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+	}
+
+	/**
+	 * Replaces the characters between start (inclusive) and end (exclusive) by the given text.
+	 *
+	 * @return a new rope, this one is left untouched
+	 */
+	public Rope replace(int start, int end, CharSequence replacement) {
+		checkRange(start, end, length());
+		Node[] head = split(root, start);
+		Node[] tail = split(head[1], end - start);
+		Node inserted = replacement == null || replacement.length() == 0 ? EMPTY_LEAF : of(replacement).root;
+		return new Rope(join(join(head[0], inserted), tail[1]));
+	}
+
+	public Rope insert(int offset, CharSequence text) {
+		return replace(offset, offset, text);
+	}
+
+	public Rope delete(int start, int end) {
+		return replace(start, end, null);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(length());
+		appendTo(builder, root, 0, length());
+		return builder.toString();
+	}
+
+	/**
+	 * @return the number of bytes used to store the characters, on and off the heap
+	 */
+	public long memory() {
+		return root.memory();
+	}
+
+	/**
+	 * @return the number of bytes used to store the characters outside of the Java heap
+	 */
+	public long offHeapMemory() {
+		return root.offHeapMemory();
+	}
+
+	int height() {
+		return root.height();
+	}
+
+	private static void appendTo(StringBuilder builder, Node node, int start, int end) {
+		if (start >= end) {
+			return;
+		}
+		if (node instanceof Leaf) {
+			((Leaf) node).appendTo(builder, start, end);
+			return;
+		}
+		Branch branch = (Branch) node;
+		int leftLength = branch.left.length();
+		if (start < leftLength) {
+			appendTo(builder, branch.left, start, Math.min(end, leftLength));
+		}
+		if (end > leftLength) {
+			appendTo(builder, branch.right, Math.max(start - leftLength, 0), end - leftLength);
+		}
+	}
+
+	private static Node build(String text, LeafFactory leaves) {
+		// every chunk but the last one holds at least MAX_LEAF_LENGTH - 1 characters
+		int[] boundaries = new int[text.length() / (MAX_LEAF_LENGTH - 1) + 2];
+		int count = 0;
+		int offset = 0;
+		while (offset < text.length()) {
+			int end = Math.min(offset + MAX_LEAF_LENGTH, text.length());
+			if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+				// never split a surrogate pair between two leaves
+				end--;
+			}
+			boundaries[count++] = offset;
+			offset = end;
+		}
+		boundaries[count] = text.length();
+		return build(leaves, boundaries, 0, count);
+	}
+
+	private static Node build(LeafFactory leaves, int[] boundaries, int from, int to) {
+		if (to - from == 1) {
+			return leaves.create(boundaries[from], boundaries[to]);
+		}
+		int middle = (from + to) >>> 1;
+		return new Branch(build(leaves, boundaries, from, middle), build(leaves, boundaries, middle, to));
+	}
+
+	private static Leaf heapLeaf(CharSequence text, int start, int end) {
+		if (isLatin1(text, start, end)) {
+			byte[] bytes = new byte[end - start];
+			for (int i = start; i < end; i++) {
+				bytes[i - start] = (byte) text.charAt(i);
+			}
+			return new Latin1Leaf(bytes);
+		}
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; i++) {
+			chars[i - start] = text.charAt(i);
+		}
+		return new Utf16Leaf(chars);
+	}
+
+	private static boolean isLatin1(CharSequence text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) > 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Node[] split(Node node, int offset) {
+		if (offset <= 0) {
+			return new Node[] { EMPTY_LEAF, node };
+		}
+		if (offset >= node.length()) {
+			return new Node[] { node, EMPTY_LEAF };
+		}
+		if (node instanceof Leaf) {
+			Leaf leaf = (Leaf) node;
+			return new Node[] { leaf.slice(0, offset), leaf.slice(offset, leaf.length()) };
+		}
+		Branch branch = (Branch) node;
+		int leftLength = branch.left.length();
+		if (offset == leftLength) {
+			return new Node[] { branch.left, branch.right };
+		}
+		if (offset < leftLength) {
+			Node[] parts = split(branch.left, offset);
+			return new Node[] { parts[0], join(parts[1], branch.right) };
+		}
+		Node[] parts = split(branch.right, offset - leftLength);
+		return new Node[] { join(branch.left, parts[0]), parts[1] };
+	}
+
+	private static Node join(Node left, Node right) {
+		if (left.length() == 0) {
+			return right;
+		}
+		if (right.length() == 0) {
+			return left;
+		}
+		if (left instanceof Leaf && right instanceof Leaf && left.length() + right.length() <= MAX_LEAF_LENGTH) {
+			StringBuilder text = new StringBuilder(left.length() + right.length());
+			((Leaf) left).appendTo(text, 0, left.length());
+			((Leaf) right).appendTo(text, 0, right.length());
+			return heapLeaf(text, 0, text.length());
+		}
+		int leftHeight = left.height();
+		int rightHeight = right.height();
+		if (leftHeight > rightHeight + 1) {
+			Branch branch = (Branch) left;
+			return balance(branch.left, join(branch.right, right));
+		}
+		if (rightHeight > leftHeight + 1) {
+			Branch branch = (Branch) right;
+			return balance(join(left, branch.left), branch.right);
+		}
+		return new Branch(left, right);
+	}
+
+	private static Node balance(Node left, Node right) {
+		int leftHeight = left.height();
+		int rightHeight = right.height();
+		if (leftHeight > rightHeight + 1) {
+			Branch heavy = (Branch) left;
+			if (heavy.left.height() >= heavy.right.height()) {
+				return new Branch(heavy.left, new Branch(heavy.right, right));
+			}
+			Branch inner = (Branch) heavy.right;
+			return new Branch(new Branch(heavy.left, inner.left), new Branch(inner.right, right));
+		}
+		if (rightHeight > leftHeight + 1) {
+			Branch heavy = (Branch) right;
+			if (heavy.right.height() >= heavy.left.height()) {
+				return new Branch(new Branch(left, heavy.left), heavy.right);
+			}
+			Branch inner = (Branch) heavy.left;
+			return new Branch(new Branch(left, inner.left), new Branch(inner.right, heavy.right));
+		}
+		return new Branch(left, right);
+	}
+
+	private void checkLine(int line) {
+		if (line < 0 || line >= lineCount()) {
+			throw new IndexOutOfBoundsException("line " + line + " outside of [0, " + lineCount() + ")");
+		}
+	}
+
+	private static void checkIndex(int index, int length) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index + " outside of [0, " + length + ")");
+		}
+	}
+
+	private static void checkRange(int start, int end, int length) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("range [" + start + ", " + end + ") outside of [0, " + length + "]");
+		}
+	}
+
+	@FunctionalInterface
+	private interface LeafFactory {
+		Leaf create(int start, int end);
+	}
+
+	private abstract static class Node {
+		abstract int length();
+		abstract int lineBreaks();
+		abstract int utf8Length();
+		abstract int height();
+		abstract long memory();
+		abstract long offHeapMemory();
+
+		/**
+		 * @return the direct buffer holding characters of the node, or null if they are all on the heap
+		 */
+		ByteBuffer directBuffer() {
+			return null;
+		}
+	}
+
+	private abstract static class Leaf extends Node {
+		private int lineBreaks = -1;
+		private int utf8Length = -1;
+
+		abstract char charAt(int index);
+
+		abstract void appendTo(StringBuilder builder, int start, int end);
+
+		/**
+		 * @return the characters between start (inclusive) and end (exclusive)
+		 */
+		abstract Leaf slice(int start, int end);
+
+		int indexOfLineBreak(int from) {
+			for (int i = from; i < length(); i++) {
+				if (charAt(i) == '\n') {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		int lineBreaks() {
+			if (lineBreaks == -1) {
+				int breaks = 0;
+				for (int i = 0; i < length(); i++) {
+					if (charAt(i) == '\n') {
+						breaks++;
+					}
+				}
+				lineBreaks = breaks;
+			}
+			return lineBreaks;
+		}
+
+		@Override
+		int utf8Length() {
+			if (utf8Length == -1) {
+				int bytes = 0;
+				for (int i = 0; i < length(); i++) {
+					bytes += Rope.utf8Length(charAt(i));
+				}
+				utf8Length = bytes;
+			}
+			return utf8Length;
+		}
+
+		@Override
+		int height() {
+			return 0;
+		}
+
+		@Override
+		long offHeapMemory() {
+			return 0;
+		}
+	}
+
+	private static final class Latin1Leaf extends Leaf {
+		private final byte[] bytes;
+
+		Latin1Leaf(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		int length() {
+			return bytes.length;
+		}
+
+		@Override
+		char charAt(int index) {
+			return (char) (bytes[index] & 0xFF);
+		}
+
+		@Override
+		void appendTo(StringBuilder builder, int start, int end) {
+			for (int i = start; i < end; i++) {
+				builder.append((char) (bytes[i] & 0xFF));
+			}
+		}
+
+		@Override
+		Leaf slice(int start, int end) {
+			return new Latin1Leaf(Arrays.copyOfRange(bytes, start, end));
+		}
+
+		@Override
+		long memory() {
+			return bytes.length;
+		}
+	}
+
+	private static final class Utf16Leaf extends Leaf {
+		private final char[] chars;
+
+		Utf16Leaf(char[] chars) {
+			this.chars = chars;
+		}
+
+		@Override
+		int length() {
+			return chars.length;
+		}
+
+		@Override
+		char charAt(int index) {
+			return chars[index];
+		}
+
+		@Override
+		void appendTo(StringBuilder builder, int start, int end) {
+			builder.append(chars, start, end - start);
+		}
+
+		@Override
+		Leaf slice(int start, int end) {
+			return heapLeaf(CharBuffer.wrap(chars), start, end);
+		}
+
+		@Override
+		long memory() {
+			return 2L * chars.length;
+		}
+	}
+
+	/**
+	 * A slice of a direct buffer, the buffer is only read with absolute accesses so it is safely shared between threads.
+	 * The whole buffer stays allocated as long as one of its slices is used, so each leaf accounts for all of it and a
+	 * branch counts a buffer shared by its children once.
+	 */
+	private static final class DirectLeaf extends Leaf {
+		private final ByteBuffer buffer;
+		private final int offset;
+		private final int length;
+		private final boolean latin1;
+
+		DirectLeaf(ByteBuffer buffer, int offset, int length, boolean latin1) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.length = length;
+			this.latin1 = latin1;
+		}
+
+		@Override
+		int length() {
+			return length;
+		}
+
+		@Override
+		char charAt(int index) {
+			return latin1 ? (char) (buffer.get(offset + index) & 0xFF) : buffer.getChar(2 * (offset + index));
+		}
+
+		@Override
+		void appendTo(StringBuilder builder, int start, int end) {
+			for (int i = start; i < end; i++) {
+				builder.append(charAt(i));
+			}
+		}
+
+		@Override
+		Leaf slice(int start, int end) {
+			return new DirectLeaf(buffer, offset + start, end - start, latin1);
+		}
+
+		@Override
+		long memory() {
+			return buffer.capacity();
+		}
+
+		@Override
+		long offHeapMemory() {
+			return buffer.capacity();
+		}
+
+		@Override
+		ByteBuffer directBuffer() {
+			return buffer;
+		}
+	}
+
+	private static final class Branch extends Node {
+		final Node left;
+		final Node right;
+		private final int length;
+		private final int lineBreaks;
+		private final int utf8Length;
+		private final int height;
+		private final long memory;
+		private final long offHeapMemory;
+		private final ByteBuffer directBuffer;
+
+		Branch(Node left, Node right) {
+			this.left = left;
+			this.right = right;
+			this.length = left.length() + right.length();
+			this.lineBreaks = left.lineBreaks() + right.lineBreaks();
+			this.utf8Length = left.utf8Length() + right.utf8Length();
+			this.height = Math.max(left.height(), right.height()) + 1;
+			// a rope is built off-heap from a single buffer, edits add heap leaves, so a subtree holds at most one buffer
+			ByteBuffer leftBuffer = left.directBuffer();
+			long shared = leftBuffer != null && leftBuffer == right.directBuffer() ? leftBuffer.capacity() : 0;
+			this.memory = left.memory() + right.memory() - shared;
+			this.offHeapMemory = left.offHeapMemory() + right.offHeapMemory() - shared;
+			this.directBuffer = leftBuffer != null ? leftBuffer : right.directBuffer();
+		}
+
+		@Override
+		int length() {
+			return length;
+		}
+
+		@Override
+		int lineBreaks() {
+			return lineBreaks;
+		}
+
+		@Override
+		int utf8Length() {
+			return utf8Length;
+		}
+
+		@Override
+		int height() {
+			return height;
+		}
+
+		@Override
+		long memory() {
+			return memory;
+		}
+
+		@Override
+		long offHeapMemory() {
+			return offHeapMemory;
+		}
+
+		@Override
+		ByteBuffer directBuffer() {
+			return directBuffer;
+		}
+	}
+}
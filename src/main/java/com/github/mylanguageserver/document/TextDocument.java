@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+
+import com.github.mylanguageserver.syntax.DemoLineParser;
+import com.github.mylanguageserver.syntax.LineEdit;
+import com.github.mylanguageserver.syntax.LineParser;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+/**
+ * An opened text document at a given version.
+ *
+ * Instances are immutable: applying changes returns a new document backed by a new {@link Rope}
+ * which shares all the unmodified text with the previous version.
+ *
+ * The syntax tree of a version is parsed the first time a feature asks for it. A version remembers the latest
+ * tree parsed before it and the lines edited since, so that its tree is parsed incrementally from that one.
+ * Documents opened in a {@link DocumentStore} register their tree in its {@link ArtifactBudget}, which may drop
+ * it: it is then parsed again from scratch when needed.
+ */
+public final class TextDocument {
+
+	/** Beyond that many edits since the latest parsed tree, the document is parsed again from scratch. */
+	private static final int MAX_PENDING_EDITS = 1024;
+
+	public static final String SYNTAX_TREE_ARTIFACT = "syntax tree";
+
+	private final String uri;
+	private final String languageId;
+	private final int version;
+	private final Rope content;
+	private final LineParser parser;
+	private final ArtifactBudget artifacts;
+	private final PositionEncoding encoding;
+	private SyntaxTree syntaxTree;
+	private SyntaxTree previousTree;
+	private List<LineEdit> editsSincePreviousTree;
+
+	public TextDocument(TextDocumentItem item) {
+		this(item, DemoLineParser.INSTANCE);
+	}
+
+	public TextDocument(TextDocumentItem item, LineParser parser) {
+		this(item.getUri(), item.getLanguageId(), item.getVersion(), Rope.of(item.getText()), parser, null, PositionEncoding.UTF_16);
+	}
+
+	public TextDocument(String uri, String languageId, int version, Rope content) {
+		this(uri, languageId, version, content, DemoLineParser.INSTANCE, null, PositionEncoding.UTF_16);
+	}
+
+	TextDocument(String uri, String languageId, int version, Rope content, LineParser parser, ArtifactBudget artifacts,
+			PositionEncoding encoding) {
+		this(uri, languageId, version, content, parser, artifacts, encoding, null, null);
+	}
+
+	private TextDocument(String uri, String languageId, int version, Rope content, LineParser parser, ArtifactBudget artifacts,
+			PositionEncoding encoding, SyntaxTree previousTree, List<LineEdit> editsSincePreviousTree) {
+		this.uri = uri;
+		this.languageId = languageId;
+		this.version = version;
+		this.content = content;
+		this.parser = parser;
+		this.artifacts = artifacts;
+		this.encoding = encoding;
+		this.previousTree = previousTree;
+		this.editsSincePreviousTree = editsSincePreviousTree;
+	}
+
+	/**
+	 * Applies the content changes of a didChange notification, in the order they have been sent.
+	 * A change without range replaces the whole content.
+	 *
+	 * @param newVersion	the version of the document after all the changes
+	 * @param changes	the content changes
+	 * @return the new version of the document
+	 */
+	public TextDocument applyChanges(int newVersion, List<TextDocumentContentChangeEvent> changes) {
+		return applyChanges(newVersion, changes, DocumentStore.NEVER_OFF_HEAP);
+	}
+
+	/**
+	 * Same as {@link #applyChanges(int, List)}, a change replacing the whole content with at least as many characters
+	 * as the threshold is stored off-heap.
+	 */
+	public TextDocument applyChanges(int newVersion, List<TextDocumentContentChangeEvent> changes, int offHeapThreshold) {
+		Rope newContent = content;
+		List<LineEdit> edits;
+		SyntaxTree baseTree;
+		synchronized (this) {
+			baseTree = syntaxTree != null ? syntaxTree : previousTree;
+			edits = syntaxTree != null || editsSincePreviousTree == null ? new ArrayList<>() : new ArrayList<>(editsSincePreviousTree);
+		}
+		for (TextDocumentContentChangeEvent change : changes) {
+			Range range = change.getRange();
+			if (range == null) {
+				newContent = contentOf(change.getText(), offHeapThreshold);
+				baseTree = null;
+			} else {
+				int start = encoding.offsetAt(newContent, range.getStart());
+				int end = Math.max(start, encoding.offsetAt(newContent, range.getEnd()));
+				edits.add(new LineEdit(newContent.lineOfOffset(start), newContent.lineOfOffset(end), lineBreaks(change.getText())));
+				newContent = newContent.replace(start, end, change.getText());
+			}
+		}
+		if (baseTree == null || edits.size() > MAX_PENDING_EDITS) {
+			return new TextDocument(uri, languageId, newVersion, newContent, parser, artifacts, encoding, null, null);
+		}
+		return new TextDocument(uri, languageId, newVersion, newContent, parser, artifacts, encoding, baseTree, Collections.unmodifiableList(edits));
+	}
+
+	/**
+	 * @return the text stored off-heap when it has at least as many characters as the threshold, on the heap otherwise
+	 */
+	static Rope contentOf(String text, int offHeapThreshold) {
+		return text.length() >= offHeapThreshold ? Rope.offHeap(text) : Rope.of(text);
+	}
+
+	private static int lineBreaks(String text) {
+		int count = 0;
+		for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the syntax tree of this version, parsed incrementally from the latest tree parsed before it when possible
+	 */
+	public SyntaxTree getSyntaxTree() {
+		SyntaxTree tree;
+		boolean parsed = false;
+		synchronized (this) {
+			if (syntaxTree == null) {
+				syntaxTree = previousTree != null ? previousTree.reparse(content, editsSincePreviousTree) : SyntaxTree.parse(content, parser);
+				previousTree = null;
+				editsSincePreviousTree = null;
+				parsed = true;
+			}
+			tree = syntaxTree;
+		}
+		if (artifacts != null) {
+			if (parsed) {
+				artifacts.add(uri, SYNTAX_TREE_ARTIFACT, tree.estimatedMemory(), () -> releaseSyntaxTree(tree));
+			} else {
+				artifacts.touch(uri, SYNTAX_TREE_ARTIFACT);
+			}
+		}
+		return tree;
+	}
+
+	private synchronized void releaseSyntaxTree(SyntaxTree tree) {
+		if (syntaxTree == tree) {
+			syntaxTree = null;
+		}
+	}
+
+	/**
+	 * @return where the analysis artifacts computed from this document are accounted, null if it is not opened in a store
+	 */
+	public ArtifactBudget getArtifactBudget() {
+		return artifacts;
+	}
+
+	/**
+	 * @param position	a position in the encoding negotiated with the client
+	 * @return the offset corresponding to the position, clamped to the document and line bounds
+	 */
+	public int offsetAt(Position position) {
+		return encoding.offsetAt(content, position);
+	}
+
+	/**
+	 * @return the position of the offset in the encoding negotiated with the client
+	 */
+	public Position positionAt(int offset) {
+		return encoding.positionAt(content, offset);
+	}
+
+	/**
+	 * @return the position received from the client with a UTF-16 character, as used by the syntax tree
+	 */
+	public Position toUtf16(Position position) {
+		return encoding.toUtf16(content, position);
+	}
+
+	/**
+	 * @return the range computed with UTF-16 characters in the encoding negotiated with the client
+	 */
+	public Range fromUtf16(Range range) {
+		return encoding.fromUtf16(content, range);
+	}
+
+	public PositionEncoding getPositionEncoding() {
+		return encoding;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public String getLanguageId() {
+		return languageId;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public Rope getContent() {
+		return content;
+	}
+
+	/**
+	 * Materializes the whole content, prefer {@link #getContent()} on large documents.
+	 */
+	public String getText() {
+		return content.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "TextDocument [uri=" + uri + ", version=" + version + ", length=" + content.length() + "]";
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import com.github.mylanguageserver.syntax.LineNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+/**
+ * Reports the lines which are not valid declarations, the unbalanced braces, the properties without value
+ * and the properties declared twice in the same section.
+ */
+public final class DiagnosticsProvider {
+
+	public static final String SOURCE = "demo";
+	static final int MAX_DIAGNOSTICS = 1000;
+	private static final int LINES_BETWEEN_CANCEL_CHECKS = 1024;
+
+	private DiagnosticsProvider() {
+	}
+
+	public static List<Diagnostic> compute(SyntaxTree tree, CancelChecker cancelChecker) {
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		Deque<Set<String>> sectionProperties = new ArrayDeque<>();
+		Deque<Integer> openSections = new ArrayDeque<>();
+		sectionProperties.push(new HashSet<>());
+		for (int line = 0; line < tree.getLineCount() && diagnostics.size() < MAX_DIAGNOSTICS; line++) {
+			if (line % LINES_BETWEEN_CANCEL_CHECKS == 0) {
+				cancelChecker.checkCanceled();
+			}
+			LineNode node = tree.getLine(line);
+			switch (node.getKind()) {
+			case INVALID:
+				diagnostics.add(diagnostic(lineRange(line, node), "Expected `name = value`, `name {` or `}`", DiagnosticSeverity.Error));
+				break;
+			case PROPERTY:
+				Range name = tree.getToken(line, 0).getRange();
+				if (node.getTokenCount() == 2) {
+					diagnostics.add(diagnostic(lineRange(line, node), "Missing value", DiagnosticSeverity.Error));
+				}
+				String property = tree.getText(tree.getToken(line, 0));
+				if (!sectionProperties.peek().add(property)) {
+					diagnostics.add(diagnostic(name, "Duplicate property `" + property + "`", DiagnosticSeverity.Warning));
+				}
+				break;
+			case SECTION_START:
+				openSections.push(line);
+				sectionProperties.push(new HashSet<>());
+				break;
+			case SECTION_END:
+				if (openSections.isEmpty()) {
+					diagnostics.add(diagnostic(tree.getToken(line, 0).getRange(), "Unexpected `}`", DiagnosticSeverity.Error));
+				} else {
+					openSections.pop();
+					sectionProperties.pop();
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		while (!openSections.isEmpty() && diagnostics.size() < MAX_DIAGNOSTICS) {
+			int line = openSections.pop();
+			diagnostics.add(diagnostic(tree.getToken(line, 0).getRange(),
+					"Section `" + tree.getText(tree.getToken(line, 0)) + "` is not closed", DiagnosticSeverity.Error));
+		}
+		return diagnostics;
+	}
+
+	private static Range lineRange(int line, LineNode node) {
+		int last = node.getTokenCount() - 1;
+		return new Range(new Position(line, node.getTokenStart(0)), new Position(line, node.getTokenEnd(last)));
+	}
+
+	private static Diagnostic diagnostic(Range range, String message, DiagnosticSeverity severity) {
+		return new Diagnostic(range, message, severity, SOURCE);
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.lsp4j.FormattingOptions;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import com.github.mylanguageserver.syntax.LineKind;
+import com.github.mylanguageserver.syntax.LineNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+import com.github.mylanguageserver.syntax.TokenKind;
+
+/**
+ * Formats the lines of a syntax tree: lines are indented by the depth of their section, a single space surrounds
+ * the `=` of properties and precedes the `{` of sections, and trailing whitespace is trimmed when the client asks for it.
+ *
+ * Only the whitespace which differs from the expected one is replaced, so a formatted document gets no edit and an edit
+ * never spans more than a line, whatever the size of the document. Positions are in UTF-16 characters.
+ */
+public final class DocumentFormatter {
+
+	private static final int DEFAULT_TAB_SIZE = 4;
+
+	private DocumentFormatter() {
+	}
+
+	public static List<TextEdit> format(SyntaxTree tree, FormattingOptions options, CancelChecker cancelChecker) {
+		return format(tree, options, 0, tree.getLineCount() - 1, cancelChecker);
+	}
+
+	/**
+	 * Formats a range of lines, their depth is computed from the kinds of the lines before them.
+	 *
+	 * @param startLine	the first line to format
+	 * @param endLine	the last line to format, included
+	 */
+	public static List<TextEdit> format(SyntaxTree tree, FormattingOptions options, int startLine, int endLine, CancelChecker cancelChecker) {
+		String indentUnit = indentUnit(options);
+		List<TextEdit> edits = new ArrayList<>();
+		int lastLine = Math.min(endLine, tree.getLineCount() - 1);
+		int depth = 0;
+		for (int line = 0; line <= lastLine; line++) {
+			if ((line & 0x3FF) == 0) {
+				cancelChecker.checkCanceled();
+			}
+			LineKind kind = tree.getLine(line).getKind();
+			if (kind == LineKind.SECTION_END) {
+				depth = Math.max(0, depth - 1);
+			}
+			if (line >= startLine) {
+				formatLine(tree, line, depth, indentUnit, options.isTrimTrailingWhitespace(), false, edits);
+			}
+			if (kind == LineKind.SECTION_START) {
+				depth++;
+			}
+		}
+		return edits;
+	}
+
+	/**
+	 * Formats the lines affected by a typed character: after a new line, the previous line is formatted and the new one
+	 * indented, after a `}` its line is dedented. The depth is deduced from the indentation of the previous non blank line,
+	 * so that the cost does not depend on the size of the document.
+	 *
+	 * @param position	the position of the cursor once the character is typed
+	 * @param character	the typed character
+	 */
+	public static List<TextEdit> formatOnType(SyntaxTree tree, FormattingOptions options, Position position, String character) {
+		List<TextEdit> edits = new ArrayList<>();
+		int line = position.getLine();
+		if (line < 0 || line >= tree.getLineCount()) {
+			return edits;
+		}
+		String indentUnit = indentUnit(options);
+		int tabSize = tabSize(options);
+		if ("\n".equals(character) && line > 0) {
+			int previousDepth = depthFromPreviousLine(tree, line - 1, tabSize);
+			formatLine(tree, line - 1, previousDepth, indentUnit, options.isTrimTrailingWhitespace(), false, edits);
+			int depth = previousDepth + (tree.getLine(line - 1).getKind() == LineKind.SECTION_START ? 1 : 0)
+					- (tree.getLine(line).getKind() == LineKind.SECTION_END ? 1 : 0);
+			formatLine(tree, line, Math.max(0, depth), indentUnit, options.isTrimTrailingWhitespace(), true, edits);
+		} else if ("}".equals(character) && tree.getLine(line).getKind() == LineKind.SECTION_END) {
+			formatLine(tree, line, depthFromPreviousLine(tree, line, tabSize), indentUnit, options.isTrimTrailingWhitespace(), false, edits);
+		}
+		return edits;
+	}
+
+	/**
+	 * @return the depth of a line deduced from the indentation and the kind of the previous non blank line
+	 */
+	private static int depthFromPreviousLine(SyntaxTree tree, int line, int tabSize) {
+		int previous = line - 1;
+		while (previous >= 0 && tree.getLine(previous).getTokenCount() == 0) {
+			previous--;
+		}
+		if (previous < 0) {
+			return 0;
+		}
+		LineNode node = tree.getLine(previous);
+		String indentation = tree.getText(previous, 0, node.getTokenStart(0));
+		int columns = 0;
+		for (int i = 0; i < indentation.length(); i++) {
+			columns = indentation.charAt(i) == '\t' ? (columns / tabSize + 1) * tabSize : columns + 1;
+		}
+		int depth = columns / tabSize + (node.getKind() == LineKind.SECTION_START ? 1 : 0)
+				- (tree.getLine(line).getKind() == LineKind.SECTION_END ? 1 : 0);
+		return Math.max(0, depth);
+	}
+
+	/**
+	 * @param indentBlank	whether a blank line gets the indentation, for the line where the cursor is after a new line
+	 */
+	private static void formatLine(SyntaxTree tree, int line, int depth, String indentUnit, boolean trimTrailingWhitespace,
+			boolean indentBlank, List<TextEdit> edits) {
+		LineNode node = tree.getLine(line);
+		int length = tree.getLineLength(line);
+		StringBuilder indentation = new StringBuilder(depth * indentUnit.length());
+		for (int i = 0; i < depth; i++) {
+			indentation.append(indentUnit);
+		}
+		if (node.getTokenCount() == 0) {
+			if (indentBlank) {
+				replace(tree, line, 0, length, indentation.toString(), edits);
+			} else if (trimTrailingWhitespace) {
+				replace(tree, line, 0, length, "", edits);
+			}
+			return;
+		}
+		replace(tree, line, 0, node.getTokenStart(0), indentation.toString(), edits);
+		if (node.getKind() == LineKind.PROPERTY || node.getKind() == LineKind.SECTION_START) {
+			replace(tree, line, node.getTokenEnd(0), node.getTokenStart(1), " ", edits);
+		}
+		if (node.getKind() == LineKind.PROPERTY && node.getTokenCount() > 2 && node.getTokenKind(2) != TokenKind.OPERATOR) {
+			replace(tree, line, node.getTokenEnd(1), node.getTokenStart(2), " ", edits);
+		}
+		int lastTokenEnd = node.getTokenEnd(node.getTokenCount() - 1);
+		if (trimTrailingWhitespace && lastTokenEnd < length) {
+			replace(tree, line, lastTokenEnd, length, "", edits);
+		}
+	}
+
+	/**
+	 * Adds an edit replacing the characters between two columns of a line, unless they already are the expected text.
+	 */
+	private static void replace(SyntaxTree tree, int line, int start, int end, String expected, List<TextEdit> edits) {
+		if (end - start != expected.length() || !tree.getText(line, start, end).equals(expected)) {
+			edits.add(new TextEdit(new Range(new Position(line, start), new Position(line, end)), expected));
+		}
+	}
+
+	private static String indentUnit(FormattingOptions options) {
+		if (!options.isInsertSpaces()) {
+			return "\t";
+		}
+		StringBuilder spaces = new StringBuilder();
+		for (int i = 0; i < tabSize(options); i++) {
+			spaces.append(' ');
+		}
+		return spaces.toString();
+	}
+
+	private static int tabSize(FormattingOptions options) {
+		return options.getTabSize() > 0 ? options.getTabSize() : DEFAULT_TAB_SIZE;
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.DocumentHighlight;
+import org.eclipse.lsp4j.DocumentHighlightKind;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import com.github.mylanguageserver.syntax.LineNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+import com.github.mylanguageserver.syntax.Token;
+import com.github.mylanguageserver.syntax.TokenKind;
+
+/**
+ * Highlights the occurrences of the identifier at the cursor, its declarations as writes and the other ones as reads.
+ */
+public final class DocumentHighlightProvider {
+
+	private static final int LINES_BETWEEN_CANCEL_CHECKS = 1024;
+
+	private DocumentHighlightProvider() {
+	}
+
+	public static List<DocumentHighlight> compute(SyntaxTree tree, Position position, CancelChecker cancelChecker) {
+		Token target = tree.tokenAt(position);
+		if (target == null || target.getKind() != TokenKind.IDENTIFIER) {
+			return Collections.emptyList();
+		}
+		String name = tree.getText(target);
+		List<DocumentHighlight> highlights = new ArrayList<>();
+		for (int line = 0; line < tree.getLineCount(); line++) {
+			if (line % LINES_BETWEEN_CANCEL_CHECKS == 0) {
+				cancelChecker.checkCanceled();
+			}
+			LineNode node = tree.getLine(line);
+			for (int i = 0; i < node.getTokenCount(); i++) {
+				if (node.getTokenKind(i) == TokenKind.IDENTIFIER && tree.hasText(line, i, name)) {
+					DocumentHighlightKind kind = i == node.getNameToken() ? DocumentHighlightKind.Write : DocumentHighlightKind.Read;
+					highlights.add(new DocumentHighlight(tree.getToken(line, i).getRange(), kind));
+				}
+			}
+		}
+		return highlights;
+	}
+}
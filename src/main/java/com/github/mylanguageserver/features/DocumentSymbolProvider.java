@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.SymbolKind;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import com.github.mylanguageserver.syntax.SyntaxNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+/**
+ * The outline of a document: its sections and properties, nested as in the document.
+ */
+public final class DocumentSymbolProvider {
+
+	private DocumentSymbolProvider() {
+	}
+
+	public static List<DocumentSymbol> compute(SyntaxTree tree, CancelChecker cancelChecker) {
+		return toSymbols(tree.getRoot().getChildren(), cancelChecker);
+	}
+
+	private static List<DocumentSymbol> toSymbols(List<SyntaxNode> nodes, CancelChecker cancelChecker) {
+		cancelChecker.checkCanceled();
+		List<DocumentSymbol> symbols = new ArrayList<>(nodes.size());
+		for (SyntaxNode node : nodes) {
+			SymbolKind kind = node.getKind() == SyntaxNode.Kind.SECTION ? SymbolKind.Namespace : SymbolKind.Property;
+			DocumentSymbol symbol = new DocumentSymbol(node.getName(), kind, node.getRange(), node.getSelectionRange());
+			if (!node.getChildren().isEmpty()) {
+				symbol.setChildren(toSymbols(node.getChildren(), cancelChecker));
+			}
+			symbols.add(symbol);
+		}
+		return symbols;
+	}
+}
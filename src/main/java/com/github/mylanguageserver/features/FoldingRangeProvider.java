@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.lsp4j.FoldingRange;
+import org.eclipse.lsp4j.FoldingRangeKind;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import com.github.mylanguageserver.syntax.LineKind;
+import com.github.mylanguageserver.syntax.SyntaxNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+/**
+ * Folds the sections, keeping their closing brace visible, and the blocks of consecutive comment lines.
+ */
+public final class FoldingRangeProvider {
+
+	private FoldingRangeProvider() {
+	}
+
+	public static List<FoldingRange> compute(SyntaxTree tree, CancelChecker cancelChecker) {
+		List<FoldingRange> ranges = new ArrayList<>();
+		addSections(tree, tree.getRoot(), ranges, cancelChecker);
+		int commentStart = -1;
+		for (int line = 0; line <= tree.getLineCount(); line++) {
+			boolean comment = line < tree.getLineCount() && tree.getLine(line).getKind() == LineKind.COMMENT;
+			if (comment && commentStart == -1) {
+				commentStart = line;
+			} else if (!comment && commentStart != -1) {
+				if (line - 1 > commentStart) {
+					FoldingRange range = new FoldingRange(commentStart, line - 1);
+					range.setKind(FoldingRangeKind.Comment);
+					ranges.add(range);
+				}
+				commentStart = -1;
+			}
+		}
+		return ranges;
+	}
+
+	private static void addSections(SyntaxTree tree, SyntaxNode parent, List<FoldingRange> ranges, CancelChecker cancelChecker) {
+		cancelChecker.checkCanceled();
+		for (SyntaxNode node : parent.getChildren()) {
+			if (node.getKind() != SyntaxNode.Kind.SECTION) {
+				continue;
+			}
+			boolean closed = tree.getLine(node.getEndLine()).getKind() == LineKind.SECTION_END;
+			int endLine = closed ? node.getEndLine() - 1 : node.getEndLine();
+			if (endLine > node.getLine()) {
+				FoldingRange range = new FoldingRange(node.getLine(), endLine);
+				range.setKind(FoldingRangeKind.Region);
+				ranges.add(range);
+			}
+			addSections(tree, node, ranges, cancelChecker);
+		}
+	}
+}
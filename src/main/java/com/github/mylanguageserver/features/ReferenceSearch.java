@@ -0,0 +1,310 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.PositionEncoding;
+import com.github.mylanguageserver.document.Rope;
+import com.github.mylanguageserver.document.TextDocument;
+import com.github.mylanguageserver.index.OpenDocumentsIndex;
+import com.github.mylanguageserver.index.Occurrences;
+import com.github.mylanguageserver.index.ReferenceIndex;
+import com.github.mylanguageserver.index.WorkspaceIndexer;
+import com.github.mylanguageserver.syntax.DemoLineParser;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+import com.github.mylanguageserver.syntax.Token;
+import com.github.mylanguageserver.syntax.TokenKind;
+import com.github.mylanguageserver.workspace.WorkspaceContext;
+
+/**
+ * Finds the references of a name in the opened documents and the workspace files, and renames them.
+ *
+ * References are read from the {@link ReferenceIndex} of the workspace and the {@link OpenDocumentsIndex} of the session,
+ * so only the files where the name occurs are visited. A rename reads these files again in parallel on a fork-join pool,
+ * so that its edits are computed from their current content even when the index lags behind.
+ */
+public class ReferenceSearch {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceSearch.class);
+
+	/** The references of that many files are sent together when they are streamed. */
+	static final int FILES_PER_PARTIAL_RESULT = 64;
+
+	private final DocumentStore documents;
+	private final OpenDocumentsIndex openDocumentsIndex;
+	private final Supplier<WorkspaceContext> workspace;
+
+	/**
+	 * Receives the number of files searched so far, from any thread.
+	 */
+	@FunctionalInterface
+	public interface FileProgress {
+
+		FileProgress NONE = (searchedFiles, totalFiles) -> {};
+
+		void searched(int searchedFiles, int totalFiles);
+	}
+
+	/**
+	 * @param documents	the documents opened in the session
+	 * @param openDocumentsIndex	the index of the opened documents of the session
+	 * @param workspace	the data shared with the other sessions of the workspace, null until initialization
+	 */
+	public ReferenceSearch(DocumentStore documents, OpenDocumentsIndex openDocumentsIndex, Supplier<WorkspaceContext> workspace) {
+		this.documents = documents;
+		this.openDocumentsIndex = openDocumentsIndex;
+		this.workspace = workspace;
+	}
+
+	/**
+	 * @param position	a position in the encoding negotiated with the client
+	 * @return the identifier at the position, or null if there is none
+	 */
+	public static String nameAt(TextDocument document, Position position) {
+		SyntaxTree tree = document.getSyntaxTree();
+		Token token = tree.tokenAt(document.toUtf16(position));
+		return token != null && token.getKind() == TokenKind.IDENTIFIER ? tree.getText(token) : null;
+	}
+
+	/**
+	 * @return true if the name can replace an identifier
+	 */
+	public static boolean isValidName(String name) {
+		if (name == null || name.isEmpty() || !DemoLineParser.isIdentifierStart(name.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < name.length(); i++) {
+			if (!DemoLineParser.isIdentifierPart(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the occurrences of a name, the ones of the opened documents first, then the ones of the workspace files
+	 * by batches of {@value #FILES_PER_PARTIAL_RESULT} files. The workspace files which are not opened are only read
+	 * to convert their locations when the client did not negotiate UTF-16 positions.
+	 *
+	 * @param includeDeclarations	whether the occurrences declaring the name are included
+	 * @param partialResults	receives the locations as they are found, never with an empty list
+	 * @param progress	receives the number of files searched after each batch
+	 */
+	public void findReferences(String name, boolean includeDeclarations, Consumer<List<Location>> partialResults, FileProgress progress,
+			CancelChecker cancelChecker) {
+		Set<String> openedUris = openDocumentsIndex.updateReferences(documents.getAll());
+		Map<String, Occurrences> openedFiles = openDocumentsIndex.getFilesWithName(name);
+		WorkspaceContext context = workspace.get();
+		Map<String, Occurrences> workspaceFiles = context != null
+				? context.getReferenceIndex().getFilesWithName(name, openedUris::contains)
+				: Collections.<String, Occurrences>emptyMap();
+		int totalFiles = openedFiles.size() + workspaceFiles.size();
+		List<Location> locations = new ArrayList<>();
+		for (Map.Entry<String, Occurrences> file : openedFiles.entrySet()) {
+			TextDocument snapshot = openDocumentsIndex.getReferencedSnapshot(file.getKey());
+			for (Range range : file.getValue().getRanges(name, includeDeclarations)) {
+				locations.add(new Location(file.getKey(), snapshot != null ? snapshot.fromUtf16(range) : range));
+			}
+		}
+		locations = flush(locations, partialResults);
+		int fileCount = openedFiles.size();
+		progress.searched(fileCount, totalFiles);
+		PositionEncoding encoding = documents.getPositionEncoding();
+		for (Map.Entry<String, Occurrences> file : workspaceFiles.entrySet()) {
+			List<Range> ranges = context.fromUtf16(file.getKey(), file.getValue().getRanges(name, includeDeclarations), encoding);
+			if (ranges != null) {
+				for (Range range : ranges) {
+					locations.add(new Location(file.getKey(), range));
+				}
+			}
+			if (++fileCount % FILES_PER_PARTIAL_RESULT == 0) {
+				cancelChecker.checkCanceled();
+				locations = flush(locations, partialResults);
+				progress.searched(fileCount, totalFiles);
+			}
+		}
+		flush(locations, partialResults);
+		progress.searched(totalFiles, totalFiles);
+	}
+
+	private static List<Location> flush(List<Location> locations, Consumer<List<Location>> partialResults) {
+		if (locations.isEmpty()) {
+			return locations;
+		}
+		partialResults.accept(locations);
+		return new ArrayList<>();
+	}
+
+	/**
+	 * Replaces all the occurrences of a name in the opened documents and the workspace files.
+	 *
+	 * @param progress	receives the number of files read after each one
+	 * @return the edits of each file, by URI in alphabetical order
+	 */
+	public WorkspaceEdit rename(String name, String newName, FileProgress progress, CancelChecker cancelChecker) {
+		Set<String> openedUris = openDocumentsIndex.updateReferences(documents.getAll());
+		List<String> files = new ArrayList<>(openDocumentsIndex.getFilesWithName(name).keySet());
+		int openedFileCount = files.size();
+		WorkspaceContext context = workspace.get();
+		if (context != null) {
+			files.addAll(context.getReferenceIndex().getFilesWithName(name, openedUris::contains).keySet());
+		}
+		ConcurrentMap<String, List<TextEdit>> changes = new ConcurrentHashMap<>();
+		RenameContext rename = new RenameContext(files, openedFileCount, name, newName, context, changes, progress, cancelChecker);
+		RenamePoolHolder.POOL.invoke(new RenameTask(rename, 0, files.size()));
+		return new WorkspaceEdit(new TreeMap<>(changes));
+	}
+
+	/**
+	 * @return the edits replacing the name in the current content of an opened document or a workspace file
+	 */
+	private List<TextEdit> renameIn(String uri, boolean opened, String name, String newName, WorkspaceContext context) {
+		if (opened) {
+			TextDocument document = documents.get(uri);
+			if (document == null) {
+				return Collections.emptyList();
+			}
+			List<TextEdit> edits = new ArrayList<>();
+			for (Range range : Occurrences.extract(document.getSyntaxTree()).getRanges(name, true)) {
+				edits.add(new TextEdit(document.fromUtf16(range), newName));
+			}
+			return edits;
+		}
+		Path file = WorkspaceIndexer.pathOf(uri);
+		if (file == null || context == null) {
+			return Collections.emptyList();
+		}
+		Rope content;
+		try {
+			content = context.getFileContents().read(file);
+		} catch (NoSuchFileException e) {
+			return Collections.emptyList();
+		} catch (IOException e) {
+			LOGGER.warn("Cannot read " + file + " to rename " + name, e);
+			return Collections.emptyList();
+		}
+		PositionEncoding encoding = documents.getPositionEncoding();
+		List<TextEdit> edits = new ArrayList<>();
+		for (Range range : Occurrences.extract(content.toString()).getRanges(name, true)) {
+			edits.add(new TextEdit(encoding.fromUtf16(content, range), newName));
+		}
+		return edits;
+	}
+
+	/**
+	 * The state shared by the tasks of a rename.
+	 */
+	private static final class RenameContext {
+
+		private final List<String> files;
+		private final int openedFileCount;
+		private final String name;
+		private final String newName;
+		private final WorkspaceContext workspace;
+		private final ConcurrentMap<String, List<TextEdit>> changes;
+		private final FileProgress progress;
+		private final CancelChecker cancelChecker;
+		private final AtomicInteger renamedFiles = new AtomicInteger();
+
+		RenameContext(List<String> files, int openedFileCount, String name, String newName, WorkspaceContext workspace,
+				ConcurrentMap<String, List<TextEdit>> changes, FileProgress progress, CancelChecker cancelChecker) {
+			this.files = files;
+			this.openedFileCount = openedFileCount;
+			this.name = name;
+			this.newName = newName;
+			this.workspace = workspace;
+			this.changes = changes;
+			this.progress = progress;
+			this.cancelChecker = cancelChecker;
+		}
+	}
+
+	/**
+	 * Computes the edits of a range of files, splitting it in halves down to single files.
+	 */
+	private final class RenameTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient RenameContext rename;
+		private final int from;
+		private final int to;
+
+		RenameTask(RenameContext rename, int from, int to) {
+			this.rename = rename;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RenameTask(rename, from, middle), new RenameTask(rename, middle, to));
+				return;
+			}
+			if (from == to) {
+				return;
+			}
+			rename.cancelChecker.checkCanceled();
+			String uri = rename.files.get(from);
+			List<TextEdit> edits = renameIn(uri, from < rename.openedFileCount, rename.name, rename.newName, rename.workspace);
+			if (!edits.isEmpty()) {
+				rename.changes.put(uri, edits);
+			}
+			rename.progress.searched(rename.renamedFiles.incrementAndGet(), rename.files.size());
+		}
+	}
+
+	private static final class RenamePoolHolder {
+
+		private static final AtomicInteger COUNT = new AtomicInteger();
+		private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("Rename " + COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, null, false);
+	}
+}
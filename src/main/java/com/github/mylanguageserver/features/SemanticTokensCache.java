@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensDelta;
+import org.eclipse.lsp4j.SemanticTokensEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+
+import com.github.mylanguageserver.document.ArtifactBudget;
+import com.github.mylanguageserver.document.TextDocument;
+
+/**
+ * The semantic tokens of the opened documents, computed once per version.
+ *
+ * The last result of each document is kept so that the next request only sends what changed since: the tokens before
+ * and after the edited lines encode the same way in both versions, so a single edit replacing the integers between
+ * the common prefix and the common suffix is enough.
+ */
+public class SemanticTokensCache {
+
+	private static final String SEMANTIC_TOKENS_ARTIFACT = "semantic tokens";
+
+	private final ConcurrentMap<String, Result> results = new ConcurrentHashMap<>();
+	private final AtomicLong lastResultId = new AtomicLong();
+
+	public SemanticTokens full(TextDocument document, CancelChecker cancelChecker) {
+		Result result = compute(document, cancelChecker);
+		return new SemanticTokens(result.id, SemanticTokensProvider.asList(result.data, 0, result.data.length));
+	}
+
+	/**
+	 * @param previousResultId	the result the client has, all the tokens are sent if it is not the last one computed
+	 */
+	public Either<SemanticTokens, SemanticTokensDelta> delta(TextDocument document, String previousResultId, CancelChecker cancelChecker) {
+		Result previous = results.get(document.getUri());
+		Result result = compute(document, cancelChecker);
+		if (previous == null || !previous.id.equals(previousResultId)) {
+			return Either.forLeft(new SemanticTokens(result.id, SemanticTokensProvider.asList(result.data, 0, result.data.length)));
+		}
+		return Either.forRight(new SemanticTokensDelta(diff(previous.data, result.data), result.id));
+	}
+
+	/**
+	 * Encodes the tokens of the lines of the range only, clients ask for the visible lines before the whole document.
+	 */
+	public SemanticTokens range(TextDocument document, Range range, CancelChecker cancelChecker) {
+		int[] data = SemanticTokensProvider.compute(document, range.getStart().getLine(), range.getEnd().getLine(), cancelChecker);
+		return new SemanticTokens(SemanticTokensProvider.asList(data, 0, data.length));
+	}
+
+	static List<SemanticTokensEdit> diff(int[] previous, int[] current) {
+		int prefix = 0;
+		int maxPrefix = Math.min(previous.length, current.length);
+		while (prefix < maxPrefix && previous[prefix] == current[prefix]) {
+			prefix++;
+		}
+		if (prefix == previous.length && prefix == current.length) {
+			return Collections.emptyList();
+		}
+		int suffix = 0;
+		int maxSuffix = maxPrefix - prefix;
+		while (suffix < maxSuffix && previous[previous.length - 1 - suffix] == current[current.length - 1 - suffix]) {
+			suffix++;
+		}
+		return Collections.singletonList(new SemanticTokensEdit(prefix, previous.length - prefix - suffix,
+				SemanticTokensProvider.asList(current, prefix, current.length - suffix)));
+	}
+
+	private Result compute(TextDocument document, CancelChecker cancelChecker) {
+		String uri = document.getUri();
+		ArtifactBudget artifacts = document.getArtifactBudget();
+		Result cached = results.get(uri);
+		if (cached != null && cached.document == document) {
+			if (artifacts != null) {
+				artifacts.touch(uri, SEMANTIC_TOKENS_ARTIFACT);
+			}
+			return cached;
+		}
+		int[] data = SemanticTokensProvider.compute(document, 0, Integer.MAX_VALUE, cancelChecker);
+		Result result = new Result(document, Long.toString(lastResultId.incrementAndGet()), data);
+		results.put(uri, result);
+		if (artifacts != null) {
+			artifacts.add(uri, SEMANTIC_TOKENS_ARTIFACT, 4L * data.length, () -> results.remove(uri, result));
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets the last result of a document, when it is closed.
+	 */
+	public void forget(String uri) {
+		results.remove(uri);
+	}
+
+	private static final class Result {
+		final TextDocument document;
+		final String id;
+		final int[] data;
+
+		Result(TextDocument document, String id, int[] data) {
+			this.document = document;
+			this.id = id;
+			this.data = data;
+		}
+	}
+}
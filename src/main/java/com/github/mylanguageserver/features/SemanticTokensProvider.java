@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.eclipse.lsp4j.SemanticTokenModifiers;
+import org.eclipse.lsp4j.SemanticTokenTypes;
+import org.eclipse.lsp4j.SemanticTokensLegend;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import com.github.mylanguageserver.document.PositionEncoding;
+import com.github.mylanguageserver.document.Rope;
+import com.github.mylanguageserver.document.TextDocument;
+import com.github.mylanguageserver.syntax.LineKind;
+import com.github.mylanguageserver.syntax.LineNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+/**
+ * Encodes the tokens of the syntax tree as semantic tokens: five integers per token, relative to the previous one.
+ *
+ * The declared names are properties or namespaces for sections, with the declaration modifier,
+ * the other tokens are classified by their lexical kind.
+ */
+public final class SemanticTokensProvider {
+
+	private static final List<String> TOKEN_TYPES = Collections.unmodifiableList(Arrays.asList(SemanticTokenTypes.Property,
+			SemanticTokenTypes.Namespace, SemanticTokenTypes.Variable, SemanticTokenTypes.Number, SemanticTokenTypes.String,
+			SemanticTokenTypes.Comment, SemanticTokenTypes.Operator));
+	private static final int PROPERTY = 0;
+	private static final int NAMESPACE = 1;
+	private static final int VARIABLE = 2;
+	private static final int NUMBER = 3;
+	private static final int STRING = 4;
+	private static final int COMMENT = 5;
+	private static final int OPERATOR = 6;
+
+	private static final List<String> TOKEN_MODIFIERS = Collections.singletonList(SemanticTokenModifiers.Declaration);
+	private static final int DECLARATION = 1;
+
+	private SemanticTokensProvider() {
+	}
+
+	public static SemanticTokensLegend createLegend() {
+		return new SemanticTokensLegend(TOKEN_TYPES, TOKEN_MODIFIERS);
+	}
+
+	/**
+	 * @param firstLine	the first line whose tokens are encoded
+	 * @param lastLine	the last line whose tokens are encoded, included
+	 * @return the encoded tokens, with the columns in the position encoding of the document
+	 */
+	public static int[] compute(TextDocument document, int firstLine, int lastLine, CancelChecker cancelChecker) {
+		SyntaxTree tree = document.getSyntaxTree();
+		Rope text = document.getContent();
+		boolean utf8 = document.getPositionEncoding() == PositionEncoding.UTF_8;
+		int first = Math.max(0, firstLine);
+		int last = Math.min(lastLine, tree.getLineCount() - 1);
+		int tokenCount = 0;
+		for (int line = first; line <= last; line++) {
+			tokenCount += tree.getLine(line).getTokenCount();
+		}
+		int[] data = new int[5 * tokenCount];
+		int index = 0;
+		int previousLine = 0;
+		int previousStart = 0;
+		for (int line = first; line <= last; line++) {
+			if ((line & 0x3FF) == 0) {
+				cancelChecker.checkCanceled();
+			}
+			LineNode node = tree.getLine(line);
+			int lineStart = utf8 && node.getTokenCount() > 0 ? text.lineStartOffset(line) : 0;
+			int lineUtf8Start = utf8 && node.getTokenCount() > 0 ? text.utf8Offset(lineStart) : 0;
+			for (int token = 0; token < node.getTokenCount(); token++) {
+				int start = node.getTokenStart(token);
+				int end = node.getTokenEnd(token);
+				if (utf8) {
+					start = text.utf8Offset(lineStart + start) - lineUtf8Start;
+					end = text.utf8Offset(lineStart + end) - lineUtf8Start;
+				}
+				data[index++] = line - previousLine;
+				data[index++] = line == previousLine ? start - previousStart : start;
+				data[index++] = end - start;
+				data[index++] = type(node, token);
+				data[index++] = token == node.getNameToken() ? DECLARATION : 0;
+				previousLine = line;
+				previousStart = start;
+			}
+		}
+		return data;
+	}
+
+	private static int type(LineNode node, int token) {
+		if (token == node.getNameToken()) {
+			return node.getKind() == LineKind.SECTION_START ? NAMESPACE : PROPERTY;
+		}
+		switch (node.getTokenKind(token)) {
+		case NUMBER:
+			return NUMBER;
+		case STRING:
+			return STRING;
+		case COMMENT:
+			return COMMENT;
+		case OPERATOR:
+			return OPERATOR;
+		default:
+			return VARIABLE;
+		}
+	}
+
+	/**
+	 * @return a read-only view of a part of the array, so that large results are not copied into a list of boxed integers
+	 */
+	static List<Integer> asList(int[] data, int from, int to) {
+		return new IntArrayView(data, from, to);
+	}
+
+	private static final class IntArrayView extends AbstractList<Integer> implements RandomAccess {
+
+		private final int[] data;
+		private final int from;
+		private final int to;
+
+		IntArrayView(int[] data, int from, int to) {
+			this.data = data;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Integer get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index " + index + " out of " + size());
+			}
+			return data[from + index];
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+/**
+ * Scores how well a symbol name matches a query typed by the user.
+ *
+ * The characters of the query must appear in the name in the same order, ignoring case and separators.
+ * Matches on the start of the segments of the name (`getUserName`, `get_user_name`) and consecutive
+ * matches score higher, so that `gUN` or `getun` rank `getUserName` first.
+ *
+ * A matcher reuses its buffers from one name to the other, it must not be shared between threads.
+ */
+public class FuzzyMatcher {
+
+	public static final int NO_MATCH = Integer.MIN_VALUE;
+
+	private static final int UNREACHABLE = -1_000_000;
+	private static final int SEGMENT_START_BONUS = 10;
+	private static final int NAME_START_BONUS = 15;
+	private static final int CONSECUTIVE_BONUS = 10;
+	private static final int GAP_PENALTY = 3;
+	private static final int MAX_LEADING_PENALTY = 5;
+	private static final int EXACT_MATCH_BONUS = 100;
+
+	private final String query;
+	private final char[] pattern;
+	private char[] lowerCase = new char[0];
+	private int[] bonuses = new int[0];
+	private int[] previous = new int[0];
+	private int[] current = new int[0];
+
+	public FuzzyMatcher(String query) {
+		this.query = query;
+		this.pattern = normalize(query).toCharArray();
+	}
+
+	/**
+	 * @return the query lower-cased, without the characters which are not letters or digits
+	 */
+	static String normalize(String text) {
+		StringBuilder normalized = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				normalized.append(Character.toLowerCase(c));
+			}
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * @return the score of the name, higher is better, or {@link #NO_MATCH}
+	 */
+	public int score(String name) {
+		int m = pattern.length;
+		int n = name.length();
+		if (m == 0) {
+			return 0;
+		}
+		if (m > n) {
+			return NO_MATCH;
+		}
+		if (previous.length < n) {
+			int capacity = Math.max(n, 2 * previous.length);
+			lowerCase = new char[capacity];
+			bonuses = new int[capacity];
+			previous = new int[capacity];
+			current = new int[capacity];
+		}
+		for (int j = 0; j < n; j++) {
+			lowerCase[j] = Character.toLowerCase(name.charAt(j));
+			bonuses[j] = 1 + (isSegmentStart(name, j) ? SEGMENT_START_BONUS : 0);
+		}
+		// previous[j]: best score with the previous query character matched at j
+		int[] previous = this.previous;
+		int[] current = this.current;
+		for (int i = 0; i < m; i++) {
+			int bestBeforeGap = UNREACHABLE;
+			for (int j = 0; j < n; j++) {
+				if (i > 0 && j >= 2) {
+					bestBeforeGap = Math.max(bestBeforeGap, previous[j - 2]);
+				}
+				if (lowerCase[j] != pattern[i]) {
+					current[j] = UNREACHABLE;
+					continue;
+				}
+				int bonus = bonuses[j];
+				if (i == 0) {
+					current[j] = bonus + (j == 0 ? NAME_START_BONUS : -Math.min(j, MAX_LEADING_PENALTY));
+				} else {
+					int best = Math.max(j > 0 && previous[j - 1] > UNREACHABLE ? previous[j - 1] + CONSECUTIVE_BONUS : UNREACHABLE,
+							bestBeforeGap > UNREACHABLE ? bestBeforeGap - GAP_PENALTY : UNREACHABLE);
+					current[j] = best > UNREACHABLE ? best + bonus : UNREACHABLE;
+				}
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		int best = UNREACHABLE;
+		for (int j = 0; j < n; j++) {
+			best = Math.max(best, previous[j]);
+		}
+		if (best <= UNREACHABLE) {
+			return NO_MATCH;
+		}
+		return best - (n - m) / 2 + (name.equalsIgnoreCase(query) ? EXACT_MATCH_BONUS : 0);
+	}
+
+	/**
+	 * @return true if the character starts a segment of the name: first character, upper case in a camel case name,
+	 * letter or digit after a separator, digits after letters
+	 */
+	static boolean isSegmentStart(String name, int index) {
+		char c = name.charAt(index);
+		if (!Character.isLetterOrDigit(c)) {
+			return false;
+		}
+		if (index == 0) {
+			return true;
+		}
+		char previous = name.charAt(index - 1);
+		if (!Character.isLetterOrDigit(previous)) {
+			return true;
+		}
+		if (Character.isDigit(c) != Character.isDigit(previous)) {
+			return true;
+		}
+		if (Character.isUpperCase(c)) {
+			// the last upper case of a sequence starts a segment when followed by lower case: HTTPServer
+			return !Character.isUpperCase(previous)
+					|| index + 1 < name.length() && Character.isLowerCase(name.charAt(index + 1));
+		}
+		return false;
+	}
+}
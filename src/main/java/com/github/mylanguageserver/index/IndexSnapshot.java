@@ -0,0 +1,309 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.eclipse.lsp4j.SymbolKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Symbols and identifier occurrences of the workspace files saved by a previous session, so that only the files changed since are analyzed again.
+ *
+ * The snapshot file is read in a single buffer and only the table of its files is decoded upfront, the symbols
+ * of a file are decoded when the file is indexed. A snapshot with another format version or a wrong checksum is ignored.
+ *
+ * Format, big-endian:
+ * <pre>
+ * int magic, int format version, int file count
+ * per file: int entry length, string path, long last modified, long size, long content checksum, int symbol count
+ *           per symbol: string name, byte kind, int line, int start character, int end character
+ *           int name count, per name in alphabetical order: string name, int occurrence count, long packed occurrences
+ * int CRC32 of all the previous bytes
+ * </pre>
+ * where strings are an int length followed by UTF-8 bytes.
+ */
+final class IndexSnapshot {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IndexSnapshot.class);
+
+	static final int MAGIC = 0x4D4C5349;
+	/** To be incremented whenever the format or the symbols extracted from the files change. */
+	static final int FORMAT_VERSION = 2;
+	static final IndexSnapshot EMPTY = new IndexSnapshot(ByteBuffer.allocate(0), Collections.emptyMap());
+
+	private static final int HEADER_LENGTH = 3 * Integer.BYTES;
+	private static final int TRAILER_LENGTH = Integer.BYTES;
+	private static final SymbolKind[] KINDS = SymbolKind.values();
+
+	private final ByteBuffer buffer;
+	private final Map<String, Integer> entryOffsets;
+
+	private IndexSnapshot(ByteBuffer buffer, Map<String, Integer> entryOffsets) {
+		this.buffer = buffer;
+		this.entryOffsets = entryOffsets;
+	}
+
+	/**
+	 * @return the snapshot stored in the file, or {@link #EMPTY} if there is none or it cannot be used
+	 */
+	static IndexSnapshot load(Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_LENGTH + TRAILER_LENGTH || length > Integer.MAX_VALUE) {
+				LOGGER.warn("Ignoring the index snapshot {} of unexpected size {}", file, length);
+				return EMPTY;
+			}
+			// read on the heap rather than mapped: a mapping is only released by the garbage collector,
+			// and on Windows a mapped file cannot be replaced when the snapshot is saved again
+			ByteBuffer buffer = ByteBuffer.allocate((int) length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) == -1) {
+					throw new EOFException("Truncated while being read");
+				}
+			}
+			// called on Buffer, the overrides returning a ByteBuffer do not exist on Java 8
+			((Buffer) buffer).flip();
+			return read(file, buffer);
+		} catch (NoSuchFileException e) {
+			return EMPTY;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Ignoring the index snapshot " + file + " which cannot be read", e);
+			return EMPTY;
+		}
+	}
+
+	private static IndexSnapshot read(Path file, ByteBuffer buffer) {
+		int checksumOffset = buffer.limit() - TRAILER_LENGTH;
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+			LOGGER.info("Ignoring the index snapshot {} written in another format", file);
+			return EMPTY;
+		}
+		CRC32 crc = new CRC32();
+		ByteBuffer content = buffer.duplicate();
+		((Buffer) content).limit(checksumOffset);
+		crc.update(content);
+		if ((int) crc.getValue() != buffer.getInt(checksumOffset)) {
+			LOGGER.warn("Ignoring the corrupted index snapshot {}", file);
+			return EMPTY;
+		}
+		int fileCount = buffer.getInt(2 * Integer.BYTES);
+		Map<String, Integer> offsets = new HashMap<>(fileCount * 2);
+		ByteBuffer entries = buffer.duplicate();
+		((Buffer) entries).position(HEADER_LENGTH);
+		for (int i = 0; i < fileCount; i++) {
+			int entryLength = entries.getInt();
+			int offset = entries.position();
+			offsets.put(readString(entries), offset);
+			((Buffer) entries).position(offset + entryLength);
+		}
+		return new IndexSnapshot(buffer, offsets);
+	}
+
+	int getFileCount() {
+		return entryOffsets.size();
+	}
+
+	/**
+	 * @return what was indexed for the file, or null if it is not in the snapshot
+	 */
+	FileEntry get(Path file) {
+		Integer offset = entryOffsets.get(file.toString());
+		if (offset == null) {
+			return null;
+		}
+		ByteBuffer entry = buffer.duplicate();
+		((Buffer) entry).position(offset);
+		readString(entry);
+		long lastModified = entry.getLong();
+		long size = entry.getLong();
+		long checksum = entry.getLong();
+		int symbolCount = entry.getInt();
+		List<IndexedSymbol> symbols = new ArrayList<>(symbolCount);
+		for (int i = 0; i < symbolCount; i++) {
+			String name = readString(entry);
+			SymbolKind kind = KINDS[entry.get()];
+			symbols.add(new IndexedSymbol(name, kind, entry.getInt(), entry.getInt(), entry.getInt()));
+		}
+		int nameCount = entry.getInt();
+		String[] names = new String[nameCount];
+		long[][] positions = new long[nameCount][];
+		for (int i = 0; i < nameCount; i++) {
+			names[i] = readString(entry);
+			positions[i] = new long[entry.getInt()];
+			entry.asLongBuffer().get(positions[i]);
+			((Buffer) entry).position(entry.position() + Long.BYTES * positions[i].length);
+		}
+		Occurrences occurrences = nameCount == 0 ? Occurrences.EMPTY : new Occurrences(names, positions);
+		return new FileEntry(file, new FileStamp(lastModified, size, checksum), symbols, occurrences);
+	}
+
+	/**
+	 * Writes the snapshot next to the file first and then replaces it, so a reader never sees a partial snapshot.
+	 */
+	static void write(Path file, Collection<FileEntry> entries) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			CRC32 crc = new CRC32();
+			try (OutputStream output = Files.newOutputStream(temporary);
+					DataOutputStream data = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(output, 1 << 16), crc))) {
+				data.writeInt(MAGIC);
+				data.writeInt(FORMAT_VERSION);
+				data.writeInt(entries.size());
+				ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+				DataOutputStream entry = new DataOutputStream(entryBytes);
+				for (FileEntry fileEntry : entries) {
+					entryBytes.reset();
+					writeEntry(entry, fileEntry);
+					data.writeInt(entryBytes.size());
+					entryBytes.writeTo(data);
+				}
+				data.flush();
+				// the checksum covers everything before it
+				new DataOutputStream(output).writeInt((int) crc.getValue());
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static void writeEntry(DataOutputStream entry, FileEntry fileEntry) throws IOException {
+		writeString(entry, fileEntry.getFile().toString());
+		entry.writeLong(fileEntry.getStamp().getLastModified());
+		entry.writeLong(fileEntry.getStamp().getSize());
+		entry.writeLong(fileEntry.getStamp().getChecksum());
+		entry.writeInt(fileEntry.getSymbols().size());
+		for (IndexedSymbol symbol : fileEntry.getSymbols()) {
+			writeString(entry, symbol.getName());
+			entry.writeByte(symbol.getKind().ordinal());
+			entry.writeInt(symbol.getLine());
+			entry.writeInt(symbol.getStartCharacter());
+			entry.writeInt(symbol.getEndCharacter());
+		}
+		String[] names = fileEntry.getOccurrences().getNames();
+		entry.writeInt(names.length);
+		for (int i = 0; i < names.length; i++) {
+			writeString(entry, names[i]);
+			long[] positions = fileEntry.getOccurrences().getPositions(i);
+			entry.writeInt(positions.length);
+			for (long position : positions) {
+				entry.writeLong(position);
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * What was indexed for a file.
+	 */
+	static final class FileEntry {
+		private final Path file;
+		private final FileStamp stamp;
+		private final List<IndexedSymbol> symbols;
+		private final Occurrences occurrences;
+
+		FileEntry(Path file, FileStamp stamp, List<IndexedSymbol> symbols, Occurrences occurrences) {
+			this.file = file;
+			this.stamp = stamp;
+			this.symbols = symbols;
+			this.occurrences = occurrences;
+		}
+
+		Path getFile() {
+			return file;
+		}
+
+		FileStamp getStamp() {
+			return stamp;
+		}
+
+		List<IndexedSymbol> getSymbols() {
+			return symbols;
+		}
+
+		Occurrences getOccurrences() {
+			return occurrences;
+		}
+	}
+
+	/**
+	 * Identifies the content of a file when it was indexed.
+	 */
+	static final class FileStamp {
+		private final long lastModified;
+		private final long size;
+		private final long checksum;
+
+		FileStamp(long lastModified, long size, long checksum) {
+			this.lastModified = lastModified;
+			this.size = size;
+			this.checksum = checksum;
+		}
+
+		long getLastModified() {
+			return lastModified;
+		}
+
+		long getSize() {
+			return size;
+		}
+
+		long getChecksum() {
+			return checksum;
+		}
+
+		boolean hasSameAttributes(long otherLastModified, long otherSize) {
+			return lastModified == otherLastModified && size == otherSize;
+		}
+	}
+}
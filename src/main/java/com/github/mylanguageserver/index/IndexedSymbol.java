@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+
+/**
+ * Symbol declared in a file, kept compact as indexes hold hundreds of thousands of them.
+ */
+public final class IndexedSymbol {
+
+	private final String name;
+	private final SymbolKind kind;
+	private final int line;
+	private final int startCharacter;
+	private final int endCharacter;
+
+	public IndexedSymbol(String name, SymbolKind kind, int line, int startCharacter, int endCharacter) {
+		this.name = name;
+		this.kind = kind;
+		this.line = line;
+		this.startCharacter = startCharacter;
+		this.endCharacter = endCharacter;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public SymbolKind getKind() {
+		return kind;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getStartCharacter() {
+		return startCharacter;
+	}
+
+	public int getEndCharacter() {
+		return endCharacter;
+	}
+
+	public Range getRange() {
+		return new Range(new Position(line, startCharacter), new Position(line, endCharacter));
+	}
+
+	public SymbolInformation toSymbolInformation(String uri) {
+		return new SymbolInformation(name, kind, new Location(uri, getRange()));
+	}
+}
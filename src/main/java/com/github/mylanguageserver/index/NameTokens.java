@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Tokens used to find the candidate names of a query in the {@link SymbolIndex}, indexed in posting lists as in the Dex index of clangd.
+ *
+ * The {@link FuzzyMatcher} accepts a name when the characters of the query appear in it in the same order, so a name
+ * yields all the ordered pairs of its characters, whatever their distance, and a query the pairs of its consecutive
+ * characters: `gUN`, `gtn` and `getname` all find `getUserName`. A query of a single character only finds the names
+ * with a segment starting with it, as it would match most of them otherwise. Only the beginning of long names is indexed.
+ *
+ * Tokens are dense integers, the characters other than ASCII letters and digits share the same code:
+ * a collision only adds a candidate which the {@link FuzzyMatcher} then rejects.
+ */
+final class NameTokens {
+
+	private static final int ALPHABET_SIZE = 26 + 10 + 1;
+	/** Tokens are between 0 and this count. */
+	static final int TOKEN_COUNT = ALPHABET_SIZE + ALPHABET_SIZE * ALPHABET_SIZE;
+
+	/** Longer names are only indexed on their beginning. */
+	private static final int MAX_INDEXED_LENGTH = 64;
+
+	private NameTokens() {
+	}
+
+	static int[] ofQuery(String query) {
+		String normalized = FuzzyMatcher.normalize(query);
+		if (normalized.length() <= 1) {
+			return normalized.isEmpty() ? new int[0] : new int[] { token(normalized.charAt(0)) };
+		}
+		Set<Integer> tokens = new LinkedHashSet<>();
+		for (int i = 0; i + 1 < normalized.length(); i++) {
+			tokens.add(token(normalized.charAt(i), normalized.charAt(i + 1)));
+		}
+		return toArray(tokens);
+	}
+
+	static int[] ofName(String name) {
+		char[] characters = new char[Math.min(name.length(), MAX_INDEXED_LENGTH)];
+		boolean[] segmentStarts = new boolean[characters.length];
+		int n = 0;
+		for (int i = 0; i < name.length() && n < characters.length; i++) {
+			if (Character.isLetterOrDigit(name.charAt(i))) {
+				characters[n] = Character.toLowerCase(name.charAt(i));
+				segmentStarts[n] = n == 0 || FuzzyMatcher.isSegmentStart(name, i);
+				n++;
+			}
+		}
+		// a set of the tokens added, the distinct pairs are at most the square of the alphabet
+		boolean[] seen = new boolean[TOKEN_COUNT];
+		int[] tokens = new int[Math.min(TOKEN_COUNT, n + n * (n - 1) / 2)];
+		int count = 0;
+		for (int j = 0; j < n; j++) {
+			if (segmentStarts[j]) {
+				count = add(token(characters[j]), seen, tokens, count);
+			}
+			for (int i = 0; i < j; i++) {
+				count = add(token(characters[i], characters[j]), seen, tokens, count);
+			}
+		}
+		return Arrays.copyOf(tokens, count);
+	}
+
+	private static int add(int token, boolean[] seen, int[] tokens, int count) {
+		if (seen[token]) {
+			return count;
+		}
+		seen[token] = true;
+		tokens[count] = token;
+		return count + 1;
+	}
+
+	private static int token(char a) {
+		return code(a);
+	}
+
+	private static int token(char a, char b) {
+		return ALPHABET_SIZE + code(a) * ALPHABET_SIZE + code(b);
+	}
+
+	/**
+	 * Lower case ASCII letters and digits have their own code, all the other characters share the last one.
+	 */
+	private static int code(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a';
+		}
+		if (c >= '0' && c <= '9') {
+			return 26 + c - '0';
+		}
+		return ALPHABET_SIZE - 1;
+	}
+
+	private static int[] toArray(Set<Integer> tokens) {
+		int[] array = new int[tokens.size()];
+		int i = 0;
+		for (int token : tokens) {
+			array[i++] = token;
+		}
+		return array;
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+import com.github.mylanguageserver.syntax.DemoLineParser;
+import com.github.mylanguageserver.syntax.LineNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+import com.github.mylanguageserver.syntax.TokenKind;
+
+/**
+ * The identifiers of a file grouped by name, the names of the demo language being global.
+ *
+ * The occurrences of a name are packed in a long array sorted by line and character, each one with its line,
+ * its start character and whether it declares the name. Instances are immutable.
+ */
+public final class Occurrences {
+
+	public static final Occurrences EMPTY = new Occurrences(new String[0], new long[0][]);
+
+	private static final int LINE_SHIFT = 32;
+
+	private final String[] names;
+	private final long[][] positions;
+
+	/**
+	 * @param names	the names in alphabetical order
+	 * @param positions	the packed occurrences of each name, sorted
+	 */
+	Occurrences(String[] names, long[][] positions) {
+		this.names = names;
+		this.positions = positions;
+	}
+
+	/**
+	 * @param text	the content of a file on disk
+	 */
+	public static Occurrences extract(CharSequence text) {
+		Builder builder = new Builder();
+		int length = text.length();
+		int lineStart = 0;
+		for (int line = 0; lineStart <= length; line++) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && text.charAt(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			LineNode node = DemoLineParser.INSTANCE.parse(text.subSequence(lineStart, lineEnd));
+			for (int i = 0; i < node.getTokenCount(); i++) {
+				if (node.getTokenKind(i) == TokenKind.IDENTIFIER) {
+					String name = text.subSequence(lineStart + node.getTokenStart(i), lineStart + node.getTokenEnd(i)).toString();
+					builder.add(name, line, node.getTokenStart(i), i == node.getNameToken());
+				}
+			}
+			lineStart = lineEnd + 1;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param tree	the syntax tree of an opened document
+	 */
+	public static Occurrences extract(SyntaxTree tree) {
+		Builder builder = new Builder();
+		for (int line = 0; line < tree.getLineCount(); line++) {
+			LineNode node = tree.getLine(line);
+			for (int i = 0; i < node.getTokenCount(); i++) {
+				if (node.getTokenKind(i) == TokenKind.IDENTIFIER) {
+					builder.add(tree.getText(tree.getToken(line, i)), line, node.getTokenStart(i), i == node.getNameToken());
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the number of occurrences of the name
+	 */
+	public int count(String name) {
+		int index = Arrays.binarySearch(names, name);
+		return index >= 0 ? positions[index].length : 0;
+	}
+
+	/**
+	 * @param includeDeclarations	whether the occurrences declaring the name are included
+	 * @return the ranges of the occurrences of the name, in UTF-16 characters, sorted
+	 */
+	public List<Range> getRanges(String name, boolean includeDeclarations) {
+		int index = Arrays.binarySearch(names, name);
+		if (index < 0) {
+			return Collections.emptyList();
+		}
+		List<Range> ranges = new ArrayList<>(positions[index].length);
+		for (long position : positions[index]) {
+			if (includeDeclarations || !isDeclaration(position)) {
+				int line = line(position);
+				int start = startCharacter(position);
+				ranges.add(new Range(new Position(line, start), new Position(line, start + name.length())));
+			}
+		}
+		return ranges;
+	}
+
+	String[] getNames() {
+		return names;
+	}
+
+	long[] getPositions(int nameIndex) {
+		return positions[nameIndex];
+	}
+
+	/**
+	 * @return the estimated memory in bytes of the occurrences, the names excepted as they are shared with the other files
+	 */
+	public long estimatedMemory() {
+		long memory = 32 + 8L * names.length;
+		for (long[] namePositions : positions) {
+			memory += 16 + 8L * namePositions.length;
+		}
+		return memory;
+	}
+
+	static long pack(int line, int startCharacter, boolean declaration) {
+		return ((long) line << LINE_SHIFT) | ((long) startCharacter << 1) | (declaration ? 1 : 0);
+	}
+
+	static int line(long position) {
+		return (int) (position >>> LINE_SHIFT);
+	}
+
+	static int startCharacter(long position) {
+		return (int) (position & 0xFFFFFFFFL) >>> 1;
+	}
+
+	static boolean isDeclaration(long position) {
+		return (position & 1) != 0;
+	}
+
+	/**
+	 * Collects the occurrences of a file, in order.
+	 */
+	static final class Builder {
+
+		private final Map<String, Positions> positions = new HashMap<>();
+
+		void add(String name, int line, int startCharacter, boolean declaration) {
+			positions.computeIfAbsent(name, key -> new Positions()).add(pack(line, startCharacter, declaration));
+		}
+
+		Occurrences build() {
+			if (positions.isEmpty()) {
+				return EMPTY;
+			}
+			String[] names = positions.keySet().toArray(new String[positions.size()]);
+			Arrays.sort(names);
+			long[][] packed = new long[names.length][];
+			for (int i = 0; i < names.length; i++) {
+				Positions namePositions = positions.get(names[i]);
+				packed[i] = Arrays.copyOf(namePositions.values, namePositions.size);
+			}
+			return new Occurrences(names, packed);
+		}
+	}
+
+	private static final class Positions {
+		long[] values = new long[2];
+		int size;
+
+		void add(long position) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = position;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import com.github.mylanguageserver.document.TextDocument;
+
+/**
+ * Symbols and identifier occurrences of the documents opened in a session, which take precedence over their content on disk.
+ *
+ * The indexes are brought up to date with the document store before each search, only the documents which
+ * changed since the previous search are extracted again, from their syntax tree. Symbols and occurrences are
+ * extracted separately, as most sessions never look for references.
+ */
+public class OpenDocumentsIndex {
+
+	private final SymbolIndex index = new SymbolIndex();
+	private final Map<String, TextDocument> indexedSnapshots = new HashMap<>();
+	private final ReferenceIndex references = new ReferenceIndex();
+	private final Map<String, TextDocument> referencedSnapshots = new HashMap<>();
+
+	/**
+	 * @param documents	the latest snapshots of the opened documents
+	 * @return the normalized URIs of the opened documents, whose symbols on disk must be ignored
+	 */
+	public synchronized Set<String> update(Collection<TextDocument> documents) {
+		return update(documents, indexedSnapshots,
+				document -> index.update(document.getUri(), SymbolExtractor.extract(document.getSyntaxTree())), index::remove);
+	}
+
+	/**
+	 * @param documents	the latest snapshots of the opened documents
+	 * @return the normalized URIs of the opened documents, whose occurrences on disk must be ignored
+	 */
+	public synchronized Set<String> updateReferences(Collection<TextDocument> documents) {
+		return update(documents, referencedSnapshots,
+				document -> references.update(document.getUri(), Occurrences.extract(document.getSyntaxTree())), references::remove);
+	}
+
+	private static Set<String> update(Collection<TextDocument> documents, Map<String, TextDocument> snapshots, Consumer<TextDocument> extract,
+			Consumer<String> remove) {
+		Set<String> opened = new HashSet<>();
+		Set<String> uris = new HashSet<>();
+		for (TextDocument document : documents) {
+			uris.add(document.getUri());
+			opened.add(WorkspaceIndexer.normalizeUri(document.getUri()));
+			if (snapshots.put(document.getUri(), document) != document) {
+				extract.accept(document);
+			}
+		}
+		for (Iterator<String> indexed = snapshots.keySet().iterator(); indexed.hasNext();) {
+			String uri = indexed.next();
+			if (!uris.contains(uri)) {
+				indexed.remove();
+				remove.accept(uri);
+			}
+		}
+		return opened;
+	}
+
+	public List<SymbolMatch> search(String query, int maxResults, CancelChecker cancelChecker) {
+		return index.search(query, maxResults, uri -> false, cancelChecker);
+	}
+
+	/**
+	 * @return the occurrences of the opened documents where the name occurs, by URI in alphabetical order
+	 */
+	public SortedMap<String, Occurrences> getFilesWithName(String name) {
+		return references.getFilesWithName(name, uri -> false);
+	}
+
+	/**
+	 * @return the snapshot of the document whose symbols are indexed, or null if it is not indexed
+	 */
+	public synchronized TextDocument getIndexedSnapshot(String uri) {
+		return indexedSnapshots.get(uri);
+	}
+
+	/**
+	 * @return the snapshot of the document whose occurrences are indexed, or null if it is not indexed
+	 */
+	public synchronized TextDocument getReferencedSnapshot(String uri) {
+		return referencedSnapshots.get(uri);
+	}
+}
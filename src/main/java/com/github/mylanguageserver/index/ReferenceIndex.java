@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe index of the identifiers of a set of files, to find the references of a name.
+ *
+ * Each name maps to the files where it occurs, and each file keeps its {@link Occurrences}, so the files
+ * and occurrences of a name are found in time proportional to their number, without scanning the other files.
+ */
+public class ReferenceIndex {
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Occurrences> occurrencesByUri = new HashMap<>();
+	private final Map<String, Set<String>> urisByName = new HashMap<>();
+
+	/**
+	 * Replaces the occurrences of a file.
+	 */
+	public void update(String uri, Occurrences occurrences) {
+		updateAll(Collections.singletonMap(uri, occurrences));
+	}
+
+	/**
+	 * Replaces the occurrences of several files at once, readers see either none or all of the updates.
+	 */
+	public void updateAll(Map<String, Occurrences> occurrencesOfFiles) {
+		lock.writeLock().lock();
+		try {
+			for (Map.Entry<String, Occurrences> entry : occurrencesOfFiles.entrySet()) {
+				replace(entry.getKey(), entry.getValue());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void replace(String uri, Occurrences occurrences) {
+		Occurrences previous = occurrences.getNames().length == 0 ? occurrencesByUri.remove(uri) : occurrencesByUri.put(uri, occurrences);
+		if (previous != null) {
+			for (String name : previous.getNames()) {
+				Set<String> uris = urisByName.get(name);
+				uris.remove(uri);
+				if (uris.isEmpty()) {
+					urisByName.remove(name);
+				}
+			}
+		}
+		for (String name : occurrences.getNames()) {
+			urisByName.computeIfAbsent(name, key -> new HashSet<>(2)).add(uri);
+		}
+	}
+
+	public void remove(String uri) {
+		update(uri, Occurrences.EMPTY);
+	}
+
+	/**
+	 * @param excludedUris	the files whose occurrences must be ignored
+	 * @return the occurrences of the files where the name occurs, by URI in alphabetical order
+	 */
+	public SortedMap<String, Occurrences> getFilesWithName(String name, Predicate<String> excludedUris) {
+		lock.readLock().lock();
+		try {
+			SortedMap<String, Occurrences> files = new TreeMap<>();
+			Set<String> uris = urisByName.get(name);
+			if (uris != null) {
+				for (String uri : uris) {
+					if (!excludedUris.test(uri)) {
+						files.put(uri, occurrencesByUri.get(uri));
+					}
+				}
+			}
+			return files;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getFileCount() {
+		lock.readLock().lock();
+		try {
+			return occurrencesByUri.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+}
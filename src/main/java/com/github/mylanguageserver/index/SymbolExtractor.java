@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.lsp4j.SymbolKind;
+
+import com.github.mylanguageserver.syntax.DemoLineParser;
+import com.github.mylanguageserver.syntax.LineKind;
+import com.github.mylanguageserver.syntax.LineNode;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+import com.github.mylanguageserver.syntax.Token;
+
+/**
+ * Finds the symbols declared in a document of the demo language.
+ *
+ * A line `name = value` declares a property and a line `name {` opens a section,
+ * lines starting with `#` are comments. Files on disk are scanned directly, opened documents reuse their syntax tree.
+ */
+public final class SymbolExtractor {
+
+	private SymbolExtractor() {
+	}
+
+	public static List<IndexedSymbol> extract(CharSequence text) {
+		List<IndexedSymbol> symbols = new ArrayList<>();
+		int length = text.length();
+		int lineStart = 0;
+		for (int line = 0; lineStart <= length; line++) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && text.charAt(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			extractFromLine(text, line, lineStart, lineEnd, symbols);
+			lineStart = lineEnd + 1;
+		}
+		return symbols;
+	}
+
+	public static List<IndexedSymbol> extract(SyntaxTree tree) {
+		List<IndexedSymbol> symbols = new ArrayList<>();
+		for (int line = 0; line < tree.getLineCount(); line++) {
+			LineNode node = tree.getLine(line);
+			int nameToken = node.getNameToken();
+			if (nameToken != -1) {
+				Token name = tree.getToken(line, nameToken);
+				SymbolKind kind = node.getKind() == LineKind.PROPERTY ? SymbolKind.Property : SymbolKind.Namespace;
+				symbols.add(new IndexedSymbol(tree.getText(name), kind, line, name.getStartCharacter(), name.getEndCharacter()));
+			}
+		}
+		return symbols;
+	}
+
+	private static void extractFromLine(CharSequence text, int line, int lineStart, int lineEnd, List<IndexedSymbol> symbols) {
+		int start = skipWhitespace(text, lineStart, lineEnd);
+		if (start == lineEnd || !isIdentifierStart(text.charAt(start))) {
+			return;
+		}
+		int end = start + 1;
+		while (end < lineEnd && isIdentifierPart(text.charAt(end))) {
+			end++;
+		}
+		int next = skipWhitespace(text, end, lineEnd);
+		if (next == lineEnd) {
+			return;
+		}
+		SymbolKind kind;
+		if (text.charAt(next) == '=') {
+			kind = SymbolKind.Property;
+		} else if (text.charAt(next) == '{') {
+			kind = SymbolKind.Namespace;
+		} else {
+			return;
+		}
+		symbols.add(new IndexedSymbol(text.subSequence(start, end).toString(), kind, line, start - lineStart, end - lineStart));
+	}
+
+	private static int skipWhitespace(CharSequence text, int from, int to) {
+		int index = from;
+		while (index < to && Character.isWhitespace(text.charAt(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	private static boolean isIdentifierStart(char c) {
+		return DemoLineParser.isIdentifierStart(c);
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return DemoLineParser.isIdentifierPart(c);
+	}
+}
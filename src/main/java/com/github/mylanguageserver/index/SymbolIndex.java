@@ -0,0 +1,305 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+/**
+ * Thread-safe index of the symbols of a set of files, searched with fuzzy and camel case queries.
+ *
+ * Each distinct name gets an id and is registered once in the posting lists of its {@link NameTokens}.
+ * A query intersects the posting lists of its own tokens, the few remaining names are scored with a
+ * {@link FuzzyMatcher}. Files are updated one at a time, without rebuilding the index.
+ *
+ * Names are never forgotten, a name which is not declared anymore just has no file left, so the posting
+ * lists are append-only and stay sorted by id.
+ */
+public class SymbolIndex {
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, List<IndexedSymbol>> symbolsByUri = new HashMap<>();
+	private final Map<String, Name> names = new HashMap<>();
+	private final List<Name> namesById = new ArrayList<>();
+	private final PostingList[] postings = new PostingList[NameTokens.TOKEN_COUNT];
+	private volatile long modificationCount;
+	private volatile Runnable changeListener;
+
+	/**
+	 * @param changeListener	called after each update of the index, on the updating thread
+	 */
+	public void setChangeListener(Runnable changeListener) {
+		this.changeListener = changeListener;
+	}
+
+	/**
+	 * Replaces the symbols of a file.
+	 */
+	public void update(String uri, List<IndexedSymbol> symbols) {
+		updateAll(Collections.singletonMap(uri, symbols));
+	}
+
+	/**
+	 * Replaces the symbols of several files at once, readers see either none or all of the updates.
+	 */
+	public void updateAll(Map<String, List<IndexedSymbol>> symbolsOfFiles) {
+		Map<String, List<IndexedSymbol>> copies = new HashMap<>();
+		for (Map.Entry<String, List<IndexedSymbol>> entry : symbolsOfFiles.entrySet()) {
+			copies.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+		}
+		lock.writeLock().lock();
+		try {
+			for (Map.Entry<String, List<IndexedSymbol>> entry : copies.entrySet()) {
+				replace(entry.getKey(), entry.getValue());
+			}
+			modificationCount++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		Runnable listener = changeListener;
+		if (listener != null) {
+			listener.run();
+		}
+	}
+
+	private void replace(String uri, List<IndexedSymbol> symbols) {
+		List<IndexedSymbol> previous = symbols.isEmpty() ? symbolsByUri.remove(uri) : symbolsByUri.put(uri, symbols);
+		if (previous != null) {
+			for (IndexedSymbol symbol : previous) {
+				names.get(symbol.getName()).declarations.remove(uri);
+			}
+		}
+		for (IndexedSymbol symbol : symbols) {
+			name(symbol.getName()).declarations.computeIfAbsent(uri, key -> new ArrayList<>(1)).add(symbol);
+		}
+	}
+
+	public void remove(String uri) {
+		update(uri, Collections.emptyList());
+	}
+
+	public List<IndexedSymbol> getSymbols(String uri) {
+		lock.readLock().lock();
+		try {
+			List<IndexedSymbol> symbols = symbolsByUri.get(uri);
+			return symbols != null ? symbols : Collections.emptyList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the symbols declaring exactly the name, by file URI in alphabetical order
+	 */
+	public Map<String, List<IndexedSymbol>> getDeclarations(String name) {
+		lock.readLock().lock();
+		try {
+			Map<String, List<IndexedSymbol>> declarations = new TreeMap<>();
+			Name indexed = names.get(name);
+			if (indexed != null) {
+				indexed.declarations.forEach((uri, symbols) -> declarations.put(uri, new ArrayList<>(symbols)));
+			}
+			return declarations;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return a number changing each time the index is updated
+	 */
+	public long getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * @param consumer	receives each name still declared, with the number of files declaring it
+	 */
+	public void forEachName(ObjIntConsumer<String> consumer) {
+		lock.readLock().lock();
+		try {
+			for (Name name : namesById) {
+				if (!name.declarations.isEmpty()) {
+					consumer.accept(name.value, name.declarations.size());
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getFileCount() {
+		lock.readLock().lock();
+		try {
+			return symbolsByUri.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private Name name(String name) {
+		Name existing = names.get(name);
+		if (existing != null) {
+			return existing;
+		}
+		Name created = new Name(name, namesById.size());
+		names.put(name, created);
+		namesById.add(created);
+		for (int token : NameTokens.ofName(name)) {
+			if (postings[token] == null) {
+				postings[token] = new PostingList();
+			}
+			postings[token].add(created.id);
+		}
+		return created;
+	}
+
+	/**
+	 * @param query	the text typed by the user, an empty query matches every symbol
+	 * @param maxResults	the maximum number of symbols returned
+	 * @param excludedUris	the files whose symbols must be ignored
+	 * @param cancelChecker	called regularly
+	 * @return the best matches first
+	 */
+	public List<SymbolMatch> search(String query, int maxResults, Predicate<String> excludedUris, CancelChecker cancelChecker) {
+		FuzzyMatcher matcher = new FuzzyMatcher(query);
+		PriorityQueue<SymbolMatch> best = new PriorityQueue<>(SymbolMatch.BEST_FIRST.reversed());
+		lock.readLock().lock();
+		try {
+			int[] candidates = candidates(NameTokens.ofQuery(query));
+			// broad queries like a single character score most of the names, the best ones may have been declared last
+			int count = candidates != null ? candidates.length : namesById.size();
+			for (int i = 0; i < count; i++) {
+				if ((i & 0x3FF) == 0) {
+					cancelChecker.checkCanceled();
+				}
+				Name name = namesById.get(candidates != null ? candidates[i] : i);
+				if (name.declarations.isEmpty()) {
+					continue;
+				}
+				int score = matcher.score(name.value);
+				if (score == FuzzyMatcher.NO_MATCH || best.size() == maxResults && score <= best.peek().getScore()) {
+					continue;
+				}
+				for (Map.Entry<String, List<IndexedSymbol>> declarations : name.declarations.entrySet()) {
+					if (excludedUris.test(declarations.getKey())) {
+						continue;
+					}
+					for (IndexedSymbol symbol : declarations.getValue()) {
+						best.add(new SymbolMatch(declarations.getKey(), symbol, score));
+						if (best.size() > maxResults) {
+							best.poll();
+						}
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		List<SymbolMatch> matches = new ArrayList<>(best);
+		matches.sort(SymbolMatch.BEST_FIRST);
+		return matches;
+	}
+
+	/**
+	 * @return the ids of the names having all the tokens, or null if there is no token to filter on
+	 */
+	private int[] candidates(int[] tokens) {
+		if (tokens.length == 0) {
+			return null;
+		}
+		PostingList[] lists = new PostingList[tokens.length];
+		for (int i = 0; i < tokens.length; i++) {
+			lists[i] = postings[tokens[i]];
+			if (lists[i] == null) {
+				return new int[0];
+			}
+		}
+		Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+		int[] result = Arrays.copyOf(lists[0].ids, lists[0].size);
+		int size = result.length;
+		for (int i = 1; i < lists.length && size > 0; i++) {
+			size = lists[i].retainAll(result, size);
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static final class Name {
+		final String value;
+		final int id;
+		/** The symbols with the name, by file, usually a single one. */
+		final Map<String, List<IndexedSymbol>> declarations = new HashMap<>(2);
+
+		Name(String value, int id) {
+			this.value = value;
+			this.id = id;
+		}
+	}
+
+	private static final class PostingList {
+		int[] ids = new int[4];
+		int size;
+
+		void add(int id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+		/**
+		 * Keeps in the sorted ids the ones of this list, merging both lists when they have similar sizes
+		 * and looking each id up otherwise.
+		 *
+		 * @return the number of ids kept at the beginning of the array
+		 */
+		int retainAll(int[] sortedIds, int count) {
+			int kept = 0;
+			if (size > 16 * count) {
+				for (int i = 0; i < count; i++) {
+					if (Arrays.binarySearch(ids, 0, size, sortedIds[i]) >= 0) {
+						sortedIds[kept++] = sortedIds[i];
+					}
+				}
+				return kept;
+			}
+			int j = 0;
+			for (int i = 0; i < count && j < size; i++) {
+				while (j < size && ids[j] < sortedIds[i]) {
+					j++;
+				}
+				if (j < size && ids[j] == sortedIds[i]) {
+					sortedIds[kept++] = sortedIds[i];
+				}
+			}
+			return kept;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.util.Comparator;
+
+/**
+ * Symbol found by a query, with its score.
+ */
+public final class SymbolMatch {
+
+	/** Higher scores first, then shorter names, then alphabetical order. */
+	public static final Comparator<SymbolMatch> BEST_FIRST = Comparator.comparingInt(SymbolMatch::getScore).reversed()
+			.thenComparingInt(match -> match.getSymbol().getName().length())
+			.thenComparing(match -> match.getSymbol().getName())
+			.thenComparing(SymbolMatch::getUri)
+			.thenComparingInt(match -> match.getSymbol().getLine());
+
+	private final String uri;
+	private final IndexedSymbol symbol;
+	private final int score;
+
+	public SymbolMatch(String uri, IndexedSymbol symbol, int score) {
+		this.uri = uri;
+		this.symbol = symbol;
+		this.score = score;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public IndexedSymbol getSymbol() {
+		return symbol;
+	}
+
+	public int getScore() {
+		return score;
+	}
+}
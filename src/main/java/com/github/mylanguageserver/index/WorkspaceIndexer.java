@@ -0,0 +1,392 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.index.IndexSnapshot.FileEntry;
+import com.github.mylanguageserver.index.IndexSnapshot.FileStamp;
+
+/**
+ * Fills a {@link SymbolIndex} and a {@link ReferenceIndex} from the files of the workspace roots and keeps it up to date when files change.
+ *
+ * The roots are walked in parallel and their files are parsed in batches on a small pool of daemon threads,
+ * shared by all the workspaces of the JVM and kept apart from the executor answering the requests.
+ *
+ * When given a snapshot file, the indexer starts from the symbols saved by the previous session: files with the same
+ * modification time and size are not read, files with the same content checksum are not parsed. The snapshot is
+ * saved again once the roots are indexed and when the indexer is closed.
+ *
+ * A file may be read by several batches at once when it changes during the indexing, the updates of a file are
+ * committed in the order their reads started so that the index always ends with its latest content.
+ */
+public class WorkspaceIndexer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceIndexer.class);
+
+	public static final String FILE_EXTENSION = ".demo";
+	private static final int BATCH_SIZE = 64;
+
+	private final SymbolIndex index;
+	private final ReferenceIndex references;
+	private final Path snapshotFile;
+	private final ConcurrentMap<Path, FileEntry> entries = new ConcurrentHashMap<>();
+	private final AtomicInteger reusedFiles = new AtomicInteger();
+	/** Taken when a read or a removal of files starts, so that their updates are committed in that order. */
+	private final AtomicLong tickets = new AtomicLong();
+	/** The ticket of the latest read or removal committed for each file, guarded by itself. */
+	private final Map<Path, Long> committedTickets = new HashMap<>();
+	private volatile IndexSnapshot snapshot = IndexSnapshot.EMPTY;
+	private volatile boolean dirty;
+	private volatile boolean initialIndexingDone;
+	private volatile boolean closed;
+
+	public WorkspaceIndexer(SymbolIndex index) {
+		this(index, null);
+	}
+
+	/**
+	 * @param snapshotFile	where the index is saved between sessions, or null to not save it
+	 */
+	public WorkspaceIndexer(SymbolIndex index, Path snapshotFile) {
+		this(index, new ReferenceIndex(), snapshotFile);
+	}
+
+	/**
+	 * @param snapshotFile	where the indexes are saved between sessions, or null to not save them
+	 */
+	public WorkspaceIndexer(SymbolIndex index, ReferenceIndex references, Path snapshotFile) {
+		this.index = index;
+		this.references = references;
+		this.snapshotFile = snapshotFile;
+	}
+
+	/**
+	 * @return a future completed once all the files of the roots are indexed
+	 */
+	public CompletableFuture<Void> indexRoots(List<Path> roots) {
+		long start = System.nanoTime();
+		CompletableFuture<Void> loaded = CompletableFuture.runAsync(this::loadSnapshot, IndexerExecutorHolder.EXECUTOR);
+		List<CompletableFuture<Void>> scans = new ArrayList<>();
+		for (Path root : roots) {
+			scans.add(loaded.thenApplyAsync(ignored -> listFiles(root), IndexerExecutorHolder.EXECUTOR).thenCompose(this::indexFiles));
+		}
+		CompletableFuture<Void> indexed = CompletableFuture.allOf(scans.toArray(new CompletableFuture<?>[scans.size()]));
+		return indexed.thenRunAsync(() -> {
+			if (closed) {
+				// what was indexed is incomplete, keep the previous snapshot
+				return;
+			}
+			LOGGER.info("{} files of {} indexed in {} ms, {} reused from the snapshot", index.getFileCount(), roots,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), reusedFiles.get());
+			// the files deleted since the previous session are not in the entries, so they are dropped from the snapshot
+			dirty |= entries.size() != snapshot.getFileCount();
+			snapshot = IndexSnapshot.EMPTY;
+			initialIndexingDone = true;
+			saveSnapshot();
+		}, IndexerExecutorHolder.EXECUTOR);
+	}
+
+	private void loadSnapshot() {
+		if (snapshotFile != null) {
+			snapshot = IndexSnapshot.load(snapshotFile);
+			LOGGER.debug("{} files in the index snapshot {}", snapshot.getFileCount(), snapshotFile);
+		}
+	}
+
+	/**
+	 * Saves the index if it changed since it was loaded or last saved.
+	 */
+	private synchronized void saveSnapshot() {
+		if (snapshotFile == null || !dirty || !initialIndexingDone) {
+			return;
+		}
+		dirty = false;
+		try {
+			IndexSnapshot.write(snapshotFile, new ArrayList<>(entries.values()));
+		} catch (IOException e) {
+			LOGGER.warn("Cannot save the index snapshot " + snapshotFile, e);
+		}
+	}
+
+	private List<Path> listFiles(Path root) {
+		List<Path> files = new ArrayList<>();
+		if (!Files.isDirectory(root)) {
+			return files;
+		}
+		try {
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+					if (closed) {
+						return FileVisitResult.TERMINATE;
+					}
+					Path name = dir.getFileName();
+					boolean hidden = !dir.equals(root) && name != null && name.toString().startsWith(".");
+					return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					if (attrs.isRegularFile() && isIndexed(file)) {
+						files.add(file);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc) {
+					LOGGER.debug("Cannot visit {}", file, exc);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			LOGGER.warn("Cannot list the files of " + root, e);
+		}
+		return files;
+	}
+
+	private CompletableFuture<Void> indexFiles(List<Path> files) {
+		List<CompletableFuture<Void>> batches = new ArrayList<>();
+		for (int from = 0; from < files.size(); from += BATCH_SIZE) {
+			List<Path> batch = files.subList(from, Math.min(files.size(), from + BATCH_SIZE));
+			batches.add(CompletableFuture.runAsync(() -> indexBatch(batch), IndexerExecutorHolder.EXECUTOR));
+		}
+		return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()]));
+	}
+
+	/**
+	 * Indexes the current content of a file on disk, replacing what was indexed for it before.
+	 */
+	public void indexFile(Path file) {
+		indexBatch(Collections.singletonList(file));
+	}
+
+	/**
+	 * Reads the files of a batch one after the other, then updates the index with all of them at once.
+	 */
+	private void indexBatch(List<Path> files) {
+		if (closed) {
+			return;
+		}
+		long ticket = tickets.incrementAndGet();
+		List<FileEntry> read = new ArrayList<>(files.size());
+		List<Path> deleted = new ArrayList<>();
+		for (Path file : files) {
+			try {
+				read.add(read(file));
+			} catch (NoSuchFileException e) {
+				deleted.add(file);
+			} catch (IOException e) {
+				LOGGER.warn("Cannot index " + file, e);
+			}
+		}
+		commit(ticket, read, deleted);
+	}
+
+	/**
+	 * Updates the indexes with the files read or deleted since the ticket was taken, except the files for which a read
+	 * or a removal started after it is already committed: an older content never replaces a newer one.
+	 */
+	private void commit(long ticket, List<FileEntry> read, Collection<Path> deleted) {
+		synchronized (committedTickets) {
+			Map<String, List<IndexedSymbol>> symbols = new HashMap<>();
+			Map<String, Occurrences> occurrences = new HashMap<>();
+			List<FileEntry> updated = new ArrayList<>(read.size());
+			List<Path> removed = new ArrayList<>(deleted.size());
+			for (FileEntry entry : read) {
+				if (isLatest(entry.getFile(), ticket)) {
+					symbols.put(uriOf(entry.getFile()), entry.getSymbols());
+					occurrences.put(uriOf(entry.getFile()), entry.getOccurrences());
+					updated.add(entry);
+				}
+			}
+			for (Path file : deleted) {
+				if (isLatest(file, ticket)) {
+					symbols.put(uriOf(file), Collections.emptyList());
+					occurrences.put(uriOf(file), Occurrences.EMPTY);
+					removed.add(file);
+				}
+			}
+			if (symbols.isEmpty()) {
+				return;
+			}
+			index.updateAll(symbols);
+			references.updateAll(occurrences);
+			for (FileEntry entry : updated) {
+				entries.put(entry.getFile(), entry);
+			}
+			for (Path file : removed) {
+				if (entries.remove(file) != null) {
+					dirty = true;
+				}
+			}
+		}
+	}
+
+	private boolean isLatest(Path file, long ticket) {
+		Long committed = committedTickets.get(file);
+		if (committed != null && committed > ticket) {
+			LOGGER.debug("{} changed again while being indexed, keeping the newer content", file);
+			return false;
+		}
+		committedTickets.put(file, ticket);
+		return true;
+	}
+
+	private FileEntry read(Path file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		FileEntry saved = snapshot.get(file);
+		if (saved != null && saved.getStamp().hasSameAttributes(lastModified, attributes.size())) {
+			reusedFiles.incrementAndGet();
+			return saved;
+		}
+		byte[] content = Files.readAllBytes(file);
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length);
+		FileStamp stamp = new FileStamp(lastModified, content.length, crc.getValue());
+		dirty = true;
+		if (saved != null && saved.getStamp().getChecksum() == stamp.getChecksum()) {
+			// only touched, the symbols are the same
+			reusedFiles.incrementAndGet();
+			return new FileEntry(file, stamp, saved.getSymbols(), saved.getOccurrences());
+		}
+		String text = new String(content, StandardCharsets.UTF_8);
+		return new FileEntry(file, stamp, SymbolExtractor.extract(text), Occurrences.extract(text));
+	}
+
+	/**
+	 * Same as {@link #indexFile(Path)}, on the indexer threads.
+	 */
+	public CompletableFuture<Void> indexFileAsync(Path file) {
+		return CompletableFuture.runAsync(() -> indexFile(file), IndexerExecutorHolder.EXECUTOR);
+	}
+
+	/**
+	 * Removes the deleted files from the index and indexes the changed ones, in parallel batches on the indexer threads.
+	 *
+	 * @return a future completed once the index is updated
+	 */
+	public CompletableFuture<Void> applyChanges(Collection<Path> changed, Collection<Path> deleted) {
+		removeFiles(deleted);
+		return indexFiles(new ArrayList<>(changed));
+	}
+
+	public void removeFile(Path file) {
+		removeFiles(Collections.singletonList(file));
+	}
+
+	private void removeFiles(Collection<Path> files) {
+		if (!files.isEmpty()) {
+			commit(tickets.incrementAndGet(), Collections.emptyList(), files);
+		}
+	}
+
+	/**
+	 * Stops the indexing in progress and saves the index if its initial indexing completed, the index is not updated anymore.
+	 */
+	public void close() {
+		closed = true;
+		saveSnapshot();
+	}
+
+	/**
+	 * @return the number of files whose symbols were taken from the snapshot
+	 */
+	int getReusedFileCount() {
+		return reusedFiles.get();
+	}
+
+	public static boolean isIndexed(Path file) {
+		Path name = file.getFileName();
+		return name != null && name.toString().endsWith(FILE_EXTENSION);
+	}
+
+	/**
+	 * @return the URI of the file as used in the index
+	 */
+	public static String uriOf(Path file) {
+		return file.toUri().toString();
+	}
+
+	/**
+	 * @return the path of a file URI, or null if it is not a local file
+	 */
+	public static Path pathOf(String uri) {
+		try {
+			return Paths.get(URI.create(uri)).toAbsolutePath().normalize();
+		} catch (IllegalArgumentException | FileSystemNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the URI as used in the index, clients may encode file URIs differently
+	 */
+	public static String normalizeUri(String uri) {
+		Path path = pathOf(uri);
+		return path != null ? uriOf(path) : uri;
+	}
+
+	private static final class IndexerExecutorHolder {
+
+		private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+				Math.max(1, Runtime.getRuntime().availableProcessors() / 2), new IndexerThreadFactory());
+	}
+
+	private static final class IndexerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Workspace Indexer " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of positive long values with a bounded relative error, in the way of HdrHistogram.
+ *
+ * Values are counted in buckets covering a power of two range each, split in {@value #SUB_BUCKET_COUNT} linear
+ * sub-buckets, so the values reported for percentiles are within about 3% of the recorded ones whatever their
+ * magnitude. Recording a value is a few atomic increments and never allocates.
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	/** Values above are recorded as this one, it is about 19 hours in microseconds. */
+	static final long MAX_VALUE = (1L << 36) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+	private final LongAdder totalCount = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public void record(long value) {
+		long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+		counts.incrementAndGet(indexOf(clamped));
+		totalCount.increment();
+		sum.add(clamped);
+		max.accumulate(clamped);
+	}
+
+	public long getCount() {
+		return totalCount.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) getSum() / count;
+	}
+
+	/**
+	 * @param percentile	between 0 and 100
+	 * @return the highest value equivalent to the one at the given percentile, or 0 if nothing is recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(highestEquivalentValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Values below {@code 2 * SUB_BUCKET_COUNT} have their own index, above each power of two range
+	 * is split in {@code SUB_BUCKET_COUNT} indexes.
+	 */
+	static int indexOf(long value) {
+		int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS + 1));
+		return (bucket << SUB_BUCKET_BITS) + (int) (value >>> bucket);
+	}
+
+	static long highestEquivalentValue(int index) {
+		int bucket = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+		long subBucket = index - ((long) bucket << SUB_BUCKET_BITS);
+		return ((subBucket + 1) << bucket) - 1;
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+import java.io.FilterReader;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.eclipse.lsp4j.jsonrpc.json.JsonRpcMethod;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * JSON handler of a connection feeding the {@link ServerMetrics}.
+ *
+ * All the transports parse the received messages and serialize the sent ones through the handler, whether as whole
+ * strings or streamed through readers and writers, so message sizes are counted in characters as they go through and
+ * a request is measured from its reception to its response without touching the services.
+ *
+ * Only the requests received from the client are measured, not the ones the server sends to the client.
+ */
+public class MeasuredMessageJsonHandler extends MessageJsonHandler {
+
+	private final ServerMetrics metrics;
+	private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+	public MeasuredMessageJsonHandler(Map<String, JsonRpcMethod> supportedMethods, Consumer<GsonBuilder> configureGson, ServerMetrics metrics) {
+		super(supportedMethods, configureGson != null ? configureGson : gsonBuilder -> {});
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Parsing a string goes through this method too.
+	 */
+	@Override
+	public Message parseMessage(Reader input) {
+		CountingReader counted = new CountingReader(input);
+		Message message = super.parseMessage(counted);
+		long received = System.nanoTime();
+		if (message instanceof RequestMessage) {
+			RequestMessage request = (RequestMessage) message;
+			if (request.getId() != null && isSupported(request.getMethod())) {
+				MethodMetrics methodMetrics = metrics.method(request.getMethod());
+				methodMetrics.requestReceived(counted.count);
+				pendingRequests.put(request.getId(), new PendingRequest(methodMetrics, received));
+			}
+		} else if (message instanceof NotificationMessage) {
+			NotificationMessage notification = (NotificationMessage) message;
+			if (isSupported(notification.getMethod())) {
+				metrics.method(notification.getMethod()).notificationReceived(counted.count);
+			}
+		}
+		return message;
+	}
+
+	/**
+	 * Serializing to a string goes through this method too.
+	 */
+	@Override
+	public void serialize(Message message, Writer output) {
+		CountingWriter counted = new CountingWriter(output);
+		super.serialize(message, counted);
+		if (message instanceof ResponseMessage) {
+			ResponseMessage response = (ResponseMessage) message;
+			PendingRequest pending = response.getId() != null ? pendingRequests.remove(response.getId()) : null;
+			if (pending != null) {
+				boolean error = response.getError() != null;
+				boolean cancelled = error && response.getError().getCode() == ResponseErrorCode.RequestCancelled.getValue();
+				pending.metrics.responseSent(System.nanoTime() - pending.received, counted.count, error, cancelled);
+			}
+		}
+	}
+
+	/**
+	 * Unknown methods are not recorded, so that a client cannot make the metrics grow without bounds.
+	 */
+	private boolean isSupported(String method) {
+		return method != null && getJsonRpcMethod(method) != null;
+	}
+
+	/**
+	 * Stops counting the requests of the connection as in flight, to be called when it is closed.
+	 */
+	public void abandonPendingRequests() {
+		for (String id : pendingRequests.keySet()) {
+			PendingRequest pending = pendingRequests.remove(id);
+			if (pending != null) {
+				pending.metrics.requestAbandoned();
+			}
+		}
+	}
+
+	private static final class CountingReader extends FilterReader {
+		int count;
+
+		CountingReader(Reader input) {
+			super(input);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int c = super.read();
+			if (c != -1) {
+				count++;
+			}
+			return c;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+	}
+
+	private static final class CountingWriter extends FilterWriter {
+		int count;
+
+		CountingWriter(Writer output) {
+			super(output);
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			super.write(c);
+			count++;
+		}
+
+		@Override
+		public void write(char[] buffer, int offset, int length) throws IOException {
+			super.write(buffer, offset, length);
+			count += length;
+		}
+
+		@Override
+		public void write(String text, int offset, int length) throws IOException {
+			super.write(text, offset, length);
+			count += length;
+		}
+	}
+
+	private static final class PendingRequest {
+		final MethodMetrics metrics;
+		final long received;
+
+		PendingRequest(MethodMetrics metrics, long received) {
+			this.metrics = metrics;
+			this.received = received;
+		}
+	}
+}
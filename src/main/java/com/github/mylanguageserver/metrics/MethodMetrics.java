@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of an LSP method, shared by all the connections of the JVM.
+ *
+ * The latency of a request goes from the reception of its message to the serialization of its response,
+ * so it includes the time spent waiting in the queues of the server. The latency of a notification goes
+ * to the end of its handling, when it is measured.
+ */
+public class MethodMetrics implements MethodMetricsMXBean {
+
+	private final String method;
+	private final Histogram latency = new Histogram();
+	private final Histogram requestSize = new Histogram();
+	private final Histogram responseSize = new Histogram();
+	private final LongAdder count = new LongAdder();
+	private final LongAdder errorCount = new LongAdder();
+	private final LongAdder cancelledCount = new LongAdder();
+	private final LongAdder resultCacheHitCount = new LongAdder();
+	private final LongAdder resultCacheMissCount = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	MethodMetrics(String method) {
+		this.method = method;
+	}
+
+	void requestReceived(int size) {
+		count.increment();
+		inFlight.incrementAndGet();
+		requestSize.record(size);
+	}
+
+	void responseSent(long latencyNanos, int size, boolean error, boolean cancelled) {
+		inFlight.decrementAndGet();
+		latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+		responseSize.record(size);
+		if (cancelled) {
+			cancelledCount.increment();
+		} else if (error) {
+			errorCount.increment();
+		}
+	}
+
+	/**
+	 * Forgets a request which will never get a response, as its connection is closed.
+	 */
+	void requestAbandoned() {
+		inFlight.decrementAndGet();
+	}
+
+	void notificationReceived(int size) {
+		count.increment();
+		requestSize.record(size);
+	}
+
+	void notificationHandled(long latencyNanos, boolean error) {
+		latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+		if (error) {
+			errorCount.increment();
+		}
+	}
+
+	/**
+	 * Records a request answered from the result cache.
+	 */
+	public void resultCacheHit() {
+		resultCacheHitCount.increment();
+	}
+
+	/**
+	 * Records a request looked up in the result cache and computed.
+	 */
+	public void resultCacheMiss() {
+		resultCacheMissCount.increment();
+	}
+
+	@Override
+	public String getMethod() {
+		return method;
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errorCount.sum();
+	}
+
+	@Override
+	public long getCancelledCount() {
+		return cancelledCount.sum();
+	}
+
+	@Override
+	public long getResultCacheHitCount() {
+		return resultCacheHitCount.sum();
+	}
+
+	@Override
+	public long getResultCacheMissCount() {
+		return resultCacheMissCount.sum();
+	}
+
+	@Override
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	@Override
+	public long getLatency50thPercentile() {
+		return latency.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getLatency90thPercentile() {
+		return latency.getValueAtPercentile(90);
+	}
+
+	@Override
+	public long getLatency99thPercentile() {
+		return latency.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getLatencyMax() {
+		return latency.getMax();
+	}
+
+	@Override
+	public double getMeanRequestSize() {
+		return requestSize.getMean();
+	}
+
+	@Override
+	public long getMaxRequestSize() {
+		return requestSize.getMax();
+	}
+
+	@Override
+	public double getMeanResponseSize() {
+		return responseSize.getMean();
+	}
+
+	@Override
+	public long getMaxResponseSize() {
+		return responseSize.getMax();
+	}
+
+	Histogram getLatency() {
+		return latency;
+	}
+
+	Histogram getRequestSize() {
+		return requestSize;
+	}
+
+	Histogram getResponseSize() {
+		return responseSize;
+	}
+}
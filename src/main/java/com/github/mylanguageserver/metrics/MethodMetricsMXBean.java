@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+/**
+ * JMX view of the metrics of an LSP method, latencies are in microseconds and message sizes in characters.
+ */
+public interface MethodMetricsMXBean {
+
+	String getMethod();
+
+	long getCount();
+
+	long getErrorCount();
+
+	long getCancelledCount();
+
+	long getResultCacheHitCount();
+
+	long getResultCacheMissCount();
+
+	int getInFlight();
+
+	long getLatency50thPercentile();
+
+	long getLatency90thPercentile();
+
+	long getLatency99thPercentile();
+
+	long getLatencyMax();
+
+	double getMeanRequestSize();
+
+	long getMaxRequestSize();
+
+	double getMeanResponseSize();
+
+	long getMaxResponseSize();
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+/**
+ * Snapshot of the metrics of an LSP method, as returned by the `$/metrics` request.
+ * Latencies are in microseconds and message sizes in characters.
+ */
+public class MethodStatistics {
+
+	private final String method;
+	private final long count;
+	private final long errorCount;
+	private final long cancelledCount;
+	private final long resultCacheHitCount;
+	private final long resultCacheMissCount;
+	private final int inFlight;
+	private final long latency50thPercentile;
+	private final long latency90thPercentile;
+	private final long latency99thPercentile;
+	private final long latencyMax;
+	private final double meanRequestSize;
+	private final long maxRequestSize;
+	private final double meanResponseSize;
+	private final long maxResponseSize;
+
+	MethodStatistics(MethodMetricsMXBean metrics) {
+		this.method = metrics.getMethod();
+		this.count = metrics.getCount();
+		this.errorCount = metrics.getErrorCount();
+		this.cancelledCount = metrics.getCancelledCount();
+		this.resultCacheHitCount = metrics.getResultCacheHitCount();
+		this.resultCacheMissCount = metrics.getResultCacheMissCount();
+		this.inFlight = metrics.getInFlight();
+		this.latency50thPercentile = metrics.getLatency50thPercentile();
+		this.latency90thPercentile = metrics.getLatency90thPercentile();
+		this.latency99thPercentile = metrics.getLatency99thPercentile();
+		this.latencyMax = metrics.getLatencyMax();
+		this.meanRequestSize = metrics.getMeanRequestSize();
+		this.maxRequestSize = metrics.getMaxRequestSize();
+		this.meanResponseSize = metrics.getMeanResponseSize();
+		this.maxResponseSize = metrics.getMaxResponseSize();
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	public long getCancelledCount() {
+		return cancelledCount;
+	}
+
+	public long getResultCacheHitCount() {
+		return resultCacheHitCount;
+	}
+
+	public long getResultCacheMissCount() {
+		return resultCacheMissCount;
+	}
+
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	public long getLatency50thPercentile() {
+		return latency50thPercentile;
+	}
+
+	public long getLatency90thPercentile() {
+		return latency90thPercentile;
+	}
+
+	public long getLatency99thPercentile() {
+		return latency99thPercentile;
+	}
+
+	public long getLatencyMax() {
+		return latencyMax;
+	}
+
+	public double getMeanRequestSize() {
+		return meanRequestSize;
+	}
+
+	public long getMaxRequestSize() {
+		return maxRequestSize;
+	}
+
+	public double getMeanResponseSize() {
+		return meanResponseSize;
+	}
+
+	public long getMaxResponseSize() {
+		return maxResponseSize;
+	}
+}
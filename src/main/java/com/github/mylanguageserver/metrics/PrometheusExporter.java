@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the {@link ServerMetrics} in the Prometheus text format on `/metrics`, with the HTTP server of the JDK.
+ *
+ * Latencies are exported in seconds and message sizes in characters, as summaries with their 0.5, 0.9 and 0.99 quantiles.
+ */
+public class PrometheusExporter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PrometheusExporter.class);
+
+	static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+	private static final double MICROS_PER_SECOND = 1_000_000d;
+
+	private final ServerMetrics metrics;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public PrometheusExporter(ServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public synchronized void start(String hostname, int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(hostname, port), 0);
+		server.createContext("/metrics", this::handle);
+		// a single thread is enough for a scraper, and keeps the exporter from competing with the requests
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Prometheus Exporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.start();
+		LOGGER.info("Metrics available on http://{}:{}/metrics", hostname, server.getAddress().getPort());
+	}
+
+	/**
+	 * @return the port the exporter listens to, useful when started on port 0
+	 */
+	public synchronized int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdown();
+			server = null;
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			byte[] body = format(metrics).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	static String format(ServerMetrics metrics) {
+		StringBuilder text = new StringBuilder();
+		header(text, "lsp_queue_depth", "gauge", "Tasks waiting for a thread in the request executor.");
+		text.append("lsp_queue_depth ").append(metrics.getQueueDepth()).append('\n');
+		header(text, "lsp_messages_total", "counter", "Requests and notifications received, by LSP method.");
+		for (MethodMetrics method : metrics.getMethodMetrics()) {
+			sample(text, "lsp_messages_total", method, method.getCount());
+		}
+		header(text, "lsp_errors_total", "counter", "Requests answered with an error and notifications failing, by LSP method.");
+		for (MethodMetrics method : metrics.getMethodMetrics()) {
+			sample(text, "lsp_errors_total", method, method.getErrorCount());
+		}
+		header(text, "lsp_cancelled_total", "counter", "Requests cancelled, by LSP method.");
+		for (MethodMetrics method : metrics.getMethodMetrics()) {
+			sample(text, "lsp_cancelled_total", method, method.getCancelledCount());
+		}
+		header(text, "lsp_result_cache_hits_total", "counter", "Requests answered from the result cache, by LSP method.");
+		for (MethodMetrics method : metrics.getMethodMetrics()) {
+			sample(text, "lsp_result_cache_hits_total", method, method.getResultCacheHitCount());
+		}
+		header(text, "lsp_result_cache_misses_total", "counter", "Requests looked up in the result cache and computed, by LSP method.");
+		for (MethodMetrics method : metrics.getMethodMetrics()) {
+			sample(text, "lsp_result_cache_misses_total", method, method.getResultCacheMissCount());
+		}
+		header(text, "lsp_in_flight", "gauge", "Requests received and not answered yet, by LSP method.");
+		for (MethodMetrics method : metrics.getMethodMetrics()) {
+			sample(text, "lsp_in_flight", method, method.getInFlight());
+		}
+		summary(text, metrics, "lsp_latency_seconds", "Time from the reception of a message to its response or the end of its handling.",
+				MethodMetrics::getLatency, value -> value / MICROS_PER_SECOND);
+		summary(text, metrics, "lsp_request_size_chars", "Size of the received messages.",
+				MethodMetrics::getRequestSize, value -> value);
+		summary(text, metrics, "lsp_response_size_chars", "Size of the responses.",
+				MethodMetrics::getResponseSize, value -> value);
+		return text.toString();
+	}
+
+	private static void summary(StringBuilder text, ServerMetrics metrics, String name, String help,
+			Function<MethodMetrics, Histogram> histogramOf, DoubleUnaryOperator unit) {
+		header(text, name, "summary", help);
+		for (MethodMetrics method : metrics.getMethodMetrics()) {
+			Histogram histogram = histogramOf.apply(method);
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			for (double quantile : QUANTILES) {
+				text.append(name).append("{method=\"").append(escape(method.getMethod())).append("\",quantile=\"").append(quantile).append("\"} ")
+					.append(number(unit.applyAsDouble(histogram.getValueAtPercentile(quantile * 100)))).append('\n');
+			}
+			text.append(name).append("_sum{method=\"").append(escape(method.getMethod())).append("\"} ")
+				.append(number(unit.applyAsDouble(histogram.getSum()))).append('\n');
+			text.append(name).append("_count{method=\"").append(escape(method.getMethod())).append("\"} ")
+				.append(histogram.getCount()).append('\n');
+		}
+	}
+
+	private static void header(StringBuilder text, String name, String type, String help) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(StringBuilder text, String name, MethodMetrics method, long value) {
+		text.append(name).append("{method=\"").append(escape(method.getMethod())).append("\"} ").append(value).append('\n');
+	}
+
+	private static String number(double value) {
+		return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
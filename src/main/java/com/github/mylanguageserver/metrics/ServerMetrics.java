@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.scheduling.RequestScheduler;
+
+/**
+ * Latency, throughput and message size metrics of each LSP method, for all the connections of the JVM.
+ *
+ * The metrics are fed by {@link MeasuredMessageJsonHandler} and exposed through JMX under the
+ * {@value #JMX_DOMAIN} domain, the `$/metrics` request and optionally a {@link PrometheusExporter}.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ServerMetrics.class);
+
+	static final String JMX_DOMAIN = "com.github.mylanguageserver";
+
+	private static final ServerMetrics INSTANCE = new ServerMetrics(RequestScheduler::getSharedQueueDepth, true);
+
+	private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+	private final IntSupplier queueDepth;
+	private final boolean registerMBeans;
+
+	public static ServerMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	ServerMetrics(IntSupplier queueDepth, boolean registerMBeans) {
+		this.queueDepth = queueDepth;
+		this.registerMBeans = registerMBeans;
+		if (registerMBeans) {
+			register(this, JMX_DOMAIN + ":type=Server");
+		}
+	}
+
+	/**
+	 * @return the metrics of the method, created on first use
+	 */
+	public MethodMetrics method(String method) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics != null ? metrics : methods.computeIfAbsent(method, this::createMethodMetrics);
+	}
+
+	private MethodMetrics createMethodMetrics(String method) {
+		MethodMetrics metrics = new MethodMetrics(method);
+		if (registerMBeans) {
+			register(metrics, JMX_DOMAIN + ":type=Method,name=" + ObjectName.quote(method));
+		}
+		return metrics;
+	}
+
+	private static void register(Object mbean, String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, new ObjectName(name));
+		} catch (JMException e) {
+			LOGGER.warn("Cannot register the metrics MBean " + name, e);
+		}
+	}
+
+	/**
+	 * Measures the handling of a notification, from now until the future completes.
+	 */
+	public void timeNotification(String method, CompletableFuture<?> handled) {
+		long start = System.nanoTime();
+		MethodMetrics metrics = method(method);
+		handled.whenComplete((result, error) -> metrics.notificationHandled(System.nanoTime() - start, error != null));
+	}
+
+	/**
+	 * @return the metrics of the methods received so far, sorted by method
+	 */
+	public Collection<MethodMetrics> getMethodMetrics() {
+		return new TreeMap<>(methods).values();
+	}
+
+	public MetricsReport report() {
+		List<MethodStatistics> statistics = new ArrayList<>();
+		for (MethodMetrics metrics : getMethodMetrics()) {
+			statistics.add(new MethodStatistics(metrics));
+		}
+		return new MetricsReport(getQueueDepth(), statistics);
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.getAsInt();
+	}
+
+	@Override
+	public int getInFlight() {
+		int inFlight = 0;
+		for (MethodMetrics metrics : methods.values()) {
+			inFlight += metrics.getInFlight();
+		}
+		return inFlight;
+	}
+
+	@Override
+	public String[] getMethods() {
+		Map<String, MethodMetrics> sorted = new TreeMap<>(methods);
+		return sorted.keySet().toArray(new String[sorted.size()]);
+	}
+}
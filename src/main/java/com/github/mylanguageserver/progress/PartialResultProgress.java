@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.progress;
+
+import java.io.IOException;
+
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A `$/progress` notification carrying a partial result of a request, sent with {@link org.eclipse.lsp4j.services.LanguageClient#notifyProgress(ProgressParams)}.
+ *
+ * The value of {@link ProgressParams} is limited to work done progress notifications in lsp4j 0.10, so this subclass
+ * carries its own value and is written by its own adapter, with the Gson instance of the connection.
+ */
+@JsonAdapter(PartialResultProgress.AdapterFactory.class)
+public class PartialResultProgress extends ProgressParams {
+
+	private final Object partialResult;
+
+	/**
+	 * @param token	the partialResultToken of the request
+	 * @param partialResult	the results to append to the ones already sent, of the same type as the result of the request
+	 */
+	public PartialResultProgress(Either<String, Number> token, Object partialResult) {
+		setToken(token);
+		this.partialResult = partialResult;
+	}
+
+	public Object getPartialResult() {
+		return partialResult;
+	}
+
+	@Override
+	public String toString() {
+		return "PartialResultProgress [token=" + getToken() + ", partialResult=" + partialResult + "]";
+	}
+
+	/**
+	 * Writes the token and the partial result, the server never reads partial results.
+	 */
+	static final class AdapterFactory implements TypeAdapterFactory {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+			return (TypeAdapter<T>) new TypeAdapter<PartialResultProgress>() {
+				@Override
+				public void write(JsonWriter out, PartialResultProgress progress) throws IOException {
+					if (progress == null) {
+						out.nullValue();
+						return;
+					}
+					out.beginObject();
+					out.name("token");
+					Either<String, Number> token = progress.getToken();
+					if (token.isLeft()) {
+						out.value(token.getLeft());
+					} else {
+						out.value(token.getRight());
+					}
+					out.name("value");
+					JsonElement value = gson.toJsonTree(progress.getPartialResult());
+					gson.toJson(value, out);
+					out.endObject();
+				}
+
+				@Override
+				public PartialResultProgress read(JsonReader in) throws IOException {
+					throw new UnsupportedOperationException("Partial results are only sent by the server");
+				}
+			};
+		}
+	}
+}
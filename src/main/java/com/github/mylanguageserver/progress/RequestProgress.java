@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.progress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.PartialResultParams;
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.WorkDoneProgressBegin;
+import org.eclipse.lsp4j.WorkDoneProgressEnd;
+import org.eclipse.lsp4j.WorkDoneProgressNotification;
+import org.eclipse.lsp4j.WorkDoneProgressParams;
+import org.eclipse.lsp4j.WorkDoneProgressReport;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+
+/**
+ * Reports the work done and the partial results of a request through `$/progress` notifications,
+ * with the workDoneToken and partialResultToken the client sent along with the request.
+ *
+ * Without a token or a connected client, the corresponding methods do nothing. When partial results are streamed,
+ * the whole result must be sent through {@link #partialResult(List)} and the response be empty.
+ */
+public class RequestProgress {
+
+	private final LanguageClient client;
+	private final Either<String, Number> workDoneToken;
+	private final Either<String, Number> partialResultToken;
+	private int reportedPercentage = -1;
+
+	RequestProgress(LanguageClient client, Either<String, Number> workDoneToken, Either<String, Number> partialResultToken) {
+		this.client = client;
+		this.workDoneToken = client != null ? workDoneToken : null;
+		this.partialResultToken = client != null ? partialResultToken : null;
+	}
+
+	/**
+	 * @param client	the client of the session, null if not connected yet
+	 * @param params	the parameters of the request, with a partialResultToken if they are {@link PartialResultParams}
+	 */
+	public static RequestProgress of(LanguageClient client, WorkDoneProgressParams params) {
+		Either<String, Number> partialResultToken = params instanceof PartialResultParams ? ((PartialResultParams) params).getPartialResultToken() : null;
+		return new RequestProgress(client, params.getWorkDoneToken(), partialResultToken);
+	}
+
+	public boolean isStreamingPartialResults() {
+		return partialResultToken != null;
+	}
+
+	public void begin(String title) {
+		if (workDoneToken != null) {
+			WorkDoneProgressBegin begin = new WorkDoneProgressBegin();
+			begin.setTitle(title);
+			begin.setCancellable(Boolean.FALSE);
+			begin.setPercentage(0);
+			notifyWorkDone(begin);
+		}
+	}
+
+	/**
+	 * Reports the progress when its percentage changed since the previous report, from any thread.
+	 */
+	public synchronized void report(String message, int done, int total) {
+		int percentage = total > 0 ? (int) (100L * done / total) : 0;
+		if (workDoneToken != null && percentage != reportedPercentage) {
+			reportedPercentage = percentage;
+			WorkDoneProgressReport report = new WorkDoneProgressReport();
+			report.setMessage(message);
+			report.setPercentage(percentage);
+			notifyWorkDone(report);
+		}
+	}
+
+	public void end(String message) {
+		if (workDoneToken != null) {
+			WorkDoneProgressEnd end = new WorkDoneProgressEnd();
+			end.setMessage(message);
+			notifyWorkDone(end);
+		}
+	}
+
+	private void notifyWorkDone(WorkDoneProgressNotification notification) {
+		client.notifyProgress(new ProgressParams(workDoneToken, notification));
+	}
+
+	/**
+	 * Sends results to append to the ones already sent, if partial results are streamed.
+	 */
+	public void partialResult(List<?> values) {
+		if (partialResultToken != null && !values.isEmpty()) {
+			client.notifyProgress(new PartialResultProgress(partialResultToken, values));
+		}
+	}
+
+	/**
+	 * Sends a result computed at once by chunks, so that no message holds all of it.
+	 *
+	 * @return an empty list if the result has been streamed, the result otherwise
+	 */
+	public <T> List<T> streamInChunks(List<T> values, int chunkSize) {
+		if (partialResultToken == null) {
+			return values;
+		}
+		for (int from = 0; from < values.size(); from += chunkSize) {
+			partialResult(new ArrayList<>(values.subList(from, Math.min(values.size(), from + chunkSize))));
+		}
+		return Collections.emptyList();
+	}
+}
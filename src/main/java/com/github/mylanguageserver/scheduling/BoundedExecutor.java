@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.scheduling;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor limiting the number of tasks running concurrently on a delegate executor,
+ * the other ones wait in an unbounded FIFO queue.
+ */
+class BoundedExecutor implements Executor {
+
+	private final Executor delegate;
+	private final int maxConcurrency;
+	private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger running = new AtomicInteger();
+
+	BoundedExecutor(Executor delegate, int maxConcurrency) {
+		this.delegate = delegate;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		queue.add(command);
+		drain();
+	}
+
+	/**
+	 * @return the number of tasks waiting for a free slot
+	 */
+	int getQueueSize() {
+		return queue.size();
+	}
+
+	private void drain() {
+		while (!queue.isEmpty()) {
+			int current = running.get();
+			if (current >= maxConcurrency) {
+				return;
+			}
+			if (running.compareAndSet(current, current + 1)) {
+				Runnable next = queue.poll();
+				if (next == null) {
+					running.decrementAndGet();
+				} else {
+					delegate.execute(() -> {
+						try {
+							next.run();
+						} finally {
+							running.decrementAndGet();
+							drain();
+						}
+					});
+				}
+			}
+		}
+	}
+}
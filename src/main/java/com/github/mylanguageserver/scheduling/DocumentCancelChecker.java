@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.scheduling;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.TextDocument;
+
+/**
+ * Cancel checker of a request computed on a document snapshot.
+ *
+ * On top of the client cancellation, it aborts the request with a ContentModified error
+ * as soon as a newer version of the document has been published.
+ */
+public class DocumentCancelChecker implements CancelChecker {
+
+	/**
+	 * ContentModified error code from the LSP specification, not provided by lsp4j 0.10.
+	 */
+	public static final int CONTENT_MODIFIED = -32801;
+
+	private final CancelChecker requestCancelChecker;
+	private final DocumentStore documentStore;
+	private final TextDocument snapshot;
+
+	public DocumentCancelChecker(CancelChecker requestCancelChecker, DocumentStore documentStore, TextDocument snapshot) {
+		this.requestCancelChecker = requestCancelChecker;
+		this.documentStore = documentStore;
+		this.snapshot = snapshot;
+	}
+
+	@Override
+	public void checkCanceled() {
+		requestCancelChecker.checkCanceled();
+		if (snapshot != null && !documentStore.isCurrent(snapshot)) {
+			throw new ResponseErrorException(new ResponseError(CONTENT_MODIFIED,
+					"Version " + snapshot.getVersion() + " of " + snapshot.getUri() + " is outdated", null));
+		}
+	}
+}
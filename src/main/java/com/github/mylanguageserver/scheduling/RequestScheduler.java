@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.scheduling;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches the work of the language server handlers away from the JSON-RPC reader thread.
+ *
+ * Document notifications are queued per URI and run one after the other in the order they were received.
+ * Requests targeting a URI start only once the notifications received before them on that URI are processed,
+ * so they always see the document content the client expects, while requests on different documents run in parallel.
+ * Requests not bound to a document, which may read any of them, start once the notifications received before them
+ * on every URI are processed.
+ *
+ * Requests like completion or hover can be superseding: a new one cancels the previous one still in flight
+ * for the same method and URI, as its result would be discarded by the client anyway.
+ *
+ * All the schedulers of a JVM share the same bounded executor: virtual threads when the JDK provides them,
+ * an asynchronous fork-join pool otherwise.
+ */
+public class RequestScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestScheduler.class);
+
+	private static final int MAX_CONCURRENCY = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+	private final Executor executor;
+	private final ConcurrentMap<String, CompletableFuture<Void>> pendingNotifications = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, CompletableFuture<?>> supersedableRequests = new ConcurrentHashMap<>();
+
+	public RequestScheduler() {
+		this(SharedExecutorHolder.EXECUTOR);
+	}
+
+	public RequestScheduler(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Schedules the handling of a notification after all the notifications previously scheduled for the same URI.
+	 *
+	 * @param uri	the document uri
+	 * @param action	the notification handling
+	 * @return a future completed once the notification is handled
+	 */
+	public CompletableFuture<Void> notification(String uri, Runnable action) {
+		CompletableFuture<Void> handled = pendingNotifications.compute(uri,
+				(key, previous) -> (previous != null ? previous : DONE).thenRunAsync(() -> runSafely(uri, action), executor));
+		handled.whenComplete((result, error) -> pendingNotifications.remove(uri, handled));
+		return handled;
+	}
+
+	/**
+	 * Computes the result of a request on the shared executor.
+	 *
+	 * @param uri	the document uri targeted by the request, or null if the request is not bound to a document or reads several of them
+	 * @param handler	the request handling, it receives a cancel checker to call regularly
+	 * @return a future completed with the result, cancelling it stops the handler at its next cancel check
+	 */
+	public <T> CompletableFuture<T> request(String uri, Function<CancelChecker, T> handler) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		CancelChecker cancelChecker = () -> {
+			if (result.isCancelled()) {
+				throw new CancellationException();
+			}
+		};
+		CompletableFuture<Void> barrier = uri != null ? pendingNotifications.getOrDefault(uri, DONE) : allPendingNotifications();
+		barrier.whenComplete((ignored, error) -> executor.execute(() -> {
+			if (result.isDone()) {
+				return;
+			}
+			try {
+				result.complete(handler.apply(cancelChecker));
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			}
+		}));
+		return result;
+	}
+
+	private CompletableFuture<Void> allPendingNotifications() {
+		CompletableFuture<?>[] pending = pendingNotifications.values().toArray(new CompletableFuture<?>[0]);
+		return pending.length == 0 ? DONE : CompletableFuture.allOf(pending);
+	}
+
+	/**
+	 * Same as {@link #request(String, Function)}, but the request in flight with the same method and URI, if any, is cancelled.
+	 *
+	 * @param method	the LSP method of the request
+	 * @param uri	the document uri targeted by the request
+	 * @param handler	the request handling, it receives a cancel checker to call regularly
+	 * @return a future completed with the result, or cancelled when superseded
+	 */
+	public <T> CompletableFuture<T> supersedingRequest(String method, String uri, Function<CancelChecker, T> handler) {
+		String key = method + '|' + uri;
+		CompletableFuture<T> result = request(uri, handler);
+		CompletableFuture<?> previous = supersedableRequests.put(key, result);
+		if (previous != null) {
+			previous.cancel(false);
+		}
+		result.whenComplete((ignored, error) -> supersedableRequests.remove(key, result));
+		return result;
+	}
+
+	/**
+	 * @return the number of tasks waiting for a thread in the executor shared by the schedulers of the JVM
+	 */
+	public static int getSharedQueueDepth() {
+		Executor executor = SharedExecutorHolder.EXECUTOR;
+		if (executor instanceof BoundedExecutor) {
+			return ((BoundedExecutor) executor).getQueueSize();
+		}
+		ForkJoinPool pool = (ForkJoinPool) executor;
+		return (int) Math.min(Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+	}
+
+	private static void runSafely(String uri, Runnable action) {
+		try {
+			action.run();
+		} catch (RuntimeException e) {
+			// keep the queue of the document going, next notifications must still be handled
+			LOGGER.error("Error while handling a notification for " + uri, e);
+		}
+	}
+
+	private static final class SharedExecutorHolder {
+
+		private static final Executor EXECUTOR = createExecutor();
+
+		private static Executor createExecutor() {
+			try {
+				ExecutorService virtualThreads = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+				LOGGER.info("Using virtual threads to handle requests");
+				return new BoundedExecutor(virtualThreads, MAX_CONCURRENCY * 4);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				LOGGER.debug("Virtual threads are not available, using a fork-join pool", e);
+				return new ForkJoinPool(MAX_CONCURRENCY, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+			}
+		}
+	}
+}
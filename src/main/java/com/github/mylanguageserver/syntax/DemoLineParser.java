@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.syntax;
+
+/**
+ * Parser of the demo language.
+ *
+ * A line `name = value` declares a property, a line `name {` opens a section closed by a line starting with `}`,
+ * lines starting with `#` are comments. Values are made of identifiers, numbers, double quoted strings and operators.
+ */
+public final class DemoLineParser implements LineParser {
+
+	public static final DemoLineParser INSTANCE = new DemoLineParser();
+
+	private DemoLineParser() {
+	}
+
+	@Override
+	public LineNode parse(CharSequence line) {
+		LineNode.Builder tokens = new LineNode.Builder();
+		int length = line.length();
+		int start = skipWhitespace(line, 0);
+		if (start == length) {
+			return LineNode.BLANK;
+		}
+		char first = line.charAt(start);
+		if (first == '#') {
+			tokens.add(TokenKind.COMMENT, start, length);
+			return tokens.build(LineKind.COMMENT);
+		}
+		if (first == '}') {
+			tokens.add(TokenKind.OPERATOR, start, start + 1);
+			lex(line, start + 1, tokens);
+			return tokens.build(LineKind.SECTION_END);
+		}
+		if (!isIdentifierStart(first)) {
+			lex(line, start, tokens);
+			return tokens.build(LineKind.INVALID);
+		}
+		int end = identifierEnd(line, start);
+		tokens.add(TokenKind.IDENTIFIER, start, end);
+		int next = skipWhitespace(line, end);
+		LineKind kind;
+		if (next < length && line.charAt(next) == '=') {
+			kind = LineKind.PROPERTY;
+		} else if (next < length && line.charAt(next) == '{') {
+			kind = LineKind.SECTION_START;
+		} else {
+			kind = LineKind.INVALID;
+		}
+		lex(line, next, tokens);
+		return tokens.build(kind);
+	}
+
+	private static void lex(CharSequence line, int from, LineNode.Builder tokens) {
+		int length = line.length();
+		int index = skipWhitespace(line, from);
+		while (index < length) {
+			char c = line.charAt(index);
+			int end;
+			TokenKind kind;
+			if (c == '#') {
+				end = length;
+				kind = TokenKind.COMMENT;
+			} else if (c == '"') {
+				end = index + 1;
+				while (end < length && line.charAt(end) != '"') {
+					end += line.charAt(end) == '\\' ? 2 : 1;
+				}
+				end = Math.min(end + 1, length);
+				kind = TokenKind.STRING;
+			} else if (Character.isDigit(c) || (c == '-' && index + 1 < length && Character.isDigit(line.charAt(index + 1)))) {
+				end = index + 1;
+				while (end < length && (Character.isLetterOrDigit(line.charAt(end)) || line.charAt(end) == '.')) {
+					end++;
+				}
+				kind = TokenKind.NUMBER;
+			} else if (isIdentifierStart(c)) {
+				end = identifierEnd(line, index);
+				kind = TokenKind.IDENTIFIER;
+			} else {
+				end = index + 1;
+				kind = TokenKind.OPERATOR;
+			}
+			tokens.add(kind, index, end);
+			index = skipWhitespace(line, end);
+		}
+	}
+
+	private static int identifierEnd(CharSequence line, int start) {
+		int end = start + 1;
+		while (end < line.length() && isIdentifierPart(line.charAt(end))) {
+			end++;
+		}
+		return end;
+	}
+
+	private static int skipWhitespace(CharSequence line, int from) {
+		int index = from;
+		while (index < line.length() && Character.isWhitespace(line.charAt(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	public static boolean isIdentifierStart(char c) {
+		return Character.isLetter(c) || c == '_';
+	}
+
+	public static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.syntax;
+
+/**
+ * The lines touched by a content change: lines startLine to oldEndLine of the previous content are replaced
+ * by newLineBreaks + 1 lines starting at startLine.
+ */
+public final class LineEdit {
+
+	private final int startLine;
+	private final int oldEndLine;
+	private final int newLineBreaks;
+
+	/**
+	 * @param newLineBreaks	the number of line breaks in the inserted text
+	 */
+	public LineEdit(int startLine, int oldEndLine, int newLineBreaks) {
+		this.startLine = startLine;
+		this.oldEndLine = oldEndLine;
+		this.newLineBreaks = newLineBreaks;
+	}
+
+	public int getStartLine() {
+		return startLine;
+	}
+
+	public int getOldEndLine() {
+		return oldEndLine;
+	}
+
+	public int getNewLineBreaks() {
+		return newLineBreaks;
+	}
+}
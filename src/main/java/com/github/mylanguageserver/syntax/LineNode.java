@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.syntax;
+
+import java.util.Arrays;
+
+/**
+ * The parse result of a single line.
+ *
+ * A node only knows the columns of its tokens, not the line it is on, so the nodes of the lines left untouched
+ * by an edit are reused as is by the next version of the tree. Tokens are packed in a long array to keep
+ * the nodes of large documents small.
+ */
+public final class LineNode {
+
+	public static final LineNode BLANK = new LineNode(LineKind.BLANK, new long[0]);
+
+	private static final TokenKind[] TOKEN_KINDS = TokenKind.values();
+	private static final int COLUMN_BITS = 28;
+	private static final long COLUMN_MASK = (1L << COLUMN_BITS) - 1;
+
+	private final LineKind kind;
+	private final long[] tokens;
+
+	private LineNode(LineKind kind, long[] tokens) {
+		this.kind = kind;
+		this.tokens = tokens;
+	}
+
+	public LineKind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the estimated memory in bytes of this node, shared nodes such as {@link #BLANK} excepted
+	 */
+	public long estimatedMemory() {
+		return this == BLANK ? 0 : 40 + 8L * tokens.length;
+	}
+
+	public int getTokenCount() {
+		return tokens.length;
+	}
+
+	public TokenKind getTokenKind(int index) {
+		return TOKEN_KINDS[(int) (tokens[index] >>> (2 * COLUMN_BITS))];
+	}
+
+	public int getTokenStart(int index) {
+		return (int) ((tokens[index] >>> COLUMN_BITS) & COLUMN_MASK);
+	}
+
+	public int getTokenEnd(int index) {
+		return (int) (tokens[index] & COLUMN_MASK);
+	}
+
+	/**
+	 * @return the index of the token containing the character or ending just before it, -1 if there is none
+	 */
+	public int tokenAt(int character) {
+		for (int i = tokens.length - 1; i >= 0; i--) {
+			if (getTokenStart(i) <= character && character <= getTokenEnd(i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the name declared on the line, -1 if the line declares nothing
+	 */
+	public int getNameToken() {
+		return kind == LineKind.PROPERTY || kind == LineKind.SECTION_START ? 0 : -1;
+	}
+
+	@Override
+	public String toString() {
+		return "LineNode [kind=" + kind + ", tokens=" + Arrays.toString(tokens) + "]";
+	}
+
+	/**
+	 * Collects the tokens of a line, in order.
+	 */
+	public static final class Builder {
+
+		private long[] tokens = new long[4];
+		private int count;
+
+		/**
+		 * @param start	the column of the first character of the token
+		 * @param end	the column after the last character of the token
+		 */
+		public Builder add(TokenKind kind, int start, int end) {
+			if (count == tokens.length) {
+				tokens = Arrays.copyOf(tokens, count * 2);
+			}
+			tokens[count++] = ((long) kind.ordinal() << (2 * COLUMN_BITS)) | (Math.min(start, COLUMN_MASK) << COLUMN_BITS) | Math.min(end, COLUMN_MASK);
+			return this;
+		}
+
+		/**
+		 * @param kind	for a declaration, the name must be the first token
+		 */
+		public LineNode build(LineKind kind) {
+			if (kind == LineKind.BLANK && count == 0) {
+				return BLANK;
+			}
+			return new LineNode(kind, Arrays.copyOf(tokens, count));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.syntax;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * A declaration of a document: a section with its nested declarations or a property.
+ * The document itself is the root node, without name.
+ */
+public final class SyntaxNode {
+
+	public enum Kind {
+		DOCUMENT,
+		SECTION,
+		PROPERTY
+	}
+
+	private final Kind kind;
+	private final String name;
+	private final int line;
+	private final int nameStart;
+	private final int nameEnd;
+	private final int endLine;
+	private final List<SyntaxNode> children;
+
+	SyntaxNode(Kind kind, String name, int line, int nameStart, int nameEnd, int endLine, List<SyntaxNode> children) {
+		this.kind = kind;
+		this.name = name;
+		this.line = line;
+		this.nameStart = nameStart;
+		this.nameEnd = nameEnd;
+		this.endLine = endLine;
+		this.children = Collections.unmodifiableList(children);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the line of the declaration
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return the line closing the section, the declaration line for a property
+	 */
+	public int getEndLine() {
+		return endLine;
+	}
+
+	public List<SyntaxNode> getChildren() {
+		return children;
+	}
+
+	/**
+	 * @return the lines of the declaration
+	 */
+	public Range getRange() {
+		return new Range(new Position(line, 0), new Position(endLine + 1, 0));
+	}
+
+	public Range getSelectionRange() {
+		return new Range(new Position(line, nameStart), new Position(line, nameEnd));
+	}
+
+	@Override
+	public String toString() {
+		return "SyntaxNode [kind=" + kind + ", name=" + name + ", line=" + line + ", endLine=" + endLine + "]";
+	}
+}
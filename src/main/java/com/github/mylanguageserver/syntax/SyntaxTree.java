@@ -0,0 +1,273 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.syntax;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+
+import com.github.mylanguageserver.document.Rope;
+
+/**
+ * The syntax tree of a version of a document, shared by all the features working on that version.
+ *
+ * The tree is made of one {@link LineNode} per line. A new version is parsed incrementally from the tree of the
+ * previous one: only the lines touched by the edits are parsed again, all the other nodes are reused.
+ * The outline of the document, sections and properties, is built from the line nodes the first time it is needed.
+ */
+public final class SyntaxTree {
+
+	private final Rope text;
+	private final LineParser parser;
+	private final LineNode[] lines;
+	private final int parsedLineCount;
+	private volatile SyntaxNode root;
+	private volatile long estimatedMemory = -1;
+
+	private SyntaxTree(Rope text, LineParser parser, LineNode[] lines, int parsedLineCount) {
+		this.text = text;
+		this.parser = parser;
+		this.lines = lines;
+		this.parsedLineCount = parsedLineCount;
+	}
+
+	public static SyntaxTree parse(Rope text, LineParser parser) {
+		String content = text.toString();
+		LineNode[] lines = new LineNode[text.lineCount()];
+		int lineStart = 0;
+		for (int line = 0; line < lines.length; line++) {
+			int next = content.indexOf('\n', lineStart);
+			int lineEnd = next != -1 ? next : content.length();
+			int end = lineEnd > lineStart && content.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+			lines[line] = parser.parse(content.subSequence(lineStart, end));
+			lineStart = lineEnd + 1;
+		}
+		return new SyntaxTree(text, parser, lines, lines.length);
+	}
+
+	/**
+	 * @param newText	the content once the edits are applied
+	 * @param edits	the edits since the version of this tree, in the order they were applied
+	 * @return the tree of the new content, reusing the nodes of the lines not touched by the edits
+	 */
+	public SyntaxTree reparse(Rope newText, List<LineEdit> edits) {
+		List<LineNode> nodes = new ArrayList<>(Arrays.asList(lines));
+		for (LineEdit edit : edits) {
+			if (edit.getStartLine() > edit.getOldEndLine() || edit.getOldEndLine() >= nodes.size()) {
+				return parse(newText, parser);
+			}
+			nodes.subList(edit.getStartLine(), edit.getOldEndLine() + 1).clear();
+			nodes.addAll(edit.getStartLine(), Collections.nCopies(edit.getNewLineBreaks() + 1, (LineNode) null));
+		}
+		if (nodes.size() != newText.lineCount()) {
+			return parse(newText, parser);
+		}
+		LineNode[] newLines = nodes.toArray(new LineNode[nodes.size()]);
+		int parsed = 0;
+		for (int line = 0; line < newLines.length; line++) {
+			if (newLines[line] == null) {
+				newLines[line] = parser.parse(newText.subSequence(newText.lineStartOffset(line), newText.lineEndOffset(line)));
+				parsed++;
+			}
+		}
+		return new SyntaxTree(newText, parser, newLines, parsed);
+	}
+
+	/**
+	 * @return the number of characters of the line, excluding its terminator
+	 */
+	public int getLineLength(int line) {
+		return text.lineEndOffset(line) - text.lineStartOffset(line);
+	}
+
+	public int getLineCount() {
+		return lines.length;
+	}
+
+	/**
+	 * @return the estimated memory in bytes of the line nodes, including the ones shared with other versions
+	 */
+	public long estimatedMemory() {
+		if (estimatedMemory == -1) {
+			long memory = 16 + 4L * lines.length;
+			for (LineNode line : lines) {
+				memory += line.estimatedMemory();
+			}
+			estimatedMemory = memory;
+		}
+		return estimatedMemory;
+	}
+
+	public LineNode getLine(int line) {
+		return lines[line];
+	}
+
+	/**
+	 * @return true if both trees have the same nodes on every line but the given one, which is the case when
+	 * one is parsed incrementally from the other with edits on that line only
+	 */
+	public boolean sharesLinesExcept(SyntaxTree other, int line) {
+		if (other.lines.length != lines.length) {
+			return false;
+		}
+		for (int i = 0; i < lines.length; i++) {
+			if (i != line && other.lines[i] != lines[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of lines parsed to build this tree, the other ones are reused from the previous version
+	 */
+	public int getParsedLineCount() {
+		return parsedLineCount;
+	}
+
+	public List<Token> getTokens(int line) {
+		LineNode node = lines[line];
+		List<Token> tokens = new ArrayList<>(node.getTokenCount());
+		for (int i = 0; i < node.getTokenCount(); i++) {
+			tokens.add(getToken(line, i));
+		}
+		return tokens;
+	}
+
+	/**
+	 * @return the token at the position or ending just before it, null if there is none
+	 */
+	public Token tokenAt(Position position) {
+		int line = position.getLine();
+		if (line < 0 || line >= lines.length) {
+			return null;
+		}
+		int index = lines[line].tokenAt(position.getCharacter());
+		return index != -1 ? getToken(line, index) : null;
+	}
+
+	public String getText(Token token) {
+		return getText(token.getLine(), token.getStartCharacter(), token.getEndCharacter());
+	}
+
+	/**
+	 * @return true if the token of the line has the given text, without materializing the token text
+	 */
+	public boolean hasText(int line, int tokenIndex, String expected) {
+		LineNode node = lines[line];
+		int start = node.getTokenStart(tokenIndex);
+		if (node.getTokenEnd(tokenIndex) - start != expected.length()) {
+			return false;
+		}
+		int offset = text.lineStartOffset(line) + start;
+		for (int i = 0; i < expected.length(); i++) {
+			if (text.charAt(offset + i) != expected.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the declarations of the document, nested in their sections
+	 */
+	public SyntaxNode getRoot() {
+		SyntaxNode result = root;
+		if (result == null) {
+			result = buildRoot();
+			root = result;
+		}
+		return result;
+	}
+
+	private SyntaxNode buildRoot() {
+		Deque<SectionBuilder> sections = new ArrayDeque<>();
+		SectionBuilder document = new SectionBuilder(SyntaxNode.Kind.DOCUMENT, null, 0, 0, 0);
+		sections.push(document);
+		for (int line = 0; line < lines.length; line++) {
+			LineNode node = lines[line];
+			switch (node.getKind()) {
+			case PROPERTY:
+				sections.peek().children.add(new SyntaxNode(SyntaxNode.Kind.PROPERTY, nameOf(line), line,
+						node.getTokenStart(0), node.getTokenEnd(0), line, Collections.<SyntaxNode>emptyList()));
+				break;
+			case SECTION_START:
+				sections.push(new SectionBuilder(SyntaxNode.Kind.SECTION, nameOf(line), line, node.getTokenStart(0), node.getTokenEnd(0)));
+				break;
+			case SECTION_END:
+				if (sections.size() > 1) {
+					SectionBuilder closed = sections.pop();
+					sections.peek().children.add(closed.build(line));
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		// unclosed sections extend to the end of the document
+		int lastLine = Math.max(0, lines.length - 1);
+		while (sections.size() > 1) {
+			SectionBuilder unclosed = sections.pop();
+			sections.peek().children.add(unclosed.build(lastLine));
+		}
+		return document.build(lastLine);
+	}
+
+	private String nameOf(int line) {
+		LineNode node = lines[line];
+		return getText(line, node.getTokenStart(0), node.getTokenEnd(0));
+	}
+
+	/**
+	 * @return the text between two characters of a line
+	 */
+	public String getText(int line, int start, int end) {
+		int lineStart = text.lineStartOffset(line);
+		return text.substring(lineStart + start, lineStart + end);
+	}
+
+	public Token getToken(int line, int index) {
+		LineNode node = lines[line];
+		return new Token(node.getTokenKind(index), line, node.getTokenStart(index), node.getTokenEnd(index));
+	}
+
+	private static final class SectionBuilder {
+		final SyntaxNode.Kind kind;
+		final String name;
+		final int line;
+		final int nameStart;
+		final int nameEnd;
+		final List<SyntaxNode> children = new ArrayList<>();
+
+		SectionBuilder(SyntaxNode.Kind kind, String name, int line, int nameStart, int nameEnd) {
+			this.kind = kind;
+			this.name = name;
+			this.line = line;
+			this.nameStart = nameStart;
+			this.nameEnd = nameEnd;
+		}
+
+		SyntaxNode build(int endLine) {
+			return new SyntaxNode(kind, name, line, nameStart, nameEnd, endLine, children);
+		}
+	}
+}
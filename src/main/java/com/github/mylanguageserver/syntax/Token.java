@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.syntax;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * A token of a document, its text is available from {@link SyntaxTree#getText(Token)}.
+ */
+public final class Token {
+
+	private final TokenKind kind;
+	private final int line;
+	private final int startCharacter;
+	private final int endCharacter;
+
+	public Token(TokenKind kind, int line, int startCharacter, int endCharacter) {
+		this.kind = kind;
+		this.line = line;
+		this.startCharacter = startCharacter;
+		this.endCharacter = endCharacter;
+	}
+
+	public TokenKind getKind() {
+		return kind;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getStartCharacter() {
+		return startCharacter;
+	}
+
+	public int getEndCharacter() {
+		return endCharacter;
+	}
+
+	public int getLength() {
+		return endCharacter - startCharacter;
+	}
+
+	public Range getRange() {
+		return new Range(new Position(line, startCharacter), new Position(line, endCharacter));
+	}
+
+	@Override
+	public String toString() {
+		return "Token [kind=" + kind + ", line=" + line + ", start=" + startCharacter + ", end=" + endCharacter + "]";
+	}
+}
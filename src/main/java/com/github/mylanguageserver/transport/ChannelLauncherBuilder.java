@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.transport;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.MessageProducer;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.json.ConcurrentMessageProcessor;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+
+/**
+ * Builds a launcher exchanging the messages through {@link ChannelMessageProducer} and {@link ChannelMessageConsumer}
+ * when channels are set, and through the input and output streams of lsp4j otherwise.
+ */
+public class ChannelLauncherBuilder<T> extends LSPLauncher.Builder<T> {
+
+	private ReadableByteChannel inputChannel;
+	private WritableByteChannel outputChannel;
+	private MessageJsonHandler channelJsonHandler;
+	private RemoteEndpoint channelRemoteEndpoint;
+
+	/**
+	 * Reads and writes the messages on channels, replacing the input and output streams.
+	 */
+	public ChannelLauncherBuilder<T> setChannels(ReadableByteChannel input, WritableByteChannel output) {
+		this.inputChannel = input;
+		this.outputChannel = output;
+		// the base builder requires streams, they are not used
+		setInput(Channels.newInputStream(input));
+		setOutput(Channels.newOutputStream(output));
+		return this;
+	}
+
+	@Override
+	protected RemoteEndpoint createRemoteEndpoint(MessageJsonHandler jsonHandler) {
+		if (outputChannel == null) {
+			return super.createRemoteEndpoint(jsonHandler);
+		}
+		MessageConsumer outgoingMessageStream = wrapMessageConsumer(new ChannelMessageConsumer(outputChannel, jsonHandler));
+		Endpoint localEndpoint = ServiceEndpoints.toEndpoint(localServices);
+		RemoteEndpoint remoteEndpoint = exceptionHandler != null
+				? new RemoteEndpoint(outgoingMessageStream, localEndpoint, exceptionHandler)
+				: new RemoteEndpoint(outgoingMessageStream, localEndpoint);
+		jsonHandler.setMethodProvider(remoteEndpoint);
+		channelJsonHandler = jsonHandler;
+		channelRemoteEndpoint = remoteEndpoint;
+		return remoteEndpoint;
+	}
+
+	@Override
+	protected ConcurrentMessageProcessor createMessageProcessor(MessageProducer reader, MessageConsumer messageConsumer, T remoteProxy) {
+		if (inputChannel == null) {
+			return super.createMessageProcessor(reader, messageConsumer, remoteProxy);
+		}
+		return super.createMessageProcessor(new ChannelMessageProducer(inputChannel, channelJsonHandler, channelRemoteEndpoint),
+				messageConsumer, remoteProxy);
+	}
+}
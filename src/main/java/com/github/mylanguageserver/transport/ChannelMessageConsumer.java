@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.transport;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.lsp4j.jsonrpc.JsonRpcException;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+
+/**
+ * Writes the messages framed with a Content-Length header to a channel, from a direct buffer reused for all the messages.
+ *
+ * A message is encoded in UTF-8 while it is serialized, after some room left for its header, which is written in front
+ * of the content once its length is known: the message is never materialized as a string and goes to the channel
+ * in a single write. The buffer grows to hold the largest message and is released once it is written if it grew beyond
+ * {@value ChannelMessageProducer#RETAINED_CAPACITY} bytes.
+ */
+public class ChannelMessageConsumer implements MessageConsumer {
+
+	/** Longer than `Content-Length: ` followed by the largest int and the empty line. */
+	private static final int HEADER_ROOM = 32;
+
+	private final WritableByteChannel output;
+	private final MessageJsonHandler jsonHandler;
+	private final BufferWriter writer = new BufferWriter();
+
+	public ChannelMessageConsumer(WritableByteChannel output, MessageJsonHandler jsonHandler) {
+		this.output = output;
+		this.jsonHandler = jsonHandler;
+	}
+
+	@Override
+	public synchronized void consume(Message message) {
+		try {
+			writer.start();
+			jsonHandler.serialize(message, writer);
+			ByteBuffer framed = writer.finish();
+			while (framed.hasRemaining()) {
+				output.write(framed);
+			}
+			writer.release();
+		} catch (IOException e) {
+			throw new JsonRpcException(e);
+		}
+	}
+
+	/**
+	 * Encodes the characters of a message in the buffer, after the room left for the header.
+	 */
+	private static final class BufferWriter extends Writer {
+
+		private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private final CharBuffer surrogatePair = CharBuffer.allocate(2);
+		private ByteBuffer buffer = ByteBuffer.allocateDirect(ChannelMessageProducer.INITIAL_CAPACITY);
+		private char pendingHighSurrogate;
+
+		void start() {
+			// called on Buffer, the overrides returning a ByteBuffer or a CharBuffer do not exist on Java 8
+			((Buffer) buffer).clear();
+			((Buffer) buffer).position(HEADER_ROOM);
+			encoder.reset();
+			pendingHighSurrogate = 0;
+		}
+
+		/**
+		 * @return the buffer positioned on the header, limited to the end of the content
+		 */
+		ByteBuffer finish() {
+			if (pendingHighSurrogate != 0) {
+				((Buffer) surrogatePair).clear();
+				((Buffer) surrogatePair.put(pendingHighSurrogate)).flip();
+				pendingHighSurrogate = 0;
+				encode(surrogatePair, true);
+			}
+			encode(CharBuffer.allocate(0), true);
+			while (encoder.flush(buffer).isOverflow()) {
+				grow();
+			}
+			int contentLength = buffer.position() - HEADER_ROOM;
+			byte[] header = ("Content-Length: " + contentLength + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+			((Buffer) buffer).limit(buffer.position());
+			((Buffer) buffer).position(HEADER_ROOM - header.length);
+			buffer.put(header);
+			((Buffer) buffer).position(HEADER_ROOM - header.length);
+			return buffer;
+		}
+
+		void release() {
+			if (buffer.capacity() > ChannelMessageProducer.RETAINED_CAPACITY) {
+				buffer = ByteBuffer.allocateDirect(ChannelMessageProducer.INITIAL_CAPACITY);
+			}
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) {
+			write(CharBuffer.wrap(chars, offset, length));
+		}
+
+		@Override
+		public void write(String text, int offset, int length) {
+			write(CharBuffer.wrap(text, offset, offset + length));
+		}
+
+		@Override
+		public void write(int c) {
+			write(new char[] { (char) c }, 0, 1);
+		}
+
+		/**
+		 * Encodes the characters, keeping a trailing high surrogate until the next ones as the encoder does not keep it.
+		 */
+		private void write(CharBuffer chars) {
+			while (pendingHighSurrogate != 0 && chars.hasRemaining()) {
+				((Buffer) surrogatePair).clear();
+				((Buffer) surrogatePair.put(pendingHighSurrogate).put(chars.get())).flip();
+				pendingHighSurrogate = 0;
+				encode(surrogatePair, false);
+				if (surrogatePair.hasRemaining()) {
+					pendingHighSurrogate = surrogatePair.get();
+				}
+			}
+			encode(chars, false);
+			if (chars.hasRemaining()) {
+				pendingHighSurrogate = chars.get();
+			}
+		}
+
+		private void encode(CharBuffer chars, boolean endOfInput) {
+			CoderResult result;
+			while ((result = encoder.encode(chars, buffer, endOfInput)).isOverflow()) {
+				grow();
+			}
+			if (result.isError()) {
+				throw new IllegalStateException("Cannot encode the message: " + result);
+			}
+		}
+
+		private void grow() {
+			ByteBuffer grown = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+			((Buffer) buffer).flip();
+			grown.put(buffer);
+			buffer = grown;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.eclipse.lsp4j.jsonrpc.JsonRpcException;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.MessageIssueException;
+import org.eclipse.lsp4j.jsonrpc.MessageIssueHandler;
+import org.eclipse.lsp4j.jsonrpc.MessageProducer;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the messages framed with a Content-Length header from a channel, into a direct buffer reused for all the messages.
+ *
+ * The content of a message is decoded while it is parsed, so that it is never materialized as a single string:
+ * only the values of the message, such as the text of an opened document, are. The buffer grows to hold the largest
+ * message and is released once it is handled if it grew beyond {@value #RETAINED_CAPACITY} bytes.
+ */
+public class ChannelMessageProducer implements MessageProducer, Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChannelMessageProducer.class);
+
+	static final int INITIAL_CAPACITY = 64 * 1024;
+	static final int RETAINED_CAPACITY = 1024 * 1024;
+
+	private static final String CONTENT_LENGTH_HEADER = "content-length";
+	private static final String CONTENT_TYPE_HEADER = "content-type";
+	private static final String CHARSET_PARAMETER = "charset=";
+
+	private final ReadableByteChannel input;
+	private final MessageJsonHandler jsonHandler;
+	private final MessageIssueHandler issueHandler;
+	private ByteBuffer buffer = emptyBuffer(INITIAL_CAPACITY);
+	private volatile boolean keepRunning;
+
+	/**
+	 * @param issueHandler	receives the messages which cannot be handled, null to only log them
+	 */
+	public ChannelMessageProducer(ReadableByteChannel input, MessageJsonHandler jsonHandler, MessageIssueHandler issueHandler) {
+		this.input = input;
+		this.jsonHandler = jsonHandler;
+		this.issueHandler = issueHandler;
+	}
+
+	/**
+	 * Reads and handles the messages until the channel is closed.
+	 */
+	@Override
+	public void listen(MessageConsumer callback) {
+		keepRunning = true;
+		try {
+			while (keepRunning) {
+				Headers headers = readHeaders();
+				if (headers == null) {
+					break;
+				}
+				if (headers.contentLength < 0) {
+					LOGGER.error("Missing {} header, the message is ignored", CONTENT_LENGTH_HEADER);
+					continue;
+				}
+				if (!fill(headers.contentLength)) {
+					break;
+				}
+				ByteBuffer content = buffer.slice();
+				// called on Buffer, the overrides returning a ByteBuffer do not exist on Java 8
+				((Buffer) content).limit(headers.contentLength);
+				handleMessage(content, headers.charset, callback);
+				((Buffer) buffer).position(buffer.position() + headers.contentLength);
+				if (buffer.capacity() > RETAINED_CAPACITY && !buffer.hasRemaining()) {
+					buffer = emptyBuffer(INITIAL_CAPACITY);
+				}
+			}
+		} catch (IOException e) {
+			if (!keepRunning) {
+				return;
+			}
+			if (JsonRpcException.indicatesStreamClosed(e)) {
+				LOGGER.info("The input channel was closed: {}", e.getMessage());
+			} else {
+				throw new JsonRpcException(e);
+			}
+		} finally {
+			keepRunning = false;
+		}
+	}
+
+	private void handleMessage(ByteBuffer content, Charset charset, MessageConsumer callback) {
+		try {
+			Message message = jsonHandler.parseMessage(new InputStreamReader(new ByteBufferInputStream(content), charset));
+			callback.consume(message);
+		} catch (MessageIssueException e) {
+			if (issueHandler != null) {
+				issueHandler.handle(e.getRpcMessage(), e.getIssues());
+			} else {
+				LOGGER.error("Invalid message received", e);
+			}
+		} catch (RuntimeException e) {
+			LOGGER.error("Error while handling a received message", e);
+		}
+	}
+
+	/**
+	 * Reads the headers of the next message and consumes them from the buffer.
+	 *
+	 * @return the headers, with a negative content length if it is missing, or null if the channel reached its end
+	 */
+	private Headers readHeaders() throws IOException {
+		int end;
+		while ((end = headersEnd()) == -1) {
+			if (!readMore(buffer.remaining() + 1)) {
+				return null;
+			}
+		}
+		Headers headers = new Headers();
+		StringBuilder line = new StringBuilder();
+		while (buffer.position() < end) {
+			char c = (char) (buffer.get() & 0xFF);
+			if (c == '\n') {
+				parseHeader(line.toString().trim(), headers);
+				line.setLength(0);
+			} else {
+				line.append(c);
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * @return the position after the empty line ending the headers, or -1 if it has not been read yet
+	 */
+	private int headersEnd() {
+		for (int i = buffer.position(); i < buffer.limit(); i++) {
+			if (buffer.get(i) == '\n') {
+				int previous = i - 1;
+				if (previous >= buffer.position() && buffer.get(previous) == '\r') {
+					previous--;
+				}
+				if (previous < buffer.position() || buffer.get(previous) == '\n') {
+					return i + 1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static void parseHeader(String line, Headers headers) {
+		int separator = line.indexOf(':');
+		if (separator == -1) {
+			return;
+		}
+		String name = line.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+		String value = line.substring(separator + 1).trim();
+		if (CONTENT_LENGTH_HEADER.equals(name)) {
+			try {
+				headers.contentLength = Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				LOGGER.error("Invalid {} header: {}", CONTENT_LENGTH_HEADER, value);
+			}
+		} else if (CONTENT_TYPE_HEADER.equals(name)) {
+			int charset = value.indexOf(CHARSET_PARAMETER);
+			if (charset != -1) {
+				headers.charset = Charset.forName(value.substring(charset + CHARSET_PARAMETER.length()).trim());
+			}
+		}
+	}
+
+	/**
+	 * Reads until the buffer holds at least the given number of bytes.
+	 *
+	 * @return false if the channel reached its end before
+	 */
+	private boolean fill(int length) throws IOException {
+		while (buffer.remaining() < length) {
+			if (!readMore(length)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the next bytes of the channel, growing the buffer if it cannot hold the bytes needed.
+	 *
+	 * @param needed	the number of unread bytes the buffer must be able to hold
+	 * @return false if the channel reached its end
+	 */
+	private boolean readMore(int needed) throws IOException {
+		if (buffer.capacity() < needed) {
+			ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(needed, buffer.capacity() * 2));
+			grown.put(buffer);
+			buffer = grown;
+		} else {
+			buffer.compact();
+		}
+		int read = input.read(buffer);
+		((Buffer) buffer).flip();
+		return read != -1;
+	}
+
+	private static ByteBuffer emptyBuffer(int capacity) {
+		ByteBuffer empty = ByteBuffer.allocateDirect(capacity);
+		((Buffer) empty).flip();
+		return empty;
+	}
+
+	@Override
+	public void close() throws IOException {
+		keepRunning = false;
+		input.close();
+	}
+
+	private static final class Headers {
+		int contentLength = -1;
+		Charset charset = StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Reads the content of a message from the buffer, the decoder reading it copies a few kilobytes at a time.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer content;
+
+		ByteBufferInputStream(ByteBuffer content) {
+			this.content = content;
+		}
+
+		@Override
+		public int read() {
+			return content.hasRemaining() ? content.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!content.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, content.remaining());
+			content.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return content.remaining();
+		}
+	}
+}
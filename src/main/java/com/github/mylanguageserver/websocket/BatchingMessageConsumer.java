@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.websocket;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.WorkDoneProgressReport;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the messages to a WebSocket client asynchronously, queuing them while the client is slow to receive them.
+ *
+ * Messages are sent as long as the ones not yet written to the client are shorter than the outbound buffer size,
+ * the next ones are queued in order. While queued, a diagnostics notification is superseded by the next one for the
+ * same document, and a work done progress report by the next one for the same token, so that a slow client only
+ * receives their latest state. Notifications can also be held for a batching delay, so that the ones published in a
+ * burst are sent together once superseded. Requests and responses are never held, they send the notifications queued
+ * before them first, which keeps partial results ahead of their response.
+ */
+public class BatchingMessageConsumer implements MessageConsumer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchingMessageConsumer.class);
+
+	private final Session session;
+	private final MessageJsonHandler jsonHandler;
+	private final long batchDelay;
+	private final long outboundBufferSize;
+	/** Queued messages in order, by the key of the notifications they supersede or by a unique key. */
+	private final Map<Object, String> queue = new LinkedHashMap<>();
+	private long pendingLength;
+	private boolean draining;
+	private boolean closed;
+	private ScheduledFuture<?> scheduledFlush;
+
+	/**
+	 * @param batchDelay	the time in milliseconds notifications are held for, 0 to send them right away
+	 * @param outboundBufferSize	the length in characters of the messages not yet written to the client beyond which the next ones are queued
+	 */
+	public BatchingMessageConsumer(Session session, MessageJsonHandler jsonHandler, long batchDelay, long outboundBufferSize) {
+		this.session = session;
+		this.jsonHandler = jsonHandler;
+		this.batchDelay = batchDelay;
+		this.outboundBufferSize = Math.max(1, outboundBufferSize);
+	}
+
+	@Override
+	public void consume(Message message) {
+		String content = jsonHandler.serialize(message);
+		Object key = supersedingKey(message);
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			if (queue.put(key != null ? key : new Object(), content) != null) {
+				LOGGER.debug("Superseded a queued {} notification", ((NotificationMessage) message).getMethod());
+			}
+			if (message instanceof NotificationMessage && batchDelay > 0) {
+				if (scheduledFlush == null) {
+					scheduledFlush = TimerHolder.TIMER.schedule(this::flush, batchDelay, TimeUnit.MILLISECONDS);
+				}
+			} else {
+				drain();
+			}
+		}
+	}
+
+	/**
+	 * @return the key of the queued notifications made obsolete by this message, or null if it does not supersede any
+	 */
+	static Object supersedingKey(Message message) {
+		if (!(message instanceof NotificationMessage)) {
+			return null;
+		}
+		NotificationMessage notification = (NotificationMessage) message;
+		Object params = notification.getParams();
+		if (params instanceof PublishDiagnosticsParams) {
+			return Arrays.asList(notification.getMethod(), ((PublishDiagnosticsParams) params).getUri());
+		}
+		if (params instanceof ProgressParams && ((ProgressParams) params).getValue() instanceof WorkDoneProgressReport) {
+			return Arrays.asList(notification.getMethod(), ((ProgressParams) params).getToken().get());
+		}
+		return null;
+	}
+
+	private synchronized void flush() {
+		scheduledFlush = null;
+		drain();
+	}
+
+	/**
+	 * Sends the queued messages while the client keeps up, called again as the messages are written.
+	 */
+	private void drain() {
+		if (draining) {
+			// a send completed right away, the loop below goes on
+			return;
+		}
+		draining = true;
+		try {
+			for (Iterator<String> queued = queue.values().iterator(); queued.hasNext() && pendingLength < outboundBufferSize;) {
+				String content = queued.next();
+				queued.remove();
+				pendingLength += content.length();
+				send(content);
+			}
+		} finally {
+			draining = false;
+		}
+	}
+
+	private void send(String content) {
+		try {
+			sendMessage(content, result -> sent(content.length(), result));
+		} catch (RuntimeException e) {
+			pendingLength -= content.length();
+			LOGGER.warn("Cannot send a message to the WebSocket client", e);
+		}
+	}
+
+	private synchronized void sent(int length, SendResult result) {
+		pendingLength -= length;
+		if (!result.isOK() && !closed) {
+			LOGGER.warn("Cannot send a message to the WebSocket client", result.getException());
+		}
+		drain();
+	}
+
+	/**
+	 * Writes a message to the client, the handler is notified once it is written.
+	 */
+	protected void sendMessage(String message, SendHandler handler) {
+		session.getAsyncRemote().sendText(message, handler);
+	}
+
+	/**
+	 * Drops the queued messages, called when the session is closed.
+	 */
+	public synchronized void close() {
+		closed = true;
+		queue.clear();
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+	}
+
+	/**
+	 * @return the number of messages queued
+	 */
+	synchronized int getQueueSize() {
+		return queue.size();
+	}
+
+	private static final class TimerHolder {
+
+		private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+		private static ScheduledThreadPoolExecutor createTimer() {
+			ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "WebSocket Notifications Timer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			timer.setRemoveOnCancelPolicy(true);
+			return timer;
+		}
+	}
+}
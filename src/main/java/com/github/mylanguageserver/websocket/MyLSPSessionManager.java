@@ -0,0 +1,152 @@
+package com.github.mylanguageserver.websocket;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.ResultCache;
+import com.github.mylanguageserver.workspace.WorkspaceRegistry;
+
+/**
+ * Keeps track of the language servers created for the WebSocket sessions.
+ *
+ * All the sessions share the same {@link WorkspaceRegistry}, so the data computed from the files of a workspace
+ * is shared between the sessions opened on it, while each session keeps its own opened documents.
+ */
+public class MyLSPSessionManager {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MyLSPSessionManager.class);
+
+	private static final MyLSPSessionManager INSTANCE = new MyLSPSessionManager();
+
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = -1;
+	public static final long DEFAULT_OUTBOUND_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	private final WorkspaceRegistry workspaceRegistry = new WorkspaceRegistry();
+	private final Map<String, MyLanguageServer> servers = new ConcurrentHashMap<>();
+	private volatile long sessionMemoryBudget = DocumentStore.UNLIMITED;
+	private volatile long sessionArtifactsMemoryBudget = DocumentStore.UNLIMITED;
+	private volatile int offHeapThreshold = DocumentStore.NEVER_OFF_HEAP;
+	private volatile long resultCacheSize = ResultCache.DEFAULT_MAX_WEIGHT;
+	private volatile boolean compression;
+	private volatile int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+	private volatile long notificationBatchDelay;
+	private volatile long outboundBufferSize = DEFAULT_OUTBOUND_BUFFER_SIZE;
+
+	public static MyLSPSessionManager getInstance() {
+		return INSTANCE;
+	}
+
+	public WorkspaceRegistry getWorkspaceRegistry() {
+		return workspaceRegistry;
+	}
+
+	/**
+	 * @param sessionMemoryBudget	the maximum estimated memory in bytes of the documents opened by each session
+	 */
+	public void setSessionMemoryBudget(long sessionMemoryBudget) {
+		this.sessionMemoryBudget = sessionMemoryBudget;
+	}
+
+	/**
+	 * @param sessionArtifactsMemoryBudget	the maximum estimated memory in bytes of the artifacts computed from the documents of each session
+	 */
+	public void setSessionArtifactsMemoryBudget(long sessionArtifactsMemoryBudget) {
+		this.sessionArtifactsMemoryBudget = sessionArtifactsMemoryBudget;
+	}
+
+	/**
+	 * @param offHeapThreshold	the length in characters from which the content of a document is stored off-heap
+	 */
+	public void setOffHeapThreshold(int offHeapThreshold) {
+		this.offHeapThreshold = offHeapThreshold;
+	}
+
+	/**
+	 * @param resultCacheSize	the maximum weight of the request results cached by each session, 0 to disable the cache
+	 */
+	public void setResultCacheSize(long resultCacheSize) {
+		this.resultCacheSize = resultCacheSize;
+	}
+
+	/**
+	 * @param compression	whether messages are compressed with the permessage-deflate extension when the client supports it
+	 */
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+
+	boolean isCompression() {
+		return compression;
+	}
+
+	/**
+	 * @param maxMessageSize	the maximum size in bytes of the messages received, {@link #DEFAULT_MAX_MESSAGE_SIZE} for the Tyrus defaults
+	 */
+	public void setMaxMessageSize(int maxMessageSize) {
+		this.maxMessageSize = maxMessageSize;
+	}
+
+	int getMaxMessageSize() {
+		return maxMessageSize;
+	}
+
+	/**
+	 * @param notificationBatchDelay	the time in milliseconds notifications are held for to be sent together, 0 to send them right away
+	 */
+	public void setNotificationBatchDelay(long notificationBatchDelay) {
+		this.notificationBatchDelay = notificationBatchDelay;
+	}
+
+	long getNotificationBatchDelay() {
+		return notificationBatchDelay;
+	}
+
+	/**
+	 * @param outboundBufferSize	the length in characters of the messages not yet written to a client beyond which the next ones are queued
+	 */
+	public void setOutboundBufferSize(long outboundBufferSize) {
+		this.outboundBufferSize = outboundBufferSize;
+	}
+
+	long getOutboundBufferSize() {
+		return outboundBufferSize;
+	}
+
+	MyLanguageServer openSession(Session session) {
+		DocumentStore documents = new DocumentStore(sessionMemoryBudget, sessionArtifactsMemoryBudget, offHeapThreshold);
+		documents.getResultCache().setMaxWeight(resultCacheSize);
+		MyLanguageServer server = new MyLanguageServer(workspaceRegistry, documents);
+		server.setExitHandler(() -> closeQuietly(session));
+		servers.put(session.getId(), server);
+		LOGGER.info("WebSocket session {} opened, {} session(s) active", session.getId(), servers.size());
+		return server;
+	}
+
+	void closeSession(Session session) {
+		MyLanguageServer server = servers.remove(session.getId());
+		if (server != null) {
+			// the socket may drop without a shutdown request, stop diagnosing as shutdown does
+			server.getTextDocumentService().getDiagnostics().close();
+			server.releaseWorkspace();
+			LOGGER.info("WebSocket session {} closed, {} session(s) active", session.getId(), servers.size());
+		}
+	}
+
+	private static void closeQuietly(Session session) {
+		try {
+			session.close(new CloseReason(CloseCodes.NORMAL_CLOSURE, "Language server exited"));
+		} catch (IOException e) {
+			LOGGER.warn("Cannot close WebSocket session " + session.getId(), e);
+		}
+	}
+}
@@ -2,18 +2,71 @@ package com.github.mylanguageserver.websocket;
 
 import java.util.Collection;
 
+import javax.websocket.CloseReason;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
 import org.eclipse.lsp4j.jsonrpc.Launcher.Builder;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.lsp4j.services.LanguageClientAware;
 import org.eclipse.lsp4j.websocket.WebSocketEndpoint;
+import org.eclipse.lsp4j.websocket.WebSocketLauncherBuilder;
 
-import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.metrics.MeasuredMessageJsonHandler;
+import com.github.mylanguageserver.metrics.ServerMetrics;
 
 public class MyLSPWebSocketEndpoint extends WebSocketEndpoint<LanguageClient> {
 
+	private Session session;
+	private MeasuredMessageJsonHandler jsonHandler;
+	private BatchingMessageConsumer outgoingMessages;
+
+	/**
+	 * Same as the inherited implementation, with a JSON handler feeding the server metrics,
+	 * and outgoing messages batched and queued for slow clients.
+	 */
+	@Override
+	public void onOpen(Session session, EndpointConfig config) {
+		this.session = session;
+		MyLSPSessionManager sessionManager = MyLSPSessionManager.getInstance();
+		if (sessionManager.getMaxMessageSize() != MyLSPSessionManager.DEFAULT_MAX_MESSAGE_SIZE) {
+			session.setMaxTextMessageBufferSize(sessionManager.getMaxMessageSize());
+		}
+		WebSocketLauncherBuilder<LanguageClient> builder = new WebSocketLauncherBuilder<LanguageClient>() {
+			@Override
+			protected MessageJsonHandler createJsonHandler() {
+				jsonHandler = new MeasuredMessageJsonHandler(getSupportedMethods(), configureGson, ServerMetrics.getInstance());
+				return jsonHandler;
+			}
+
+			@Override
+			protected RemoteEndpoint createRemoteEndpoint(MessageJsonHandler jsonHandler) {
+				outgoingMessages = new BatchingMessageConsumer(session, jsonHandler, sessionManager.getNotificationBatchDelay(),
+						sessionManager.getOutboundBufferSize());
+				MessageConsumer outgoingMessageStream = wrapMessageConsumer(outgoingMessages);
+				Endpoint localEndpoint = ServiceEndpoints.toEndpoint(localServices);
+				RemoteEndpoint remoteEndpoint = exceptionHandler != null
+						? new RemoteEndpoint(outgoingMessageStream, localEndpoint, exceptionHandler)
+						: new RemoteEndpoint(outgoingMessageStream, localEndpoint);
+				jsonHandler.setMethodProvider(remoteEndpoint);
+				return remoteEndpoint;
+			}
+		};
+		builder.setSession(session);
+		configure(builder);
+		Launcher<LanguageClient> launcher = builder.create();
+		connect(builder.getLocalServices(), launcher.getRemoteProxy());
+	}
+
 	@Override
 	protected void configure(Builder<LanguageClient> builder) {
-		builder.setLocalService(new MyLanguageServer());
+		builder.setLocalService(MyLSPSessionManager.getInstance().openSession(session));
 		builder.setRemoteInterface(LanguageClient.class);
 	}
 
@@ -24,4 +77,15 @@ public class MyLSPWebSocketEndpoint extends WebSocketEndpoint<LanguageClient> {
 			.forEach(languageClientAware -> ((LanguageClientAware) languageClientAware).connect(remoteProxy));
 	}
 
+	@Override
+	public void onClose(Session session, CloseReason closeReason) {
+		MyLSPSessionManager.getInstance().closeSession(session);
+		if (outgoingMessages != null) {
+			outgoingMessages.close();
+		}
+		if (jsonHandler != null) {
+			jsonHandler.abandonPendingRequests();
+		}
+	}
+
 }
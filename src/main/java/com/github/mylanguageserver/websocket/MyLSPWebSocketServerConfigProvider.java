@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.Set;
 
 import javax.websocket.Endpoint;
+import javax.websocket.Extension;
 import javax.websocket.server.ServerApplicationConfig;
 import javax.websocket.server.ServerEndpointConfig;
 
@@ -13,8 +14,14 @@ public class MyLSPWebSocketServerConfigProvider implements ServerApplicationConf
 
 	@Override
 	public Set<ServerEndpointConfig> getEndpointConfigs(Set<Class<? extends Endpoint>> endpointClasses) {
-		ServerEndpointConfig conf = ServerEndpointConfig.Builder.create(MyLSPWebSocketEndpoint.class, WEBSOCKET_SERVER_PATH).build();
-		return Collections.singleton(conf);
+		ServerEndpointConfig.Builder builder = ServerEndpointConfig.Builder.create(MyLSPWebSocketEndpoint.class, WEBSOCKET_SERVER_PATH);
+		MyLSPSessionManager sessionManager = MyLSPSessionManager.getInstance();
+		if (sessionManager.isCompression()) {
+			int maxMessageSize = sessionManager.getMaxMessageSize();
+			Extension deflate = new PerMessageDeflateExtension(maxMessageSize != MyLSPSessionManager.DEFAULT_MAX_MESSAGE_SIZE ? maxMessageSize : Integer.MAX_VALUE);
+			builder.extensions(Collections.singletonList(deflate));
+		}
+		return Collections.singleton(builder.build());
 	}
 
 	@Override
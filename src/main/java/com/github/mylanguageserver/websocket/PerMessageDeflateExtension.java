@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.websocket;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+/**
+ * The permessage-deflate WebSocket extension (RFC 7692), which Tyrus does not bundle.
+ *
+ * Messages received with the RSV1 bit are inflated, messages sent are deflated when they are at least
+ * {@link #MIN_DEFLATED_SIZE} bytes long, smaller ones are sent as is, which the extension allows. The compression
+ * context is kept from a message to the next unless the peer asks for no context takeover. As {@link Deflater} always
+ * uses the largest window, messages are sent uncompressed when the peer asks for a smaller one.
+ */
+public class PerMessageDeflateExtension implements ExtendedExtension {
+
+	public static final String NAME = "permessage-deflate";
+	static final int MIN_DEFLATED_SIZE = 256;
+
+	private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+	private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+	private static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+	private static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+	private static final String MAX_WINDOW_BITS = "15";
+	private static final byte CONTINUATION = 0x00;
+	/** Ends the output of a sync flush, removed from the last frame of a message and added back before inflating it. */
+	private static final byte[] TAIL = { 0x00, 0x00, (byte) 0xff, (byte) 0xff };
+
+	private final int maxInflatedSize;
+
+	/**
+	 * @param maxInflatedSize	the maximum size in bytes of a message once inflated, as it is checked by Tyrus only once the frames are inflated
+	 */
+	public PerMessageDeflateExtension(int maxInflatedSize) {
+		this.maxInflatedSize = maxInflatedSize;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public List<Parameter> getParameters() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Called on the server with the parameters offered by the client, returns the ones accepted.
+	 */
+	@Override
+	public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+		List<Parameter> accepted = new ArrayList<>();
+		boolean noContextTakeover = false;
+		boolean smallerWindow = false;
+		for (Parameter parameter : requestedParameters != null ? requestedParameters : Collections.<Parameter> emptyList()) {
+			if (SERVER_NO_CONTEXT_TAKEOVER.equals(parameter.getName())) {
+				noContextTakeover = true;
+				accepted.add(parameter);
+			} else if (SERVER_MAX_WINDOW_BITS.equals(parameter.getName())) {
+				smallerWindow = !MAX_WINDOW_BITS.equals(parameter.getValue());
+				accepted.add(parameter);
+			}
+		}
+		context.getProperties().putIfAbsent(NAME, new State(noContextTakeover, !smallerWindow));
+		return accepted;
+	}
+
+	/**
+	 * Called on the client with the parameters accepted by the server.
+	 */
+	@Override
+	public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+		boolean noContextTakeover = false;
+		boolean smallerWindow = false;
+		for (Parameter parameter : responseParameters) {
+			if (CLIENT_NO_CONTEXT_TAKEOVER.equals(parameter.getName())) {
+				noContextTakeover = true;
+			} else if (CLIENT_MAX_WINDOW_BITS.equals(parameter.getName())) {
+				smallerWindow = !MAX_WINDOW_BITS.equals(parameter.getValue());
+			}
+		}
+		context.getProperties().putIfAbsent(NAME, new State(noContextTakeover, !smallerWindow));
+	}
+
+	@Override
+	public Frame processIncoming(ExtensionContext context, Frame frame) {
+		State state = (State) context.getProperties().get(NAME);
+		if (state == null || frame.isControlFrame()) {
+			return frame;
+		}
+		if (frame.getOpcode() != CONTINUATION) {
+			state.inflating = frame.isRsv1();
+			state.inflatedSize = 0;
+		}
+		if (!state.inflating) {
+			return frame;
+		}
+		byte[] inflated = state.inflate(frame.getPayloadData(), (int) frame.getPayloadLength(), frame.isFin(), maxInflatedSize);
+		return Frame.builder(frame).rsv1(false).payloadData(inflated).build();
+	}
+
+	@Override
+	public Frame processOutgoing(ExtensionContext context, Frame frame) {
+		State state = (State) context.getProperties().get(NAME);
+		if (state == null || frame.isControlFrame()) {
+			return frame;
+		}
+		// frames are sent one at a time by Tyrus, the lock only guards against a misbehaving caller
+		synchronized (state) {
+			boolean first = frame.getOpcode() != CONTINUATION;
+			if (first) {
+				state.deflating = state.deflate && (!frame.isFin() || frame.getPayloadLength() >= MIN_DEFLATED_SIZE);
+			}
+			if (!state.deflating) {
+				return frame;
+			}
+			byte[] deflated = state.deflate(frame.getPayloadData(), (int) frame.getPayloadLength(), frame.isFin());
+			return Frame.builder(frame).rsv1(first).payloadData(deflated).build();
+		}
+	}
+
+	@Override
+	public void destroy(ExtensionContext context) {
+		State state = (State) context.getProperties().remove(NAME);
+		if (state != null) {
+			state.end();
+		}
+	}
+
+	/**
+	 * The compression contexts of a connection.
+	 */
+	private static final class State {
+
+		private final boolean noContextTakeover;
+		private final boolean deflate;
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		private final Inflater inflater = new Inflater(true);
+		// frames are received and sent by different threads
+		private final byte[] deflateBuffer = new byte[8192];
+		private final ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		private final byte[] inflateBuffer = new byte[8192];
+		private final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+		private boolean deflating;
+		private boolean inflating;
+		private long inflatedSize;
+
+		State(boolean noContextTakeover, boolean deflate) {
+			this.noContextTakeover = noContextTakeover;
+			this.deflate = deflate;
+		}
+
+		byte[] deflate(byte[] payload, int length, boolean last) {
+			deflated.reset();
+			deflater.setInput(payload, 0, length);
+			int written;
+			do {
+				written = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.SYNC_FLUSH);
+				deflated.write(deflateBuffer, 0, written);
+			} while (written == deflateBuffer.length);
+			if (!last) {
+				return deflated.toByteArray();
+			}
+			if (noContextTakeover) {
+				deflater.reset();
+			}
+			return Arrays.copyOf(deflated.toByteArray(), deflated.size() - TAIL.length);
+		}
+
+		byte[] inflate(byte[] payload, int length, boolean last, int maxInflatedSize) {
+			inflated.reset();
+			try {
+				inflater.setInput(payload, 0, length);
+				inflateInput(maxInflatedSize);
+				if (last) {
+					inflater.setInput(TAIL);
+					inflateInput(maxInflatedSize);
+				}
+			} catch (DataFormatException e) {
+				throw new IllegalStateException("Cannot inflate a WebSocket frame.", e);
+			}
+			if (inflater.finished()) {
+				// the peer ended its deflate stream, the next message starts a new one
+				inflater.reset();
+			}
+			return inflated.toByteArray();
+		}
+
+		private void inflateInput(int maxInflatedSize) throws DataFormatException {
+			while (!inflater.needsInput() && !inflater.finished()) {
+				int length = inflater.inflate(inflateBuffer);
+				inflatedSize += length;
+				if (inflatedSize > maxInflatedSize) {
+					throw new IllegalStateException("An inflated WebSocket message is larger than " + maxInflatedSize + " bytes.");
+				}
+				inflated.write(inflateBuffer, 0, length);
+			}
+		}
+
+		void end() {
+			deflater.end();
+			inflater.end();
+		}
+	}
+}
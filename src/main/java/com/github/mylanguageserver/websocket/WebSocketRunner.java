@@ -1,11 +1,17 @@
 package com.github.mylanguageserver.websocket;
 
+import java.util.Collections;
+import java.util.Map;
+
 import javax.websocket.DeploymentException;
 
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.server.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.mylanguageserver.document.DocumentStore;
+
 public class WebSocketRunner {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketRunner.class);
@@ -15,10 +21,18 @@ public class WebSocketRunner {
 	private static final String DEFAULT_CONTEXT_PATH = "/";
 
 	public void runWebSocketServer(String hostname, int port, String contextPath) {
+		runWebSocketServer(hostname, port, contextPath, -1);
+	}
+
+	/**
+	 * @param sessionMemoryLimit	the maximum estimated memory in bytes of the documents opened by each session, -1 for no limit
+	 */
+	public void runWebSocketServer(String hostname, int port, String contextPath, long sessionMemoryLimit) {
 		hostname = hostname != null ? hostname : DEFAULT_HOSTNAME;
 		port = port != -1 ? port : DEFAULT_PORT;
 		contextPath = contextPath != null ? contextPath : DEFAULT_CONTEXT_PATH;
-		Server server = new Server(hostname, port, contextPath, null, MyLSPWebSocketServerConfigProvider.class);
+		MyLSPSessionManager.getInstance().setSessionMemoryBudget(sessionMemoryLimit != -1 ? sessionMemoryLimit : DocumentStore.UNLIMITED);
+		Server server = new Server(hostname, port, contextPath, createServerProperties(), MyLSPWebSocketServerConfigProvider.class);
 		Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "camel-lsp-websocket-server-shutdown-hook"));
 
 		try {
@@ -33,4 +47,15 @@ public class WebSocketRunner {
 			server.stop();
 		}
 	}
+
+	/**
+	 * @return the Tyrus properties, with an incoming buffer able to hold the largest message as clients send each one in a single frame
+	 */
+	private static Map<String, Object> createServerProperties() {
+		int maxMessageSize = MyLSPSessionManager.getInstance().getMaxMessageSize();
+		if (maxMessageSize == MyLSPSessionManager.DEFAULT_MAX_MESSAGE_SIZE) {
+			return null;
+		}
+		return Collections.singletonMap(TyrusWebSocketEngine.INCOMING_BUFFER_SIZE, maxMessageSize);
+	}
 }
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.workspace;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.index.WorkspaceIndexer;
+
+/**
+ * Applies the changes of the watched files notified by the client, off the JSON-RPC thread.
+ *
+ * Notifications are only queued when received. They are drained one batch at a time: the events of all the
+ * notifications queued meanwhile are coalesced per file, the latest one winning, then the changed files are read
+ * and indexed in parallel batches by the {@link WorkspaceIndexer}. A branch checkout notifying tens of thousands
+ * of events thus reads each file once, and a batch is only applied once the previous one is.
+ */
+public class FileChangePipeline {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileChangePipeline.class);
+
+	/**
+	 * Told about the changes of the indexed files once the index is updated with them.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+		void filesChanged(Map<Path, FileEvent> changes);
+	}
+
+	private final Supplier<WorkspaceContext> workspace;
+	private final Listener listener;
+	private final Queue<List<FileEvent>> queued = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean draining = new AtomicBoolean();
+
+	/**
+	 * @param workspace	the workspace whose files are watched, null until initialization
+	 * @param listener	told about the changes of the indexed files
+	 */
+	public FileChangePipeline(Supplier<WorkspaceContext> workspace, Listener listener) {
+		this.workspace = workspace;
+		this.listener = listener;
+	}
+
+	/**
+	 * Queues the events of a notification, returns immediately.
+	 */
+	public void submit(List<FileEvent> events) {
+		queued.add(events);
+		drainIfIdle();
+	}
+
+	private void drainIfIdle() {
+		if (queued.isEmpty() || !draining.compareAndSet(false, true)) {
+			return;
+		}
+		CompletableFuture.supplyAsync(this::coalesce, ExecutorHolder.EXECUTOR)
+			.thenCompose(this::apply)
+			.whenComplete((ignored, error) -> {
+				if (error != null) {
+					LOGGER.warn("Cannot apply the changes of the watched files", error);
+				}
+				draining.set(false);
+				drainIfIdle();
+			});
+	}
+
+	private Map<Path, FileEvent> coalesce() {
+		Map<Path, FileEvent> changes = new LinkedHashMap<>();
+		int events = 0;
+		for (List<FileEvent> notification = queued.poll(); notification != null; notification = queued.poll()) {
+			for (FileEvent event : notification) {
+				Path file = WorkspaceIndexer.pathOf(event.getUri());
+				if (file != null) {
+					changes.merge(file, event, FileChangePipeline::latest);
+					events++;
+				}
+			}
+		}
+		LOGGER.debug("{} file events coalesced into {} changes", events, changes.size());
+		return changes;
+	}
+
+	/**
+	 * A file created then changed is still a created file, otherwise only the latest event matters.
+	 */
+	private static FileEvent latest(FileEvent previous, FileEvent next) {
+		return previous.getType() == FileChangeType.Created && next.getType() == FileChangeType.Changed ? previous : next;
+	}
+
+	private CompletableFuture<Void> apply(Map<Path, FileEvent> changes) {
+		WorkspaceContext context = workspace.get();
+		if (context == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		Map<Path, FileEvent> indexedChanges = new LinkedHashMap<>();
+		List<Path> changed = new ArrayList<>();
+		List<Path> deleted = new ArrayList<>();
+		for (Map.Entry<Path, FileEvent> change : changes.entrySet()) {
+			Path file = change.getKey();
+			context.getFileContents().invalidate(file);
+			if (WorkspaceIndexer.isIndexed(file)) {
+				indexedChanges.put(file, change.getValue());
+				(change.getValue().getType() == FileChangeType.Deleted ? deleted : changed).add(file);
+			}
+		}
+		if (indexedChanges.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return context.getIndexer().applyChanges(changed, deleted).thenRun(() -> listener.filesChanged(indexedChanges));
+	}
+
+	private static final class ExecutorHolder {
+
+		private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "File Changes");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.workspace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.mylanguageserver.document.Rope;
+
+/**
+ * Least recently used cache of the content of workspace files as stored on disk.
+ *
+ * Entries are validated against the last modification time and size of the file, so that a content
+ * read once is reused by every session of the workspace until the file changes.
+ * The cache is bounded by the total number of cached characters.
+ */
+public class FileContentCache {
+
+	private final long maxCachedLength;
+	private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedLength;
+
+	public FileContentCache(long maxCachedLength) {
+		this.maxCachedLength = maxCachedLength;
+	}
+
+	/**
+	 * @param file	a file of the workspace
+	 * @return the current content of the file on disk
+	 * @throws IOException	if the file cannot be read
+	 */
+	public Rope read(Path file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		synchronized (this) {
+			Entry entry = entries.get(file);
+			if (entry != null && entry.lastModified == lastModified && entry.size == attributes.size()) {
+				return entry.content;
+			}
+		}
+		Rope content = Rope.of(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		put(file, new Entry(lastModified, attributes.size(), content));
+		return content;
+	}
+
+	public synchronized void invalidate(Path file) {
+		Entry removed = entries.remove(file);
+		if (removed != null) {
+			cachedLength -= removed.content.length();
+		}
+	}
+
+	private synchronized void put(Path file, Entry entry) {
+		invalidate(file);
+		if (entry.content.length() > maxCachedLength) {
+			return;
+		}
+		entries.put(file, entry);
+		cachedLength += entry.content.length();
+		Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+		while (cachedLength > maxCachedLength && leastRecentlyUsed.hasNext()) {
+			cachedLength -= leastRecentlyUsed.next().content.length();
+			leastRecentlyUsed.remove();
+		}
+	}
+
+	private static final class Entry {
+		final long lastModified;
+		final long size;
+		final Rope content;
+
+		Entry(long lastModified, long size, Rope content) {
+			this.lastModified = lastModified;
+			this.size = size;
+			this.content = content;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.workspace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.Range;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mylanguageserver.completion.WorkspaceVocabulary;
+import com.github.mylanguageserver.document.PositionEncoding;
+import com.github.mylanguageserver.document.Rope;
+import com.github.mylanguageserver.index.ReferenceIndex;
+import com.github.mylanguageserver.index.SymbolIndex;
+import com.github.mylanguageserver.index.WorkspaceIndexer;
+
+/**
+ * Data computed from the files of a workspace, as stored on disk.
+ *
+ * A context is shared by all the sessions opened on the same workspace roots, so everything it holds
+ * must be immutable or thread-safe. What a client has modified but not saved lives in its own document store.
+ */
+public class WorkspaceContext {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceContext.class);
+
+	static final long DEFAULT_MAX_CACHED_FILE_CONTENT_LENGTH = 64L * 1024 * 1024;
+
+	private final List<Path> roots;
+	private final FileContentCache fileContents = new FileContentCache(DEFAULT_MAX_CACHED_FILE_CONTENT_LENGTH);
+	private final SymbolIndex symbolIndex = new SymbolIndex();
+	private final ReferenceIndex referenceIndex = new ReferenceIndex();
+	private final WorkspaceIndexer indexer;
+	private final WorkspaceVocabulary vocabulary = new WorkspaceVocabulary(symbolIndex);
+	private CompletableFuture<Void> indexing;
+
+	WorkspaceContext(List<Path> roots) {
+		this(roots, null);
+	}
+
+	/**
+	 * @param indexCacheDirectory	where the symbol index is saved between sessions, or null to not save it
+	 */
+	WorkspaceContext(List<Path> roots, Path indexCacheDirectory) {
+		this.roots = roots;
+		Path snapshotFile = indexCacheDirectory != null && !roots.isEmpty() ? indexCacheDirectory.resolve(snapshotName(roots)) : null;
+		this.indexer = new WorkspaceIndexer(symbolIndex, referenceIndex, snapshotFile);
+		symbolIndex.setChangeListener(vocabulary::indexChanged);
+	}
+
+	/**
+	 * @return a file name unique to the roots
+	 */
+	static String snapshotName(List<Path> roots) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (Path root : roots) {
+				digest.update(root.toString().getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			StringBuilder name = new StringBuilder();
+			for (byte b : digest.digest()) {
+				name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return name.append(".index").toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is available on every Java platform", e);
+		}
+	}
+
+	/**
+	 * @return the normalized absolute root folders of the workspace, possibly empty
+	 */
+	public List<Path> getRoots() {
+		return roots;
+	}
+
+	public FileContentCache getFileContents() {
+		return fileContents;
+	}
+
+	/**
+	 * Converts the ranges found by the indexes in a workspace file, in UTF-16 characters, to the encoding negotiated
+	 * with a client. The file is only read, through the content cache, when the encoding is not UTF-16.
+	 *
+	 * @return the ranges in the encoding, or null if the file cannot be read anymore
+	 */
+	public List<Range> fromUtf16(String uri, List<Range> ranges, PositionEncoding encoding) {
+		if (encoding == PositionEncoding.UTF_16 || ranges.isEmpty()) {
+			return ranges;
+		}
+		Path file = WorkspaceIndexer.pathOf(uri);
+		if (file == null) {
+			return null;
+		}
+		Rope content;
+		try {
+			content = fileContents.read(file);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			LOGGER.warn("Cannot read " + file + " to convert its positions", e);
+			return null;
+		}
+		List<Range> converted = new ArrayList<>(ranges.size());
+		for (Range range : ranges) {
+			converted.add(encoding.fromUtf16(content, range));
+		}
+		return converted;
+	}
+
+	/**
+	 * @return the symbols of the workspace files as stored on disk, filled in the background once the context is acquired
+	 */
+	public SymbolIndex getSymbolIndex() {
+		return symbolIndex;
+	}
+
+	/**
+	 * @return the identifiers of the workspace files as stored on disk, filled along with the symbol index
+	 */
+	public ReferenceIndex getReferenceIndex() {
+		return referenceIndex;
+	}
+
+	/**
+	 * @return the names declared in the workspace files, for completion
+	 */
+	public WorkspaceVocabulary getVocabulary() {
+		return vocabulary;
+	}
+
+	public WorkspaceIndexer getIndexer() {
+		return indexer;
+	}
+
+	/**
+	 * @return a future completed once the initial indexing of the roots is done
+	 */
+	public synchronized CompletableFuture<Void> getIndexing() {
+		return indexing;
+	}
+
+	synchronized void startIndexing() {
+		if (indexing == null) {
+			indexing = indexer.indexRoots(roots);
+		}
+	}
+
+	void close() {
+		indexer.close();
+	}
+}
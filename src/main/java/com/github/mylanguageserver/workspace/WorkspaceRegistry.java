@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.workspace;
+
+import java.net.URI;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.WorkspaceFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reference counted {@link WorkspaceContext}s, keyed by their workspace roots.
+ *
+ * Sessions acquire the context of their workspace at initialization and release it when they end,
+ * the context is dropped with its last session.
+ */
+public class WorkspaceRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceRegistry.class);
+
+	private final Map<List<Path>, SharedContext> contexts = new HashMap<>();
+	private volatile Path indexCacheDirectory;
+
+	/**
+	 * @param indexCacheDirectory	where the symbol index of the workspaces is saved between sessions, null to not save it
+	 */
+	public void setIndexCacheDirectory(Path indexCacheDirectory) {
+		this.indexCacheDirectory = indexCacheDirectory;
+	}
+
+	public synchronized WorkspaceContext acquire(InitializeParams params) {
+		List<Path> roots = rootsOf(params);
+		SharedContext shared = contexts.computeIfAbsent(roots, key -> new SharedContext(new WorkspaceContext(key, indexCacheDirectory)));
+		shared.context.startIndexing();
+		shared.sessions++;
+		LOGGER.debug("Workspace {} used by {} session(s)", roots, shared.sessions);
+		return shared.context;
+	}
+
+	public synchronized void release(WorkspaceContext context) {
+		SharedContext shared = contexts.get(context.getRoots());
+		if (shared != null && shared.context == context && --shared.sessions == 0) {
+			contexts.remove(context.getRoots());
+			context.close();
+			LOGGER.debug("Workspace {} not used anymore", context.getRoots());
+		}
+	}
+
+	synchronized int getWorkspaceCount() {
+		return contexts.size();
+	}
+
+	static List<Path> rootsOf(InitializeParams params) {
+		List<String> uris = new ArrayList<>();
+		if (params.getWorkspaceFolders() != null && !params.getWorkspaceFolders().isEmpty()) {
+			for (WorkspaceFolder folder : params.getWorkspaceFolders()) {
+				uris.add(folder.getUri());
+			}
+		} else if (params.getRootUri() != null) {
+			uris.add(params.getRootUri());
+		} else {
+			String rootPath = rootPathOf(params);
+			if (rootPath != null) {
+				uris.add(Paths.get(rootPath).toUri().toString());
+			}
+		}
+		List<Path> roots = new ArrayList<>();
+		for (String uri : uris) {
+			try {
+				roots.add(Paths.get(URI.create(uri)).toAbsolutePath().normalize());
+			} catch (IllegalArgumentException | FileSystemNotFoundException e) {
+				LOGGER.warn("Ignoring workspace root which is not a local folder: {}", uri);
+			}
+		}
+		Collections.sort(roots);
+		return Collections.unmodifiableList(roots);
+	}
+
+	/**
+	 * The root path was replaced by the root URI in the protocol, it is only sent by old clients.
+	 */
+	@SuppressWarnings("deprecation")
+	private static String rootPathOf(InitializeParams params) {
+		return params.getRootPath();
+	}
+
+	private static final class SharedContext {
+		final WorkspaceContext context;
+		int sessions;
+
+		SharedContext(WorkspaceContext context) {
+			this.context = context;
+		}
+	}
+}
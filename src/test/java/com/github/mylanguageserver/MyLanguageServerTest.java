@@ -18,15 +18,34 @@ package com.github.mylanguageserver;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import org.eclipse.lsp4j.ClientCapabilities;
 import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.DocumentHighlight;
+import org.eclipse.lsp4j.DocumentHighlightParams;
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.InitializeResult;
 import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.junit.jupiter.api.Test;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
 
 public class MyLanguageServerTest extends AbstractMyLanguageServerTest {
 	
@@ -36,9 +55,62 @@ public class MyLanguageServerTest extends AbstractMyLanguageServerTest {
 		
 		CompletableFuture<Either<List<CompletionItem>, CompletionList>> completions = getCompletionFor(languageServer, new Position(0, 0));
 		
-		assertThat(completions.get().getLeft()).contains(new CompletionItem("demo"));
+		assertThat(completions.get().getRight().getItems()).extracting(CompletionItem::getLabel).contains("demo");
 	}
 
-	
-}
+	@Test
+	public void testUtf8PositionsNegotiated() throws Exception {
+		MyLanguageServer languageServer = new MyLanguageServer();
+		InitializeParams params = new InitializeParams();
+		JsonObject experimental = new JsonObject();
+		JsonArray encodings = new JsonArray();
+		encodings.add("utf-32");
+		encodings.add("utf-8");
+		experimental.add("positionEncodings", encodings);
+		ClientCapabilities capabilities = new ClientCapabilities();
+		capabilities.setExperimental(experimental);
+		params.setCapabilities(capabilities);
+
+		InitializeResult result = languageServer.initialize(params).get();
+		languageServer.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem("file:///utf8.demo", MyLanguageServer.LANGUAGE_ID, 0, "\u00e9t\u00e9 = 1\n\u00e9t\u00e9 = 2")));
+		List<? extends DocumentHighlight> highlights = languageServer.getTextDocumentService().documentHighlight(
+				new DocumentHighlightParams(new TextDocumentIdentifier("file:///utf8.demo"), new Position(1, 3))).get();
+
+		assertThat(((JsonObject) result.getCapabilities().getExperimental()).get("positionEncoding").getAsString()).isEqualTo("utf-8");
+		assertThat(highlights).extracting(DocumentHighlight::getRange).containsExactly(
+				new Range(new Position(0, 0), new Position(0, 5)),
+				new Range(new Position(1, 0), new Position(1, 5)));
+		languageServer.shutdown();
+	}
+
+	@Test
+	public void testDocumentSymbolsCachedUntilChange() throws Exception {
+		MyLanguageServer languageServer = initializeLanguageServer("a = 1");
+		MyTextDocumentService service = languageServer.getTextDocumentService();
+		DocumentSymbolParams params = new DocumentSymbolParams(new TextDocumentIdentifier(DUMMY_URI + ".demo"));
 
+		List<Either<SymbolInformation, DocumentSymbol>> first = service.documentSymbol(params).get();
+		assertThat(service.documentSymbol(params).get()).isSameAs(first);
+		service.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(DUMMY_URI + ".demo", 2),
+				Collections.singletonList(new TextDocumentContentChangeEvent("b = 2"))));
+		List<Either<SymbolInformation, DocumentSymbol>> changed = service.documentSymbol(params).get();
+
+		assertThat(changed).isNotSameAs(first);
+		assertThat(changed).extracting(symbol -> symbol.getRight().getName()).containsExactly("b");
+		assertThat(service.getDocumentStore().getResultCache().getHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testConcurrentDocumentSymbolRequestsDoNotCancelEachOther() throws Exception {
+		MyLanguageServer languageServer = initializeLanguageServer("a = 1");
+		MyTextDocumentService service = languageServer.getTextDocumentService();
+		DocumentSymbolParams params = new DocumentSymbolParams(new TextDocumentIdentifier(DUMMY_URI + ".demo"));
+
+		CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> first = service.documentSymbol(params);
+		CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> second = service.documentSymbol(params);
+
+		assertThat(first.get()).extracting(symbol -> symbol.getRight().getName()).containsExactly("a");
+		assertThat(second.get()).extracting(symbol -> symbol.getRight().getName()).containsExactly("a");
+	}
+}
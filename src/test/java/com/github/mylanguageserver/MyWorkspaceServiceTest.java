@@ -0,0 +1,335 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.ClientCapabilities;
+import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.ReferenceContext;
+import org.eclipse.lsp4j.ReferenceParams;
+import org.eclipse.lsp4j.RenameParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.WorkDoneProgressBegin;
+import org.eclipse.lsp4j.WorkDoneProgressEnd;
+import org.eclipse.lsp4j.WorkDoneProgressReport;
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.mylanguageserver.progress.PartialResultProgress;
+import com.github.mylanguageserver.workspace.WorkspaceRegistry;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+class MyWorkspaceServiceTest {
+
+	@TempDir
+	Path workspaceRoot;
+
+	private MyLanguageServer server;
+	private Path file;
+
+	@BeforeEach
+	void initialize() throws Exception {
+		file = workspaceRoot.resolve("first.demo");
+		Files.write(file, "userName = a\nserver {\n".getBytes(StandardCharsets.UTF_8));
+		Files.createDirectories(workspaceRoot.resolve("nested"));
+		Files.write(workspaceRoot.resolve("nested/second.demo"), "userId = b\n".getBytes(StandardCharsets.UTF_8));
+		Files.write(workspaceRoot.resolve("ignored.txt"), "userAge = c\n".getBytes(StandardCharsets.UTF_8));
+		server = new MyLanguageServer(new WorkspaceRegistry(), Long.MAX_VALUE);
+		InitializeParams params = new InitializeParams();
+		params.setRootUri(workspaceRoot.toUri().toString());
+		server.initialize(params).get();
+		server.getWorkspace().getIndexing().get();
+	}
+
+	@AfterEach
+	void shutdown() throws Exception {
+		server.shutdown().get();
+	}
+
+	@Test
+	void testWorkspaceFilesIndexed() throws Exception {
+		List<? extends SymbolInformation> symbols = symbols("user");
+
+		assertThat(symbols).extracting(SymbolInformation::getName).containsExactly("userId", "userName");
+		assertThat(symbols.get(1).getLocation().getUri()).isEqualTo(file.toUri().toString());
+		assertThat(symbols.get(1).getLocation().getRange().getStart().getLine()).isZero();
+	}
+
+	@Test
+	void testOpenedDocumentsTakePrecedence() throws Exception {
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(file.toUri().toString(), MyLanguageServer.LANGUAGE_ID, 1, "userMail = a\n")));
+
+		assertThat(names("user")).containsExactly("userId", "userMail");
+	}
+
+	@Test
+	void testWatchedFileChangesApplied() throws Exception {
+		Files.delete(file);
+		server.getWorkspaceService().didChangeWatchedFiles(new DidChangeWatchedFilesParams(
+				Collections.singletonList(new FileEvent(file.toUri().toString(), FileChangeType.Deleted))));
+		await().untilAsserted(() -> assertThat(names("user")).containsExactly("userId"));
+
+		Path created = workspaceRoot.resolve("created.demo");
+		Files.write(created, "userRole = d\n".getBytes(StandardCharsets.UTF_8));
+		server.getWorkspaceService().didChangeWatchedFiles(new DidChangeWatchedFilesParams(
+				Collections.singletonList(new FileEvent(created.toUri().toString(), FileChangeType.Created))));
+		await().untilAsserted(() -> assertThat(names("user")).containsExactly("userId", "userRole"));
+	}
+
+	@Test
+	void testWatchedFileEventsCoalescedIntoBatches() throws Exception {
+		List<FileEvent> events = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			Path checkedOut = workspaceRoot.resolve("checkout" + i + ".demo");
+			Files.write(checkedOut, ("branch" + i + " = " + i + "\n").getBytes(StandardCharsets.UTF_8));
+			events.add(new FileEvent(checkedOut.toUri().toString(), FileChangeType.Created));
+			events.add(new FileEvent(checkedOut.toUri().toString(), FileChangeType.Changed));
+		}
+		Files.delete(file);
+		events.add(new FileEvent(file.toUri().toString(), FileChangeType.Changed));
+		events.add(new FileEvent(file.toUri().toString(), FileChangeType.Deleted));
+		long modifications = server.getWorkspace().getSymbolIndex().getModificationCount();
+
+		server.getWorkspaceService().didChangeWatchedFiles(new DidChangeWatchedFilesParams(events));
+
+		await().untilAsserted(() -> assertThat(names("branch")).hasSize(200));
+		await().untilAsserted(() -> assertThat(names("user")).containsExactly("userId"));
+		// one update of the index per batch of files and one for the deleted files, not one per event
+		assertThat(server.getWorkspace().getSymbolIndex().getModificationCount() - modifications).isLessThanOrEqualTo(5);
+	}
+
+	@Test
+	void testReferencesFoundInOpenedAndWorkspaceFiles() throws Exception {
+		String opened = openReferencingDocument();
+		String second = workspaceRoot.resolve("nested/second.demo").toUri().toString();
+
+		List<Location> all = new ArrayList<>(server.getTextDocumentService().references(referenceParams(opened, true)).get());
+		List<Location> references = new ArrayList<>(server.getTextDocumentService().references(referenceParams(opened, false)).get());
+
+		assertThat(all).containsExactly(new Location(opened, range(0, 7, 13)), new Location(opened, range(1, 0, 6)), new Location(second, range(0, 0, 6)));
+		assertThat(references).containsExactly(new Location(opened, range(0, 7, 13)));
+	}
+
+	@Test
+	void testWorkspaceReferencesInNegotiatedEncoding() throws Exception {
+		Path accented = workspaceRoot.resolve("nested/accented.demo");
+		Files.write(accented, "copi\u00e9 = userId\n".getBytes(StandardCharsets.UTF_8));
+		MyLanguageServer utf8Server = initializeUtf8Server();
+		try {
+			String opened = workspaceRoot.resolve("opened.demo").toUri().toString();
+			utf8Server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(
+					new TextDocumentItem(opened, MyLanguageServer.LANGUAGE_ID, 1, "copy = userId\nuserId = c\n")));
+
+			List<Location> references = new ArrayList<>(utf8Server.getTextDocumentService().references(referenceParams(opened, true)).get());
+
+			assertThat(references).contains(new Location(accented.toUri().toString(), range(0, 9, 15)));
+		} finally {
+			utf8Server.shutdown().get();
+		}
+	}
+
+	@Test
+	void testWorkspaceSymbolsInNegotiatedEncoding() throws Exception {
+		Path accented = workspaceRoot.resolve("nested/accented.demo");
+		Files.write(accented, "user\u00c9tat = 1\n".getBytes(StandardCharsets.UTF_8));
+		MyLanguageServer utf8Server = initializeUtf8Server();
+		try {
+			String opened = workspaceRoot.resolve("opened.demo").toUri().toString();
+			utf8Server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(
+					new TextDocumentItem(opened, MyLanguageServer.LANGUAGE_ID, 1, "user\u00e9t\u00e9 = 2\n")));
+
+			List<Location> locations = utf8Server.getWorkspaceService().symbol(new WorkspaceSymbolParams("user")).get().stream()
+					.map(SymbolInformation::getLocation)
+					.collect(Collectors.toList());
+
+			assertThat(locations).contains(new Location(accented.toUri().toString(), range(0, 0, 9)),
+					new Location(opened, range(0, 0, 9)));
+		} finally {
+			utf8Server.shutdown().get();
+		}
+	}
+
+	@Test
+	void testReferencesStreamedAsPartialResults() throws Exception {
+		String opened = openReferencingDocument();
+		List<ProgressParams> progress = new ArrayList<>();
+		server.connect(new ProgressRecorder(progress));
+		ReferenceParams params = referenceParams(opened, true);
+		params.setPartialResultToken(Either.forLeft("references-1"));
+
+		assertThat(server.getTextDocumentService().references(params).get()).isEmpty();
+		assertThat(progress).hasSize(2);
+		assertThat(progress).allSatisfy(partial -> assertThat(partial.getToken().getLeft()).isEqualTo("references-1"));
+		assertThat((List<?>) ((PartialResultProgress) progress.get(0)).getPartialResult()).hasSize(2);
+		assertThat((List<?>) ((PartialResultProgress) progress.get(1)).getPartialResult()).hasSize(1);
+	}
+
+	@Test
+	void testWorkspaceSymbolsStreamedAsPartialResults() throws Exception {
+		String opened = openReferencingDocument();
+		await().until(() -> server.getTextDocumentService().getOpenedDocument(opened) != null);
+		List<ProgressParams> progress = new ArrayList<>();
+		server.connect(new ProgressRecorder(progress));
+		WorkspaceSymbolParams params = new WorkspaceSymbolParams("user");
+		params.setPartialResultToken(Either.forLeft("symbols-1"));
+
+		assertThat(server.getWorkspaceService().symbol(params).get()).isEmpty();
+		assertThat(progress).hasSize(2);
+		assertThat(((List<?>) ((PartialResultProgress) progress.get(0)).getPartialResult()))
+			.extracting(symbol -> ((SymbolInformation) symbol).getName()).containsExactly("userId");
+		assertThat(((List<?>) ((PartialResultProgress) progress.get(1)).getPartialResult()))
+			.extracting(symbol -> ((SymbolInformation) symbol).getName()).containsExactly("userId", "userName");
+	}
+
+	@Test
+	void testRenameReportsWorkDone() throws Exception {
+		String opened = openReferencingDocument();
+		List<ProgressParams> progress = new ArrayList<>();
+		server.connect(new ProgressRecorder(progress));
+		RenameParams params = new RenameParams(new TextDocumentIdentifier(opened), new Position(0, 9), "accountId");
+		params.setWorkDoneToken(Either.forLeft("rename-1"));
+
+		assertThat(server.getTextDocumentService().rename(params).get().getChanges()).hasSize(2);
+		assertThat(progress).allSatisfy(notification -> assertThat(notification.getToken().getLeft()).isEqualTo("rename-1"));
+		assertThat(progress).extracting(notification -> (Object) notification.getValue().getClass())
+			.containsExactly(WorkDoneProgressBegin.class, WorkDoneProgressReport.class, WorkDoneProgressReport.class, WorkDoneProgressEnd.class);
+		assertThat(((WorkDoneProgressReport) progress.get(2).getValue()).getPercentage()).isEqualTo(100);
+	}
+
+	@Test
+	void testRenameEditsOpenedAndWorkspaceFiles() throws Exception {
+		String opened = openReferencingDocument();
+		String second = workspaceRoot.resolve("nested/second.demo").toUri().toString();
+
+		WorkspaceEdit edit = server.getTextDocumentService().rename(new RenameParams(new TextDocumentIdentifier(opened), new Position(0, 9), "accountId")).get();
+
+		assertThat(edit.getChanges()).containsOnlyKeys(opened, second);
+		assertThat(edit.getChanges().get(opened)).containsExactly(new TextEdit(range(0, 7, 13), "accountId"), new TextEdit(range(1, 0, 6), "accountId"));
+		assertThat(edit.getChanges().get(second)).containsExactly(new TextEdit(range(0, 0, 6), "accountId"));
+		assertThat(server.getTextDocumentService().rename(new RenameParams(new TextDocumentIdentifier(opened), new Position(0, 9), "1d")))
+			.isCompletedExceptionally();
+	}
+
+	private MyLanguageServer initializeUtf8Server() throws Exception {
+		MyLanguageServer utf8Server = new MyLanguageServer(new WorkspaceRegistry(), Long.MAX_VALUE);
+		InitializeParams params = new InitializeParams();
+		params.setRootUri(workspaceRoot.toUri().toString());
+		JsonObject experimental = new JsonObject();
+		JsonArray encodings = new JsonArray();
+		encodings.add("utf-8");
+		experimental.add("positionEncodings", encodings);
+		ClientCapabilities capabilities = new ClientCapabilities();
+		capabilities.setExperimental(experimental);
+		params.setCapabilities(capabilities);
+		utf8Server.initialize(params).get();
+		utf8Server.getWorkspace().getIndexing().get();
+		return utf8Server;
+	}
+
+	private String openReferencingDocument() {
+		String uri = workspaceRoot.resolve("opened.demo").toUri().toString();
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri, MyLanguageServer.LANGUAGE_ID, 1, "copy = userId\nuserId = c\n")));
+		return uri;
+	}
+
+	private static ReferenceParams referenceParams(String uri, boolean includeDeclaration) {
+		return new ReferenceParams(new TextDocumentIdentifier(uri), new Position(0, 9), new ReferenceContext(includeDeclaration));
+	}
+
+	private static Range range(int line, int start, int end) {
+		return new Range(new Position(line, start), new Position(line, end));
+	}
+
+	private List<String> names(String query) throws Exception {
+		return symbols(query).stream().map(SymbolInformation::getName).collect(Collectors.toList());
+	}
+
+	private List<? extends SymbolInformation> symbols(String query) throws Exception {
+		return server.getWorkspaceService().symbol(new WorkspaceSymbolParams(query)).get();
+	}
+
+	private static final class ProgressRecorder implements LanguageClient {
+
+		private final List<ProgressParams> progress;
+
+		ProgressRecorder(List<ProgressParams> progress) {
+			this.progress = progress;
+		}
+
+		@Override
+		public void notifyProgress(ProgressParams params) {
+			progress.add(params);
+		}
+
+		@Override
+		public void telemetryEvent(Object object) {
+		}
+
+		@Override
+		public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+		}
+
+		@Override
+		public void showMessage(MessageParams messageParams) {
+		}
+
+		@Override
+		public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public void logMessage(MessageParams message) {
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class ParentProcessWatcherTest {
+
+	@Test
+	void testVanishedProcessDetected() throws Exception {
+		CompletableFuture<Void> exit = ParentProcessWatcher.getInstance().onExit(Integer.MAX_VALUE - 1);
+
+		await("Await that the unknown process is reported as exited").atMost(5, TimeUnit.SECONDS).until(exit::isDone);
+	}
+
+	@Test
+	void testRunningProcessNotReportedAndWatchersIndependent() throws Exception {
+		long pid = Long.parseLong(ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+		CompletableFuture<Void> firstWatcher = ParentProcessWatcher.getInstance().onExit(pid);
+		CompletableFuture<Void> secondWatcher = ParentProcessWatcher.getInstance().onExit(pid);
+
+		firstWatcher.cancel(false);
+		Thread.sleep(1500);
+
+		assertThat(firstWatcher).isCancelled();
+		assertThat(secondWatcher).isNotDone();
+	}
+}
@@ -25,6 +25,9 @@ import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -32,13 +35,27 @@ import javax.websocket.ClientEndpointConfig;
 import javax.websocket.DeploymentException;
 import javax.websocket.Endpoint;
 import javax.websocket.EndpointConfig;
+import javax.websocket.Extension;
 import javax.websocket.Session;
 
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.eclipse.lsp4j.websocket.WebSocketLauncherBuilder;
 import org.glassfish.tyrus.client.ClientManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import com.github.mylanguageserver.websocket.MyLSPWebSocketServerConfigProvider;
+import com.github.mylanguageserver.websocket.PerMessageDeflateExtension;
 
 public class RunnerWebSocketTest {
 	
@@ -89,6 +106,44 @@ public class RunnerWebSocketTest {
 		testWebSocketServerConnection(arguments, expectedConnectionURI);
 	}
 	
+	@Test
+	public void testWebsocketServerStartedWithCompression() throws Exception {
+		startRunnerWithWebsocketOption(new String[] {"--websocket", "--port=8028", "--websocketCompression", "--maxMessageSize=16", "--notificationBatchDelay=10"});
+		messageLatch.await(1, TimeUnit.SECONDS);
+
+		ClientEndpointConfig cec = ClientEndpointConfig.Builder.create()
+				.extensions(Collections.singletonList(new PerMessageDeflateExtension(Integer.MAX_VALUE)))
+				.build();
+		CompletableFuture<LanguageServer> remoteServer = new CompletableFuture<>();
+		Session session = ClientManager.createClient().connectToServer(new Endpoint() {
+
+			@Override
+			public void onOpen(Session session, EndpointConfig config) {
+				Launcher<LanguageServer> launcher = new WebSocketLauncherBuilder<LanguageServer>()
+						.setSession(session)
+						.setLocalService(new Object())
+						.setRemoteInterface(LanguageServer.class)
+						.create();
+				remoteServer.complete(launcher.getRemoteProxy());
+			}
+
+		}, cec, new URI("ws://localhost:8028" + MyLSPWebSocketServerConfigProvider.WEBSOCKET_SERVER_PATH));
+		assertThat(session.getNegotiatedExtensions()).extracting(Extension::getName).containsExactly(PerMessageDeflateExtension.NAME);
+
+		LanguageServer server = remoteServer.get(10, TimeUnit.SECONDS);
+		assertThat(server.initialize(new InitializeParams()).get(10, TimeUnit.SECONDS).getCapabilities()).isNotNull();
+		StringBuilder text = new StringBuilder();
+		for (int line = 0; line < 20000; line++) {
+			text.append("name").append(line).append(" = value\n");
+		}
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(new TextDocumentItem("file:///large.demo", "demo", 1, text.toString())));
+		Either<List<CompletionItem>, CompletionList> completion = server.getTextDocumentService()
+				.completion(new CompletionParams(new TextDocumentIdentifier("file:///large.demo"), new Position(20000, 0)))
+				.get(10, TimeUnit.SECONDS);
+		assertThat(completion.getRight().getItems()).isNotEmpty();
+		session.close();
+	}
+
 	private String retrieveLocalHostname() throws UnknownHostException {
 		String localHostname = InetAddress.getLocalHost().getHostName();
 		assumeFalse("localhost".equals(localHostname), "The test is inaccurate if the hostname is localhost as it is the default value. The code might still be right but the test becomes useless.");
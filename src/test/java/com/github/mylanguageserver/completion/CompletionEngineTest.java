@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.completion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.document.TextDocument;
+import com.github.mylanguageserver.index.IndexedSymbol;
+import com.github.mylanguageserver.index.SymbolIndex;
+
+import com.google.gson.JsonPrimitive;
+
+class CompletionEngineTest {
+
+	private final CompletionEngine engine = new CompletionEngine();
+
+	@Test
+	void testDocumentNamesRankedBeforeWorkspaceNames() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		index.update("file:///other.demo", Collections.singletonList(new IndexedSymbol("portal", org.eclipse.lsp4j.SymbolKind.Property, 0, 0, 6)));
+		TextDocument document = document("port = 1\nserver {\n  port = 2\n}\npo\n");
+
+		CompletionList list = engine.complete(document, new Position(4, 2), new WorkspaceVocabulary(index), () -> { });
+
+		assertThat(list.isIncomplete()).isFalse();
+		assertThat(list.getItems()).extracting(CompletionItem::getLabel).containsExactly("port", "portal");
+	}
+
+	@Test
+	void testDetailsComputedWhenResolved() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		index.update("file:///other.demo", Collections.singletonList(new IndexedSymbol("portal", org.eclipse.lsp4j.SymbolKind.Property, 3, 0, 6)));
+		TextDocument document = document("port = 1\nserver {\n  port = 2\n}\npo\n");
+		CompletionList list = engine.complete(document, new Position(4, 2), new WorkspaceVocabulary(index), () -> { });
+		CompletionItem port = list.getItems().get(0);
+		assertThat(port.getDetail()).isNull();
+		assertThat(port.getDocumentation()).isNull();
+
+		// as received from the client, the data key is a JSON element
+		port.setData(new JsonPrimitive((String) port.getData()));
+		CompletionItem resolved = engine.resolve(port);
+		assertThat(resolved.getDetail()).isEqualTo("Property, declared 2 times");
+		assertThat(resolved.getDocumentation().getRight().getValue()).contains("port = 1", "port = 2");
+		assertThat(engine.resolve(list.getItems().get(1)).getDetail()).isEqualTo("Declared in 1 file");
+		assertThat(engine.resolve(new CompletionItem("unknown")).getDetail()).isNull();
+	}
+
+	@Test
+	void testLargeVocabularyTruncatedAndMarkedIncomplete() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 20_000; i++) {
+			text.append("key").append(i).append(" = ").append(i).append('\n');
+		}
+		text.append("k");
+		TextDocument document = document(text.toString());
+
+		CompletionList broad = engine.complete(document, new Position(20_000, 1), null, () -> { });
+		assertThat(broad.isIncomplete()).isTrue();
+		assertThat(broad.getItems()).hasSize(CompletionEngine.MAX_ITEMS);
+
+		TextDocument typed = document.applyChanges(2, Collections.singletonList(insert(20_000, 1, "ey1999")));
+		CompletionList narrow = engine.complete(typed, new Position(20_000, 7), null, () -> { });
+		assertThat(narrow.isIncomplete()).isFalse();
+		assertThat(narrow.getItems()).extracting(CompletionItem::getLabel).containsExactly("key1999", "key19990", "key19991",
+				"key19992", "key19993", "key19994", "key19995", "key19996", "key19997", "key19998", "key19999");
+	}
+
+	@Test
+	void testNextKeystrokesFilterCachedCandidates() throws Exception {
+		TextDocument document = document("a\nalpha = 1\nalpine = 2\nbeta = 3\n");
+		CompletionList first = engine.complete(document, new Position(0, 1), null, () -> { });
+		assertThat(first.getItems()).extracting(CompletionItem::getLabel).containsExactly("alpha", "alpine");
+
+		TextDocument typed = document.applyChanges(2, Collections.singletonList(insert(0, 1, "lph")));
+		CompletionList next = engine.complete(typed, new Position(0, 4), null, () -> { });
+		assertThat(next.getItems()).extracting(CompletionItem::getLabel).containsExactly("alpha");
+	}
+
+	@Test
+	void testCandidatesSearchedAgainAfterEditsOutsideWord() throws Exception {
+		TextDocument document = document("a\nalpha = 1\nbeta = 3\n");
+		CompletionList first = engine.complete(document, new Position(0, 1), null, () -> { });
+		assertThat(first.getItems()).extracting(CompletionItem::getLabel).containsExactly("alpha");
+
+		TextDocument declared = document.applyChanges(2, Collections.singletonList(insert(3, 0, "alphabet = 0\n")));
+		CompletionList afterDeclaration = engine.complete(declared, new Position(0, 1), null, () -> { });
+		assertThat(afterDeclaration.getItems()).extracting(CompletionItem::getLabel).containsExactly("alpha", "alphabet");
+	}
+
+	@Test
+	void testCandidatesSearchedAgainAfterWorkspaceVocabularyRebuilt() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		WorkspaceVocabulary workspace = new WorkspaceVocabulary(index);
+		TextDocument document = document("a\nalpha = 1\n");
+		CompletionList first = engine.complete(document, new Position(0, 1), workspace, () -> { });
+		assertThat(first.getItems()).extracting(CompletionItem::getLabel).containsExactly("alpha");
+
+		index.update("file:///other.demo", Collections.singletonList(new IndexedSymbol("alpaca", org.eclipse.lsp4j.SymbolKind.Property, 0, 0, 6)));
+		workspace.rebuild();
+		TextDocument typed = document.applyChanges(2, Collections.singletonList(insert(0, 1, "l")));
+		CompletionList next = engine.complete(typed, new Position(0, 2), workspace, () -> { });
+		assertThat(next.getItems()).extracting(CompletionItem::getLabel).containsExactly("alpha", "alpaca");
+	}
+
+	private static TextDocument document(String text) {
+		return new TextDocument(new TextDocumentItem("file:///test.demo", MyLanguageServer.LANGUAGE_ID, 1, text));
+	}
+
+	private static TextDocumentContentChangeEvent insert(int line, int character, String text) {
+		Position position = new Position(line, character);
+		return new TextDocumentContentChangeEvent(new Range(position, position), 0, text);
+	}
+}
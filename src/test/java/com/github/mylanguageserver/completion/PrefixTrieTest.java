@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.completion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PrefixTrieTest {
+
+	@Test
+	void testPrefixRangesMatchLinearScan() throws Exception {
+		Random random = new Random(3);
+		Map<String, Integer> words = new HashMap<>();
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder word = new StringBuilder();
+			for (int length = 1 + random.nextInt(8); length > 0; length--) {
+				word.append("abcAB_".charAt(random.nextInt(6)));
+			}
+			words.put(word.toString(), i);
+		}
+		PrefixTrie trie = PrefixTrie.build(words);
+
+		for (String prefix : new String[] { "", "a", "A", "ab", "aBc", "b_", "cc", "zz", "abcabcabca" }) {
+			int[] range = trie.prefixRange(prefix);
+			List<String> found = new ArrayList<>();
+			for (int i = range[0]; i < range[1]; i++) {
+				found.add(trie.getLabel(i));
+			}
+			List<String> expected = new ArrayList<>();
+			for (String word : words.keySet()) {
+				if (word.toLowerCase(Locale.ROOT).startsWith(prefix.toLowerCase(Locale.ROOT))) {
+					expected.add(word);
+				}
+			}
+			assertThat(found).as(prefix).containsExactlyInAnyOrderElementsOf(expected);
+		}
+	}
+
+	@Test
+	void testEmptyTrie() throws Exception {
+		assertThat(PrefixTrie.EMPTY.prefixRange("a")).containsExactly(0, 0);
+		assertThat(PrefixTrie.EMPTY.prefixRange("")).containsExactly(0, 0);
+	}
+}
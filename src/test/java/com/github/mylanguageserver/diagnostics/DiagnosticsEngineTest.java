@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.diagnostics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.document.DocumentStore;
+
+class DiagnosticsEngineTest {
+
+	private static final String URI = "file:///test.demo";
+
+	private final DocumentStore store = new DocumentStore();
+	private final RecordingClient client = new RecordingClient();
+	private DiagnosticsEngine engine;
+
+	@BeforeEach
+	void setUp() {
+		engine = new DiagnosticsEngine(store, 100);
+		engine.connect(client);
+	}
+
+	@Test
+	void testBurstOfChangesDiagnosedOnce() throws Exception {
+		store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "a = 1\n"));
+		for (int version = 2; version <= 20; version++) {
+			store.update(URI, version, Collections.singletonList(insert(1, "b")));
+			engine.documentChanged(URI);
+		}
+
+		await().atMost(5, TimeUnit.SECONDS).until(() -> !client.published.isEmpty());
+		Thread.sleep(300);
+		assertThat(client.published).hasSize(1);
+		assertThat(client.published.get(0).getVersion()).isEqualTo(20);
+		assertThat(client.published.get(0).getDiagnostics()).hasSize(1);
+		assertThat(client.published.get(0).getDiagnostics().get(0).getMessage()).contains("Expected");
+	}
+
+	@Test
+	void testOnlyChangedDiagnosticsPublished() throws Exception {
+		store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "s {\n"));
+		engine.documentOpened(URI);
+		await().atMost(5, TimeUnit.SECONDS).until(() -> client.published.size() == 1);
+
+		store.update(URI, 2, Collections.singletonList(insert(1, "a = 1\n")));
+		engine.documentOpened(URI);
+		store.update(URI, 3, Collections.singletonList(insert(2, "}")));
+		engine.documentOpened(URI);
+		await().atMost(5, TimeUnit.SECONDS).until(() -> client.published.size() == 2);
+		assertThat(client.published.get(1).getDiagnostics()).isEmpty();
+
+		engine.documentOpened(URI);
+		store.close(URI);
+		engine.clear(URI);
+		Thread.sleep(300);
+		assertThat(client.published).hasSize(2);
+	}
+
+	private static TextDocumentContentChangeEvent insert(int line, String text) {
+		Position position = new Position(line, 0);
+		return new TextDocumentContentChangeEvent(new Range(position, position), 0, text);
+	}
+
+	private static final class RecordingClient implements LanguageClient {
+
+		final List<PublishDiagnosticsParams> published = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void telemetryEvent(Object object) {
+		}
+
+		@Override
+		public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public void showMessage(MessageParams messageParams) {
+		}
+
+		@Override
+		public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+			published.add(diagnostics);
+		}
+
+		@Override
+		public void logMessage(MessageParams message) {
+		}
+	}
+}
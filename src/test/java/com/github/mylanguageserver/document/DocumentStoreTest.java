@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+class DocumentStoreTest {
+
+	private static final String URI = "file:///test.demo";
+
+	@Test
+	void testStaleSnapshotDetected() throws Exception {
+		DocumentStore store = new DocumentStore();
+		TextDocument opened = store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "abc"));
+
+		TextDocument updated = store.update(URI, 2, Collections.singletonList(insert(0, "x")));
+
+		assertThat(store.isCurrent(opened)).isFalse();
+		assertThat(store.isCurrent(updated)).isTrue();
+		assertThat(store.get(URI, 1)).isNull();
+		assertThat(store.get(URI, 2)).isSameAs(updated);
+		assertThat(opened.getText()).isEqualTo("abc");
+	}
+
+	@Test
+	void testUpdateOfClosedDocumentIgnored() throws Exception {
+		DocumentStore store = new DocumentStore();
+
+		assertThat(store.update(URI, 2, Collections.singletonList(insert(0, "x")))).isNull();
+		assertThat(store.getAll()).isEmpty();
+	}
+
+	@Test
+	void testDocumentExceedingMemoryBudgetNotOpened() throws Exception {
+		DocumentStore store = new DocumentStore(10);
+		store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "12345"));
+
+		assertThat(store.open(new TextDocumentItem("file:///other.demo", MyLanguageServer.LANGUAGE_ID, 1, "123456"))).isNull();
+		store.close(URI);
+		assertThat(store.open(new TextDocumentItem("file:///other.demo", MyLanguageServer.LANGUAGE_ID, 1, "123456"))).isNotNull();
+		assertThat(store.getUsedMemory()).isEqualTo(6);
+	}
+
+	@Test
+	void testDocumentClosedWhenChangesExceedMemoryBudget() throws Exception {
+		DocumentStore store = new DocumentStore(10);
+		store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "12345"));
+
+		assertThat(store.update(URI, 2, Collections.singletonList(insert(5, "6789")))).isNotNull();
+		assertThat(store.update(URI, 3, Collections.singletonList(insert(9, "abc")))).isNull();
+		assertThat(store.isOpened(URI)).isFalse();
+		assertThat(store.getUsedMemory()).isZero();
+	}
+
+	@Test
+	void testLeastRecentlyUsedSyntaxTreesDropped() throws Exception {
+		DocumentStore store = new DocumentStore(DocumentStore.UNLIMITED, 300, DocumentStore.NEVER_OFF_HEAP);
+		TextDocument first = store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "a = 1\nb = 2"));
+		TextDocument second = store.open(new TextDocumentItem("file:///other.demo", MyLanguageServer.LANGUAGE_ID, 1, "c = 3\nd = 4"));
+
+		SyntaxTree firstTree = first.getSyntaxTree();
+		long treeMemory = firstTree.estimatedMemory();
+		assertThat(treeMemory).isBetween(101L, 300L);
+		assertThat(store.getArtifactsMemory()).isEqualTo(treeMemory);
+		second.getSyntaxTree();
+		assertThat(store.getArtifactsMemory()).isEqualTo(treeMemory);
+		assertThat(second.getSyntaxTree()).isSameAs(second.getSyntaxTree());
+
+		SyntaxTree parsedAgain = first.getSyntaxTree();
+		assertThat(parsedAgain).isNotSameAs(firstTree);
+		assertThat(parsedAgain.getRoot().getChildren()).hasSize(2);
+		store.close(URI);
+		assertThat(store.getArtifactsMemory()).isZero();
+	}
+
+	@Test
+	void testLargeDocumentStoredOffHeap() throws Exception {
+		DocumentStore store = new DocumentStore(DocumentStore.UNLIMITED, DocumentStore.UNLIMITED, 10);
+		TextDocument small = store.open(new TextDocumentItem("file:///small.demo", MyLanguageServer.LANGUAGE_ID, 1, "a = 1"));
+		TextDocument large = store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "a = 1\nb = 2\n"));
+
+		assertThat(small.getContent().offHeapMemory()).isZero();
+		assertThat(large.getContent().offHeapMemory()).isEqualTo(12);
+		assertThat(store.update(URI, 2, Collections.singletonList(insert(0, "c = 3\n"))).getText()).isEqualTo("c = 3\na = 1\nb = 2\n");
+		assertThat(store.getUsedMemory()).isEqualTo(5 + 18);
+	}
+
+	@Test
+	void testLargeContentReplacedAsWholeStoredOffHeap() throws Exception {
+		DocumentStore store = new DocumentStore(DocumentStore.UNLIMITED, DocumentStore.UNLIMITED, 10);
+		store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "a = 1"));
+
+		TextDocument replaced = store.update(URI, 2, Collections.singletonList(new TextDocumentContentChangeEvent("a = 1\nb = 2\n")));
+		assertThat(replaced.getContent().offHeapMemory()).isEqualTo(12);
+		assertThat(store.update(URI, 3, Collections.singletonList(new TextDocumentContentChangeEvent("a = 1"))).getContent().offHeapMemory()).isZero();
+	}
+
+	@Test
+	void testReadersSeeConsistentSnapshotsWhileWriting() throws Exception {
+		DocumentStore store = new DocumentStore();
+		store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 0, ""));
+		AtomicBoolean writing = new AtomicBoolean(true);
+		CompletableFuture<Boolean> reader = CompletableFuture.supplyAsync(() -> {
+			boolean consistent = true;
+			while (writing.get()) {
+				TextDocument snapshot = store.get(URI);
+				consistent &= snapshot.getContent().length() == snapshot.getVersion();
+			}
+			return consistent;
+		});
+
+		for (int version = 1; version <= 2000; version++) {
+			store.update(URI, version, Collections.singletonList(insert(0, "a")));
+		}
+		writing.set(false);
+
+		assertThat(reader.get()).isTrue();
+		assertThat(store.get(URI).getText()).hasSize(2000);
+	}
+
+	private TextDocumentContentChangeEvent insert(int character, String text) {
+		Position position = new Position(0, character);
+		return new TextDocumentContentChangeEvent(new Range(position, position), 0, text);
+	}
+}
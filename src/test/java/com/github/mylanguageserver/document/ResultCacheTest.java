@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+
+class ResultCacheTest {
+
+	private static final String URI = "file:///test.demo";
+	private static final String METHOD = "textDocument/documentSymbol";
+
+	@Test
+	void testResultReturnedForSameVersionAndParameters() throws Exception {
+		DocumentStore store = new DocumentStore();
+		ResultCache cache = store.getResultCache();
+		TextDocument document = store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "a = 1"));
+		List<String> result = Arrays.asList("a");
+
+		assertThat(cache.<List<String>>get(METHOD, document, new Position(0, 0))).isNull();
+		cache.put(METHOD, document, new Position(0, 0), result);
+
+		assertThat(cache.<List<String>>get(METHOD, document, new Position(0, 0))).isSameAs(result);
+		assertThat(cache.<List<String>>get(METHOD, document, new Position(0, 1))).isNull();
+		assertThat(cache.<List<String>>get("textDocument/foldingRange", document, new Position(0, 0))).isNull();
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(3);
+		assertThat(cache.getWeight()).isEqualTo(2);
+	}
+
+	@Test
+	void testResultsInvalidatedOnChangeAndClose() throws Exception {
+		DocumentStore store = new DocumentStore();
+		ResultCache cache = store.getResultCache();
+		TextDocument opened = store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "a = 1"));
+		cache.put(METHOD, opened, null, Collections.emptyList());
+
+		TextDocument updated = store.update(URI, 2, Collections.singletonList(new TextDocumentContentChangeEvent(new Range(new Position(0, 0), new Position(0, 0)), 0, "b")));
+		assertThat(cache.size()).isZero();
+		assertThat(cache.<List<String>>get(METHOD, opened, null)).isNull();
+
+		cache.put(METHOD, updated, null, Collections.emptyList());
+		store.close(URI);
+		assertThat(cache.size()).isZero();
+		assertThat(cache.getWeight()).isZero();
+
+		TextDocument reopened = store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 2, "b"));
+		cache.put(METHOD, updated, null, Collections.emptyList());
+		assertThat(cache.size()).isZero();
+		assertThat(cache.<List<String>>get(METHOD, reopened, null)).isNull();
+	}
+
+	@Test
+	void testLeastRecentlyUsedResultsEvicted() throws Exception {
+		DocumentStore store = new DocumentStore();
+		ResultCache cache = store.getResultCache();
+		cache.setMaxWeight(6);
+		TextDocument first = store.open(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "a = 1"));
+		TextDocument second = store.open(new TextDocumentItem("file:///other.demo", MyLanguageServer.LANGUAGE_ID, 1, "b = 2"));
+
+		cache.put(METHOD, first, null, Arrays.asList("a", "b"));
+		cache.put(METHOD, second, null, Arrays.asList("c", "d"));
+		assertThat(cache.<List<String>>get(METHOD, first, null)).isNotNull();
+		cache.put("textDocument/foldingRange", first, null, Collections.emptyList());
+
+		assertThat(cache.<List<String>>get(METHOD, second, null)).isNull();
+		assertThat(cache.<List<String>>get(METHOD, first, null)).isNotNull();
+		assertThat(cache.getWeight()).isEqualTo(4);
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+		cache.put(METHOD, second, null, Arrays.asList("1", "2", "3", "4", "5", "6"));
+		assertThat(cache.size()).isEqualTo(2);
+		cache.setMaxWeight(0);
+		assertThat(cache.size()).isZero();
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.document;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.syntax.DemoLineParser;
+
+class TextDocumentTest {
+
+	@Test
+	void testMultipleChangesAppliedInOrder() throws Exception {
+		TextDocument document = new TextDocument(new TextDocumentItem("uri", MyLanguageServer.LANGUAGE_ID, 1, "first line\nsecond line"));
+
+		TextDocument updated = document.applyChanges(2, Arrays.asList(
+				change(0, 0, 0, 5, "1st"),
+				change(1, 0, 1, 6, "2nd"),
+				change(1, 4, 1, 4, "and last ")));
+
+		assertThat(updated.getText()).isEqualTo("1st line\n2nd and last line");
+		assertThat(updated.getVersion()).isEqualTo(2);
+		assertThat(document.getText()).isEqualTo("first line\nsecond line");
+	}
+
+	@Test
+	void testFullChangeWithoutRange() throws Exception {
+		TextDocument document = new TextDocument(new TextDocumentItem("uri", MyLanguageServer.LANGUAGE_ID, 1, "old"));
+
+		TextDocument updated = document.applyChanges(2, Collections.singletonList(new TextDocumentContentChangeEvent("new\ncontent")));
+
+		assertThat(updated.getText()).isEqualTo("new\ncontent");
+		assertThat(updated.getContent().lineCount()).isEqualTo(2);
+	}
+
+	@Test
+	void testPositionsWithWindowsLineTerminators() throws Exception {
+		TextDocument document = new TextDocument(new TextDocumentItem("uri", MyLanguageServer.LANGUAGE_ID, 1, "ab\r\ncd\r\n"));
+
+		assertThat(document.offsetAt(new Position(0, 10))).isEqualTo(2);
+		assertThat(document.offsetAt(new Position(1, 1))).isEqualTo(5);
+		assertThat(document.offsetAt(new Position(2, 0))).isEqualTo(8);
+		assertThat(document.positionAt(5)).isEqualTo(new Position(1, 1));
+	}
+
+	@Test
+	void testRandomEditsOnLargeDocument() throws Exception {
+		assertRandomEdits(Rope::of, "line ");
+	}
+
+	@Test
+	void testRandomEditsOnOffHeapDocument() throws Exception {
+		assertRandomEdits(Rope::offHeap, "ligne ");
+		assertRandomEdits(Rope::offHeap, "\u20ac ");
+	}
+
+	@Test
+	void testLatin1TextStoredWithOneBytePerCharacter() throws Exception {
+		Rope latin1 = Rope.of("caf\u00e9\n");
+		Rope utf16 = Rope.of("\u20ac\n");
+		char[] large = new char[10000];
+		Arrays.fill(large, '\u00e9');
+		Rope offHeap = Rope.offHeap(new String(large)).insert(5000, "\u20ac");
+
+		assertThat(latin1.memory()).isEqualTo(5);
+		assertThat(latin1.offHeapMemory()).isZero();
+		assertThat(utf16.memory()).isEqualTo(4);
+		assertThat(offHeap.charAt(5000)).isEqualTo('\u20ac');
+		assertThat(offHeap.charAt(5001)).isEqualTo('\u00e9');
+		assertThat(offHeap.offHeapMemory()).isGreaterThan(10000 - 2 * Rope.MAX_LEAF_LENGTH);
+		assertThat(offHeap.memory() - offHeap.offHeapMemory()).isLessThan(4L * Rope.MAX_LEAF_LENGTH);
+	}
+
+	@Test
+	void testOffHeapBufferCountedOnceWhileASliceUsesIt() throws Exception {
+		char[] large = new char[10000];
+		Arrays.fill(large, 'a');
+		Rope offHeap = Rope.offHeap(new String(large));
+
+		assertThat(offHeap.offHeapMemory()).isEqualTo(10000);
+		assertThat(offHeap.delete(3000, 8000).offHeapMemory()).isEqualTo(10000);
+		assertThat(offHeap.insert(5000, "b").delete(0, 6000).offHeapMemory()).isEqualTo(10000);
+		assertThat(offHeap.delete(100, 9900).offHeapMemory()).isZero();
+	}
+
+	@Test
+	void testUtf8OffsetsMatchEncodedText() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			text.append("a\u00e9\u20ac\ud83d\ude00\n".charAt(i % 6));
+		}
+		Rope rope = Rope.of(text).insert(1500, "\u20ac");
+		String expected = rope.toString();
+
+		assertThat(rope.utf8Length()).isEqualTo(expected.getBytes(StandardCharsets.UTF_8).length);
+		for (int offset = 0; offset <= expected.length(); offset += 7) {
+			if (offset > 0 && offset < expected.length() && Character.isLowSurrogate(expected.charAt(offset))) {
+				continue;
+			}
+			int utf8Offset = expected.substring(0, offset).getBytes(StandardCharsets.UTF_8).length;
+			assertThat(rope.utf8Offset(offset)).isEqualTo(utf8Offset);
+			assertThat(rope.offsetOfUtf8(utf8Offset)).isEqualTo(offset);
+		}
+		int pairStart = expected.indexOf("\ud83d");
+		assertThat(rope.offsetOfUtf8(rope.utf8Offset(pairStart) + 2)).isEqualTo(pairStart);
+	}
+
+	@Test
+	void testChangesWithUtf8Positions() throws Exception {
+		TextDocument document = new TextDocument("uri", MyLanguageServer.LANGUAGE_ID, 1, Rope.of("\u00e9t\u00e9 = \ud83d\ude00\nx"), DemoLineParser.INSTANCE,
+				null, PositionEncoding.UTF_8);
+
+		TextDocument updated = document.applyChanges(2, Collections.singletonList(change(0, 8, 0, 12, "1")));
+
+		assertThat(updated.getText()).isEqualTo("\u00e9t\u00e9 = 1\nx");
+		assertThat(updated.positionAt(6)).isEqualTo(new Position(0, 8));
+		assertThat(updated.offsetAt(new Position(0, 8))).isEqualTo(6);
+		assertThat(updated.toUtf16(new Position(0, 5))).isEqualTo(new Position(0, 3));
+		assertThat(updated.fromUtf16(new Range(new Position(0, 0), new Position(0, 3)))).isEqualTo(new Range(new Position(0, 0), new Position(0, 5)));
+	}
+
+	private static void assertRandomEdits(Function<CharSequence, Rope> factory, String linePrefix) {
+		Random random = new Random(42);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			expected.append(linePrefix).append(i).append('\n');
+		}
+		Rope rope = factory.apply(expected);
+		for (int i = 0; i < 5000; i++) {
+			int start = random.nextInt(expected.length() + 1);
+			int end = Math.min(expected.length(), start + random.nextInt(20));
+			String inserted = random.nextInt(4) == 0 ? "x\ny" : "abc";
+			expected.replace(start, end, inserted);
+			rope = rope.replace(start, end, inserted);
+		}
+
+		String text = expected.toString();
+		assertThat(rope.toString()).isEqualTo(text);
+		assertThat(rope.lineCount()).isEqualTo(text.split("\n", -1).length);
+		int offset = text.length() / 2;
+		int line = rope.lineOfOffset(offset);
+		assertThat(rope.lineStartOffset(line)).isEqualTo(text.lastIndexOf('\n', offset - 1) + 1);
+		assertThat(rope.height()).isLessThan(2 * (32 - Integer.numberOfLeadingZeros(text.length() / Rope.MAX_LEAF_LENGTH + 1)) + 2);
+	}
+
+	private TextDocumentContentChangeEvent change(int startLine, int startCharacter, int endLine, int endCharacter, String text) {
+		return new TextDocumentContentChangeEvent(new Range(new Position(startLine, startCharacter), new Position(endLine, endCharacter)), 0, text);
+	}
+}
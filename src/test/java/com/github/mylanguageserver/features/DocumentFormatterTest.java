@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.eclipse.lsp4j.FormattingOptions;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.document.Rope;
+import com.github.mylanguageserver.syntax.DemoLineParser;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+class DocumentFormatterTest {
+
+	private final FormattingOptions options = new FormattingOptions(2, true);
+
+	@Test
+	void testOnlyBadlyFormattedWhitespaceReplaced() throws Exception {
+		SyntaxTree tree = parse("server {\n  port=8080\n    host = \"a\"\n}\nname   {\n}");
+
+		List<TextEdit> edits = DocumentFormatter.format(tree, options, () -> { });
+
+		assertThat(edits).containsExactly(
+				edit(1, 6, 6, " "),
+				edit(1, 7, 7, " "),
+				edit(2, 0, 4, "  "),
+				edit(4, 4, 7, " "));
+	}
+
+	@Test
+	void testFormattedDocumentGetsNoEdit() throws Exception {
+		SyntaxTree tree = parse("# comment\nserver {\n  port = 8080\n  nested {\n    a = 1\n  }\n}\n");
+
+		assertThat(DocumentFormatter.format(tree, options, () -> { })).isEmpty();
+	}
+
+	@Test
+	void testRangeIndentedFromTheSectionsBeforeIt() throws Exception {
+		SyntaxTree tree = parse("a {\nb {\nc = 1\n}\n}   ");
+		options.setTrimTrailingWhitespace(true);
+
+		assertThat(DocumentFormatter.format(tree, options, 2, 4, () -> { })).containsExactly(
+				edit(2, 0, 0, "    "),
+				edit(3, 0, 0, "  "),
+				edit(4, 1, 4, ""));
+	}
+
+	@Test
+	void testNewLineIndentedFromThePreviousLine() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			text.append("key").append(i).append(" = ").append(i).append('\n');
+		}
+		text.append("server {\n\t port=1\n");
+		SyntaxTree tree = parse(text.toString());
+
+		List<TextEdit> edits = DocumentFormatter.formatOnType(tree, options, new Position(100002, 0), "\n");
+
+		assertThat(edits).containsExactly(
+				edit(100001, 0, 2, "  "),
+				edit(100001, 6, 6, " "),
+				edit(100001, 7, 7, " "),
+				edit(100002, 0, 0, "  "));
+	}
+
+	@Test
+	void testClosingBraceDedented() throws Exception {
+		SyntaxTree tree = parse("server {\n  port = 1\n    }");
+
+		assertThat(DocumentFormatter.formatOnType(tree, options, new Position(2, 5), "}")).containsExactly(edit(2, 0, 4, ""));
+	}
+
+	private static SyntaxTree parse(String text) {
+		return SyntaxTree.parse(Rope.of(text), DemoLineParser.INSTANCE);
+	}
+
+	private static TextEdit edit(int line, int start, int end, String newText) {
+		return new TextEdit(new Range(new Position(line, start), new Position(line, end)), newText);
+	}
+}
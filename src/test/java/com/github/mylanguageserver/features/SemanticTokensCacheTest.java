@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.features;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensDelta;
+import org.eclipse.lsp4j.SemanticTokensEdit;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.document.TextDocument;
+
+class SemanticTokensCacheTest {
+
+	private final SemanticTokensCache cache = new SemanticTokensCache();
+
+	@Test
+	void testTokensEncodedRelativeToThePreviousOne() throws Exception {
+		TextDocument document = document("server {\n  port = 8080\n}");
+
+		SemanticTokens tokens = cache.full(document, () -> { });
+
+		assertThat(tokens.getData()).containsExactly(
+				0, 0, 6, 1, 1,
+				0, 7, 1, 6, 0,
+				1, 2, 4, 0, 1,
+				0, 5, 1, 6, 0,
+				0, 2, 4, 3, 0,
+				1, 0, 1, 6, 0);
+		assertThat(cache.range(document, new Range(new Position(1, 0), new Position(1, 5)), () -> { }).getData())
+				.containsExactly(1, 2, 4, 0, 1, 0, 5, 1, 6, 0, 0, 2, 4, 3, 0);
+	}
+
+	@Test
+	void testDeltaOnlyContainsTheEditedTokens() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			text.append("key").append(i).append(" = ").append(i).append('\n');
+		}
+		TextDocument document = document(text.toString());
+		SemanticTokens previous = cache.full(document, () -> { });
+		TextDocument edited = document.applyChanges(2, Collections.singletonList(
+				new TextDocumentContentChangeEvent(new Range(new Position(5000, 0), new Position(5000, 0)), 0, "inserted = \"value\"\n")));
+
+		Either<SemanticTokens, SemanticTokensDelta> delta = cache.delta(edited, previous.getResultId(), () -> { });
+
+		assertThat(delta.isRight()).isTrue();
+		List<SemanticTokensEdit> edits = delta.getRight().getEdits();
+		assertThat(edits).hasSize(1);
+		assertThat(edits.get(0).getData().size()).isLessThanOrEqualTo(15);
+		List<Integer> patched = new ArrayList<>(previous.getData());
+		patched.subList(edits.get(0).getStart(), edits.get(0).getStart() + edits.get(0).getDeleteCount()).clear();
+		patched.addAll(edits.get(0).getStart(), edits.get(0).getData());
+		assertThat(patched).isEqualTo(cache.full(edited, () -> { }).getData());
+		assertThat(cache.delta(edited, delta.getRight().getResultId(), () -> { }).getRight().getEdits()).isEmpty();
+	}
+
+	@Test
+	void testUnknownPreviousResultGetsAllTheTokens() throws Exception {
+		TextDocument document = document("a = 1\n");
+
+		Either<SemanticTokens, SemanticTokensDelta> delta = cache.delta(document, "unknown", () -> { });
+
+		assertThat(delta.isLeft()).isTrue();
+		assertThat(delta.getLeft().getData()).hasSize(15);
+	}
+
+	private TextDocument document(String text) {
+		return new TextDocument(new TextDocumentItem("file:///test.demo", MyLanguageServer.LANGUAGE_ID, 1, text));
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.document.Rope;
+import com.github.mylanguageserver.syntax.DemoLineParser;
+import com.github.mylanguageserver.syntax.SyntaxTree;
+
+class ReferenceIndexTest {
+
+	private static final String TEXT = "host = \"a\"\nserver {\n  url = host # host\n  port = base.port\n}\nhost = 2";
+
+	@Test
+	void testOccurrencesExtractedFromTextAndTree() throws Exception {
+		Occurrences fromText = Occurrences.extract(TEXT);
+		Occurrences fromTree = Occurrences.extract(SyntaxTree.parse(Rope.of(TEXT), DemoLineParser.INSTANCE));
+
+		for (Occurrences occurrences : new Occurrences[] { fromText, fromTree }) {
+			assertThat(occurrences.getNames()).containsExactly("base.port", "host", "port", "server", "url");
+			assertThat(occurrences.getRanges("host", true)).containsExactly(range(0, 0, 4), range(2, 8, 12), range(5, 0, 4));
+			assertThat(occurrences.getRanges("host", false)).containsExactly(range(2, 8, 12));
+			assertThat(occurrences.count("missing")).isZero();
+		}
+	}
+
+	@Test
+	void testFilesWithNameFollowUpdates() throws Exception {
+		ReferenceIndex index = new ReferenceIndex();
+		Map<String, Occurrences> files = new HashMap<>();
+		files.put("file:///b.demo", Occurrences.extract("b = host"));
+		files.put("file:///a.demo", Occurrences.extract("host = 1"));
+		files.put("file:///c.demo", Occurrences.extract("c = 1"));
+		index.updateAll(files);
+
+		assertThat(index.getFilesWithName("host", uri -> false)).containsOnlyKeys("file:///a.demo", "file:///b.demo");
+		assertThat(index.getFilesWithName("host", "file:///a.demo"::equals)).containsOnlyKeys("file:///b.demo");
+
+		index.update("file:///b.demo", Occurrences.extract("b = other"));
+		index.remove("file:///a.demo");
+		assertThat(index.getFilesWithName("host", uri -> false)).isEmpty();
+		assertThat(index.getFilesWithName("other", uri -> false)).containsOnlyKeys("file:///b.demo");
+		assertThat(index.getFileCount()).isEqualTo(2);
+	}
+
+	private static Range range(int line, int start, int end) {
+		return new Range(new Position(line, start), new Position(line, end));
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.SymbolKind;
+import org.junit.jupiter.api.Test;
+
+class SymbolIndexTest {
+
+	private static final String URI = "file:///a.demo";
+	private static final String OTHER_URI = "file:///b.demo";
+
+	@Test
+	void testCamelCaseAndFuzzyQueries() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		index.update(URI, symbols("getUserName", "get_user_id", "username", "HTTPServer", "target"));
+
+		assertThat(search(index, "gUN")).containsExactly("getUserName");
+		assertThat(search(index, "getun")).containsExactly("getUserName");
+		assertThat(search(index, "user")).containsExactly("username", "getUserName", "get_user_id");
+		assertThat(search(index, "gui")).containsExactly("get_user_id");
+		assertThat(search(index, "hs")).containsExactly("HTTPServer");
+		assertThat(search(index, "g")).containsExactlyInAnyOrder("getUserName", "get_user_id");
+		assertThat(search(index, "xyz")).isEmpty();
+	}
+
+	@Test
+	void testCamelCaseQueriesSkippingSegments() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		index.update(URI, symbols("getUserName", "HTTPServerConfig", "target"));
+
+		assertThat(search(index, "getname")).containsExactly("getUserName");
+		assertThat(search(index, "gn")).containsExactly("getUserName");
+		assertThat(search(index, "gtn")).containsExactly("getUserName");
+		assertThat(search(index, "httpconfig")).containsExactly("HTTPServerConfig");
+		assertThat(search(index, "hc")).containsExactly("HTTPServerConfig");
+	}
+
+	@Test
+	void testFilesUpdatedIncrementally() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		index.update(URI, symbols("alpha", "beta"));
+		index.update(OTHER_URI, symbols("alphabet"));
+
+		index.update(URI, symbols("beta", "gamma"));
+		assertThat(search(index, "alp")).containsExactly("alphabet");
+		assertThat(search(index, "gam")).containsExactly("gamma");
+
+		index.remove(OTHER_URI);
+		assertThat(search(index, "alp")).isEmpty();
+		assertThat(search(index, "")).containsExactlyInAnyOrder("beta", "gamma");
+		assertThat(index.getFileCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testExcludedFilesIgnored() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		index.update(URI, symbols("shared"));
+		index.update(OTHER_URI, symbols("shared"));
+
+		List<SymbolMatch> matches = index.search("shared", 10, URI::equals, () -> {});
+
+		assertThat(matches).extracting(SymbolMatch::getUri).containsExactly(OTHER_URI);
+	}
+
+	@Test
+	void testLargeIndexKeepsBestMatches() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		for (int file = 0; file < 1000; file++) {
+			List<String> names = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				names.add("symbol" + file + "Name" + i);
+			}
+			index.update("file:///" + file + ".demo", symbols(names.toArray(new String[0])));
+		}
+
+		assertThat(search(index, "symbol42Name7")).startsWith("symbol42Name7");
+		assertThat(index.search("name", 50, uri -> false, () -> {})).hasSize(50);
+	}
+
+	@Test
+	void testBroadQueryScoresNamesDeclaredLast() throws Exception {
+		SymbolIndex index = new SymbolIndex();
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			names.add("alpha" + i);
+		}
+		index.update("file:///first.demo", symbols(names.toArray(new String[0])));
+		index.update("file:///last.demo", symbols("al"));
+
+		assertThat(search(index, "al")).startsWith("al");
+	}
+
+	private static List<String> search(SymbolIndex index, String query) {
+		return index.search(query, 100, uri -> false, () -> {}).stream()
+				.map(match -> match.getSymbol().getName())
+				.collect(Collectors.toList());
+	}
+
+	private static List<IndexedSymbol> symbols(String... names) {
+		List<IndexedSymbol> symbols = new ArrayList<>();
+		for (int line = 0; line < names.length; line++) {
+			symbols.add(new IndexedSymbol(names[line], SymbolKind.Property, line, 0, names[line].length()));
+		}
+		return symbols;
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkspaceIndexerTest {
+
+	@TempDir
+	Path folder;
+
+	@Test
+	void testUnchangedFilesReusedFromSnapshot() throws Exception {
+		Path root = Files.createDirectory(folder.resolve("root"));
+		Path snapshot = folder.resolve("cache").resolve("workspace.index");
+		Path unchanged = write(root.resolve("a.demo"), "alpha = 1\n");
+		Path touched = write(root.resolve("b.demo"), "beta = 2\n");
+		Path changed = write(root.resolve("c.demo"), "gamma = 3\n");
+		index(root, snapshot);
+		assertThat(snapshot).exists();
+
+		Files.setLastModifiedTime(touched, FileTime.fromMillis(Files.getLastModifiedTime(touched).toMillis() + 10_000));
+		write(changed, "delta = 4\n");
+		Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 10_000));
+		SymbolIndex index = new SymbolIndex();
+		ReferenceIndex references = new ReferenceIndex();
+		WorkspaceIndexer indexer = new WorkspaceIndexer(index, references, snapshot);
+		indexer.indexRoots(Collections.singletonList(root)).get();
+
+		assertThat(indexer.getReusedFileCount()).isEqualTo(2);
+		assertThat(references.getFilesWithName("alpha", uri -> false)).containsOnlyKeys(WorkspaceIndexer.uriOf(unchanged));
+		assertThat(references.getFilesWithName("beta", uri -> false)).containsOnlyKeys(WorkspaceIndexer.uriOf(touched));
+		assertThat(references.getFilesWithName("gamma", uri -> false)).isEmpty();
+		assertThat(names(index, unchanged)).containsExactly("alpha");
+		assertThat(names(index, touched)).containsExactly("beta");
+		assertThat(names(index, changed)).containsExactly("delta");
+	}
+
+	@Test
+	void testCorruptedSnapshotIgnored() throws Exception {
+		Path root = Files.createDirectory(folder.resolve("root"));
+		Path snapshot = folder.resolve("workspace.index");
+		Path file = write(root.resolve("a.demo"), "alpha = 1\n");
+		index(root, snapshot);
+		byte[] bytes = Files.readAllBytes(snapshot);
+		bytes[bytes.length / 2] ^= 0x7F;
+		Files.write(snapshot, bytes);
+
+		SymbolIndex index = new SymbolIndex();
+		WorkspaceIndexer indexer = new WorkspaceIndexer(index, snapshot);
+		indexer.indexRoots(Collections.singletonList(root)).get();
+
+		assertThat(indexer.getReusedFileCount()).isZero();
+		assertThat(names(index, file)).containsExactly("alpha");
+		assertThat(IndexSnapshot.load(snapshot).getFileCount()).isEqualTo(1);
+	}
+
+	private static void index(Path root, Path snapshot) throws Exception {
+		WorkspaceIndexer indexer = new WorkspaceIndexer(new SymbolIndex(), snapshot);
+		indexer.indexRoots(Collections.singletonList(root)).get();
+		indexer.close();
+	}
+
+	private static Path write(Path file, String content) throws Exception {
+		return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<String> names(SymbolIndex index, Path file) {
+		return index.getSymbols(WorkspaceIndexer.uriOf(file)).stream().map(IndexedSymbol::getName).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+	@Test
+	void testPercentilesWithinRelativeError() throws Exception {
+		Histogram histogram = new Histogram();
+		for (long value = 1; value <= 100_000; value++) {
+			histogram.record(value);
+		}
+
+		assertThat(histogram.getCount()).isEqualTo(100_000);
+		assertThat(histogram.getMax()).isEqualTo(100_000);
+		assertThat(histogram.getMean()).isCloseTo(50_000.5, within(0.001));
+		assertThat((double) histogram.getValueAtPercentile(50)).isCloseTo(50_000, within(50_000 / 30d));
+		assertThat((double) histogram.getValueAtPercentile(99)).isCloseTo(99_000, within(99_000 / 30d));
+		assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100_000);
+	}
+
+	@Test
+	void testIndexesCoverEveryValueOnce() throws Exception {
+		for (long value = 0; value < 1 << 16; value++) {
+			int index = Histogram.indexOf(value);
+			assertThat(Histogram.highestEquivalentValue(index)).isGreaterThanOrEqualTo(value);
+			assertThat(index == 0 || Histogram.highestEquivalentValue(index - 1) < value).isTrue();
+		}
+		assertThat(Histogram.indexOf(Histogram.MAX_VALUE)).isEqualTo(32 * Histogram.SUB_BUCKET_COUNT - 1);
+	}
+
+	@Test
+	void testOutOfRangeValuesClamped() throws Exception {
+		Histogram histogram = new Histogram();
+		histogram.record(-1);
+		histogram.record(Long.MAX_VALUE);
+
+		assertThat(histogram.getValueAtPercentile(0)).isEqualTo(0);
+		assertThat(histogram.getMax()).isEqualTo(Histogram.MAX_VALUE);
+	}
+}
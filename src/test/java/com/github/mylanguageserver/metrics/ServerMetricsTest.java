@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.google.gson.JsonObject;
+
+class ServerMetricsTest {
+
+	private static final String URI = "file:///test.demo";
+
+	private final ServerMetrics metrics = new ServerMetrics(() -> 3, false);
+	private LanguageServer server;
+	private Launcher<LanguageServer> clientLauncher;
+
+	@BeforeEach
+	void connect() throws Exception {
+		Pipe clientToServer = Pipe.open();
+		Pipe serverToClient = Pipe.open();
+		MyLanguageServer languageServer = new MyLanguageServer();
+		languageServer.setExitHandler(() -> {});
+		Launcher<LanguageClient> serverLauncher = new LSPLauncher.Builder<LanguageClient>() {
+			@Override
+			protected MessageJsonHandler createJsonHandler() {
+				return new MeasuredMessageJsonHandler(getSupportedMethods(), configureGson, metrics);
+			}
+		}
+			.setLocalService(languageServer)
+			.setRemoteInterface(LanguageClient.class)
+			.setInput(Channels.newInputStream(clientToServer.source()))
+			.setOutput(Channels.newOutputStream(serverToClient.sink()))
+			.create();
+		languageServer.connect(serverLauncher.getRemoteProxy());
+		serverLauncher.startListening();
+		clientLauncher = LSPLauncher.createClientLauncher(new NoOpClient(),
+				Channels.newInputStream(serverToClient.source()), Channels.newOutputStream(clientToServer.sink()));
+		clientLauncher.startListening();
+		server = clientLauncher.getRemoteProxy();
+		server.initialize(new InitializeParams()).get();
+	}
+
+	@AfterEach
+	void disconnect() throws Exception {
+		server.shutdown().get();
+	}
+
+	@Test
+	void testRequestsAndNotificationsMeasured() throws Exception {
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, "key = value")));
+		server.getTextDocumentService().completion(new CompletionParams(new TextDocumentIdentifier(URI), new Position(0, 3))).get();
+
+		MethodMetrics completion = metrics.method("textDocument/completion");
+		assertThat(completion.getCount()).isEqualTo(1);
+		assertThat(completion.getInFlight()).isZero();
+		assertThat(completion.getErrorCount()).isZero();
+		assertThat(completion.getMaxRequestSize()).isPositive();
+		assertThat(completion.getMaxResponseSize()).isPositive();
+		assertThat(completion.getLatencyMax()).isPositive();
+		assertThat(metrics.method("textDocument/didOpen").getMaxRequestSize()).isGreaterThan("key = value".length());
+		assertThat(metrics.getMethods()).contains("initialize", "textDocument/completion", "textDocument/didOpen");
+	}
+
+	@Test
+	void testMetricsRequest() throws Exception {
+		Object report = clientLauncher.getRemoteEndpoint().request("$/metrics", null).get();
+
+		assertThat(report).isInstanceOf(JsonObject.class);
+		assertThat(((JsonObject) report).has("queueDepth")).isTrue();
+		assertThat(((JsonObject) report).getAsJsonArray("methods")).isNotNull();
+	}
+
+	@Test
+	void testPrometheusEndpoint() throws Exception {
+		server.getTextDocumentService().completion(new CompletionParams(new TextDocumentIdentifier(URI), new Position(0, 0))).get();
+		PrometheusExporter exporter = new PrometheusExporter(metrics);
+		exporter.start("localhost", 0);
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + exporter.getPort() + "/metrics").openConnection();
+
+			assertThat(connection.getResponseCode()).isEqualTo(200);
+			assertThat(connection.getContentType()).isEqualTo(PrometheusExporter.CONTENT_TYPE);
+			assertThat(read(connection.getInputStream()))
+				.contains("lsp_queue_depth 3\n")
+				.contains("lsp_messages_total{method=\"textDocument/completion\"} 1\n")
+				.contains("lsp_in_flight{method=\"textDocument/completion\"} 0\n")
+				.contains("lsp_latency_seconds{method=\"textDocument/completion\",quantile=\"0.99\"} ")
+				.contains("lsp_latency_seconds_count{method=\"textDocument/completion\"} 1\n");
+		} finally {
+			exporter.stop();
+		}
+	}
+
+	private static String read(InputStream input) throws Exception {
+		try (InputStream in = input) {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+			return new String(content.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static final class NoOpClient implements LanguageClient {
+
+		@Override
+		public void telemetryEvent(Object object) {
+		}
+
+		@Override
+		public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public void showMessage(MessageParams messageParams) {
+		}
+
+		@Override
+		public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+		}
+
+		@Override
+		public void logMessage(MessageParams message) {
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.progress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.junit.jupiter.api.Test;
+
+class PartialResultProgressTest {
+
+	@Test
+	void testPartialResultWrittenAsProgressValue() throws Exception {
+		NotificationMessage message = new NotificationMessage();
+		message.setMethod("$/progress");
+		Location location = new Location("file:///a.demo", new Range(new Position(1, 2), new Position(1, 6)));
+		message.setParams(new PartialResultProgress(Either.forLeft("token-1"), Collections.singletonList(location)));
+
+		String json = new MessageJsonHandler(Collections.emptyMap()).serialize(message);
+
+		assertThat(json).contains("\"params\":{\"token\":\"token-1\",\"value\":[{\"uri\":\"file:///a.demo\",\"range\":{\"start\":{\"line\":1,\"character\":2}");
+	}
+}
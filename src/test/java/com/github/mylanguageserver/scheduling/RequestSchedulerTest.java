@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.scheduling;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.document.DocumentStore;
+import com.github.mylanguageserver.document.TextDocument;
+
+class RequestSchedulerTest {
+
+	private final RequestScheduler scheduler = new RequestScheduler();
+
+	@Test
+	void testNotificationsOrderedPerUri() throws Exception {
+		List<Integer> handled = new CopyOnWriteArrayList<>();
+		CompletableFuture<Void> last = null;
+		for (int i = 0; i < 100; i++) {
+			int index = i;
+			last = scheduler.notification("uri", () -> {
+				if (index % 10 == 0) {
+					sleep(1);
+				}
+				handled.add(index);
+			});
+		}
+		last.get(5, TimeUnit.SECONDS);
+
+		assertThat(handled).hasSize(100).isSorted();
+	}
+
+	@Test
+	void testRequestWaitsForPreviousNotificationsOnSameUri() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> events = new CopyOnWriteArrayList<>();
+		scheduler.notification("uri", () -> {
+			await(release);
+			events.add("notification");
+		});
+
+		CompletableFuture<String> request = scheduler.request("uri", cancelChecker -> {
+			events.add("request");
+			return "done";
+		});
+		CompletableFuture<String> otherDocumentRequest = scheduler.request("otherUri", cancelChecker -> "other");
+
+		assertThat(otherDocumentRequest.get(5, TimeUnit.SECONDS)).isEqualTo("other");
+		assertThat(request).isNotDone();
+		release.countDown();
+		assertThat(request.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+		assertThat(events).containsExactly("notification", "request");
+	}
+
+	@Test
+	void testRequestNotBoundToDocumentWaitsForPreviousNotificationsOnAllUris() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> events = new CopyOnWriteArrayList<>();
+		scheduler.notification("uri", () -> events.add("notification"));
+		scheduler.notification("otherUri", () -> {
+			await(release);
+			events.add("other notification");
+		});
+
+		CompletableFuture<String> request = scheduler.request(null, cancelChecker -> {
+			events.add("request");
+			return "done";
+		});
+
+		assertThat(request).isNotDone();
+		release.countDown();
+		assertThat(request.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+		assertThat(events).hasSize(3).endsWith("request");
+	}
+
+	@Test
+	void testNewerRequestSupersedesInFlightOne() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture<String> first = scheduler.supersedingRequest("textDocument/completion", "uri", cancelChecker -> {
+			started.countDown();
+			while (true) {
+				cancelChecker.checkCanceled();
+				sleep(1);
+			}
+		});
+		started.await(5, TimeUnit.SECONDS);
+
+		CompletableFuture<String> second = scheduler.supersedingRequest("textDocument/completion", "uri", cancelChecker -> "latest");
+		CompletableFuture<String> otherMethod = scheduler.supersedingRequest("textDocument/hover", "uri", cancelChecker -> "hover");
+
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("latest");
+		assertThat(otherMethod.get(5, TimeUnit.SECONDS)).isEqualTo("hover");
+		assertThat(first).isCancelled();
+	}
+
+	@Test
+	void testDocumentCancelCheckerAbortsOnNewVersion() throws Exception {
+		DocumentStore store = new DocumentStore();
+		TextDocument snapshot = store.open(new TextDocumentItem("uri", MyLanguageServer.LANGUAGE_ID, 1, "text"));
+		DocumentCancelChecker cancelChecker = new DocumentCancelChecker(() -> {}, store, snapshot);
+		cancelChecker.checkCanceled();
+
+		store.update("uri", 2, Collections.singletonList(new TextDocumentContentChangeEvent("new text")));
+
+		ResponseErrorException exception = catchThrowableOfType(cancelChecker::checkCanceled, ResponseErrorException.class);
+		assertThat(exception.getResponseError().getCode()).isEqualTo(DocumentCancelChecker.CONTENT_MODIFIED);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.syntax;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.document.Rope;
+import com.github.mylanguageserver.document.TextDocument;
+
+class SyntaxTreeTest {
+
+	@Test
+	void testSectionsNestProperties() throws Exception {
+		SyntaxTree tree = SyntaxTree.parse(Rope.of("# settings\nserver {\n  port = 8080\n  tls {\n    enabled = true\n  }\n}\nname = \"demo\"\n"),
+				DemoLineParser.INSTANCE);
+
+		SyntaxNode server = tree.getRoot().getChildren().get(0);
+		assertThat(tree.getRoot().getChildren()).extracting(SyntaxNode::getName).containsExactly("server", "name");
+		assertThat(server.getLine()).isEqualTo(1);
+		assertThat(server.getEndLine()).isEqualTo(6);
+		assertThat(server.getChildren()).extracting(SyntaxNode::getName).containsExactly("port", "tls");
+		assertThat(server.getChildren().get(1).getChildren()).extracting(SyntaxNode::getName).containsExactly("enabled");
+		assertThat(tree.getTokens(2)).extracting(Token::getKind).containsExactly(TokenKind.IDENTIFIER, TokenKind.OPERATOR, TokenKind.NUMBER);
+		assertThat(tree.getTokens(7)).extracting(Token::getKind).containsExactly(TokenKind.IDENTIFIER, TokenKind.OPERATOR, TokenKind.STRING);
+	}
+
+	@Test
+	void testOnlyEditedLinesParsedAgain() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append("key").append(i).append(" = ").append(i).append('\n');
+		}
+		TextDocument document = new TextDocument(new TextDocumentItem("uri", MyLanguageServer.LANGUAGE_ID, 1, text.toString()));
+		SyntaxTree initial = document.getSyntaxTree();
+
+		TextDocument updated = document.applyChanges(2, Collections.singletonList(change(10, 0, 10, 0, "section {\n")))
+				.applyChanges(3, Collections.singletonList(change(20, 0, 20, 0, "}\n")));
+		SyntaxTree tree = updated.getSyntaxTree();
+
+		// each insertion touches the new line and the line it was inserted in
+		assertThat(tree.getParsedLineCount()).isEqualTo(4);
+		assertThat(tree.getLine(500)).isSameAs(initial.getLine(498));
+		assertThat(tree.getRoot().getChildren().get(10).getName()).isEqualTo("section");
+		assertThat(tree.getRoot().getChildren().get(10).getChildren()).hasSize(9);
+		assertThat(updated.getSyntaxTree()).isSameAs(tree);
+	}
+
+	@Test
+	void testIncrementalParsingMatchesFullParsing() throws Exception {
+		Random random = new Random(7);
+		String[] insertions = { "a", "=", " ", "{", "}", "\n", "x = 1\n", "# c", "s {\n", "\"q\"", "\r\n" };
+		TextDocument document = new TextDocument(new TextDocumentItem("uri", MyLanguageServer.LANGUAGE_ID, 1, "a = 1\nb {\n c = 2\n}\n"));
+		for (int version = 2; version < 500; version++) {
+			List<TextDocumentContentChangeEvent> changes = new ArrayList<>();
+			for (int i = random.nextInt(3); i >= 0; i--) {
+				int line = random.nextInt(document.getContent().lineCount() + 1);
+				int character = random.nextInt(6);
+				changes.add(change(line, character, line + random.nextInt(2), random.nextInt(6), insertions[random.nextInt(insertions.length)]));
+			}
+			document = document.applyChanges(version, changes);
+			if (random.nextInt(3) == 0) {
+				assertThat(describe(document.getSyntaxTree())).isEqualTo(describe(SyntaxTree.parse(document.getContent(), DemoLineParser.INSTANCE)));
+			}
+		}
+	}
+
+	private static List<String> describe(SyntaxTree tree) {
+		List<String> lines = new ArrayList<>();
+		for (int line = 0; line < tree.getLineCount(); line++) {
+			lines.add(tree.getLine(line).getKind() + " " + tree.getTokens(line).stream().map(Token::toString).collect(Collectors.joining(",")));
+		}
+		return lines;
+	}
+
+	private static TextDocumentContentChangeEvent change(int startLine, int startCharacter, int endLine, int endCharacter, String text) {
+		return new TextDocumentContentChangeEvent(new Range(new Position(startLine, startCharacter), new Position(endLine, endCharacter)), 0, text);
+	}
+}
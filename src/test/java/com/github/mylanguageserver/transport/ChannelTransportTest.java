@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.junit.jupiter.api.Test;
+
+import com.github.mylanguageserver.MyLanguageServer;
+import com.github.mylanguageserver.metrics.MeasuredMessageJsonHandler;
+import com.github.mylanguageserver.metrics.ServerMetrics;
+
+class ChannelTransportTest {
+
+	private static final String URI = "file:///test.demo";
+
+	@Test
+	void testLargeAndSmallMessagesRoundTrip() throws Exception {
+		MessageJsonHandler jsonHandler = new MessageJsonHandler(ServiceEndpoints.getSupportedMethods(LanguageServer.class));
+		Pipe pipe = Pipe.open();
+		List<Message> received = new CopyOnWriteArrayList<>();
+		ChannelMessageProducer producer = new ChannelMessageProducer(pipe.source(), jsonHandler, null);
+		CompletableFuture<Void> listening = CompletableFuture.runAsync(() -> producer.listen(received::add));
+		StringBuilder text = new StringBuilder();
+		while (text.length() < 3 * ChannelMessageProducer.RETAINED_CAPACITY) {
+			text.append("nameé = \"😀\"\n");
+		}
+		ChannelMessageConsumer consumer = new ChannelMessageConsumer(pipe.sink(), jsonHandler);
+
+		consumer.consume(notification("textDocument/didOpen", new DidOpenTextDocumentParams(new TextDocumentItem("file:///large.demo", "demo", 1, text.toString()))));
+		consumer.consume(notification("textDocument/didOpen", new DidOpenTextDocumentParams(new TextDocumentItem("file:///small.demo", "demo", 1, "a = é"))));
+		RequestMessage request = new RequestMessage();
+		request.setId(1);
+		request.setMethod("textDocument/completion");
+		request.setParams(new CompletionParams(new TextDocumentIdentifier("file:///small.demo"), new Position(0, 1)));
+		consumer.consume(request);
+		pipe.sink().close();
+		listening.get(10, TimeUnit.SECONDS);
+
+		assertThat(received).hasSize(3);
+		assertThat(((DidOpenTextDocumentParams) ((NotificationMessage) received.get(0)).getParams()).getTextDocument().getText()).isEqualTo(text.toString());
+		assertThat(((DidOpenTextDocumentParams) ((NotificationMessage) received.get(1)).getParams()).getTextDocument().getText()).isEqualTo("a = é");
+		assertThat(((RequestMessage) received.get(2)).getParams()).isEqualTo(request.getParams());
+	}
+
+	@Test
+	void testServerLaunchedOnChannelsMeasured() throws Exception {
+		ServerMetrics metrics = ServerMetrics.getInstance();
+		long completions = metrics.method("textDocument/completion").getCount();
+		Pipe clientToServer = Pipe.open();
+		Pipe serverToClient = Pipe.open();
+		MyLanguageServer languageServer = new MyLanguageServer();
+		languageServer.setExitHandler(() -> {});
+		Launcher<LanguageClient> serverLauncher = new ChannelLauncherBuilder<LanguageClient>() {
+			@Override
+			protected MessageJsonHandler createJsonHandler() {
+				return new MeasuredMessageJsonHandler(getSupportedMethods(), configureGson, metrics);
+			}
+		}
+			.setChannels(clientToServer.source(), serverToClient.sink())
+			.setLocalService(languageServer)
+			.setRemoteInterface(LanguageClient.class)
+			.create();
+		languageServer.connect(serverLauncher.getRemoteProxy());
+		serverLauncher.startListening();
+		Launcher<LanguageServer> clientLauncher = LSPLauncher.createClientLauncher(new NoOpClient(),
+				Channels.newInputStream(serverToClient.source()), Channels.newOutputStream(clientToServer.sink()));
+		clientLauncher.startListening();
+		LanguageServer server = clientLauncher.getRemoteProxy();
+		server.initialize(new InitializeParams()).get();
+		String text = "userName = \"é\"\nuserId = b\nu";
+		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(URI, MyLanguageServer.LANGUAGE_ID, 1, text)));
+
+		Either<List<CompletionItem>, CompletionList> completion = server.getTextDocumentService()
+				.completion(new CompletionParams(new TextDocumentIdentifier(URI), new Position(2, 1))).get();
+		server.shutdown().get();
+
+		assertThat(completion.getRight().getItems()).extracting(CompletionItem::getLabel).contains("userName", "userId");
+		assertThat(metrics.method("textDocument/completion").getCount()).isEqualTo(completions + 1);
+		assertThat(metrics.method("textDocument/completion").getMaxResponseSize()).isPositive();
+		assertThat(metrics.method("textDocument/didOpen").getMaxRequestSize()).isGreaterThan(text.length());
+	}
+
+	private static NotificationMessage notification(String method, Object params) {
+		NotificationMessage notification = new NotificationMessage();
+		notification.setMethod(method);
+		notification.setParams(params);
+		return notification;
+	}
+
+	private static final class NoOpClient implements LanguageClient {
+
+		@Override
+		public void telemetryEvent(Object object) {
+		}
+
+		@Override
+		public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public void showMessage(MessageParams messageParams) {
+		}
+
+		@Override
+		public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+		}
+
+		@Override
+		public void logMessage(MessageParams message) {
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.WorkDoneProgressBegin;
+import org.eclipse.lsp4j.WorkDoneProgressNotification;
+import org.eclipse.lsp4j.WorkDoneProgressReport;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.Test;
+
+class BatchingMessageConsumerTest {
+
+	private final MessageJsonHandler jsonHandler = new MessageJsonHandler(ServiceEndpoints.getSupportedMethods(LanguageClient.class));
+	private final List<String> sent = new CopyOnWriteArrayList<>();
+	private final List<SendHandler> pendingSends = new CopyOnWriteArrayList<>();
+
+	@Test
+	void testSupersededDiagnosticsDroppedForSlowClient() {
+		BatchingMessageConsumer consumer = createConsumer(0, 1);
+
+		consumer.consume(diagnostics("file:///a.demo", "first"));
+		consumer.consume(diagnostics("file:///a.demo", "second"));
+		consumer.consume(diagnostics("file:///b.demo", "other"));
+		consumer.consume(diagnostics("file:///a.demo", "third"));
+
+		assertThat(sent).hasSize(1);
+		assertThat(consumer.getQueueSize()).isEqualTo(2);
+		completeSends();
+		completeSends();
+		assertThat(sent).hasSize(3);
+		assertThat(sent.get(0)).contains("first");
+		assertThat(sent.get(1)).contains("third");
+		assertThat(sent.get(2)).contains("other");
+	}
+
+	@Test
+	void testResponseSendsBatchedNotificationsFirst() {
+		BatchingMessageConsumer consumer = createConsumer(60_000, MyLSPSessionManager.DEFAULT_OUTBOUND_BUFFER_SIZE);
+
+		consumer.consume(progress(new WorkDoneProgressBegin()));
+		consumer.consume(progress(report(25)));
+		consumer.consume(progress(report(50)));
+		assertThat(sent).isEmpty();
+		ResponseMessage response = new ResponseMessage();
+		response.setId(1);
+		response.setResult("done");
+		consumer.consume(response);
+
+		assertThat(sent).hasSize(3);
+		assertThat(sent.get(0)).contains("\"begin\"");
+		assertThat(sent.get(1)).contains("\"percentage\":50");
+		assertThat(sent.get(2)).contains("\"result\":\"done\"");
+	}
+
+	@Test
+	void testNotificationsSentAfterBatchDelay() {
+		BatchingMessageConsumer consumer = createConsumer(50, MyLSPSessionManager.DEFAULT_OUTBOUND_BUFFER_SIZE);
+
+		consumer.consume(diagnostics("file:///a.demo", "first"));
+		consumer.consume(diagnostics("file:///a.demo", "second"));
+
+		await().until(() -> !sent.isEmpty());
+		assertThat(sent).hasSize(1);
+		assertThat(sent.get(0)).contains("second");
+	}
+
+	private BatchingMessageConsumer createConsumer(long batchDelay, long outboundBufferSize) {
+		return new BatchingMessageConsumer(null, jsonHandler, batchDelay, outboundBufferSize) {
+			@Override
+			protected void sendMessage(String message, SendHandler handler) {
+				sent.add(message);
+				pendingSends.add(handler);
+			}
+		};
+	}
+
+	private void completeSends() {
+		for (SendHandler handler : pendingSends) {
+			pendingSends.remove(handler);
+			handler.onResult(new SendResult());
+		}
+	}
+
+	private static NotificationMessage diagnostics(String uri, String message) {
+		Diagnostic diagnostic = new Diagnostic(new Range(new Position(0, 0), new Position(0, 1)), message);
+		return notification("textDocument/publishDiagnostics", new PublishDiagnosticsParams(uri, Collections.singletonList(diagnostic)));
+	}
+
+	private static WorkDoneProgressReport report(int percentage) {
+		WorkDoneProgressReport report = new WorkDoneProgressReport();
+		report.setPercentage(percentage);
+		return report;
+	}
+
+	private static NotificationMessage progress(WorkDoneProgressNotification value) {
+		return notification("$/progress", new ProgressParams(Either.forLeft("token"), value));
+	}
+
+	private static NotificationMessage notification(String method, Object params) {
+		NotificationMessage notification = new NotificationMessage();
+		notification.setMethod(method);
+		notification.setParams(params);
+		return notification;
+	}
+}
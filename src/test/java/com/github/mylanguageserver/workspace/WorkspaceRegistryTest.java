@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mylanguageserver.workspace;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+
+import org.eclipse.lsp4j.InitializeParams;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkspaceRegistryTest {
+
+	@TempDir
+	Path workspaceRoot;
+
+	@Test
+	void testSessionsOnSameWorkspaceShareContext() throws Exception {
+		WorkspaceRegistry registry = new WorkspaceRegistry();
+
+		WorkspaceContext first = registry.acquire(params(workspaceRoot));
+		WorkspaceContext second = registry.acquire(params(workspaceRoot));
+		WorkspaceContext other = registry.acquire(params(workspaceRoot.resolve("other")));
+
+		assertThat(second).isSameAs(first);
+		assertThat(other).isNotSameAs(first);
+		assertThat(first.getRoots()).containsExactly(workspaceRoot.toAbsolutePath().normalize());
+
+		registry.release(first);
+		assertThat(registry.getWorkspaceCount()).isEqualTo(2);
+		registry.release(second);
+		registry.release(other);
+		assertThat(registry.getWorkspaceCount()).isZero();
+	}
+
+	private InitializeParams params(Path root) {
+		InitializeParams params = new InitializeParams();
+		params.setRootUri(root.toUri().toString());
+		return params;
+	}
+}